@@ -0,0 +1,680 @@
+package net.ihiroky.ocm.engine;
+
+import net.ihiroky.ocm.Arguments;
+import net.ihiroky.ocm.GeneratedParser;
+import net.ihiroky.ocm.IllegalArgumentTypeException;
+import net.ihiroky.ocm.Option;
+import net.ihiroky.ocm.ParserGenerator;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Generates {@link GeneratedParser}s at runtime by defining their classes from bytecode, for
+ * {@link net.ihiroky.ocm.Engine#SPECIALIZED}.
+ * <p/>
+ * This generator is registered in {@code META-INF/services/net.ihiroky.ocm.ParserGenerator}, so
+ * {@link net.ihiroky.ocm.ArgumentProcessor} uses it if this module is on the class path and the engine is
+ * specialized. A generated class has the same shape as a parser written by the annotation processor: its
+ * {@code set} switches on an index and stores a converted value to a field directly. Its {@code indexOf} finds an
+ * option by a switch on hash codes of names, unless the schema has so many names that its own table is faster. The
+ * class is defined as a hidden nestmate of a target class
+ * on Java 15 or later, so private fields of the target class can be stored. On Java 9 to 14, or if a hidden class
+ * can not be defined, the class is defined in the package of the target class, and a target class which has a
+ * private option field is not supported.
+ * <p/>
+ * A target class is not supported if it has an option field of a type other than primitives, their wrappers and
+ * {@code String}, such as a repeatable option, a final field or an {@link net.ihiroky.ocm.ArgumentSink}; it is
+ * parsed by reflection then.
+ *
+ * @author Hiroki Itoh
+ */
+public class BytecodeParserGenerator implements ParserGenerator {
+
+    /** a lookup of this module, which is teleported to target classes. */
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    /** a suffix of a generated parser class name, which differs from {@link GeneratedParser#CLASS_NAME_SUFFIX}. */
+    static final String CLASS_NAME_SUFFIX = "_OcmSpecializedParser";
+
+    /** a prefix of an option name. */
+    private static final String LONG_NAME_PREFIX = "--";
+
+    /** a prefix of an option alias. */
+    private static final String SHORT_NAME_PREFIX = "-";
+
+    /** an internal name of {@link GeneratedParser}. */
+    private static final String GENERATED_PARSER = "net/ihiroky/ocm/GeneratedParser";
+
+    /** an internal name of {@code net.ihiroky.ocm.handler.Numbers}, which converts values as handlers do. */
+    private static final String NUMBERS = "net/ihiroky/ocm/handler/Numbers";
+
+    /** an internal name of {@code CharSequence}. */
+    private static final String CHAR_SEQUENCE = "java/lang/CharSequence";
+
+    /** an internal name of {@code IndexOutOfBoundsException}. */
+    private static final String INDEX_OUT_OF_BOUNDS = "java/lang/IndexOutOfBoundsException";
+
+    /** access flags of a generated class: public, final and super. */
+    private static final int CLASS_ACCESS = 0x0031;
+
+    /** access flags of a public method. */
+    private static final int PUBLIC = 0x0001;
+
+    /** access flags of a private method. */
+    private static final int PRIVATE = 0x0002;
+
+    /** access flags of a protected method. */
+    private static final int PROTECTED = 0x0004;
+
+    /**
+     * the number of options handled by a {@code set} method, whose bytecode is less than 8000 bytes that the JIT
+     * compiler compiles by default. It is also the maximum number of names handled by a switch in {@code indexOf}.
+     */
+    private static final int CHUNK_SIZE = 256;
+
+    /** {@code Lookup.defineHiddenClass} on Java 15 or later, or null. */
+    private static final Method DEFINE_HIDDEN_CLASS;
+
+    /** an array of {@code Lookup.ClassOption} which makes a hidden class a nestmate, or null. */
+    private static final Object NESTMATE;
+
+    static {
+        Method define;
+        Object options;
+        try {
+            Class<?> optionClass = Class.forName("java.lang.invoke.MethodHandles$Lookup$ClassOption");
+            options = Array.newInstance(optionClass, 1);
+            Array.set(options, 0, optionClass.getField("NESTMATE").get(null));
+            define = MethodHandles.Lookup.class.getMethod(
+                    "defineHiddenClass", byte[].class, boolean.class, options.getClass());
+        } catch (ReflectiveOperationException roe) {
+            define = null;
+            options = null;
+        }
+        DEFINE_HIDDEN_CLASS = define;
+        NESTMATE = options;
+    }
+
+    /** parser classes generated per target class, or {@code Void.class} if a target class is not supported. */
+    private static final ClassValue<Class<?>> PARSER_CLASSES = new ClassValue<Class<?>>() {
+        @Override
+        protected Class<?> computeValue(Class<?> type) {
+            Class<?> c = (DEFINE_HIDDEN_CLASS != null) ? define(type, true) : null;
+            if (c == null) {
+                c = define(type, false);
+            }
+            return (c != null) ? c : Void.class;
+        }
+    };
+
+    /**
+     * Constructs a new instance.
+     */
+    public BytecodeParserGenerator() {
+    }
+
+    @Override
+    public <T> GeneratedParser<T> generate(Class<T> targetClass) {
+        Class<?> parserClass = PARSER_CLASSES.get(targetClass);
+        if (parserClass == Void.class) {
+            return null;
+        }
+        try {
+            @SuppressWarnings("unchecked")
+            GeneratedParser<T> parser = (GeneratedParser<T>) parserClass.getConstructor().newInstance();
+            return parser;
+        } catch (ReflectiveOperationException roe) {
+            throw new IllegalArgumentTypeException("failed to instantiate a parser of " + targetClass.getName()
+                    + '.', roe);
+        }
+    }
+
+    /**
+     * Generates and defines a parser class of a target class.
+     *
+     * @param targetClass a target class.
+     * @param hidden true if the class is defined as a hidden nestmate, false if it is defined in the package.
+     * @return a parser class, or null if the target class is not supported or the class can not be defined.
+     */
+    static Class<?> define(Class<?> targetClass, boolean hidden) {
+        return define(targetClass, hidden, CHUNK_SIZE);
+    }
+
+    /**
+     * Generates and defines a parser class of a target class.
+     *
+     * @param targetClass a target class.
+     * @param hidden true if the class is defined as a hidden nestmate, false if it is defined in the package.
+     * @param chunkSize the number of options handled by a {@code set} method, and names handled by a switch in
+     *                  {@code indexOf}.
+     * @return a parser class, or null if the target class is not supported or the class can not be defined.
+     */
+    static Class<?> define(Class<?> targetClass, boolean hidden, int chunkSize) {
+        List<Field> options = new ArrayList<Field>();
+        Field arguments = null;
+        for (Class<?> c = targetClass; c != null; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                Option option = field.getAnnotation(Option.class);
+                if (option != null) {
+                    if (option.name().length() == 0 || !isConvertible(field.getType())
+                            || !isWritable(field, targetClass, hidden)) {
+                        return null;
+                    }
+                    options.add(field);
+                } else if (field.getAnnotation(Arguments.class) != null) {
+                    if (!isWritable(field, targetClass, hidden) || !isAllocatable(field.getType(), targetClass)) {
+                        return null;
+                    }
+                    arguments = field; // a field in a super class wins, as the reflective schema.
+                }
+            }
+        }
+
+        String name = internalName(targetClass) + CLASS_NAME_SUFFIX;
+        byte[] bytes;
+        try {
+            ClassFile cf = new ClassFile();
+            writeConstructor(cf, options, arguments);
+            writeSet(cf, name, options, chunkSize);
+            writeGetArguments(cf, arguments);
+            writeIndexOf(cf, options, chunkSize);
+            bytes = cf.toBytes(CLASS_ACCESS, name, GENERATED_PARSER);
+        } catch (IOException ioe) {
+            return null; // too many options to be a class.
+        }
+
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(targetClass, LOOKUP);
+            if (hidden) {
+                return defineHidden(lookup, bytes);
+            }
+            try {
+                return lookup.defineClass(bytes);
+            } catch (LinkageError le) {
+                // defined by another thread in a race of ClassValue.
+                Class<?> defined = Class.forName(name.replace('/', '.'), false, targetClass.getClassLoader());
+                if (!GeneratedParser.class.isAssignableFrom(defined)) {
+                    throw le;
+                }
+                return defined;
+            }
+        } catch (IllegalAccessException iae) {
+            return null;
+        } catch (ClassNotFoundException cnfe) {
+            return null;
+        }
+    }
+
+    /**
+     * Defines a hidden class as a nestmate of the lookup class.
+     *
+     * @param lookup a lookup of a target class.
+     * @param bytes bytes of the class file.
+     * @return the defined class.
+     * @throws IllegalAccessException if the lookup does not have full privilege access.
+     */
+    private static Class<?> defineHidden(MethodHandles.Lookup lookup, byte[] bytes) throws IllegalAccessException {
+        try {
+            return ((MethodHandles.Lookup) DEFINE_HIDDEN_CLASS.invoke(lookup, bytes, true, NESTMATE)).lookupClass();
+        } catch (InvocationTargetException ite) {
+            Throwable cause = ite.getCause();
+            if (cause instanceof IllegalAccessException) {
+                throw (IllegalAccessException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * Writes a constructor which defines options and arguments.
+     *
+     * @param cf a class file.
+     * @param options fields annotated by {@link Option}.
+     * @param arguments a field annotated by {@link Arguments}, or null.
+     * @throws IOException if a constant can not be written.
+     */
+    private static void writeConstructor(ClassFile cf, List<Field> options, Field arguments) throws IOException {
+        Code code = new Code(7, 1);
+        code.local(Code.ALOAD, 0);
+        code.member(Code.INVOKESPECIAL, cf.methodRef(GENERATED_PARSER, "<init>", "()V"));
+        int option = cf.methodRef(GENERATED_PARSER, "option",
+                "(Ljava/lang/Class;Ljava/lang/String;Ljava/lang/String;Ljava/lang/String;Ljava/lang/String;Z)V");
+        for (Field field : options) {
+            Option o = field.getAnnotation(Option.class);
+            Class<?> type = field.getType();
+            code.local(Code.ALOAD, 0);
+            if (type.isPrimitive()) {
+                code.member(Code.GETSTATIC, cf.fieldRef(internalName(wrap(type)), "TYPE", "Ljava/lang/Class;"));
+            } else {
+                code.constant(cf.classRef(internalName(type)));
+            }
+            code.constant(cf.string(o.name()));
+            code.constant(cf.string(o.alias()));
+            code.constant(cf.string((o.metaName().length() > 0) ? o.metaName() : field.getName()));
+            code.constant(cf.string(o.usage()));
+            code.push(o.required() ? 1 : 0, cf);
+            code.member(Code.INVOKEVIRTUAL, option);
+        }
+        if (arguments != null) {
+            code.local(Code.ALOAD, 0);
+            code.push(arguments.getAnnotation(Arguments.class).required() ? 1 : 0, cf);
+            code.member(Code.INVOKEVIRTUAL, cf.methodRef(GENERATED_PARSER, "arguments", "(Z)V"));
+        }
+        code.op(Code.RETURN);
+        cf.method(PUBLIC, "<init>", "()V", code);
+    }
+
+    /**
+     * Writes {@code set} which switches on an index and stores a converted value to a field. Cases are split into
+     * private methods of {@code chunkSize} options if there are more options, so that the JIT compiler does not
+     * leave a huge method interpreted.
+     *
+     * @param cf a class file.
+     * @param thisClass an internal name of the parser class.
+     * @param options fields annotated by {@link Option}.
+     * @param chunkSize the number of options handled by a method.
+     * @throws IOException if a constant can not be written.
+     */
+    private static void writeSet(ClassFile cf, String thisClass, List<Field> options, int chunkSize)
+            throws IOException {
+        String descriptor = "(Ljava/lang/Object;ILjava/lang/CharSequence;)V";
+        if (options.size() <= chunkSize) {
+            cf.method(PROTECTED, "set", descriptor, setCases(cf, options, 0, options.size()));
+            return;
+        }
+
+        // locals: this, target, index, value
+        Code code = new Code(4, 4);
+        Code.Label[] chunks = new Code.Label[(options.size() + chunkSize - 1) / chunkSize];
+        for (int c = 0; c < chunks.length; c++) {
+            int from = c * chunkSize;
+            cf.method(PRIVATE, "set" + c, descriptor,
+                    setCases(cf, options, from, Math.min(from + chunkSize, options.size())));
+            chunks[c] = new Code.Label();
+        }
+        Code.Label defaultCase = new Code.Label();
+        code.local(Code.ILOAD, 2);
+        code.push(chunkSize, cf);
+        code.op(Code.IDIV);
+        code.tableSwitch(0, chunks, defaultCase);
+        for (int c = 0; c < chunks.length; c++) {
+            code.mark(chunks[c]);
+            code.local(Code.ALOAD, 0);
+            code.local(Code.ALOAD, 1);
+            code.local(Code.ILOAD, 2);
+            code.local(Code.ALOAD, 3);
+            code.member(Code.INVOKESPECIAL, cf.methodRef(thisClass, "set" + c, descriptor));
+            code.op(Code.RETURN);
+        }
+        code.mark(defaultCase);
+        writeIndexOutOfBounds(cf, code);
+        cf.method(PROTECTED, "set", descriptor, code);
+    }
+
+    /**
+     * Writes a body of {@code set} which stores values of a range of options.
+     *
+     * @param cf a class file.
+     * @param options fields annotated by {@link Option}.
+     * @param from the first index of the range, inclusive.
+     * @param to the last index of the range, exclusive.
+     * @return the body.
+     * @throws IOException if a constant can not be written.
+     */
+    private static Code setCases(ClassFile cf, List<Field> options, int from, int to) throws IOException {
+        // locals: this, target, index, value
+        Code code = new Code(6, 4);
+        if (from < to) {
+            Code.Label defaultCase = new Code.Label();
+            Code.Label[] cases = new Code.Label[to - from];
+            for (int i = 0; i < cases.length; i++) {
+                cases[i] = new Code.Label();
+            }
+            code.local(Code.ILOAD, 2);
+            code.tableSwitch(from, cases, defaultCase);
+            for (int i = 0; i < cases.length; i++) {
+                Field field = options.get(from + i);
+                String owner = internalName(field.getDeclaringClass());
+                code.mark(cases[i]);
+                code.local(Code.ALOAD, 1);
+                code.member(Code.CHECKCAST, cf.classRef(owner));
+                writeConversion(cf, code, field.getType());
+                code.member(Code.PUTFIELD, cf.fieldRef(owner, field.getName(), descriptor(field.getType())));
+                code.op(Code.RETURN);
+            }
+            code.mark(defaultCase);
+        }
+        writeIndexOutOfBounds(cf, code);
+        return code;
+    }
+
+    /**
+     * Writes a throw of {@code IndexOutOfBoundsException} for an index in the local variable 2.
+     *
+     * @param cf a class file.
+     * @param code a code to which the throw is appended.
+     * @throws IOException if a constant can not be written.
+     */
+    private static void writeIndexOutOfBounds(ClassFile cf, Code code) throws IOException {
+        code.member(Code.NEW, cf.classRef(INDEX_OUT_OF_BOUNDS));
+        code.op(Code.DUP);
+        code.local(Code.ILOAD, 2);
+        code.member(Code.INVOKESPECIAL, cf.methodRef(INDEX_OUT_OF_BOUNDS, "<init>", "(I)V"));
+        code.op(Code.ATHROW);
+    }
+
+    /**
+     * Writes a conversion of a value in the local variable 3 to a type, in the same shape as the annotation
+     * processor writes.
+     *
+     * @param cf a class file.
+     * @param code a code to which the conversion is appended.
+     * @param type a type of a field.
+     * @throws IOException if a constant can not be written.
+     */
+    private static void writeConversion(ClassFile cf, Code code, Class<?> type) throws IOException {
+        Class<?> primitive = unwrap(type);
+        code.local(Code.ALOAD, 3);
+        if (primitive == boolean.class) {
+            code.member(Code.INVOKESTATIC,
+                    cf.methodRef(NUMBERS, "parseBoolean", "(Ljava/lang/CharSequence;)Z"));
+        } else if (primitive == char.class) {
+            code.op(Code.ICONST_0);
+            code.invokeInterface(cf.interfaceMethodRef(CHAR_SEQUENCE, "charAt", "(I)C"), 1);
+        } else if (primitive == float.class || primitive == double.class || type == String.class) {
+            code.invokeInterface(cf.interfaceMethodRef(CHAR_SEQUENCE, "toString", "()Ljava/lang/String;"), 0);
+            if (type != String.class) {
+                String owner = internalName(wrap(primitive));
+                String method = (primitive == float.class) ? "parseFloat" : "parseDouble";
+                code.member(Code.INVOKESTATIC,
+                        cf.methodRef(owner, method, "(Ljava/lang/String;)" + descriptor(primitive)));
+            }
+        } else {
+            long[] range = rangeOf(primitive);
+            code.longConstant(cf.longValue(range[0]));
+            code.longConstant(cf.longValue(range[1]));
+            code.member(Code.INVOKESTATIC, cf.methodRef(NUMBERS, "parse", "(Ljava/lang/CharSequence;JJ)J"));
+            if (primitive != long.class) {
+                code.op(Code.L2I);
+                if (primitive == byte.class) {
+                    code.op(Code.I2B);
+                } else if (primitive == short.class) {
+                    code.op(Code.I2S);
+                }
+            }
+        }
+        if (type != primitive) {
+            String owner = internalName(type);
+            code.member(Code.INVOKESTATIC,
+                    cf.methodRef(owner, "valueOf", '(' + descriptor(primitive) + ")L" + owner + ';'));
+        }
+    }
+
+    /**
+     * Writes {@code getArguments} which allocates a collection if a field is null and returns it.
+     *
+     * @param cf a class file.
+     * @param arguments a field annotated by {@link Arguments}, or null.
+     * @throws IOException if a constant can not be written.
+     */
+    private static void writeGetArguments(ClassFile cf, Field arguments) throws IOException {
+        // locals: this, target, allocate
+        Code code = new Code(3, 3);
+        if (arguments == null) {
+            code.op(Code.ACONST_NULL);
+            code.op(Code.ARETURN);
+        } else {
+            String owner = internalName(arguments.getDeclaringClass());
+            int ownerRef = cf.classRef(owner);
+            int fieldRef = cf.fieldRef(owner, arguments.getName(), descriptor(arguments.getType()));
+            String collection = internalName(arguments.getType());
+            Code.Label get = new Code.Label();
+            code.local(Code.ILOAD, 2);
+            code.jump(Code.IFEQ, get);
+            code.local(Code.ALOAD, 1);
+            code.member(Code.CHECKCAST, ownerRef);
+            code.member(Code.GETFIELD, fieldRef);
+            code.jump(Code.IFNONNULL, get);
+            code.local(Code.ALOAD, 1);
+            code.member(Code.CHECKCAST, ownerRef);
+            code.member(Code.NEW, cf.classRef(collection));
+            code.op(Code.DUP);
+            code.member(Code.INVOKESPECIAL, cf.methodRef(collection, "<init>", "()V"));
+            code.member(Code.PUTFIELD, fieldRef);
+            code.mark(get);
+            code.local(Code.ALOAD, 1);
+            code.member(Code.CHECKCAST, ownerRef);
+            code.member(Code.GETFIELD, fieldRef);
+            code.op(Code.ARETURN);
+        }
+        cf.method(PROTECTED, "getArguments", "(Ljava/lang/Object;Z)Ljava/util/Collection;", code);
+    }
+
+    /**
+     * Writes {@code indexOf} which switches on a hash code of a name or alias, and compares names which have the
+     * hash code. It is not written if there are more than {@code chunkSize} names, because a {@code lookupswitch}
+     * of more keys is slower than the open addressing table of the schema, which is used then.
+     *
+     * @param cf a class file.
+     * @param options fields annotated by {@link Option}.
+     * @param chunkSize the maximum number of names handled by a switch.
+     * @throws IOException if a constant can not be written.
+     */
+    private static void writeIndexOf(ClassFile cf, List<Field> options, int chunkSize) throws IOException {
+        Map<Integer, List<Object[]>> groups = new TreeMap<Integer, List<Object[]>>();
+        int names = 0;
+        for (int i = 0; i < options.size(); i++) {
+            Option o = options.get(i).getAnnotation(Option.class);
+            addKey(groups, LONG_NAME_PREFIX + o.name(), i);
+            names++;
+            if (o.alias().length() > 0) {
+                addKey(groups, SHORT_NAME_PREFIX + o.alias(), i);
+                names++;
+            }
+        }
+        if (names > chunkSize) {
+            return;
+        }
+
+        // locals: this, arg, length, hash
+        Code code = new Code(5, 4);
+        if (!groups.isEmpty()) {
+            int[] hashes = new int[groups.size()];
+            Code.Label[] cases = new Code.Label[hashes.length];
+            int h = 0;
+            for (Integer hash : groups.keySet()) {
+                hashes[h] = hash;
+                cases[h++] = new Code.Label();
+            }
+            Code.Label notFound = new Code.Label();
+            code.local(Code.ILOAD, 3);
+            code.lookupSwitch(hashes, cases, notFound);
+            int matches = cf.methodRef(GENERATED_PARSER, "matches", "(Ljava/lang/String;Ljava/lang/String;I)Z");
+            h = 0;
+            for (List<Object[]> keys : groups.values()) {
+                code.mark(cases[h++]);
+                for (Object[] key : keys) {
+                    Code.Label next = new Code.Label();
+                    code.constant(cf.string((String) key[0]));
+                    code.local(Code.ALOAD, 1);
+                    code.local(Code.ILOAD, 2);
+                    code.member(Code.INVOKESTATIC, matches);
+                    code.jump(Code.IFEQ, next);
+                    code.push((Integer) key[1], cf);
+                    code.op(Code.IRETURN);
+                    code.mark(next);
+                }
+                code.op(Code.ICONST_M1);
+                code.op(Code.IRETURN);
+            }
+            code.mark(notFound);
+        }
+        code.op(Code.ICONST_M1);
+        code.op(Code.IRETURN);
+        cf.method(PROTECTED, "indexOf", "(Ljava/lang/String;II)I", code);
+    }
+
+    /**
+     * Adds a name or alias to a group of its hash code.
+     *
+     * @param groups names and indices grouped by hash codes.
+     * @param key a name or alias.
+     * @param index an index of the option.
+     */
+    private static void addKey(Map<Integer, List<Object[]>> groups, String key, int index) {
+        List<Object[]> keys = groups.get(key.hashCode());
+        if (keys == null) {
+            keys = new ArrayList<Object[]>(1);
+            groups.put(key.hashCode(), keys);
+        }
+        keys.add(new Object[]{key, index});
+    }
+
+    /**
+     * Checks if a type can be converted by a generated parser.
+     *
+     * @param type a type of an option field.
+     * @return true if {@code type} is a primitive except void, its wrapper or {@code String}.
+     */
+    private static boolean isConvertible(Class<?> type) {
+        Class<?> primitive = unwrap(type);
+        return type == String.class || (primitive.isPrimitive() && primitive != void.class);
+    }
+
+    /**
+     * Checks if a generated parser can store a value to a field.
+     *
+     * @param field a field.
+     * @param targetClass a target class, in whose package a parser is defined.
+     * @param hidden true if a parser is a hidden nestmate of {@code targetClass}.
+     * @return true if the field can be stored.
+     */
+    private static boolean isWritable(Field field, Class<?> targetClass, boolean hidden) {
+        int modifiers = field.getModifiers();
+        if (Modifier.isFinal(modifiers) || Modifier.isStatic(modifiers)) {
+            return false;
+        }
+        Class<?> declaringClass = field.getDeclaringClass();
+        if (declaringClass == targetClass) {
+            return hidden || !Modifier.isPrivate(modifiers);
+        }
+        if (Modifier.isPrivate(modifiers)) {
+            return false;
+        }
+        return isSamePackage(declaringClass, targetClass)
+                || (Modifier.isPublic(modifiers) && Modifier.isPublic(declaringClass.getModifiers()));
+    }
+
+    /**
+     * Checks if a generated parser can allocate a collection of a field type with its no-arg constructor.
+     *
+     * @param type a type of a field annotated by {@link Arguments}.
+     * @param targetClass a target class, in whose package a parser is defined.
+     * @return true if the type is a concrete collection and its no-arg constructor is accessible.
+     */
+    private static boolean isAllocatable(Class<?> type, Class<?> targetClass) {
+        if (!Collection.class.isAssignableFrom(type)
+                || type.isInterface() || Modifier.isAbstract(type.getModifiers())) {
+            return false;
+        }
+        Constructor<?> constructor;
+        try {
+            constructor = type.getDeclaredConstructor();
+        } catch (NoSuchMethodException nsme) {
+            return false;
+        }
+        int modifiers = constructor.getModifiers();
+        return isSamePackage(type, targetClass)
+                ? !Modifier.isPrivate(modifiers)
+                : Modifier.isPublic(modifiers) && Modifier.isPublic(type.getModifiers());
+    }
+
+    /**
+     * Checks if two classes are in the same runtime package.
+     *
+     * @param c0 a class.
+     * @param c1 another class.
+     * @return true if the classes are in the same package and loaded by the same class loader.
+     */
+    private static boolean isSamePackage(Class<?> c0, Class<?> c1) {
+        return c0.getClassLoader() == c1.getClassLoader() && c0.getPackageName().equals(c1.getPackageName());
+    }
+
+    /**
+     * Gets a range of an integral type.
+     *
+     * @param primitive an integral primitive type.
+     * @return the minimum and maximum values.
+     */
+    private static long[] rangeOf(Class<?> primitive) {
+        if (primitive == byte.class) {
+            return new long[]{Byte.MIN_VALUE, Byte.MAX_VALUE};
+        }
+        if (primitive == short.class) {
+            return new long[]{Short.MIN_VALUE, Short.MAX_VALUE};
+        }
+        if (primitive == int.class) {
+            return new long[]{Integer.MIN_VALUE, Integer.MAX_VALUE};
+        }
+        return new long[]{Long.MIN_VALUE, Long.MAX_VALUE};
+    }
+
+    /**
+     * Gets a primitive type of a wrapper type.
+     *
+     * @param type a type.
+     * @return the primitive type if {@code type} is a wrapper, or {@code type} itself.
+     */
+    private static Class<?> unwrap(Class<?> type) {
+        return MethodType.methodType(type).unwrap().returnType();
+    }
+
+    /**
+     * Gets a wrapper type of a primitive type.
+     *
+     * @param type a type.
+     * @return the wrapper type if {@code type} is a primitive, or {@code type} itself.
+     */
+    private static Class<?> wrap(Class<?> type) {
+        return MethodType.methodType(type).wrap().returnType();
+    }
+
+    /**
+     * Gets a descriptor of a type.
+     *
+     * @param type a type.
+     * @return a descriptor such as {@code I} and {@code Ljava/lang/String;}.
+     */
+    private static String descriptor(Class<?> type) {
+        return MethodType.methodType(type).toMethodDescriptorString().substring(2);
+    }
+
+    /**
+     * Gets an internal name of a class.
+     *
+     * @param c a class.
+     * @return an internal name such as {@code java/lang/String}.
+     */
+    private static String internalName(Class<?> c) {
+        return c.getName().replace('.', '/');
+    }
+}
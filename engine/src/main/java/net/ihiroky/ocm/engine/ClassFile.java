@@ -0,0 +1,324 @@
+package net.ihiroky.ocm.engine;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes a class file which has methods assembled by {@link Code}, and no fields and interfaces.
+ *
+ * @author Hiroki Itoh
+ */
+final class ClassFile {
+
+    /** a magic number of a class file. */
+    private static final int MAGIC = 0xcafebabe;
+
+    /** a major version of a class file, which is Java 9. */
+    private static final int MAJOR_VERSION = 53;
+
+    /** a tag of a UTF-8 constant. */
+    private static final int CONSTANT_UTF8 = 1;
+
+    /** a tag of an int constant. */
+    private static final int CONSTANT_INTEGER = 3;
+
+    /** a tag of a long constant. */
+    private static final int CONSTANT_LONG = 5;
+
+    /** a tag of a class constant. */
+    private static final int CONSTANT_CLASS = 7;
+
+    /** a tag of a string constant. */
+    private static final int CONSTANT_STRING = 8;
+
+    /** a tag of a field reference. */
+    private static final int CONSTANT_FIELDREF = 9;
+
+    /** a tag of a method reference. */
+    private static final int CONSTANT_METHODREF = 10;
+
+    /** a tag of an interface method reference. */
+    private static final int CONSTANT_INTERFACE_METHODREF = 11;
+
+    /** a tag of a name and type. */
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+    /** the maximum number of entries in a constant pool, including the unused index 0. */
+    private static final int MAX_CONSTANTS = 0xffff;
+
+    /** the maximum length of bytecode of a method. */
+    static final int MAX_CODE_LENGTH = 0xffff;
+
+    /** a constant pool in bytes. */
+    private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+
+    /** a writer of {@code poolBytes}. */
+    private final DataOutputStream pool = new DataOutputStream(poolBytes);
+
+    /** indices of constants keyed by their tags and values, to write each constant once. */
+    private final Map<String, Integer> constants = new HashMap<String, Integer>();
+
+    /** the next index of a constant pool. */
+    private int constantCount = 1;
+
+    /** methods in bytes. */
+    private final ByteArrayOutputStream methodBytes = new ByteArrayOutputStream();
+
+    /** a writer of {@code methodBytes}. */
+    private final DataOutputStream methods = new DataOutputStream(methodBytes);
+
+    /** the number of methods. */
+    private int methodCount;
+
+    /**
+     * Gets an index of a UTF-8 constant.
+     * @param value a value.
+     * @return an index in the constant pool.
+     * @throws IOException if {@code value} is too long.
+     */
+    int utf8(String value) throws IOException {
+        String key = key(CONSTANT_UTF8, value);
+        Integer index = constants.get(key);
+        if (index == null) {
+            pool.writeByte(CONSTANT_UTF8);
+            pool.writeUTF(value);
+            index = add(key, 1);
+        }
+        return index;
+    }
+
+    /**
+     * Gets an index of an int constant.
+     * @param value a value.
+     * @return an index in the constant pool.
+     * @throws IOException if the constant pool overflows.
+     */
+    int integer(int value) throws IOException {
+        String key = key(CONSTANT_INTEGER, Integer.toString(value));
+        Integer index = constants.get(key);
+        if (index == null) {
+            pool.writeByte(CONSTANT_INTEGER);
+            pool.writeInt(value);
+            index = add(key, 1);
+        }
+        return index;
+    }
+
+    /**
+     * Gets an index of a long constant, which takes two entries.
+     * @param value a value.
+     * @return an index in the constant pool.
+     * @throws IOException if the constant pool overflows.
+     */
+    int longValue(long value) throws IOException {
+        String key = key(CONSTANT_LONG, Long.toString(value));
+        Integer index = constants.get(key);
+        if (index == null) {
+            pool.writeByte(CONSTANT_LONG);
+            pool.writeLong(value);
+            index = add(key, 2);
+        }
+        return index;
+    }
+
+    /**
+     * Gets an index of a class constant.
+     * @param internalName an internal name of a class, such as {@code java/lang/String}.
+     * @return an index in the constant pool.
+     * @throws IOException if the constant pool overflows.
+     */
+    int classRef(String internalName) throws IOException {
+        return reference(CONSTANT_CLASS, utf8(internalName));
+    }
+
+    /**
+     * Gets an index of a string constant.
+     * @param value a value.
+     * @return an index in the constant pool.
+     * @throws IOException if {@code value} is too long.
+     */
+    int string(String value) throws IOException {
+        return reference(CONSTANT_STRING, utf8(value));
+    }
+
+    /**
+     * Gets an index of a field reference.
+     * @param owner an internal name of a class which declares the field.
+     * @param name a name of the field.
+     * @param descriptor a descriptor of the field.
+     * @return an index in the constant pool.
+     * @throws IOException if the constant pool overflows.
+     */
+    int fieldRef(String owner, String name, String descriptor) throws IOException {
+        return reference(CONSTANT_FIELDREF, classRef(owner), nameAndType(name, descriptor));
+    }
+
+    /**
+     * Gets an index of a method reference.
+     * @param owner an internal name of a class which declares the method.
+     * @param name a name of the method.
+     * @param descriptor a descriptor of the method.
+     * @return an index in the constant pool.
+     * @throws IOException if the constant pool overflows.
+     */
+    int methodRef(String owner, String name, String descriptor) throws IOException {
+        return reference(CONSTANT_METHODREF, classRef(owner), nameAndType(name, descriptor));
+    }
+
+    /**
+     * Gets an index of an interface method reference.
+     * @param owner an internal name of an interface which declares the method.
+     * @param name a name of the method.
+     * @param descriptor a descriptor of the method.
+     * @return an index in the constant pool.
+     * @throws IOException if the constant pool overflows.
+     */
+    int interfaceMethodRef(String owner, String name, String descriptor) throws IOException {
+        return reference(CONSTANT_INTERFACE_METHODREF, classRef(owner), nameAndType(name, descriptor));
+    }
+
+    /**
+     * Adds a method.
+     * @param access access flags of the method.
+     * @param name a name of the method.
+     * @param descriptor a descriptor of the method.
+     * @param code bytecode of the method.
+     * @throws IOException if the constant pool overflows or {@code code} is too long.
+     */
+    void method(int access, String name, String descriptor, Code code) throws IOException {
+        if (code.size() > MAX_CODE_LENGTH) {
+            throw new IOException("code of " + name + " is too long.");
+        }
+        byte[] bytecode = code.toBytes();
+        byte[] frames = code.stackMapTable();
+        methods.writeShort(access);
+        methods.writeShort(utf8(name));
+        methods.writeShort(utf8(descriptor));
+        methods.writeShort(1); // attributes
+        methods.writeShort(utf8("Code"));
+        methods.writeInt(12 + bytecode.length + ((frames != null) ? 6 + frames.length : 0));
+        methods.writeShort(code.getMaxStack());
+        methods.writeShort(code.getMaxLocals());
+        methods.writeInt(bytecode.length);
+        methods.write(bytecode);
+        methods.writeShort(0); // exception table
+        if (frames != null) {
+            methods.writeShort(1);
+            methods.writeShort(utf8("StackMapTable"));
+            methods.writeInt(frames.length);
+            methods.write(frames);
+        } else {
+            methods.writeShort(0);
+        }
+        methodCount++;
+    }
+
+    /**
+     * Gets bytes of this class file.
+     * @param access access flags of the class.
+     * @param thisClass an internal name of the class.
+     * @param superClass an internal name of the super class.
+     * @return bytes of the class file.
+     * @throws IOException if the constant pool overflows.
+     */
+    byte[] toBytes(int access, String thisClass, String superClass) throws IOException {
+        int thisIndex = classRef(thisClass);
+        int superIndex = classRef(superClass);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(poolBytes.size() + methodBytes.size() + 32);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeShort(0);
+        out.writeShort(MAJOR_VERSION);
+        out.writeShort(constantCount);
+        poolBytes.writeTo(out);
+        out.writeShort(access);
+        out.writeShort(thisIndex);
+        out.writeShort(superIndex);
+        out.writeShort(0); // interfaces
+        out.writeShort(0); // fields
+        out.writeShort(methodCount);
+        methodBytes.writeTo(out);
+        out.writeShort(0); // attributes
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Gets an index of a name and type.
+     * @param name a name of a member.
+     * @param descriptor a descriptor of the member.
+     * @return an index in the constant pool.
+     * @throws IOException if the constant pool overflows.
+     */
+    private int nameAndType(String name, String descriptor) throws IOException {
+        return reference(CONSTANT_NAME_AND_TYPE, utf8(name), utf8(descriptor));
+    }
+
+    /**
+     * Gets an index of a constant which refers another constant.
+     * @param tag a tag of the constant.
+     * @param index an index of the referred constant.
+     * @return an index in the constant pool.
+     * @throws IOException if the constant pool overflows.
+     */
+    private int reference(int tag, int index) throws IOException {
+        String key = key(tag, Integer.toString(index));
+        Integer i = constants.get(key);
+        if (i == null) {
+            pool.writeByte(tag);
+            pool.writeShort(index);
+            i = add(key, 1);
+        }
+        return i;
+    }
+
+    /**
+     * Gets an index of a constant which refers two other constants.
+     * @param tag a tag of the constant.
+     * @param first an index of the first referred constant.
+     * @param second an index of the second referred constant.
+     * @return an index in the constant pool.
+     * @throws IOException if the constant pool overflows.
+     */
+    private int reference(int tag, int first, int second) throws IOException {
+        String key = key(tag, first + ":" + second);
+        Integer i = constants.get(key);
+        if (i == null) {
+            pool.writeByte(tag);
+            pool.writeShort(first);
+            pool.writeShort(second);
+            i = add(key, 1);
+        }
+        return i;
+    }
+
+    /**
+     * Creates a key of a constant, which starts with its tag.
+     * @param tag a tag of the constant.
+     * @param value a value of the constant, or indices of constants which it refers.
+     * @return a key.
+     */
+    private static String key(int tag, String value) {
+        return (char) tag + value;
+    }
+
+    /**
+     * Registers a constant written last.
+     * @param key a key of the constant.
+     * @param entries the number of entries which the constant takes.
+     * @return an index of the constant.
+     * @throws IOException if the constant pool overflows.
+     */
+    private int add(String key, int entries) throws IOException {
+        int index = constantCount;
+        constantCount += entries;
+        if (constantCount > MAX_CONSTANTS) {
+            throw new IOException("too many constants.");
+        }
+        constants.put(key, index);
+        return index;
+    }
+}
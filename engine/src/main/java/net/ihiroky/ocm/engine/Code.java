@@ -0,0 +1,427 @@
+package net.ihiroky.ocm.engine;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Assembles bytecode of a method.
+ * <p/>
+ * Every branch target of a method assembled by this class must have the same local variables as the method entry
+ * and an empty operand stack. So each frame of its {@code StackMapTable} is a same frame, and no type inference is
+ * needed to write it.
+ *
+ * @author Hiroki Itoh
+ */
+final class Code {
+
+    /** pushes null. */
+    static final int ACONST_NULL = 0x01;
+
+    /** pushes -1. */
+    static final int ICONST_M1 = 0x02;
+
+    /** pushes 0. */
+    static final int ICONST_0 = 0x03;
+
+    /** pushes a byte. */
+    private static final int BIPUSH = 0x10;
+
+    /** pushes a short. */
+    private static final int SIPUSH = 0x11;
+
+    /** pushes a constant with a one-byte index. */
+    private static final int LDC = 0x12;
+
+    /** pushes a constant with a two-byte index. */
+    private static final int LDC_W = 0x13;
+
+    /** pushes a long or double constant. */
+    private static final int LDC2_W = 0x14;
+
+    /** loads an int local variable. */
+    static final int ILOAD = 0x15;
+
+    /** loads a reference local variable. */
+    static final int ALOAD = 0x19;
+
+    /** divides an int. */
+    static final int IDIV = 0x6c;
+
+    /** converts a long to an int. */
+    static final int L2I = 0x88;
+
+    /** converts an int to a byte. */
+    static final int I2B = 0x91;
+
+    /** converts an int to a short. */
+    static final int I2S = 0x93;
+
+    /** duplicates the top of the stack. */
+    static final int DUP = 0x59;
+
+    /** branches if an int is 0. */
+    static final int IFEQ = 0x99;
+
+    /** branches if a reference is not null. */
+    static final int IFNONNULL = 0xc7;
+
+    /** jumps by an index in a range. */
+    private static final int TABLESWITCH = 0xaa;
+
+    /** jumps by a key. */
+    private static final int LOOKUPSWITCH = 0xab;
+
+    /** returns an int. */
+    static final int IRETURN = 0xac;
+
+    /** returns a reference. */
+    static final int ARETURN = 0xb0;
+
+    /** returns void. */
+    static final int RETURN = 0xb1;
+
+    /** gets a static field. */
+    static final int GETSTATIC = 0xb2;
+
+    /** gets a field. */
+    static final int GETFIELD = 0xb4;
+
+    /** puts a field. */
+    static final int PUTFIELD = 0xb5;
+
+    /** invokes an instance method. */
+    static final int INVOKEVIRTUAL = 0xb6;
+
+    /** invokes a constructor or a super method. */
+    static final int INVOKESPECIAL = 0xb7;
+
+    /** invokes a static method. */
+    static final int INVOKESTATIC = 0xb8;
+
+    /** invokes an interface method. */
+    private static final int INVOKEINTERFACE = 0xb9;
+
+    /** creates an object. */
+    static final int NEW = 0xbb;
+
+    /** throws an exception. */
+    static final int ATHROW = 0xbf;
+
+    /** casts a reference. */
+    static final int CHECKCAST = 0xc0;
+
+    /** a type of a same frame whose offset delta is in the type. */
+    private static final int SAME_FRAME_MAX = 63;
+
+    /** a type of a same frame whose offset delta follows. */
+    private static final int SAME_FRAME_EXTENDED = 251;
+
+    /** the maximum depth of the operand stack. */
+    private final int maxStack;
+
+    /** the number of local variables, including parameters. */
+    private final int maxLocals;
+
+    /** bytecode. */
+    private byte[] bytes = new byte[256];
+
+    /** the length of bytecode. */
+    private int length;
+
+    /** offsets of branches to be resolved, as triples of an instruction, an operand and an operand width. */
+    private final List<int[]> branches = new ArrayList<int[]>();
+
+    /** labels of {@code branches}. */
+    private final List<Label> branchLabels = new ArrayList<Label>();
+
+    /** labels marked in this method, in the order of their offsets. */
+    private final List<Label> marks = new ArrayList<Label>();
+
+    /**
+     * A position in bytecode, which is a branch target.
+     */
+    static final class Label {
+
+        /** an offset in bytecode, or -1 if not marked. */
+        int offset = -1;
+    }
+
+    /**
+     * Constructs a new instance.
+     * @param maxStack the maximum depth of the operand stack.
+     * @param maxLocals the number of local variables, including parameters.
+     */
+    Code(int maxStack, int maxLocals) {
+        this.maxStack = maxStack;
+        this.maxLocals = maxLocals;
+    }
+
+    /**
+     * Appends an instruction without operands.
+     * @param opcode an opcode.
+     */
+    void op(int opcode) {
+        u1(opcode);
+    }
+
+    /**
+     * Appends an instruction which refers a local variable.
+     * @param opcode {@link #ILOAD} or {@link #ALOAD}.
+     * @param index an index of a local variable.
+     */
+    void local(int opcode, int index) {
+        u1(opcode);
+        u1(index);
+    }
+
+    /**
+     * Appends an instruction which pushes an int.
+     * @param value a value.
+     * @param pool a constant pool, used if {@code value} is out of short range.
+     * @throws IOException if the constant pool overflows.
+     */
+    void push(int value, ClassFile pool) throws IOException {
+        if (value >= -1 && value <= 5) {
+            u1(ICONST_0 + value);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            u1(BIPUSH);
+            u1(value);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            u1(SIPUSH);
+            u2(value);
+        } else {
+            constant(pool.integer(value));
+        }
+    }
+
+    /**
+     * Appends an instruction which pushes a constant of one slot.
+     * @param index an index of the constant in a constant pool.
+     */
+    void constant(int index) {
+        if (index <= 0xff) {
+            u1(LDC);
+            u1(index);
+        } else {
+            u1(LDC_W);
+            u2(index);
+        }
+    }
+
+    /**
+     * Appends an instruction which pushes a long constant.
+     * @param index an index of the constant in a constant pool.
+     */
+    void longConstant(int index) {
+        u1(LDC2_W);
+        u2(index);
+    }
+
+    /**
+     * Appends an instruction which has an index of a constant pool as its operand.
+     * @param opcode an opcode such as {@link #GETFIELD}, {@link #INVOKEVIRTUAL} and {@link #NEW}.
+     * @param index an index of a constant pool.
+     */
+    void member(int opcode, int index) {
+        u1(opcode);
+        u2(index);
+    }
+
+    /**
+     * Appends an instruction which invokes an interface method.
+     * @param index an index of the method in a constant pool.
+     * @param argumentSlots the number of slots of arguments, excluding the receiver.
+     */
+    void invokeInterface(int index, int argumentSlots) {
+        u1(INVOKEINTERFACE);
+        u2(index);
+        u1(argumentSlots + 1);
+        u1(0);
+    }
+
+    /**
+     * Appends a conditional branch.
+     * @param opcode an opcode such as {@link #IFEQ}.
+     * @param target a branch target.
+     */
+    void jump(int opcode, Label target) {
+        int instruction = length;
+        u1(opcode);
+        branch(instruction, target, 2);
+    }
+
+    /**
+     * Appends a {@code tableswitch}.
+     * @param low the lowest key.
+     * @param cases branch targets of keys from {@code low}.
+     * @param defaultTarget a branch target of other keys.
+     */
+    void tableSwitch(int low, Label[] cases, Label defaultTarget) {
+        int instruction = length;
+        u1(TABLESWITCH);
+        align();
+        branch(instruction, defaultTarget, 4);
+        u4(low);
+        u4(low + cases.length - 1);
+        for (Label c : cases) {
+            branch(instruction, c, 4);
+        }
+    }
+
+    /**
+     * Appends a {@code lookupswitch}.
+     * @param keys keys in ascending order.
+     * @param cases branch targets of {@code keys}.
+     * @param defaultTarget a branch target of other keys.
+     */
+    void lookupSwitch(int[] keys, Label[] cases, Label defaultTarget) {
+        int instruction = length;
+        u1(LOOKUPSWITCH);
+        align();
+        branch(instruction, defaultTarget, 4);
+        u4(keys.length);
+        for (int i = 0; i < keys.length; i++) {
+            u4(keys[i]);
+            branch(instruction, cases[i], 4);
+        }
+    }
+
+    /**
+     * Marks the current position as a branch target.
+     * @param label a label to be marked.
+     */
+    void mark(Label label) {
+        label.offset = length;
+        marks.add(label);
+    }
+
+    /**
+     * Gets the length of bytecode.
+     * @return the length.
+     */
+    int size() {
+        return length;
+    }
+
+    /**
+     * Gets the maximum depth of the operand stack.
+     * @return the maximum depth.
+     */
+    int getMaxStack() {
+        return maxStack;
+    }
+
+    /**
+     * Gets the number of local variables.
+     * @return the number of local variables.
+     */
+    int getMaxLocals() {
+        return maxLocals;
+    }
+
+    /**
+     * Gets bytecode whose branches are resolved.
+     * @return bytecode.
+     * @throws IllegalStateException if a branch target is not marked.
+     */
+    byte[] toBytes() {
+        for (int i = 0; i < branches.size(); i++) {
+            int[] b = branches.get(i);
+            int target = branchLabels.get(i).offset;
+            if (target < 0) {
+                throw new IllegalStateException("a branch target is not marked.");
+            }
+            int offset = target - b[0];
+            for (int w = b[2] - 1, p = b[1]; w >= 0; w--, p++) {
+                bytes[p] = (byte) (offset >>> (w * 8));
+            }
+        }
+        return Arrays.copyOf(bytes, length);
+    }
+
+    /**
+     * Gets entries of {@code StackMapTable}, which are same frames at the marked labels.
+     * @return the number of entries followed by entries, or null if no label is marked.
+     */
+    byte[] stackMapTable() {
+        if (marks.isEmpty()) {
+            return null;
+        }
+        byte[] table = new byte[2 + marks.size() * 3];
+        int p = 2;
+        int entries = 0;
+        int previous = -1;
+        for (Label label : marks) {
+            if (label.offset == previous) {
+                continue;
+            }
+            int delta = label.offset - previous - 1;
+            if (delta <= SAME_FRAME_MAX) {
+                table[p++] = (byte) delta;
+            } else {
+                table[p++] = (byte) SAME_FRAME_EXTENDED;
+                table[p++] = (byte) (delta >>> 8);
+                table[p++] = (byte) delta;
+            }
+            previous = label.offset;
+            entries++;
+        }
+        table[0] = (byte) (entries >>> 8);
+        table[1] = (byte) entries;
+        return Arrays.copyOf(table, p);
+    }
+
+    /**
+     * Appends a branch offset to be resolved.
+     * @param instruction an offset of the branch instruction.
+     * @param target a branch target.
+     * @param width a width of the offset.
+     */
+    private void branch(int instruction, Label target, int width) {
+        branches.add(new int[]{instruction, length, width});
+        branchLabels.add(target);
+        for (int i = 0; i < width; i++) {
+            u1(0);
+        }
+    }
+
+    /**
+     * Appends padding to align the next operand of a switch to 4 bytes.
+     */
+    private void align() {
+        while ((length & 3) != 0) {
+            u1(0);
+        }
+    }
+
+    /**
+     * Appends a byte.
+     * @param value a value.
+     */
+    private void u1(int value) {
+        if (length == bytes.length) {
+            bytes = Arrays.copyOf(bytes, length * 2);
+        }
+        bytes[length++] = (byte) value;
+    }
+
+    /**
+     * Appends two bytes in big endian.
+     * @param value a value.
+     */
+    private void u2(int value) {
+        u1(value >>> 8);
+        u1(value);
+    }
+
+    /**
+     * Appends four bytes in big endian.
+     * @param value a value.
+     */
+    private void u4(int value) {
+        u2(value >>> 16);
+        u2(value);
+    }
+}
@@ -0,0 +1,259 @@
+package net.ihiroky.ocm.engine;
+
+import net.ihiroky.ocm.ArgumentParseException;
+import net.ihiroky.ocm.ArgumentProcessor;
+import net.ihiroky.ocm.Arguments;
+import net.ihiroky.ocm.Engine;
+import net.ihiroky.ocm.GeneratedParser;
+import net.ihiroky.ocm.Option;
+import net.ihiroky.ocm.ParserGenerator;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ServiceLoader;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+/**
+ * @author Hiroki Itoh
+ */
+public class BytecodeParserGeneratorTest {
+
+    private static final String[] ARGS = new String[]{
+            "-b", "-y", "1", "-c", "c", "-h", "2", "-i", "3", "-l", "4", "-f", "5.5", "-d", "6.5", "-s", "str",
+            "--Boolean", "--Byte=-1", "--Character", "C", "--Short", "-2", "-I", "-3", "--Long", "-4",
+            "--Float", "-5.5", "--Double", "-6.5", "--base", "8", "arg0", "arg1"};
+
+    @Test
+    public void testGenerate() throws Exception {
+        GeneratedParser<Args> parser = new BytecodeParserGenerator().generate(Args.class);
+        assertThat(parser.getClass().getName(), containsString(BytecodeParserGenerator.CLASS_NAME_SUFFIX));
+        assertThat(new BytecodeParserGenerator().generate(Args.class).getClass(), is((Object) parser.getClass()));
+
+        assertThat(new BytecodeParserGenerator().generate(RepeatableArgs.class), is(nullValue()));
+        assertThat(new BytecodeParserGenerator().generate(FinalArgs.class), is(nullValue()));
+
+        boolean found = false;
+        for (ParserGenerator g : ServiceLoader.load(ParserGenerator.class)) {
+            found |= g instanceof BytecodeParserGenerator;
+        }
+        assertThat(found, is(true));
+    }
+
+    @Test
+    public void testParse() throws Exception {
+        ArgumentProcessor ap = new ArgumentProcessor(Args.class);
+        Args expected = ap.parse(new Args(), ARGS);
+        ByteArrayOutputStream usage = new ByteArrayOutputStream();
+        ap.printUsage(new PrintStream(usage, true));
+
+        ap.setEngine(Engine.SPECIALIZED);
+        Args a = ap.parse(new Args(), ARGS);
+        assertThat(a.bool, is(true));
+        assertThat(a.byteValue, is((byte) 1));
+        assertThat(a.charValue, is('c'));
+        assertThat(a.shortValue, is((short) 2));
+        assertThat(a.integer, is(3));
+        assertThat(a.longValue, is(4L));
+        assertThat(a.floatValue, is(5.5f));
+        assertThat(a.doubleValue, is(6.5d));
+        assertThat(a.str, is("str"));
+        assertThat(a.boolObject, is(Boolean.TRUE));
+        assertThat(a.byteObject, is((byte) -1));
+        assertThat(a.charObject, is('C'));
+        assertThat(a.shortObject, is((short) -2));
+        assertThat(a.intObject, is(-3));
+        assertThat(a.longObject, is(-4L));
+        assertThat(a.floatObject, is(-5.5f));
+        assertThat(a.doubleObject, is(-6.5d));
+        assertThat(a.base, is(8));
+        assertThat(a.args, is(Arrays.asList("arg0", "arg1")));
+        for (Class<?> c = Args.class; c != Object.class; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                field.setAccessible(true);
+                assertThat(field.getName(), field.get(a), is(field.get(expected)));
+            }
+        }
+        ByteArrayOutputStream specializedUsage = new ByteArrayOutputStream();
+        ap.printUsage(new PrintStream(specializedUsage, true));
+        assertThat(specializedUsage.toString(), is(usage.toString()));
+
+        try {
+            ap.parse(new Args(), new String[]{"-y", "128"});
+            fail();
+        } catch (ArgumentParseException ape) {
+            assertThat(ape.getMessage(), is("failed to set argument. option : -y/--byte"));
+            // the value is converted by a generated parser; frames of a hidden class itself are not shown.
+            boolean generated = false;
+            for (StackTraceElement e : ape.getCause().getStackTrace()) {
+                generated |= e.getClassName().equals(GeneratedParser.class.getName())
+                        && e.getMethodName().equals("setValue");
+            }
+            assertThat(generated, is(true));
+        }
+
+        // a class which is not supported is parsed by reflection.
+        RepeatableArgs r = ap.parse(new RepeatableArgs(), new String[]{"-p", "1", "-p", "2"});
+        assertThat(r.ports, is(new int[]{1, 2}));
+    }
+
+    @Test
+    public void testDefineInPackage() throws Exception {
+        assertThat(BytecodeParserGenerator.define(PrivateArgs.class, false), is(nullValue()));
+
+        Class<?> parserClass = BytecodeParserGenerator.define(PackageArgs.class, false);
+        assertThat(parserClass.getName(),
+                is(PackageArgs.class.getName() + BytecodeParserGenerator.CLASS_NAME_SUFFIX));
+        assertPackageArgsParser(parserClass, new PackageArgs(), true);
+
+        // cases of set are split into methods of 2 options, and names are left to the schema.
+        assertPackageArgsParser(
+                BytecodeParserGenerator.define(ChunkedArgs.class, false, 2), new ChunkedArgs(), false);
+    }
+
+    private static void assertPackageArgsParser(Class<?> parserClass, PackageArgs a, boolean indexed)
+            throws Exception {
+        Object parser = parserClass.getConstructor().newInstance();
+        Method set = GeneratedParser.class.getDeclaredMethod("set", Object.class, int.class, CharSequence.class);
+        Method getArguments = GeneratedParser.class.getDeclaredMethod("getArguments", Object.class, boolean.class);
+        Method indexOf = GeneratedParser.class.getDeclaredMethod("indexOf", String.class, int.class, int.class);
+        set.setAccessible(true);
+        getArguments.setAccessible(true);
+        indexOf.setAccessible(true);
+
+        set.invoke(parser, a, 0, "10");
+        set.invoke(parser, a, 1, "name");
+        set.invoke(parser, a, 3, "true");
+        assertThat(a.count, is(10));
+        assertThat(a.name, is("name"));
+        assertThat(a.aa, is(false));
+        assertThat(a.bb, is(true));
+        try {
+            set.invoke(parser, a, 4, "x");
+            fail();
+        } catch (InvocationTargetException ite) {
+            assertThat(ite.getCause(), is(instanceOf(IndexOutOfBoundsException.class)));
+        }
+        assertThat(getArguments.invoke(parser, a, false), is(nullValue()));
+        assertThat(getArguments.invoke(parser, a, true), is(sameInstance((Object) a.args)));
+        assertThat(a.args, is(new ArrayList<String>()));
+        if (!indexed) {
+            Field unindexed = GeneratedParser.class.getDeclaredField("UNINDEXED");
+            unindexed.setAccessible(true);
+            assertThat(indexOf.invoke(parser, "--count", 7, "--count".hashCode()), is(unindexed.get(null)));
+            return;
+        }
+        assertThat(indexOf.invoke(parser, "--count", 7, "--count".hashCode()), is((Object) 0));
+        assertThat(indexOf.invoke(parser, "-c=1", 2, "-c".hashCode()), is((Object) 0));
+        assertThat(indexOf.invoke(parser, "--name", 6, "--name".hashCode()), is((Object) 1));
+        assertThat(indexOf.invoke(parser, "--nam", 5, "--nam".hashCode()), is((Object) (-1)));
+        // "Aa" and "BB" have the same hash code.
+        assertThat(indexOf.invoke(parser, "-Aa", 3, "-Aa".hashCode()), is((Object) 2));
+        assertThat(indexOf.invoke(parser, "-BB", 3, "-BB".hashCode()), is((Object) 3));
+        assertThat(indexOf.invoke(parser, "--a", 3, "--a".hashCode()), is((Object) 2));
+        assertThat(indexOf.invoke(parser, "--b", 3, "--b".hashCode()), is((Object) 3));
+    }
+
+    static class BaseArgs {
+        @Option(name = "base")
+        int base;
+    }
+
+    private static class Args extends BaseArgs {
+        @Option(name = "boolean", alias = "b")
+        private boolean bool;
+
+        @Option(name = "byte", alias = "y")
+        private byte byteValue;
+
+        @Option(name = "char", alias = "c")
+        private char charValue;
+
+        @Option(name = "short", alias = "h")
+        private short shortValue;
+
+        @Option(name = "integer", alias = "i", usage = "an integer", required = true)
+        private int integer;
+
+        @Option(name = "long", alias = "l")
+        private long longValue;
+
+        @Option(name = "float", alias = "f")
+        private float floatValue;
+
+        @Option(name = "double", alias = "d")
+        private double doubleValue;
+
+        @Option(name = "string", alias = "s", metaName = "STR")
+        private String str;
+
+        @Option(name = "Boolean")
+        private Boolean boolObject;
+
+        @Option(name = "Byte")
+        private Byte byteObject;
+
+        @Option(name = "Character")
+        private Character charObject;
+
+        @Option(name = "Short")
+        private Short shortObject;
+
+        @Option(name = "Integer", alias = "I")
+        private Integer intObject;
+
+        @Option(name = "Long")
+        private Long longObject;
+
+        @Option(name = "Float")
+        private Float floatObject;
+
+        @Option(name = "Double")
+        private Double doubleObject;
+
+        @Arguments
+        private ArrayList<String> args;
+    }
+
+    static class PackageArgs {
+        @Option(name = "count", alias = "c")
+        int count;
+
+        @Option(name = "name")
+        String name;
+
+        @Option(name = "a", alias = "Aa")
+        boolean aa;
+
+        @Option(name = "b", alias = "BB")
+        boolean bb;
+
+        @Arguments
+        ArrayList<String> args;
+    }
+
+    static class ChunkedArgs extends PackageArgs {
+    }
+
+    static class PrivateArgs {
+        @Option(name = "count")
+        private int count;
+    }
+
+    private static class RepeatableArgs {
+        @Option(name = "port", alias = "p")
+        private int[] ports;
+    }
+
+    private static class FinalArgs {
+        @Option(name = "count")
+        private final int count = 0;
+    }
+}
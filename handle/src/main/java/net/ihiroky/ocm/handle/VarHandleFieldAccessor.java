@@ -0,0 +1,148 @@
+package net.ihiroky.ocm.handle;
+
+import net.ihiroky.ocm.FieldAccessor;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.VarHandle;
+import java.lang.reflect.UndeclaredThrowableException;
+
+/**
+ * Reads and writes a field through method handles of its {@code VarHandle}.
+ * <p/>
+ * The handles are adapted to {@code Object} targets once, so each access is an exact invocation without boxing.
+ * A primitive value has to be stored by the method of the field type; other methods throw
+ * {@code WrongMethodTypeException}.
+ *
+ * @author Hiroki Itoh
+ */
+final class VarHandleFieldAccessor implements FieldAccessor {
+
+    /** a getter of type {@code (Object)Object}. */
+    private final MethodHandle getter;
+
+    /** a setter of type {@code (Object, Object)void}. */
+    private final MethodHandle setter;
+
+    /** a setter of type {@code (Object, T)void}, where {@code T} is the field type. */
+    private final MethodHandle typedSetter;
+
+    /**
+     * Constructs a new instance.
+     * @param handle a handle of a field.
+     * @param type a type of the field.
+     */
+    VarHandleFieldAccessor(VarHandle handle, Class<?> type) {
+        this.getter = handle.toMethodHandle(VarHandle.AccessMode.GET)
+                .asType(MethodType.methodType(Object.class, Object.class));
+        MethodHandle set = handle.toMethodHandle(VarHandle.AccessMode.SET);
+        this.setter = set.asType(MethodType.methodType(void.class, Object.class, Object.class));
+        this.typedSetter = set.asType(MethodType.methodType(void.class, Object.class, type));
+    }
+
+    @Override
+    public Object get(Object target) {
+        try {
+            return (Object) getter.invokeExact(target);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public void set(Object target, Object value) {
+        try {
+            setter.invokeExact(target, value);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public void setBoolean(Object target, boolean value) {
+        try {
+            typedSetter.invokeExact(target, value);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public void setByte(Object target, byte value) {
+        try {
+            typedSetter.invokeExact(target, value);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public void setChar(Object target, char value) {
+        try {
+            typedSetter.invokeExact(target, value);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public void setShort(Object target, short value) {
+        try {
+            typedSetter.invokeExact(target, value);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public void setInt(Object target, int value) {
+        try {
+            typedSetter.invokeExact(target, value);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public void setLong(Object target, long value) {
+        try {
+            typedSetter.invokeExact(target, value);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public void setFloat(Object target, float value) {
+        try {
+            typedSetter.invokeExact(target, value);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public void setDouble(Object target, double value) {
+        try {
+            typedSetter.invokeExact(target, value);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    /**
+     * Rethrows an unchecked throwable thrown by a handle, or wraps a checked one.
+     *
+     * @param t a throwable.
+     * @return never returns.
+     */
+    private static RuntimeException rethrow(Throwable t) {
+        if (t instanceof RuntimeException) {
+            throw (RuntimeException) t;
+        }
+        if (t instanceof Error) {
+            throw (Error) t;
+        }
+        throw new UndeclaredThrowableException(t);
+    }
+}
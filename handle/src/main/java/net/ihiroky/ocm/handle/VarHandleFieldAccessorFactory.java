@@ -0,0 +1,46 @@
+package net.ihiroky.ocm.handle;
+
+import net.ihiroky.ocm.FieldAccessor;
+import net.ihiroky.ocm.FieldAccessorFactory;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
+/**
+ * Creates {@link FieldAccessor}s which bind fields with {@code VarHandle}s.
+ * <p/>
+ * This factory is registered in {@code META-INF/services/net.ihiroky.ocm.FieldAccessorFactory}, so
+ * {@link net.ihiroky.ocm.ArgumentProcessor} uses it if this module is on the class path. A field is resolved to a
+ * handle once, when its handler is created, and a value is stored without reflective access checks. A final field
+ * and a field of a class in a module which is not open to this module are not supported, so they are accessed
+ * by reflection as before.
+ *
+ * @author Hiroki Itoh
+ */
+public class VarHandleFieldAccessorFactory implements FieldAccessorFactory {
+
+    /** a lookup of this module, which is teleported to declaring classes of fields. */
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    /**
+     * Constructs a new instance.
+     */
+    public VarHandleFieldAccessorFactory() {
+    }
+
+    @Override
+    public FieldAccessor create(Field field) {
+        if (Modifier.isFinal(field.getModifiers()) || Modifier.isStatic(field.getModifiers())) {
+            return null;
+        }
+        VarHandle handle;
+        try {
+            handle = MethodHandles.privateLookupIn(field.getDeclaringClass(), LOOKUP).unreflectVarHandle(field);
+        } catch (IllegalAccessException iae) {
+            return null;
+        }
+        return new VarHandleFieldAccessor(handle, field.getType());
+    }
+}
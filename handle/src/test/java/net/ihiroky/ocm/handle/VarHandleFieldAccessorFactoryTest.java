@@ -0,0 +1,98 @@
+package net.ihiroky.ocm.handle;
+
+import net.ihiroky.ocm.ArgumentProcessor;
+import net.ihiroky.ocm.Arguments;
+import net.ihiroky.ocm.FieldAccessor;
+import net.ihiroky.ocm.FieldAccessorFactory;
+import net.ihiroky.ocm.Option;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ServiceLoader;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+/**
+ * @author Hiroki Itoh
+ */
+public class VarHandleFieldAccessorFactoryTest {
+
+    @Test
+    public void testCreate() throws Exception {
+        VarHandleFieldAccessorFactory factory = new VarHandleFieldAccessorFactory();
+        Args a = new Args();
+        FieldAccessor integer = factory.create(Args.class.getDeclaredField("integer"));
+        integer.setInt(a, 3);
+        assertThat(a.integer, is(3));
+        assertThat(integer.get(a), is((Object) 3));
+        integer.set(a, 4);
+        assertThat(a.integer, is(4));
+        FieldAccessor str = factory.create(Args.class.getDeclaredField("str"));
+        str.set(a, "s");
+        assertThat(a.str, is("s"));
+        assertThat(factory.create(Args.class.getDeclaredField("constant")), is(nullValue()));
+
+        boolean found = false;
+        for (FieldAccessorFactory f : ServiceLoader.load(FieldAccessorFactory.class)) {
+            found |= f instanceof VarHandleFieldAccessorFactory;
+        }
+        assertThat(found, is(true));
+    }
+
+    @Test
+    public void testParse() throws Exception {
+        Args a = new ArgumentProcessor().parse(new Args(), new String[]{
+                "-b", "-y", "1", "-c", "c", "-h", "2", "-i", "3", "-l", "4", "-f", "5.5", "-d", "6.5", "-s", "str",
+                "-I", "7", "arg"});
+        assertThat(a.bool, is(true));
+        assertThat(a.byteValue, is((byte) 1));
+        assertThat(a.charValue, is('c'));
+        assertThat(a.shortValue, is((short) 2));
+        assertThat(a.integer, is(3));
+        assertThat(a.longValue, is(4L));
+        assertThat(a.floatValue, is(5.5f));
+        assertThat(a.doubleValue, is(6.5d));
+        assertThat(a.str, is("str"));
+        assertThat(a.intObject, is(7));
+        assertThat(a.args, is(Arrays.asList("arg")));
+    }
+
+    private static class Args {
+        @Option(name = "boolean", alias = "b")
+        private boolean bool;
+
+        @Option(name = "byte", alias = "y")
+        private byte byteValue;
+
+        @Option(name = "char", alias = "c")
+        private char charValue;
+
+        @Option(name = "short", alias = "h")
+        private short shortValue;
+
+        @Option(name = "integer", alias = "i")
+        private int integer;
+
+        @Option(name = "long", alias = "l")
+        private long longValue;
+
+        @Option(name = "float", alias = "f")
+        private float floatValue;
+
+        @Option(name = "double", alias = "d")
+        private double doubleValue;
+
+        @Option(name = "string", alias = "s")
+        private String str;
+
+        @Option(name = "Integer", alias = "I")
+        private Integer intObject;
+
+        private final int constant = 0;
+
+        @Arguments
+        private ArrayList<String> args;
+    }
+}
@@ -0,0 +1,67 @@
+package net.ihiroky.ocm.jdk8;
+
+import net.ihiroky.ocm.Converter;
+import net.ihiroky.ocm.ConverterProvider;
+import net.ihiroky.ocm.Converters;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+
+/**
+ * Registers converters for {@code java.nio.file.Path} and {@code java.time.Duration}.
+ * <p/>
+ * This provider is registered in {@code META-INF/services/net.ihiroky.ocm.ConverterProvider}, so
+ * {@link Converters} uses it if this module is on the class path. The converters call the factory methods
+ * directly, instead of the reflective fallback of {@link Converters} which invokes them through
+ * {@code java.lang.reflect.Method} on each value.
+ *
+ * @author Hiroki Itoh
+ */
+public class Jdk8ConverterProvider implements ConverterProvider {
+
+    /**
+     * Constructs a new instance.
+     */
+    public Jdk8ConverterProvider() {
+    }
+
+    @Override
+    public void registerConverters() {
+        Converters.register(Path.class, new PathConverter());
+        Converters.register(Duration.class, new DurationConverter());
+    }
+
+    /**
+     * Converts a value by {@code Paths.get(String, String...)}.
+     */
+    private static final class PathConverter implements Converter<Path> {
+
+        @Override
+        public Path convert(String value) {
+            return Paths.get(value);
+        }
+
+        @Override
+        public boolean canAcceptHyphenValue() {
+            return false;
+        }
+    }
+
+    /**
+     * Converts a value by {@code Duration.parse(CharSequence)}, which accepts a negative duration such as
+     * {@code -PT1S}.
+     */
+    private static final class DurationConverter implements Converter<Duration> {
+
+        @Override
+        public Duration convert(String value) {
+            return Duration.parse(value);
+        }
+
+        @Override
+        public boolean canAcceptHyphenValue() {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package net.ihiroky.ocm.jdk8;
+
+import net.ihiroky.ocm.ArgumentProcessor;
+import net.ihiroky.ocm.ConverterProvider;
+import net.ihiroky.ocm.Option;
+import org.junit.Test;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ServiceLoader;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+/**
+ * @author Hiroki Itoh
+ */
+public class Jdk8ConverterProviderTest {
+
+    @Test
+    public void testParse() throws Exception {
+        Args a = new ArgumentProcessor().parse(new Args(), new String[]{"-p", "a/b", "-d", "-PT1.5S"});
+        assertThat(a.path, is(Paths.get("a", "b")));
+        assertThat(a.duration, is(Duration.ofMillis(-1500)));
+
+        Path defaultPath = Paths.get("x");
+        a = new Args();
+        a.path = defaultPath;
+        new ArgumentProcessor().parse(a, new String[]{"-d", "PT1M"});
+        assertThat(a.path, is(sameInstance(defaultPath)));
+        assertThat(a.duration, is(Duration.ofMinutes(1)));
+
+        boolean found = false;
+        for (ConverterProvider p : ServiceLoader.load(ConverterProvider.class)) {
+            found |= p instanceof Jdk8ConverterProvider;
+        }
+        assertThat(found, is(true));
+    }
+
+    private static class Args {
+        @Option(name = "path", alias = "p")
+        private Path path;
+
+        @Option(name = "duration", alias = "d")
+        private Duration duration;
+    }
+}
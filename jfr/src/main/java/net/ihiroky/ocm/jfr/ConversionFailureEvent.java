@@ -0,0 +1,42 @@
+package net.ihiroky.ocm.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A JFR event of a value which can not be converted by a handler.
+ *
+ * @author Hiroki Itoh
+ */
+@Name(ConversionFailureEvent.NAME)
+@Label("Conversion Failure")
+@Category("OCM")
+@Description("A value of an option which can not be converted or stored")
+final class ConversionFailureEvent extends Event {
+
+    /** a name of this event type. */
+    static final String NAME = "net.ihiroky.ocm.ConversionFailure";
+
+    /** a class of a target. */
+    @Label("Target Class")
+    Class<?> targetClass;
+
+    /** a name of the option with "--". */
+    @Label("Option")
+    String option;
+
+    /** a value which can not be converted. */
+    @Label("Value")
+    String value;
+
+    /** a class of the exception thrown by the handler. */
+    @Label("Exception Class")
+    Class<?> exceptionClass;
+
+    /** a message of the exception thrown by the handler. */
+    @Label("Message")
+    String message;
+}
@@ -0,0 +1,161 @@
+package net.ihiroky.ocm.jfr;
+
+import net.ihiroky.ocm.ParseListener;
+import net.ihiroky.ocm.ParsePhase;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Emits Java Flight Recorder events of parses by {@link net.ihiroky.ocm.ArgumentProcessor}.
+ * <p/>
+ * Register an instance by {@link net.ihiroky.ocm.ArgumentProcessor#setParseListener(ParseListener)}. Events are
+ * {@code net.ihiroky.ocm.Schema} for a schema compilation, {@code net.ihiroky.ocm.Parse} for each parse of a
+ * command line and {@code net.ihiroky.ocm.ConversionFailure} for a value which a handler can not convert. They are
+ * enabled, disabled and filtered by a threshold through standard JFR settings. If an event type is disabled, a
+ * phase costs a check of the event type; nothing is recorded. This listener receives only
+ * {@link ParsePhase#SCHEMA} and {@link ParsePhase#PARSE}, so searches, conversions and arguments in a parse are
+ * neither timed nor reported to it.
+ * <p/>
+ * This class is thread-safe, so an instance can be shared by processors and threads.
+ *
+ * @author Hiroki Itoh
+ */
+public class JfrParseListener implements ParseListener {
+
+    /** phases which this listener receives. */
+    private static final Set<ParsePhase> PHASES =
+            Collections.unmodifiableSet(EnumSet.of(ParsePhase.SCHEMA, ParsePhase.PARSE));
+
+    /** events which have begun and not ended yet in the current thread. */
+    private final ThreadLocal<Pending> pending = ThreadLocal.withInitial(Pending::new);
+
+    /**
+     * Constructs a new instance.
+     */
+    public JfrParseListener() {
+    }
+
+    @Override
+    public Set<ParsePhase> getPhases() {
+        return PHASES;
+    }
+
+    @Override
+    public void phaseStarted(ParsePhase phase, Class<?> targetClass) {
+        switch (phase) {
+            case SCHEMA:
+                SchemaEvent schema = new SchemaEvent();
+                if (schema.isEnabled()) {
+                    schema.begin();
+                    pending.get().schema = schema;
+                }
+                break;
+            case PARSE:
+                ParseEvent parse = new ParseEvent();
+                if (parse.isEnabled()) {
+                    parse.begin();
+                    pending.get().parse = parse;
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Override
+    public void phaseEnded(ParsePhase phase, Class<?> targetClass, int count, boolean succeeded,
+                           long elapsedNanos) {
+        switch (phase) {
+            case SCHEMA:
+                endSchema(targetClass, count, succeeded);
+                break;
+            case PARSE:
+                endParse(targetClass, count, succeeded);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Commits a schema event which has begun in the current thread.
+     *
+     * @param targetClass a class which a schema is compiled from.
+     * @param optionCount the number of options in the schema.
+     * @param succeeded false if the compilation is failed.
+     */
+    private void endSchema(Class<?> targetClass, int optionCount, boolean succeeded) {
+        Pending p = pending.get();
+        SchemaEvent event = p.schema;
+        if (event == null) {
+            return;
+        }
+        p.schema = null;
+        event.end();
+        if (event.shouldCommit()) {
+            event.targetClass = targetClass;
+            event.optionCount = optionCount;
+            event.succeeded = succeeded;
+            event.commit();
+        }
+    }
+
+    /**
+     * Commits a parse event which has begun in the current thread.
+     *
+     * @param targetClass a class of a target.
+     * @param tokenCount the number of command line arguments read.
+     * @param succeeded false if the parse is failed.
+     */
+    private void endParse(Class<?> targetClass, int tokenCount, boolean succeeded) {
+        Pending p = pending.get();
+        ParseEvent event = p.parse;
+        if (event == null) {
+            return;
+        }
+        p.parse = null;
+        event.end();
+        if (event.shouldCommit()) {
+            event.targetClass = targetClass;
+            event.tokenCount = tokenCount;
+            event.succeeded = succeeded;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void optionSet(Class<?> targetClass, String name) {
+    }
+
+    /**
+     * Records a value which a handler can not convert. A cause of the exception is recorded if it is thrown by a
+     * handler and wrapped by {@link net.ihiroky.ocm.ArgumentParseException}.
+     */
+    @Override
+    public void conversionFailed(Class<?> targetClass, String name, String value, Exception cause) {
+        ConversionFailureEvent event = new ConversionFailureEvent();
+        if (event.shouldCommit()) {
+            Throwable t = (cause.getCause() != null) ? cause.getCause() : cause;
+            event.targetClass = targetClass;
+            event.option = name;
+            event.value = value;
+            event.exceptionClass = t.getClass();
+            event.message = t.getMessage();
+            event.commit();
+        }
+    }
+
+    /**
+     * Holds events which have begun in a thread. A schema compilation and a parse are not nested in the same kind.
+     */
+    private static final class Pending {
+
+        /** a schema event which has begun, or null. */
+        SchemaEvent schema;
+
+        /** a parse event which has begun, or null. */
+        ParseEvent parse;
+    }
+}
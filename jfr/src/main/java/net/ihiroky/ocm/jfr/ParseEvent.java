@@ -0,0 +1,36 @@
+package net.ihiroky.ocm.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A JFR event of a parse of a command line.
+ *
+ * @author Hiroki Itoh
+ */
+@Name(ParseEvent.NAME)
+@Label("Parse")
+@Category("OCM")
+@Description("A parse of command line arguments into a target")
+@StackTrace(false)
+final class ParseEvent extends Event {
+
+    /** a name of this event type. */
+    static final String NAME = "net.ihiroky.ocm.Parse";
+
+    /** a class of a target. */
+    @Label("Target Class")
+    Class<?> targetClass;
+
+    /** the number of command line arguments read. */
+    @Label("Tokens")
+    int tokenCount;
+
+    /** false if the parse is failed. */
+    @Label("Succeeded")
+    boolean succeeded;
+}
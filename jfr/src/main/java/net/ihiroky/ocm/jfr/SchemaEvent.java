@@ -0,0 +1,36 @@
+package net.ihiroky.ocm.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A JFR event of a schema compilation.
+ *
+ * @author Hiroki Itoh
+ */
+@Name(SchemaEvent.NAME)
+@Label("Schema Compilation")
+@Category("OCM")
+@Description("Compilation of options and arguments metadata of a target class")
+@StackTrace(false)
+final class SchemaEvent extends Event {
+
+    /** a name of this event type. */
+    static final String NAME = "net.ihiroky.ocm.Schema";
+
+    /** a class which a schema is compiled from. */
+    @Label("Target Class")
+    Class<?> targetClass;
+
+    /** the number of options in a schema. */
+    @Label("Options")
+    int optionCount;
+
+    /** false if the compilation is failed. */
+    @Label("Succeeded")
+    boolean succeeded;
+}
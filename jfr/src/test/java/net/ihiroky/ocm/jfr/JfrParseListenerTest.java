@@ -0,0 +1,84 @@
+package net.ihiroky.ocm.jfr;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import net.ihiroky.ocm.ArgumentParseException;
+import net.ihiroky.ocm.ArgumentProcessor;
+import net.ihiroky.ocm.Arguments;
+import net.ihiroky.ocm.Option;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+/**
+ * @author Hiroki Itoh
+ */
+public class JfrParseListenerTest {
+
+    @Test
+    public void testEvents() throws Exception {
+        Path file = Files.createTempFile("ocm", ".jfr");
+        try {
+            Recording recording = new Recording();
+            recording.enable(SchemaEvent.NAME);
+            recording.enable(ParseEvent.NAME);
+            recording.enable(ConversionFailureEvent.NAME);
+            recording.start();
+            ArgumentProcessor ap = new ArgumentProcessor();
+            ap.setParseListener(new JfrParseListener());
+            ap.parse(new Args(), new String[]{"-i", "1", "arg"});
+            try {
+                ap.parse(new Args(), new String[]{"-i", "x"});
+                fail();
+            } catch (ArgumentParseException expected) {
+                // recorded.
+            }
+            recording.stop();
+            recording.dump(file);
+            recording.close();
+
+            List<RecordedEvent> schemas = new ArrayList<RecordedEvent>();
+            List<RecordedEvent> parses = new ArrayList<RecordedEvent>();
+            List<RecordedEvent> failures = new ArrayList<RecordedEvent>();
+            for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+                String name = event.getEventType().getName();
+                if (name.equals(SchemaEvent.NAME)) {
+                    schemas.add(event);
+                } else if (name.equals(ParseEvent.NAME)) {
+                    parses.add(event);
+                } else if (name.equals(ConversionFailureEvent.NAME)) {
+                    failures.add(event);
+                }
+            }
+            assertThat(schemas.size(), is(1));
+            assertThat(schemas.get(0).getClass("targetClass").getName(), is(Args.class.getName()));
+            assertThat(schemas.get(0).getInt("optionCount"), is(1));
+            assertThat(parses.size(), is(2));
+            assertThat(parses.get(0).getInt("tokenCount"), is(3));
+            assertThat(parses.get(0).getBoolean("succeeded"), is(true));
+            assertThat(parses.get(1).getInt("tokenCount"), is(2));
+            assertThat(parses.get(1).getBoolean("succeeded"), is(false));
+            assertThat(failures.size(), is(1));
+            assertThat(failures.get(0).getString("option"), is("--int"));
+            assertThat(failures.get(0).getString("value"), is("x"));
+            assertThat(failures.get(0).getClass("exceptionClass").getName(), is(NumberFormatException.class.getName()));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    static class Args {
+        @Option(name = "int", alias = "i")
+        int integer;
+
+        @Arguments
+        ArrayList<String> args;
+    }
+}
@@ -0,0 +1,547 @@
+package net.ihiroky.ocm.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Generates a {@code net.ihiroky.ocm.GeneratedParser} subclass for each class which declares fields annotated by
+ * {@code Option} or {@code Arguments}.
+ * <p/>
+ * A generated parser stores values to fields directly, so it is generated only if every annotated field of the
+ * class and its superclasses is accessible from the package of the class, is not final, and has a supported type.
+ * Otherwise a note is printed and {@code net.ihiroky.ocm.ArgumentProcessor} falls back to reflection.
+ * <p/>
+ * Binary names of classes which have generated parsers are written to {@code META-INF/ocm/parsers} in the class
+ * output at the end of processing, merged with the names already written there, so that
+ * {@code net.ihiroky.ocm.ArgumentProcessor} looks up only the parsers which exist.
+ *
+ * @author Hiroki Itoh
+ */
+@SupportedAnnotationTypes({ParserProcessor.OPTION, ParserProcessor.ARGUMENTS})
+public class ParserProcessor extends AbstractProcessor {
+
+    /** a name of Option annotation. */
+    static final String OPTION = "net.ihiroky.ocm.Option";
+
+    /** a name of Arguments annotation. */
+    static final String ARGUMENTS = "net.ihiroky.ocm.Arguments";
+
+    /** a name of a base class of generated parsers. */
+    private static final String GENERATED_PARSER = "net.ihiroky.ocm.GeneratedParser";
+
+    /** a suffix of a generated parser class name. */
+    private static final String CLASS_NAME_SUFFIX = "_OcmParser";
+
+    /** a resource which lists binary names of target classes which have generated parsers. */
+    private static final String INDEX_RESOURCE = "META-INF/ocm/parsers";
+
+    /** a map of supported option types to expressions which convert {@code value}. */
+    private static final Map<String, String> CONVERSION_MAP;
+
+    /** an indent. */
+    private static final String INDENT = "    ";
+
+    /** a header of usage, which is the same as the one rendered at runtime. */
+    private static final String USAGE_HEADER = "available options :";
+
+    /** binary names of target classes whose parsers are generated in this compilation. */
+    private final Set<String> generatedTargets = new TreeSet<String>();
+
+    static {
+        Map<String, String> map = new HashMap<String, String>();
+        // integral values and booleans are converted from CharSequence without creating a String.
+        String numbers = "net.ihiroky.ocm.handler.Numbers";
+        map.put("boolean", numbers + ".parseBoolean(value)");
+        map.put("java.lang.Boolean", "Boolean.valueOf(" + numbers + ".parseBoolean(value))");
+        map.put("byte", "(byte) " + numbers + ".parse(value, Byte.MIN_VALUE, Byte.MAX_VALUE)");
+        map.put("java.lang.Byte",
+                "Byte.valueOf((byte) " + numbers + ".parse(value, Byte.MIN_VALUE, Byte.MAX_VALUE))");
+        map.put("char", "value.charAt(0)");
+        map.put("java.lang.Character", "Character.valueOf(value.charAt(0))");
+        map.put("short", "(short) " + numbers + ".parse(value, Short.MIN_VALUE, Short.MAX_VALUE)");
+        map.put("java.lang.Short",
+                "Short.valueOf((short) " + numbers + ".parse(value, Short.MIN_VALUE, Short.MAX_VALUE))");
+        map.put("int", "(int) " + numbers + ".parse(value, Integer.MIN_VALUE, Integer.MAX_VALUE)");
+        map.put("java.lang.Integer",
+                "Integer.valueOf((int) " + numbers + ".parse(value, Integer.MIN_VALUE, Integer.MAX_VALUE))");
+        map.put("long", numbers + ".parse(value, Long.MIN_VALUE, Long.MAX_VALUE)");
+        map.put("java.lang.Long", "Long.valueOf(" + numbers + ".parse(value, Long.MIN_VALUE, Long.MAX_VALUE))");
+        map.put("float", "Float.parseFloat(value.toString())");
+        map.put("java.lang.Float", "Float.valueOf(value.toString())");
+        map.put("double", "Double.parseDouble(value.toString())");
+        map.put("java.lang.Double", "Double.valueOf(value.toString())");
+        map.put("java.lang.String", "value.toString()");
+        CONVERSION_MAP = Collections.unmodifiableMap(map);
+    }
+
+    /**
+     * {@inheritDoc}
+     * @return the latest source version.
+     */
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    /**
+     * Generates parsers for classes which declare annotated fields.
+     *
+     * @param annotations annotation types requested to be processed.
+     * @param roundEnv environment for information about the current and prior round.
+     * @return false to allow other processors to claim the annotations.
+     */
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            if (!generatedTargets.isEmpty()) {
+                try {
+                    writeIndex();
+                } catch (IOException ioe) {
+                    processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                            "failed to write " + INDEX_RESOURCE + " : " + ioe.getMessage());
+                }
+            }
+            return false;
+        }
+        Set<TypeElement> targets = new LinkedHashSet<TypeElement>();
+        for (TypeElement annotation : annotations) {
+            for (Element e : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (e.getKind() == ElementKind.FIELD && e.getEnclosingElement() instanceof TypeElement) {
+                    targets.add((TypeElement) e.getEnclosingElement());
+                }
+            }
+        }
+        for (TypeElement target : targets) {
+            try {
+                generate(target);
+            } catch (IOException ioe) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                        "failed to generate a parser : " + ioe.getMessage(), target);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Generates a parser for a target class.
+     *
+     * @param target a target class.
+     * @throws IOException if an I/O error occurs.
+     */
+    private void generate(TypeElement target) throws IOException {
+        Elements elements = processingEnv.getElementUtils();
+        PackageElement pkg = elements.getPackageOf(target);
+        String reason = checkTarget(target);
+        List<VariableElement> options = new ArrayList<VariableElement>();
+        VariableElement arguments = null;
+        for (TypeElement c = target; reason == null && c != null; c = superclassOf(c)) {
+            for (VariableElement field : ElementFilter.fieldsIn(c.getEnclosedElements())) {
+                if (findAnnotation(field, OPTION) != null) {
+                    reason = checkOption(field, pkg);
+                    options.add(field);
+                } else if (findAnnotation(field, ARGUMENTS) != null) {
+                    reason = checkArguments(field, pkg);
+                    arguments = field;
+                }
+                if (reason != null) {
+                    break;
+                }
+            }
+        }
+        if (reason != null) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+                    "no parser is generated, reflection is used instead : " + reason, target);
+            return;
+        }
+
+        String packageName = pkg.isUnnamed() ? "" : pkg.getQualifiedName().toString();
+        String binaryName = elements.getBinaryName(target).toString();
+        String simpleName = binaryName.substring(packageName.length() == 0 ? 0 : packageName.length() + 1)
+                + CLASS_NAME_SUFFIX;
+        String targetName = target.getQualifiedName().toString();
+        PrintWriter out = new PrintWriter(
+                processingEnv.getFiler().createSourceFile(binaryName + CLASS_NAME_SUFFIX, target).openWriter());
+        try {
+            if (packageName.length() > 0) {
+                out.println("package " + packageName + ';');
+                out.println();
+            }
+            out.println("/**");
+            out.println(" * A parser of {@link " + targetName + "} generated by " + getClass().getName() + '.');
+            out.println(" */");
+            out.println("public final class " + simpleName
+                    + " extends " + GENERATED_PARSER + '<' + targetName + "> {");
+            out.println();
+            writeConstructor(out, simpleName, options, arguments);
+            writeSet(out, target, targetName, options);
+            writeGetArguments(out, target, targetName, arguments);
+            out.println('}');
+        } finally {
+            out.close();
+        }
+        generatedTargets.add(binaryName);
+    }
+
+    /**
+     * Writes binary names of target classes which have generated parsers, merged with names already written by a
+     * previous compilation into the same class output.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    private void writeIndex() throws IOException {
+        Set<String> names = new TreeSet<String>(generatedTargets);
+        Filer filer = processingEnv.getFiler();
+        try {
+            FileObject existing = filer.getResource(StandardLocation.CLASS_OUTPUT, "", INDEX_RESOURCE);
+            BufferedReader reader = new BufferedReader(new InputStreamReader(existing.openInputStream(), "UTF-8"));
+            try {
+                for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                    if (line.trim().length() > 0) {
+                        names.add(line.trim());
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException ioe) {
+            // no index is written yet.
+        }
+        FileObject resource = filer.createResource(StandardLocation.CLASS_OUTPUT, "", INDEX_RESOURCE);
+        PrintWriter out = new PrintWriter(new OutputStreamWriter(resource.openOutputStream(), "UTF-8"));
+        try {
+            for (String name : names) {
+                out.println(name);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Writes a constructor which defines options, arguments and usage. Usage without wrapping is rendered here, so
+     * the schema of the generated parser does not render it at runtime.
+     *
+     * @param out an output.
+     * @param simpleName a simple name of the generated class.
+     * @param options fields annotated by {@code Option}.
+     * @param arguments a field annotated by {@code Arguments}, or null.
+     */
+    private void writeConstructor(PrintWriter out, String simpleName,
+                                  List<VariableElement> options, VariableElement arguments) {
+        out.println(INDENT + "public " + simpleName + "() {");
+        StringBuilder oneLine = new StringBuilder(options.isEmpty() ? USAGE_HEADER : USAGE_HEADER + ' ');
+        List<String> lines = new ArrayList<String>();
+        lines.add(USAGE_HEADER);
+        for (VariableElement field : options) {
+            Map<String, Object> option = annotationValues(findAnnotation(field, OPTION));
+            String name = (String) option.get("name");
+            String alias = (String) option.get("alias");
+            String metaName = (String) option.get("metaName");
+            if (metaName.length() == 0) {
+                metaName = field.getSimpleName().toString();
+            }
+            String usage = (String) option.get("usage");
+            boolean required = (Boolean) option.get("required");
+            out.println(INDENT + INDENT + "option(" + processingEnv.getTypeUtils().erasure(field.asType()) + ".class, "
+                    + literal(name) + ", "
+                    + literal(alias) + ", "
+                    + literal(metaName) + ", "
+                    + literal(usage) + ", "
+                    + required + ");");
+
+            // rendered as net.ihiroky.ocm.Usage renders usage without wrapping.
+            String item = ((alias.length() > 0) ? "-" + alias + "/--" : "--") + name + ' ' + metaName;
+            if (oneLine.length() > USAGE_HEADER.length() + 1) {
+                oneLine.append(' ');
+            }
+            oneLine.append(required ? item : '[' + item + ']');
+            lines.add(' ' + ((alias.length() > 0) ? "-" + alias + ", " : "    ") + "--" + name + " : "
+                    + (required ? usage + " (required)" : usage));
+        }
+        if (arguments != null) {
+            Map<String, Object> args = annotationValues(findAnnotation(arguments, ARGUMENTS));
+            out.println(INDENT + INDENT + "arguments(" + args.get("required") + ");");
+        }
+        out.print(INDENT + INDENT + "usage(" + literal(oneLine.toString()));
+        for (String line : lines) {
+            out.println(',');
+            out.print(INDENT + INDENT + INDENT + literal(line));
+        }
+        out.println(");");
+        out.println(INDENT + '}');
+        out.println();
+    }
+
+    /**
+     * Writes {@code set} method which stores a value to a field according to an index.
+     *
+     * @param out an output.
+     * @param target a target class.
+     * @param targetName a canonical name of the target class.
+     * @param options fields annotated by {@code Option}.
+     */
+    private void writeSet(PrintWriter out, TypeElement target, String targetName, List<VariableElement> options) {
+        out.println(INDENT + "@Override");
+        out.println(INDENT + "protected void set(" + targetName + " target, int index, CharSequence value) {");
+        out.println(INDENT + INDENT + "switch (index) {");
+        int index = 0;
+        for (VariableElement field : options) {
+            out.println(INDENT + INDENT + INDENT + "case " + (index++) + ':');
+            out.println(INDENT + INDENT + INDENT + INDENT + fieldReference(field, target) + " = "
+                    + CONVERSION_MAP.get(field.asType().toString()) + ';');
+            out.println(INDENT + INDENT + INDENT + INDENT + "break;");
+        }
+        out.println(INDENT + INDENT + INDENT + "default:");
+        out.println(INDENT + INDENT + INDENT + INDENT
+                + "throw new IndexOutOfBoundsException(\"index : \" + index);");
+        out.println(INDENT + INDENT + '}');
+        out.println(INDENT + '}');
+        out.println();
+    }
+
+    /**
+     * Writes {@code getArguments} method which returns a collection held by a field annotated by {@code Arguments}.
+     *
+     * @param out an output.
+     * @param target a target class.
+     * @param targetName a canonical name of the target class.
+     * @param arguments a field annotated by {@code Arguments}, or null.
+     */
+    private void writeGetArguments(PrintWriter out, TypeElement target, String targetName,
+                                   VariableElement arguments) {
+        out.println(INDENT + "@Override");
+        out.println(INDENT + "@SuppressWarnings(\"unchecked\")");
+        out.println(INDENT + "protected java.util.Collection<String> getArguments("
+                + targetName + " target, boolean allocate) {");
+        if (arguments == null) {
+            out.println(INDENT + INDENT + "return null;");
+        } else {
+            String ref = fieldReference(arguments, target);
+            out.println(INDENT + INDENT + "if (allocate && " + ref + " == null) {");
+            out.println(INDENT + INDENT + INDENT + ref + " = new " + arguments.asType() + "();");
+            out.println(INDENT + INDENT + '}');
+            out.println(INDENT + INDENT + "return " + ref + ';');
+        }
+        out.println(INDENT + '}');
+    }
+
+    /**
+     * Checks if a parser can be generated for a target class.
+     *
+     * @param target a target class.
+     * @return a reason why a parser can not be generated, or null.
+     */
+    private String checkTarget(TypeElement target) {
+        if (target.getKind() != ElementKind.CLASS || !target.getTypeParameters().isEmpty()) {
+            return target + " is not a non-generic class.";
+        }
+        for (Element e = target; e instanceof TypeElement; e = e.getEnclosingElement()) {
+            TypeElement type = (TypeElement) e;
+            if (type.getModifiers().contains(Modifier.PRIVATE)
+                    || type.getNestingKind() == NestingKind.LOCAL || type.getNestingKind() == NestingKind.ANONYMOUS) {
+                return target + " is not accessible from its package.";
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checks if a field annotated by {@code Option} can be set by a generated parser.
+     *
+     * @param field a field annotated by {@code Option}.
+     * @param pkg a package of a target class.
+     * @return a reason why the field can not be set, or null.
+     */
+    private String checkOption(VariableElement field, PackageElement pkg) {
+        String reason = checkAccess(field, pkg);
+        if (reason != null) {
+            return reason;
+        }
+        if (!CONVERSION_MAP.containsKey(field.asType().toString())) {
+            return "unsupported option type : " + field.asType();
+        }
+        String name = (String) annotationValues(findAnnotation(field, OPTION)).get("name");
+        return (name.length() == 0) ? "option name for field " + field.getSimpleName() + " is required." : null;
+    }
+
+    /**
+     * Checks if a field annotated by {@code Arguments} can be set by a generated parser.
+     *
+     * @param field a field annotated by {@code Arguments}.
+     * @param pkg a package of a target class.
+     * @return a reason why the field can not be set, or null.
+     */
+    private String checkArguments(VariableElement field, PackageElement pkg) {
+        String reason = checkAccess(field, pkg);
+        if (reason != null) {
+            return reason;
+        }
+        Types types = processingEnv.getTypeUtils();
+        TypeMirror collection = types.erasure(
+                processingEnv.getElementUtils().getTypeElement("java.util.Collection").asType());
+        TypeMirror type = field.asType();
+        if (type.getKind() != TypeKind.DECLARED || !types.isAssignable(types.erasure(type), collection)) {
+            return "arguments type must be java.util.Collection.";
+        }
+        TypeElement typeElement = (TypeElement) ((DeclaredType) type).asElement();
+        if (typeElement.getKind() != ElementKind.CLASS || typeElement.getModifiers().contains(Modifier.ABSTRACT)) {
+            return field.getSimpleName() + " must be a concrete subtype of java.util.Collection<String>.";
+        }
+        for (ExecutableElement c : ElementFilter.constructorsIn(typeElement.getEnclosedElements())) {
+            if (c.getParameters().isEmpty() && c.getModifiers().contains(Modifier.PUBLIC)) {
+                return null;
+            }
+        }
+        return field.getSimpleName() + " has no public constructor without parameters.";
+    }
+
+    /**
+     * Checks if a field can be written by a class in a specified package.
+     *
+     * @param field a field.
+     * @param pkg a package.
+     * @return a reason why the field can not be written, or null.
+     */
+    private String checkAccess(VariableElement field, PackageElement pkg) {
+        Set<Modifier> modifiers = field.getModifiers();
+        if (modifiers.contains(Modifier.PRIVATE) || modifiers.contains(Modifier.FINAL)) {
+            return field.getSimpleName() + " is private or final.";
+        }
+        if (!modifiers.contains(Modifier.PUBLIC)
+                && !processingEnv.getElementUtils().getPackageOf(field).equals(pkg)) {
+            return field.getSimpleName() + " is not accessible from " + pkg + '.';
+        }
+        return null;
+    }
+
+    /**
+     * Returns an expression which refers a field of {@code target} variable.
+     *
+     * @param field a field.
+     * @param target a target class.
+     * @return an expression.
+     */
+    private String fieldReference(VariableElement field, TypeElement target) {
+        TypeElement declaring = (TypeElement) field.getEnclosingElement();
+        return declaring.equals(target)
+                ? "target." + field.getSimpleName()
+                : "((" + declaring.getQualifiedName() + ") target)." + field.getSimpleName();
+    }
+
+    /**
+     * Returns a superclass of a class.
+     *
+     * @param type a class.
+     * @return the superclass, or null if {@code type} is {@code java.lang.Object}.
+     */
+    private TypeElement superclassOf(TypeElement type) {
+        TypeMirror superclass = type.getSuperclass();
+        return (superclass.getKind() == TypeKind.DECLARED)
+                ? (TypeElement) ((DeclaredType) superclass).asElement() : null;
+    }
+
+    /**
+     * Finds an annotation of an element.
+     *
+     * @param element an element.
+     * @param annotationName a qualified name of an annotation type.
+     * @return the annotation, or null if not found.
+     */
+    private AnnotationMirror findAnnotation(Element element, String annotationName) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            TypeElement type = (TypeElement) mirror.getAnnotationType().asElement();
+            if (type.getQualifiedName().contentEquals(annotationName)) {
+                return mirror;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns values of an annotation including default values.
+     *
+     * @param mirror an annotation.
+     * @return a map of property names to values.
+     */
+    private Map<String, Object> annotationValues(AnnotationMirror mirror) {
+        Map<String, Object> values = new HashMap<String, Object>();
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry
+                : processingEnv.getElementUtils().getElementValuesWithDefaults(mirror).entrySet()) {
+            values.put(entry.getKey().getSimpleName().toString(), entry.getValue().getValue());
+        }
+        return values;
+    }
+
+    /**
+     * Returns a Java string literal.
+     *
+     * @param value a string.
+     * @return a string literal.
+     */
+    static String literal(String value) {
+        StringBuilder b = new StringBuilder(value.length() + 2);
+        b.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    b.append("\\\"");
+                    break;
+                case '\\':
+                    b.append("\\\\");
+                    break;
+                case '\n':
+                    b.append("\\n");
+                    break;
+                case '\r':
+                    b.append("\\r");
+                    break;
+                case '\t':
+                    b.append("\\t");
+                    break;
+                default:
+                    if (c < ' ' || c > '~') {
+                        b.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        b.append(c);
+                    }
+            }
+        }
+        return b.append('"').toString();
+    }
+}
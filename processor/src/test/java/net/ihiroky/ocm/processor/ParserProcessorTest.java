@@ -0,0 +1,209 @@
+package net.ihiroky.ocm.processor;
+
+import net.ihiroky.ocm.ArgumentParseException;
+import net.ihiroky.ocm.ArgumentProcessor;
+import net.ihiroky.ocm.GeneratedParser;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.lang.reflect.Field;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+/**
+ * @author Hiroki Itoh
+ */
+public class ParserProcessorTest {
+
+    private File outputDir;
+
+    private ClassLoader loader;
+
+    @Before
+    public void setUp() throws Exception {
+        outputDir = File.createTempFile("ocm", "processor");
+        assertTrue(outputDir.delete());
+        assertTrue(outputDir.mkdir());
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        List<String> options = Arrays.asList("-d", outputDir.getPath(),
+                "-classpath", System.getProperty("java.class.path"),
+                "-processor", ParserProcessor.class.getName());
+        List<JavaFileObject> sources = Arrays.asList(
+                source("sample.Accessible",
+                        "package sample;",
+                        "public class Accessible extends Base {",
+                        "    @net.ihiroky.ocm.Option(name = \"string\", alias = \"s\", usage = \"say \\\"hi\\\".\")",
+                        "    String str;",
+                        "    @net.ihiroky.ocm.Option(name = \"integer\", alias = \"i\", required = true)",
+                        "    public int integer;",
+                        "    @net.ihiroky.ocm.Option(name = \"Long\", metaName = \"L\")",
+                        "    protected Long longObject;",
+                        "    @net.ihiroky.ocm.Option(name = \"char\", alias = \"c\")",
+                        "    char charValue;",
+                        "    @net.ihiroky.ocm.Arguments",
+                        "    java.util.LinkedList<String> args;",
+                        "}"),
+                source("sample.Base",
+                        "package sample;",
+                        "public class Base {",
+                        "    @net.ihiroky.ocm.Option(name = \"boolean\", alias = \"b\")",
+                        "    boolean bool;",
+                        "}"),
+                source("sample.Private",
+                        "package sample;",
+                        "public class Private {",
+                        "    @net.ihiroky.ocm.Option(name = \"integer\", alias = \"i\")",
+                        "    private int integer;",
+                        "}"));
+        assertTrue(compiler.getTask(null, null, null, options, null, sources).call());
+        loader = new URLClassLoader(new URL[]{outputDir.toURI().toURL()}, getClass().getClassLoader());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        delete(outputDir);
+    }
+
+    @Test
+    public void testGeneratedParser() throws Exception {
+        Class<?> generated = loader.loadClass("sample.Accessible_OcmParser");
+        assertThat(generated.getSuperclass().getName(), is("net.ihiroky.ocm.GeneratedParser"));
+
+        Object target = loader.loadClass("sample.Accessible").newInstance();
+        new ArgumentProcessor().parse(target, new String[]{
+                "-s", "hoge", "-i", "-123", "--Long", "1234567890123", "-c", "x", "-b", "arg0", "--", "-arg1"
+        });
+        assertThat(get(target, "str"), is((Object) "hoge"));
+        assertThat(get(target, "integer"), is((Object) (-123)));
+        assertThat(get(target, "longObject"), is((Object) 1234567890123L));
+        assertThat(get(target, "charValue"), is((Object) 'x'));
+        assertThat(get(target, "bool"), is((Object) true));
+        assertThat(get(target, "args"), is((Object) Arrays.asList("arg0", "-arg1")));
+    }
+
+    @Test
+    public void testGeneratedParserErrors() throws Exception {
+        Class<?> targetClass = loader.loadClass("sample.Accessible");
+        try {
+            new ArgumentProcessor().parse(targetClass.newInstance(), new String[]{"-s", "hoge"});
+            fail();
+        } catch (ArgumentParseException ape) {
+            assertThat(ape.getMessage(), is("option -i/--integer is required."));
+        }
+        try {
+            new ArgumentProcessor().parse(targetClass.newInstance(), new String[]{"-i", "fuga"});
+            fail();
+        } catch (ArgumentParseException ape) {
+            assertThat(ape.getMessage(), is("failed to set argument. option : -i/--integer"));
+            assertThat(ape.getCause(), is(instanceOf(NumberFormatException.class)));
+        }
+    }
+
+    @Test
+    public void testNoParserForPrivateField() throws Exception {
+        try {
+            loader.loadClass("sample.Private_OcmParser");
+            fail();
+        } catch (ClassNotFoundException expected) {
+            // reflection is used instead.
+        }
+        Object target = loader.loadClass("sample.Private").newInstance();
+        new ArgumentProcessor().parse(target, new String[]{"-i", "1"});
+        assertThat(get(target, "integer"), is((Object) 1));
+    }
+
+    @Test
+    public void testIndex() throws Exception {
+        String index = read(new File(outputDir, GeneratedParser.INDEX_RESOURCE));
+        assertThat(index, is("sample.Accessible\nsample.Base\n"));
+    }
+
+    @Test
+    public void testUsage() throws Exception {
+        Class<?> targetClass = loader.loadClass("sample.Accessible");
+        StringBuilder generated = new StringBuilder();
+        new ArgumentProcessor(targetClass).appendOneLineUsage(generated, 0);
+        new ArgumentProcessor(targetClass).appendUsage(generated, 0);
+        String source = read(new File(outputDir, "sample/Accessible_OcmParser.java"));
+        assertThat(source, containsString("usage(\"available options : [-s/--string str] -i/--integer integer"));
+
+        // without the index, the same classes are parsed by reflection, which renders usage at runtime.
+        assertTrue(new File(outputDir, GeneratedParser.INDEX_RESOURCE).delete());
+        ClassLoader reflective = new URLClassLoader(new URL[]{outputDir.toURI().toURL()}, getClass().getClassLoader());
+        StringBuilder rendered = new StringBuilder();
+        new ArgumentProcessor(reflective.loadClass("sample.Accessible")).appendOneLineUsage(rendered, 0);
+        new ArgumentProcessor(reflective.loadClass("sample.Accessible")).appendUsage(rendered, 0);
+        assertThat(generated.toString(), is(rendered.toString()));
+    }
+
+    @Test
+    public void testLiteral() {
+        assertThat(ParserProcessor.literal("a\"b\\c\nあ"), is("\"a\\\"b\\\\c\\n\\u3042\""));
+    }
+
+    private static JavaFileObject source(String className, String... lines) {
+        final StringBuilder b = new StringBuilder();
+        for (String line : lines) {
+            b.append(line).append('\n');
+        }
+        URI uri = URI.create("string:///" + className.replace('.', '/') + JavaFileObject.Kind.SOURCE.extension);
+        return new SimpleJavaFileObject(uri, JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return b;
+            }
+        };
+    }
+
+    private static String read(File file) throws Exception {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        StringBuilder b = new StringBuilder();
+        try {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                b.append(line).append('\n');
+            }
+        } finally {
+            reader.close();
+        }
+        return b.toString();
+    }
+
+    private static Object get(Object target, String name) throws Exception {
+        for (Class<?> c = target.getClass(); c != null; c = c.getSuperclass()) {
+            try {
+                Field field = c.getDeclaredField(name);
+                field.setAccessible(true);
+                return field.get(target);
+            } catch (NoSuchFieldException ignored) {
+                // search superclass.
+            }
+        }
+        throw new NoSuchFieldException(name);
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
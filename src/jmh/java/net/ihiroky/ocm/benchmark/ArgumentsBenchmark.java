@@ -0,0 +1,48 @@
+package net.ihiroky.ocm.benchmark;
+
+import net.ihiroky.ocm.ArgumentParseException;
+import net.ihiroky.ocm.ArgumentProcessor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures parsing long positional argument lists into a field annotated by {@code Arguments}.
+ *
+ * @author Hiroki Itoh
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class ArgumentsBenchmark {
+
+    /** the number of positional arguments. */
+    @Param({"1000", "100000"})
+    int count;
+
+    /** a processor shared by benchmark methods. */
+    private ArgumentProcessor processor;
+
+    /** positional arguments. */
+    private String[] arguments;
+
+    @Setup
+    public void setUp() {
+        processor = new ArgumentProcessor();
+        arguments = CommandLines.arguments(count);
+    }
+
+    @Benchmark
+    public Object parseArguments() throws ArgumentParseException {
+        return processor.parse(new Options10(), arguments);
+    }
+}
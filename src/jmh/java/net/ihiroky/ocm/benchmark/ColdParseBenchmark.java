@@ -0,0 +1,39 @@
+package net.ihiroky.ocm.benchmark;
+
+import net.ihiroky.ocm.ArgumentParseException;
+import net.ihiroky.ocm.ArgumentProcessor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the first parse in a fresh JVM, which includes compiling a schema.
+ *
+ * @author Hiroki Itoh
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(20)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+public class ColdParseBenchmark {
+
+    /** the number of options declared in a target. */
+    @Param({"10", "100", "1000"})
+    int size;
+
+    @Benchmark
+    public Object firstParse() throws ArgumentParseException {
+        return new ArgumentProcessor().parse(CommandLines.newTarget(size), CommandLines.options(5, false, size / 5));
+    }
+}
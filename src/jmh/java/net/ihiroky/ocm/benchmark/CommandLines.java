@@ -0,0 +1,88 @@
+package net.ihiroky.ocm.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds command lines for generated {@code OptionsN} classes.
+ * <p/>
+ * An option {@code --optionI} of {@code OptionsN} has a type according to {@code I % 5}: int, long, double,
+ * String and boolean.
+ *
+ * @author Hiroki Itoh
+ */
+final class CommandLines {
+
+    /** the number of option types in {@code OptionsN}. */
+    private static final int TYPES = 5;
+
+    /** an index of boolean type. */
+    private static final int BOOLEAN = 4;
+
+    /** an index of String type. */
+    private static final int STRING = 3;
+
+    private CommandLines() {
+        throw new AssertionError("Instantiation impossible.");
+    }
+
+    /**
+     * Creates a new target which has a specified number of options.
+     *
+     * @param size the number of options, 10, 100 or 1000.
+     * @return a new target.
+     */
+    static Object newTarget(int size) {
+        switch (size) {
+            case 10:
+                return new Options10();
+            case 100:
+                return new Options100();
+            case 1000:
+                return new Options1000();
+            default:
+                throw new IllegalArgumentException("unsupported size : " + size);
+        }
+    }
+
+    /**
+     * Creates a command line which sets options.
+     *
+     * @param count the number of options to be set.
+     * @param numericOnly true if only numeric options are set.
+     * @param step an interval of option indices to be set.
+     * @return a command line.
+     */
+    static String[] options(int count, boolean numericOnly, int step) {
+        List<String> args = new ArrayList<String>();
+        int set = 0;
+        for (int i = 0; set < count; i += step) {
+            int type = i % TYPES;
+            if (numericOnly && type >= STRING) {
+                continue;
+            }
+            args.add((i % 2 == 0) ? "--option" + i : "-o" + i);
+            if (type == STRING) {
+                args.add("value" + i);
+            } else if (type != BOOLEAN) {
+                args.add(Integer.toString((i % 3 == 0) ? -i : i));
+            }
+            set++;
+        }
+        return args.toArray(new String[args.size()]);
+    }
+
+    /**
+     * Creates a command line which has positional arguments only.
+     *
+     * @param count the number of arguments.
+     * @return a command line.
+     */
+    static String[] arguments(int count) {
+        String[] args = new String[count];
+        for (int i = 0; i < count; i++) {
+            args[i] = "/var/data/file-" + i + ".dat";
+        }
+        return args;
+    }
+}
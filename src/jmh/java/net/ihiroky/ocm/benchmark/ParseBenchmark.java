@@ -0,0 +1,73 @@
+package net.ihiroky.ocm.benchmark;
+
+import net.ihiroky.ocm.ArgumentParseException;
+import net.ihiroky.ocm.ArgumentProcessor;
+import net.ihiroky.ocm.Engine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures warm parse throughput for small, medium and huge schemas, with the reflective loop and parsers
+ * generated at runtime by the ocm-engine module.
+ *
+ * @author Hiroki Itoh
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class ParseBenchmark {
+
+    /** the number of options declared in a target. */
+    @Param({"10", "100", "1000"})
+    int size;
+
+    /** an engine which parses targets. */
+    @Param({"REFLECTIVE", "SPECIALIZED"})
+    Engine engine;
+
+    /** a processor shared by benchmark methods. */
+    private ArgumentProcessor processor;
+
+    /** a command line which sets all options. */
+    private String[] allOptions;
+
+    /** a command line which sets five options. */
+    private String[] fewOptions;
+
+    /** a command line which sets numeric options only. */
+    private String[] numericOptions;
+
+    @Setup
+    public void setUp() {
+        processor = new ArgumentProcessor();
+        processor.setEngine(engine);
+        allOptions = CommandLines.options(size, false, 1);
+        fewOptions = CommandLines.options(5, false, size / 5);
+        numericOptions = CommandLines.options(size * 3 / 5, true, 1);
+    }
+
+    @Benchmark
+    public Object parseAllOptions() throws ArgumentParseException {
+        return processor.parse(CommandLines.newTarget(size), allOptions);
+    }
+
+    @Benchmark
+    public Object parseFewOptions() throws ArgumentParseException {
+        return processor.parse(CommandLines.newTarget(size), fewOptions);
+    }
+
+    @Benchmark
+    public Object parseNumericOptions() throws ArgumentParseException {
+        return processor.parse(CommandLines.newTarget(size), numericOptions);
+    }
+}
@@ -0,0 +1,87 @@
+package net.ihiroky.ocm.benchmark;
+
+import net.ihiroky.ocm.ArgumentParseException;
+import net.ihiroky.ocm.ArgumentProcessor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Measures rendering usage.
+ *
+ * @author Hiroki Itoh
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class UsageBenchmark {
+
+    /** the number of options declared in a target. */
+    @Param({"10", "100", "1000"})
+    int size;
+
+    /** a charset to encode usage. */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /** a processor which has parsed a target. */
+    private ArgumentProcessor processor;
+
+    /** an output which discards usage. */
+    private PrintStream out;
+
+    /** a buffer to encode usage into. */
+    private ByteBuffer buffer;
+
+    @Setup
+    public void setUp() throws ArgumentParseException {
+        processor = new ArgumentProcessor();
+        processor.parse(CommandLines.newTarget(size), new String[0]);
+        out = new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        });
+        buffer = ByteBuffer.allocate(size * 128);
+    }
+
+    @Benchmark
+    public void printUsage() {
+        processor.printUsage(out);
+    }
+
+    @Benchmark
+    public void printOneLineUsage() {
+        processor.printOneLineUsage(out);
+    }
+
+    @Benchmark
+    public void appendWrappedUsage() throws IOException {
+        processor.appendUsage(out, 80);
+    }
+
+    @Benchmark
+    public ByteBuffer writeUsage() {
+        buffer.clear();
+        processor.writeUsage(buffer, UTF_8, 0);
+        return buffer;
+    }
+}
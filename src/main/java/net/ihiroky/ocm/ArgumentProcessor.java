@@ -1,25 +1,23 @@
 package net.ihiroky.ocm;
 
-import net.ihiroky.ocm.handler.BooleanFieldOptionHandler;
-import net.ihiroky.ocm.handler.ByteFieldOptionHandler;
-import net.ihiroky.ocm.handler.CharFieldOptionHandler;
-import net.ihiroky.ocm.handler.DoubleFieldOptionHandler;
-import net.ihiroky.ocm.handler.FloatFieldOptionHandler;
-import net.ihiroky.ocm.handler.IntFieldOptionHandler;
-import net.ihiroky.ocm.handler.LongFieldOptionHandler;
-import net.ihiroky.ocm.handler.ShortFieldOptionHandler;
-import net.ihiroky.ocm.handler.StringFieldOptionHandler;
-
+import java.io.IOException;
 import java.io.PrintStream;
-import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * Parses command line arguments and store results to a target object.
@@ -27,121 +25,171 @@ import java.util.Set;
  * {@code ArgumentProcessor} stores values of command line options to a target object which fields are annotated
  * by {@link Option}. A {@code List} field annotated by {@link Arguments} in the target object stores values of
  * arguments. {@code boolean}, {@code byte}, {@code char}, {@code short}, {@code int}, {@code float}, {@code double}
- * and {@code String} type is supported. Wrapper classes for primitive types are also supported.
+ * and {@code String} type is supported. Wrapper classes for primitive types are also supported. An option of
+ * {@code int[]}, {@code long[]}, {@code double[]} or {@code List<String>} type can be repeated, and its values are
+ * stored as an array or a list at the end of a parse.
+ * <p/>
+ * This class is thread-safe. A schema compiled from annotations of a target class is immutable and cached, and
+ * state of each parse is confined to the calling thread, so an instance can be shared by threads. Usage is printed
+ * according to the schema bound by {@link #ArgumentProcessor(Class)} or of the last parsed target.
+ * <p/>
+ * If {@link #setResponseFileEnabled(boolean)} is set, a command line argument {@code @path} is replaced with
+ * arguments read from the file {@code path}, which are separated by white spaces and can be quoted. NUL-delimited
+ * arguments like an output of {@code find -print0} are read from a channel by
+ * {@link #parse(Object, String[], ReadableByteChannel)}. These files are decoded in chunks, so they are not loaded
+ * into memory at once.
  * <p/>
- * This class is not synchronized.
+ * {@link #setEngine(Engine)} selects {@link Engine#SPECIALIZED}, which parses with a parser class generated per
+ * target class at runtime instead of handlers and reflection.
  *
  * @author Hiroki Itoh
  */
 public class ArgumentProcessor {
 
-    /** handlers to parse options. */
-    private List<FieldOptionHandler<?>> optionHandlerList;
+    /** a schema bound by the constructor or of the last parsed target, used to print usage. */
+    private volatile Schema schema;
+
+    /** true if {@code @path} is expanded to arguments in a response file. */
+    private volatile boolean responseFileEnabled;
+
+    /** an engine to find options and store their values. */
+    private volatile Engine engine = Engine.REFLECTIVE;
+
+    /** a listener of parse events, or null. */
+    private volatile ParseListener listener;
 
-    /** handlers to parse arguments. */
-    private ArgumentsHandler argumentsHandler;
+    /** a context of {@link #parse(Object, String[])} reused in each thread. */
+    private final ThreadLocal<ParseContext> contexts = new ThreadLocal<ParseContext>();
 
-    /** a map which stores handlers according to their type. */
-    private static final Map<Class<?>, Class<? extends FieldOptionHandler<?>>> HANDLER_MAP;
+    /** subcommands indexed by their names. */
+    private final Map<String, Subcommand> subcommands = new ConcurrentHashMap<String, Subcommand>();
+
+    /** a trie of subcommand names, built on demand and discarded when a subcommand is added. */
+    private volatile PrefixTrie<String> subcommandTrie;
 
     /** a mark to show that the left command line arguments of this mark is treated as arguments. */
-    private static final String ARGUMENT_ONLY = "--";
+    static final String ARGUMENT_ONLY = "--";
 
     /** a mark to show that a current command line arguments is a option. */
-    private static final String OPTION_PREFIX = "-";
-
-    static {
-        Map<Class<?>, Class<? extends FieldOptionHandler<?>>> map =
-                new HashMap<Class<?>, Class<? extends FieldOptionHandler<?>>>();
-        map.put(Boolean.TYPE, BooleanFieldOptionHandler.class);
-        map.put(Boolean.class, BooleanFieldOptionHandler.class);
-        map.put(Byte.TYPE, ByteFieldOptionHandler.class);
-        map.put(Byte.class, ByteFieldOptionHandler.class);
-        map.put(Character.TYPE, CharFieldOptionHandler.class);
-        map.put(Character.class, CharFieldOptionHandler.class);
-        map.put(Short.TYPE, ShortFieldOptionHandler.class);
-        map.put(Short.class, ShortFieldOptionHandler.class);
-        map.put(Integer.TYPE, IntFieldOptionHandler.class);
-        map.put(Integer.class, IntFieldOptionHandler.class);
-        map.put(Long.TYPE, LongFieldOptionHandler.class);
-        map.put(Long.class, LongFieldOptionHandler.class);
-        map.put(Float.TYPE, FloatFieldOptionHandler.class);
-        map.put(Float.class, FloatFieldOptionHandler.class);
-        map.put(Double.TYPE, DoubleFieldOptionHandler.class);
-        map.put(Double.class, DoubleFieldOptionHandler.class);
-        map.put(String.class, StringFieldOptionHandler.class);
-        HANDLER_MAP = Collections.unmodifiableMap(map);
-    }
+    static final String OPTION_PREFIX = "-";
+
+    /** a separator between an option name and its value in a command line argument. */
+    static final char VALUE_SEPARATOR = '=';
 
     /** */
     public ArgumentProcessor() {
     }
 
     /**
-     * Parses annotations.
+     * Constructs a new instance which compiles a schema of a specified class in advance.
      *
-     * @param target an object to be parsed.
-     * @throws IllegalArgumentTypeException if target has unsupported type fields.
+     * @param targetClass a class which fields are annotated by {@link Option} and {@link Arguments}.
+     * @throws IllegalArgumentTypeException if {@code targetClass} has invalid option
      */
-    private void parseAnnotation(Object target) {
-        List<FieldOptionHandler<?>> fieldOptionHandlerList = new ArrayList<FieldOptionHandler<?>>();
-        ArgumentsHandler argsHandler = new ArgumentsHandler();
-        Set<String> parsedNames = new HashSet<String>();
-        Set<String> parsedAliases = new HashSet<String>();
-        for (Class<?> c = target.getClass(); c != null; c = c.getSuperclass()) {
-            for (Field field : c.getDeclaredFields()) {
-                Option option = field.getAnnotation(Option.class);
-                if (option != null) {
-                    if (option.name().length() == 0) { // a property of annotation is not null.
-                        throw new IllegalArgumentTypeException(
-                                "option name for field " + field.getName() + " is required.");
-                    }
-                    Class<?> type = field.getType();
-                    Class<? extends FieldOptionHandler<?>> factory = HANDLER_MAP.get(type);
-                    if (factory == null) {
-                        throw new IllegalArgumentTypeException(
-                                "unsupported option type : " + type + ", option : " + option.name());
-                    }
-                    try {
-                        FieldOptionHandler<?> handler = factory.newInstance();
-                        handler.setTarget(target);
-                        handler.setField(field);
-                        handler.setOption(option);
-                        if (parsedNames.contains(handler.getName())
-                                || (handler.getAlias().length() > FieldOptionHandler.SHORT_NAME_SUFFIX.length()
-                                && parsedAliases.contains(handler.getAlias()))) {
-                            throw new IllegalArgumentTypeException("name [" + handler.getName()
-                                    + "] or alias [" + handler.getAlias() + "] is duplicated.");
-                        }
-                        fieldOptionHandlerList.add(handler);
-                        parsedAliases.add(handler.getAlias());
-                        parsedNames.add(handler.getName());
-                    } catch (IllegalArgumentTypeException iate) {
-                        throw iate;
-                    } catch (Exception e) {
-                        // it's a bug if an exception is caught.
-                        throw new RuntimeException("failed to instantiate OptionHandler.", e);
-                    }
-                    continue;
-                }
-                Arguments arguments = field.getAnnotation(Arguments.class);
-                if (arguments != null) {
-                    if (!Collection.class.isAssignableFrom(field.getType())) {
-                        throw new IllegalArgumentTypeException(
-                                "arguments type must be " + Collection.class.getName() + '.');
-                    }
-                    argsHandler.setTarget(target);
-                    argsHandler.setField(field);
-                    argsHandler.setArguments(arguments);
-                }
-            }
+    public ArgumentProcessor(Class<?> targetClass) {
+        this.schema = Schema.of(targetClass);
+    }
+
+    /**
+     * Enables or disables expansion of {@code @path} to arguments in a response file. Disabled by default.
+     *
+     * @param enabled true if {@code @path} is expanded.
+     */
+    public void setResponseFileEnabled(boolean enabled) {
+        this.responseFileEnabled = enabled;
+    }
+
+    /**
+     * Returns true if {@code @path} is expanded to arguments in a response file.
+     *
+     * @return true if {@code @path} is expanded.
+     */
+    public boolean isResponseFileEnabled() {
+        return responseFileEnabled;
+    }
+
+    /**
+     * Sets an engine to find options and store their values. {@link Engine#REFLECTIVE} by default.
+     * <p/>
+     * {@link Engine#SPECIALIZED} generates a parser per target class on its first parse, if a
+     * {@link ParserGenerator} such as the ocm-engine module is on the class path. The schema bound to print usage is
+     * compiled again for {@code engine}.
+     *
+     * @param engine an engine.
+     * @throws NullPointerException if {@code engine} is null.
+     */
+    public void setEngine(Engine engine) {
+        if (engine == null) {
+            throw new NullPointerException("engine is null.");
+        }
+        this.engine = engine;
+        Schema s = schema;
+        if (s != null && s.getEngine() != engine) {
+            schema = Schema.of(s.getTargetClass(), listener, engine);
+        }
+    }
+
+    /**
+     * Gets an engine to find options and store their values.
+     *
+     * @return an engine.
+     */
+    public Engine getEngine() {
+        return engine;
+    }
+
+    /**
+     * Registers a listener which receives phase timings, options set and conversion failures of parses. The
+     * listener is called by threads which parse. No listener is registered by default.
+     *
+     * @param listener a listener, or null to unregister.
+     */
+    public void setParseListener(ParseListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Gets a listener of parse events.
+     *
+     * @return a listener, or null if no listener is registered.
+     */
+    public ParseListener getParseListener() {
+        return listener;
+    }
+
+    /**
+     * Creates a state of a parse for the current listener.
+     *
+     * @param s a schema of a target.
+     * @return a new state.
+     */
+    private ParseState newState(Schema s) {
+        return new ParseState(s, listener);
+    }
+
+    /**
+     * Gets a schema of a specified class for the current engine.
+     *
+     * @param targetClass a class of a target.
+     * @return a schema.
+     * @throws IllegalArgumentTypeException if {@code targetClass} has invalid option
+     */
+    private Schema schemaOf(Class<?> targetClass) {
+        Schema s = schema;
+        Engine e = engine;
+        if (s == null || s.getTargetClass() != targetClass || s.getEngine() != e) {
+            s = Schema.of(targetClass, listener, e);
+            schema = s;
         }
-        optionHandlerList = fieldOptionHandlerList;
-        argumentsHandler = argsHandler;
+        return s;
     }
 
     /**
      * Parses command line arguments.
+     * <p/>
+     * State of a parse is kept for each thread and reused by the following parses of the same target class. So
+     * parsing into a target reset by {@link #reset(Object)} allocates nothing other than values stored to the
+     * target, e.g. a {@code String} option or an argument added to a collection which has no room.
      *
      * @param target an object to store options and arguments, which fields are
      *               annotated by {@link Option} and {@link Arguments}.
@@ -157,107 +205,938 @@ public class ArgumentProcessor {
             throw new NullPointerException("target or args is null.");
         }
 
-        parseAnnotation(target);
+        Schema s = schemaOf(target.getClass());
+        ParseContext c = contextOf(s);
+        try {
+            parse(s, c.acquire(target), c.source(args));
+        } finally {
+            c.release();
+        }
+        return target;
+    }
+
+    /**
+     * Gets a context of a parse for the current thread, the current listener and response file setting.
+     * <p/>
+     * A new context is created for a parse nested in another parse in the same thread, e.g. by a converter, and it
+     * is not kept.
+     *
+     * @param s a schema of a target.
+     * @return a context which is not in use.
+     */
+    private ParseContext contextOf(Schema s) {
+        ParseListener l = listener;
+        boolean responseFiles = responseFileEnabled;
+        ParseContext c = contexts.get();
+        if (c == null || !c.isAvailable(s, l, responseFiles)) {
+            ParseContext nc = new ParseContext(s, l, responseFiles);
+            if (c == null || !c.isInUse()) {
+                contexts.set(nc);
+            }
+            c = nc;
+        }
+        return c;
+    }
+
+    /**
+     * Resets fields of a target annotated by {@link Option} and {@link Arguments} to their defaults, so the target
+     * can be reused for another parse.
+     * <p/>
+     * Defaults are the field values of an instance created by the no-arg constructor of the target class, which are
+     * snapshotted once per class. A collection annotated by {@link Arguments} is cleared and refilled with its
+     * default elements instead of being reallocated. A default array or collection of an option is copied, so it is
+     * never shared by targets. An {@link ArgumentSink} field is not reset.
+     *
+     * @param target an object to be reset.
+     * @param <T> a target type.
+     * @return target.
+     * @throws NullPointerException if {@code target} is null.
+     * @throws IllegalArgumentTypeException if the target class has invalid option or no no-arg constructor.
+     */
+    public <T> T reset(T target) {
+        if (target == null) {
+            throw new NullPointerException("target is null.");
+        }
+        schemaOf(target.getClass()).getDefaults().reset(target);
+        return target;
+    }
+
+    /**
+     * Parses command line arguments followed by NUL-delimited arguments read from a channel.
+     * <p/>
+     * Arguments read from {@code in} are treated as if they are placed after {@code args}, and are never expanded
+     * as response files. {@code in} is read in the default charset until its end, and is not closed.
+     *
+     * @param target an object to store options and arguments, which fields are
+     *               annotated by {@link Option} and {@link Arguments}.
+     * @param args command line arguments.
+     * @param in a blocking channel to read NUL-delimited arguments, e.g. {@code Channels.newChannel(System.in)}.
+     * @param <T> a target type.
+     * @throws NullPointerException if any of arguments is null.
+     * @throws ArgumentParseException if arguments contain invalid options or arguments, or {@code in} can not be read.
+     * @throws IllegalArgumentTypeException if {@code target} object has invalid option
+     * @return target.
+     */
+    public <T> T parse(T target, String[] args, ReadableByteChannel in) throws ArgumentParseException {
+        if (target == null || args == null || in == null) {
+            throw new NullPointerException("target, args or in is null.");
+        }
+
+        Schema s = schemaOf(target.getClass());
+        TokenSource nul = new ChannelTokenSource(in, "channel", false,
+                ChannelTokenSource.Mode.NUL, Charset.defaultCharset());
+        parse(s, newState(s).reset(target), new SequenceTokenSource(tokenSource(args), nul));
+        return target;
+    }
+
+    /**
+     * Parses a command line string, which is split into arguments in the way of a POSIX shell.
+     * <p/>
+     * Arguments are separated by white spaces, and can be quoted by {@code '} or {@code "} and escaped by a
+     * backslash. No expansion, such as of variables and globs, is performed. {@code commandLine} is scanned once
+     * as arguments are parsed, so no array of arguments is built. It must not include a command name.
+     *
+     * @param target an object to store options and arguments, which fields are
+     *               annotated by {@link Option} and {@link Arguments}.
+     * @param commandLine a command line string, such as {@code String} or {@code CharBuffer}.
+     * @param <T> a target type.
+     * @throws NullPointerException if {@code target} or {@code commandLine} is null.
+     * @throws ArgumentParseException if {@code commandLine} has an unclosed quote, or contains invalid options or
+     *                                arguments.
+     * @throws IllegalArgumentTypeException if {@code target} object has invalid option
+     * @return target.
+     */
+    public <T> T parse(T target, CharSequence commandLine) throws ArgumentParseException {
+        if (target == null || commandLine == null) {
+            throw new NullPointerException("target or commandLine is null.");
+        }
+
+        Schema s = schemaOf(target.getClass());
+        parse(s, newState(s).reset(target), tokenSource(new ShellTokenSource(commandLine)));
+        return target;
+    }
+
+    /**
+     * Parses command line arguments, collecting all errors in a result instead of throwing an exception.
+     * <p/>
+     * The parse goes on after an error to find all errors in one pass: an unknown option is skipped, an option
+     * followed by another option is reported as missing its value, and all missing required options are reported.
+     * Values of built-in types are checked before conversion, so no exception is created for an invalid value.
+     * A value of a type converted by a {@link Converter} is checked by converting it.
+     * {@link ParseListener#conversionFailed(Class, String, String, Exception)} is not called for a value rejected
+     * before conversion. Options and arguments without errors are stored to {@code target}.
+     *
+     * @param target an object to store options and arguments, which fields are
+     *               annotated by {@link Option} and {@link Arguments}.
+     * @param args command line arguments.
+     * @param <T> a target type.
+     * @return a result which holds {@code target} and errors; {@link ParseResult#getError()} is not null only if
+     *         reflection is failed.
+     * @throws NullPointerException if {@code target} or {@code args} is null.
+     * @throws IllegalArgumentTypeException if {@code target} object has invalid option
+     */
+    public <T> ParseResult<T> tryParse(T target, String[] args) {
+        if (target == null || args == null) {
+            throw new NullPointerException("target or args is null.");
+        }
+        return tryParse(target, tokenSource(args));
+    }
+
+    /**
+     * Parses a command line string in the same way as {@link #parse(Object, CharSequence)}, collecting all errors
+     * in a result instead of throwing an exception as {@link #tryParse(Object, String[])} does. An unclosed quote
+     * is reported as {@link ParseErrorCode#INPUT_ERROR}, and stops the parse.
+     *
+     * @param target an object to store options and arguments, which fields are
+     *               annotated by {@link Option} and {@link Arguments}.
+     * @param commandLine a command line string, such as {@code String} or {@code CharBuffer}.
+     * @param <T> a target type.
+     * @return a result which holds {@code target} and errors.
+     * @throws NullPointerException if {@code target} or {@code commandLine} is null.
+     * @throws IllegalArgumentTypeException if {@code target} object has invalid option
+     */
+    public <T> ParseResult<T> tryParse(T target, CharSequence commandLine) {
+        if (target == null || commandLine == null) {
+            throw new NullPointerException("target or commandLine is null.");
+        }
+        return tryParse(target, tokenSource(new ShellTokenSource(commandLine)));
+    }
+
+    /**
+     * Parses command line arguments provided by a source, collecting errors.
+     *
+     * @param target an object to store options and arguments.
+     * @param source a source of command line arguments, which is closed by this method.
+     * @param <T> a target type.
+     * @return a result.
+     */
+    private <T> ParseResult<T> tryParse(T target, TokenSource source) {
+        Schema s = schemaOf(target.getClass());
+        ParseState state = newState(s).reset(target).collectErrors();
+        try {
+            parse(s, state, source);
+        } catch (ArgumentParseException ape) {
+            return new ParseResult<T>(target, ape);
+        }
+        return new ParseResult<T>(target, state.getErrors());
+    }
+
+    /**
+     * Creates a source of command line arguments.
+     *
+     * @param args command line arguments.
+     * @return a source, which expands response files if enabled.
+     */
+    private TokenSource tokenSource(String[] args) {
+        return tokenSource(new ArrayTokenSource(args));
+    }
+
+    /**
+     * Wraps a source of command line arguments to expand response files if enabled.
+     *
+     * @param source a source of command line arguments.
+     * @return a source, which expands response files if enabled.
+     */
+    private TokenSource tokenSource(TokenSource source) {
+        return responseFileEnabled ? new ResponseFileTokenSource(source) : source;
+    }
+
+    /**
+     * Parses many command line arguments sequentially.
+     * <p/>
+     * Targets are created by {@code factory}, and state of a parse is reused for each command line arguments.
+     * An {@link ArgumentParseException} does not stop the bulk parse; it is held by the corresponding result.
+     *
+     * @param argsList command line arguments to be parsed.
+     * @param factory a factory to create targets.
+     * @param <T> a target type.
+     * @return results in the order of {@code argsList}.
+     * @throws NullPointerException if any of arguments or a created target is null.
+     * @throws IllegalArgumentTypeException if a target object has invalid option
+     */
+    public <T> List<ParseResult<T>> parseAll(Iterable<String[]> argsList, TargetFactory<T> factory) {
+        if (argsList == null || factory == null) {
+            throw new NullPointerException("argsList or factory is null.");
+        }
+        ListSink<T> results = new ListSink<T>();
+        parseAll(argsList, factory, results);
+        return results.list;
+    }
 
-        if (optionHandlerList == null || argumentsHandler == null) {
-            throw new IllegalStateException("target object is not parsed."
-                    + " instantiate with constructor ArgumentProcessor(Object) to use this method "
-                    + " or use method parse(Object, String[]).");
+    /**
+     * Parses many command line arguments sequentially, passing results to a sink instead of holding them.
+     * <p/>
+     * This is the same as {@link #parseAll(Iterable, TargetFactory)} except that each result is passed to
+     * {@code sink} as soon as it is parsed.
+     *
+     * @param argsList command line arguments to be parsed.
+     * @param factory a factory to create targets.
+     * @param sink a sink which receives results in the order of {@code argsList}.
+     * @param <T> a target type.
+     * @throws NullPointerException if any of arguments or a created target is null.
+     * @throws IllegalArgumentTypeException if a target object has invalid option
+     */
+    public <T> void parseAll(Iterable<String[]> argsList, TargetFactory<T> factory, ResultSink<T> sink) {
+        if (argsList == null || factory == null || sink == null) {
+            throw new NullPointerException("argsList, factory or sink is null.");
+        }
+        Schema s = null;
+        ParseState state = null;
+        for (String[] args : argsList) {
+            T target = factory.newTarget();
+            if (target == null || args == null) {
+                throw new NullPointerException("target or args is null.");
+            }
+            if (s == null || s.getTargetClass() != target.getClass()) {
+                s = schemaOf(target.getClass());
+                state = newState(s);
+            }
+            ArgumentParseException error = null;
+            try {
+                parse(s, state.reset(target), tokenSource(args));
+            } catch (ArgumentParseException ape) {
+                error = ape;
+            }
+            sink.add(new ParseResult<T>(target, error));
         }
+    }
 
-        // copy the list because of destructive operations.
-        List<FieldOptionHandler<?>> ohlist = new ArrayList<FieldOptionHandler<?>>(this.optionHandlerList);
-        ArgumentsHandler ah = this.argumentsHandler;
+    /**
+     * Parses many command line arguments in parallel.
+     * <p/>
+     * {@code argsList} is divided into batches of {@code batchSize}, and each batch is parsed by a task submitted
+     * to {@code executor} in the same way as {@link #parseAll(Iterable, TargetFactory)}. At most twice as many
+     * batches as available processors are submitted and not yet collected at a time. A
+     * {@code java.util.concurrent.ForkJoinPool} is also available as {@code executor} on Java 7 or later.
+     *
+     * @param argsList command line arguments to be parsed.
+     * @param factory a factory to create targets, which is called by threads of {@code executor}.
+     * @param executor an executor to run batches.
+     * @param batchSize the number of command line arguments in a batch.
+     * @param <T> a target type.
+     * @return results in the order of {@code argsList}.
+     * @throws NullPointerException if any of arguments or a created target is null.
+     * @throws IllegalArgumentException if {@code batchSize} is not positive.
+     * @throws IllegalArgumentTypeException if a target object has invalid option
+     * @throws InterruptedException if the current thread is interrupted while waiting.
+     */
+    public <T> List<ParseResult<T>> parseAll(Iterable<String[]> argsList, TargetFactory<T> factory,
+                                             ExecutorService executor, int batchSize) throws InterruptedException {
+        ListSink<T> results = new ListSink<T>();
+        parseAll(argsList, factory, executor, batchSize, Runtime.getRuntime().availableProcessors() * 2, results);
+        return results.list;
+    }
+
+    /**
+     * Parses many command line arguments in parallel, passing results to a sink instead of holding them.
+     * <p/>
+     * {@code argsList} is read lazily and divided into batches of {@code batchSize}, and each batch is parsed by a
+     * task submitted to {@code executor}. When {@code maxPendingBatches} batches are pending, the calling thread
+     * waits for the oldest one and passes its results to {@code sink} before submitting the next one. So at most
+     * {@code batchSize * maxPendingBatches} command line arguments and results are held at a time, however long
+     * {@code argsList} is.
+     *
+     * @param argsList command line arguments to be parsed.
+     * @param factory a factory to create targets, which is called by threads of {@code executor}.
+     * @param executor an executor to run batches.
+     * @param batchSize the number of command line arguments in a batch.
+     * @param maxPendingBatches the maximum number of batches submitted and not yet passed to {@code sink}.
+     * @param sink a sink which receives results in the order of {@code argsList} in the calling thread.
+     * @param <T> a target type.
+     * @throws NullPointerException if any of arguments or a created target is null.
+     * @throws IllegalArgumentException if {@code batchSize} or {@code maxPendingBatches} is not positive.
+     * @throws IllegalArgumentTypeException if a target object has invalid option
+     * @throws InterruptedException if the current thread is interrupted while waiting.
+     */
+    public <T> void parseAll(Iterable<String[]> argsList, final TargetFactory<T> factory, ExecutorService executor,
+                             int batchSize, int maxPendingBatches, ResultSink<T> sink) throws InterruptedException {
+        if (argsList == null || factory == null || executor == null || sink == null) {
+            throw new NullPointerException("argsList, factory, executor or sink is null.");
+        }
+        if (batchSize <= 0 || maxPendingBatches <= 0) {
+            throw new IllegalArgumentException("batchSize and maxPendingBatches must be positive.");
+        }
 
-        for (int i = 0; i < args.length; i++) {
-            String arg = args[i];
-            if (arg.equals(ARGUMENT_ONLY)) {
-                // left args is arguments.
-                for (int j = i + 1; j < args.length; j++) {
-                    ah.add(args[j]);
+        Queue<Future<List<ParseResult<T>>>> pending = new ArrayDeque<Future<List<ParseResult<T>>>>();
+        try {
+            Iterator<String[]> iterator = argsList.iterator();
+            while (iterator.hasNext()) {
+                if (pending.size() == maxPendingBatches) {
+                    drain(pending.remove(), sink);
                 }
-                break;
-            } else if (arg.startsWith(OPTION_PREFIX)) {
-                // options
-                FieldOptionHandler<?> handler = search(arg, ohlist);
-                if (handler == null) {
-                    throw new ArgumentParseException("unknown option : " + arg);
+                final List<String[]> batch = new ArrayList<String[]>(batchSize);
+                for (int i = 0; i < batchSize && iterator.hasNext(); i++) {
+                    batch.add(iterator.next());
                 }
+                pending.add(executor.submit(new Callable<List<ParseResult<T>>>() {
+                    @Override
+                    public List<ParseResult<T>> call() {
+                        ListSink<T> results = new ListSink<T>(batch.size());
+                        parseAll(batch, factory, results);
+                        return results.list;
+                    }
+                }));
+            }
+            while (!pending.isEmpty()) {
+                drain(pending.remove(), sink);
+            }
+        } finally {
+            for (Future<?> future : pending) {
+                future.cancel(true);
+            }
+        }
+    }
 
-                Field field = handler.getField();
-                if (Boolean.TYPE.equals(field.getType())
-                        || Boolean.class.equals(field.getType())) {
-                    // boolean if the option has no value.
-                    handler.set(Boolean.TRUE.toString());
-                } else {
-                    i++;
-                    if (i == args.length) {
-                        throw new ArgumentParseException(
-                                "no value is found for option " + handler.toString());
+    /**
+     * Waits for a batch and passes its results to a sink.
+     *
+     * @param future a future of results of a batch.
+     * @param sink a sink which receives results.
+     * @param <T> a target type.
+     * @throws InterruptedException if the current thread is interrupted while waiting.
+     */
+    private static <T> void drain(Future<List<ParseResult<T>>> future, ResultSink<T> sink)
+            throws InterruptedException {
+        List<ParseResult<T>> results;
+        try {
+            results = future.get();
+        } catch (ExecutionException ee) {
+            Throwable cause = ee.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            // call() throws no checked exception.
+            throw new IllegalStateException(cause);
+        }
+        for (ParseResult<T> result : results) {
+            sink.add(result);
+        }
+    }
+
+    /**
+     * Holds results in a list.
+     *
+     * @param <T> a target type.
+     */
+    private static final class ListSink<T> implements ResultSink<T> {
+
+        /** results in the order of command line arguments. */
+        final List<ParseResult<T>> list;
+
+        /**
+         * Constructs a new instance.
+         */
+        ListSink() {
+            this.list = new ArrayList<ParseResult<T>>();
+        }
+
+        /**
+         * Constructs a new instance with an initial capacity.
+         * @param capacity an initial capacity.
+         */
+        ListSink(int capacity) {
+            this.list = new ArrayList<ParseResult<T>>(capacity);
+        }
+
+        @Override
+        public void add(ParseResult<T> result) {
+            list.add(result);
+        }
+    }
+
+    /**
+     * Adds a subcommand, which is selected by the first argument of {@link #parseSubcommand(Object, String[])}.
+     * <p/>
+     * No target is created and no schema is compiled until the subcommand is selected, so adding many subcommands
+     * costs only their names. A subcommand of the same name is replaced.
+     *
+     * @param name a subcommand name.
+     * @param factory a factory to create a target of the subcommand.
+     * @throws NullPointerException if {@code name} or {@code factory} is null.
+     * @throws IllegalArgumentException if {@code name} is empty.
+     */
+    public void addSubcommand(String name, TargetFactory<?> factory) {
+        if (name == null || factory == null) {
+            throw new NullPointerException("name or factory is null.");
+        }
+        if (name.length() == 0) {
+            throw new IllegalArgumentException("name is empty.");
+        }
+        synchronized (subcommands) {
+            subcommands.put(name, new Subcommand(factory));
+            subcommandTrie = null;
+        }
+    }
+
+    /**
+     * Gets names of subcommands added by {@link #addSubcommand(String, TargetFactory)}.
+     *
+     * @return an unmodifiable view of the names.
+     */
+    public Set<String> getSubcommandNames() {
+        return Collections.unmodifiableSet(subcommands.keySet());
+    }
+
+    /**
+     * Parses command line arguments of a git-style command, {@code [global options] name [subcommand options and
+     * arguments]}.
+     * <p/>
+     * Options before the first argument are stored to {@code globals}, and the argument selects a subcommand by its
+     * name. A target of the subcommand is created by its factory, and the rest of {@code args} is stored to it. The
+     * first argument after {@code --} is also a subcommand name. Only a schema of the selected subcommand is
+     * compiled, and it is kept by this instance for the next parse. Usage is printed according to the schema of
+     * {@code globals}.
+     *
+     * @param globals an object to store global options, which fields are annotated by {@link Option}. Its field
+     *                annotated by {@link Arguments} gets no argument.
+     * @param args command line arguments.
+     * @param <G> a type of {@code globals}.
+     * @return a result which holds the subcommand name and targets.
+     * @throws NullPointerException if {@code globals}, {@code args} or a created target is null.
+     * @throws ArgumentParseException if no subcommand or an unknown subcommand is found, or {@code args} contains
+     *                                invalid options or arguments.
+     * @throws IllegalArgumentTypeException if {@code globals} or a target of the subcommand has invalid option
+     */
+    public <G> SubcommandResult<G> parseSubcommand(G globals, String[] args) throws ArgumentParseException {
+        if (globals == null || args == null) {
+            throw new NullPointerException("globals or args is null.");
+        }
+
+        Schema gs = schemaOf(globals.getClass());
+        TokenSource source = tokenSource(args);
+        try {
+            String name = parse(gs, newState(gs).reset(globals), source, true);
+            if (name == null) {
+                throw new ArgumentParseException("subcommand is required.");
+            }
+            Subcommand subcommand = subcommands.get(name);
+            if (subcommand == null) {
+                throw new ArgumentParseException("unknown subcommand : " + name);
+            }
+            Object target = subcommand.newTarget();
+            Schema s = subcommand.schemaOf(target.getClass(), listener, engine);
+            parse(s, newState(s).reset(target), source, false);
+            return new SubcommandResult<G>(name, globals, target);
+        } finally {
+            close(source);
+        }
+    }
+
+    /**
+     * Finds candidates to complete the last word of command line arguments, for a shell completion function.
+     * <p/>
+     * Option names and aliases which start with the word are returned if the word starts with '-', except options
+     * which already appear and can not be repeated. If subcommands are added, {@code targetClass} is a class of
+     * global options and subcommand names are returned at the first argument. The result is empty if the word is
+     * a value of an option or an argument, which a shell should complete by itself, such as file names. No target
+     * is created except one to find a class of the selected subcommand whose schema is not compiled yet.
+     *
+     * @param targetClass a class which fields are annotated by {@link Option} and {@link Arguments}.
+     * @param words command line arguments without a command name, the last of which is a word to be completed.
+     *              An empty array is the same as an array of an empty word.
+     * @return candidates in lexicographic order.
+     * @throws NullPointerException if any of arguments is null.
+     * @throws IllegalArgumentTypeException if {@code targetClass} or a class of the subcommand has invalid option
+     */
+    public List<String> complete(Class<?> targetClass, String[] words) {
+        if (targetClass == null || words == null) {
+            throw new NullPointerException("targetClass or words is null.");
+        }
+        return Completer.complete(schemaOf(targetClass), subcommands, subcommandTrie(), listener, words);
+    }
+
+    /**
+     * Appends a bash completion script of a command, which completes option and subcommand names without starting
+     * a JVM.
+     * <p/>
+     * The script holds names of all options, so it should be generated at build time and regenerated whenever
+     * annotations change. Schemas of all subcommands are compiled to render the script. zsh can load the script
+     * after {@code autoload -U bashcompinit && bashcompinit}. Use {@link #complete(Class, String[])} if candidates
+     * depend on what the static script does not know.
+     *
+     * @param out an output.
+     * @param command a command name to be completed.
+     * @param targetClass a class which fields are annotated by {@link Option}, or global options if subcommands are
+     *                    added.
+     * @throws NullPointerException if any of arguments is null.
+     * @throws IllegalArgumentTypeException if {@code targetClass} or a class of a subcommand has invalid option
+     * @throws IOException if an I/O error occurs.
+     */
+    public void appendBashCompletion(Appendable out, String command, Class<?> targetClass) throws IOException {
+        if (out == null || command == null || targetClass == null) {
+            throw new NullPointerException("out, command or targetClass is null.");
+        }
+        Completer.appendBashScript(out, command, schemaOf(targetClass), subcommands, listener);
+    }
+
+    /**
+     * Gets a trie of subcommand names, building it if subcommands are changed.
+     *
+     * @return a trie of subcommand names.
+     */
+    private PrefixTrie<String> subcommandTrie() {
+        PrefixTrie<String> t = subcommandTrie;
+        if (t == null) {
+            synchronized (subcommands) {
+                t = subcommandTrie;
+                if (t == null) {
+                    t = new PrefixTrie<String>();
+                    for (String name : subcommands.keySet()) {
+                        t.put(name, name);
+                    }
+                    subcommandTrie = t;
+                }
+            }
+        }
+        return t;
+    }
+
+    /**
+     * Parses command line arguments with a schema.
+     *
+     * @param s a schema of a target.
+     * @param state a state which holds a target.
+     * @param source a source of command line arguments, which is closed by this method.
+     * @throws ArgumentParseException if {@code source} contains invalid options or arguments.
+     */
+    private void parse(Schema s, ParseState state, TokenSource source) throws ArgumentParseException {
+        try {
+            parse(s, state, source, false);
+        } finally {
+            close(source);
+        }
+    }
+
+    /**
+     * Parses command line arguments with a schema, notifying the listener of the state if registered.
+     *
+     * @param s a schema of a target.
+     * @param state a state which holds a target.
+     * @param source a source of command line arguments, which is not closed.
+     * @param untilSubcommand true if the parse stops at the first argument, which is a subcommand name.
+     * @return a subcommand name, or null if {@code untilSubcommand} is false or no argument is found.
+     * @throws ArgumentParseException if {@code source} contains invalid options or arguments.
+     */
+    private String parse(Schema s, ParseState state, TokenSource source, boolean untilSubcommand)
+            throws ArgumentParseException {
+        ParseListener l = state.getListener(ParsePhase.PARSE);
+        if (l == null) {
+            return parseTokens(s, state, source, untilSubcommand);
+        }
+        l.phaseStarted(ParsePhase.PARSE, s.getTargetClass());
+        long start = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            String command = parseTokens(s, state, source, untilSubcommand);
+            succeeded = !state.hasErrors();
+            return command;
+        } finally {
+            l.phaseEnded(ParsePhase.PARSE, s.getTargetClass(), state.getTokenCount(), succeeded,
+                    System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Closes a source of command line arguments.
+     *
+     * @param source a source to be closed.
+     */
+    private static void close(TokenSource source) {
+        try {
+            source.close();
+        } catch (IOException ignored) {
+            // nothing to do for a channel which is only read.
+        }
+    }
+
+    /**
+     * Parses command line arguments provided by a source.
+     * <p/>
+     * If the state collects errors, an error is added to the state and the parse goes on to find other errors.
+     * A command line argument which is not a value of the preceding option is parsed again as an option.
+     *
+     * @param s a schema of a target.
+     * @param state a state which holds a target.
+     * @param source a source of command line arguments.
+     * @param untilSubcommand true if the parse stops at the first argument, which is a subcommand name.
+     * @return a subcommand name, or null if {@code untilSubcommand} is false or no argument is found.
+     * @throws ArgumentParseException if {@code source} contains invalid options or arguments.
+     */
+    private String parseTokens(Schema s, ParseState state, TokenSource source, boolean untilSubcommand)
+            throws ArgumentParseException {
+        Object target = state.getTarget();
+        ArgumentsHandler ah = s.getArgumentsHandler();
+        ParseListener l = state.getListener();
+        String command = null;
+        int tokens = 0;
+        try {
+            String arg = source.next();
+            while (arg != null) {
+                tokens++;
+                String next = null;
+                if (arg.equals(ARGUMENT_ONLY)) {
+                    if (untilSubcommand) {
+                        // a subcommand name which may start with '-'.
+                        command = source.next();
+                        tokens += (command != null) ? 1 : 0;
+                        break;
+                    }
+                    // left args is arguments.
+                    for (String a = source.next(); a != null; a = source.next()) {
+                        tokens++;
+                        addArgument(ah, a, state, tokens - 1);
+                    }
+                    break;
+                } else if (arg.startsWith(OPTION_PREFIX)) {
+                    // options
+                    OptionDescriptor option = search(arg, s, state);
+                    if (option == null) {
+                        option = loadJoinedOption(arg, s, state, tokens - 1);
+                    } else if (option.isSwitch()) {
+                        // boolean if the option has no value.
+                        store(option, state, Boolean.TRUE.toString());
+                    } else {
+                        String value = source.next();
+                        if (value == null) {
+                            fail(state, ParseErrorCode.MISSING_VALUE, option, null, tokens - 1);
+                            option = null;
+                        } else {
+                            tokens++;
+                            if (!isValue(option, value, s, state)) {
+                                // give the value back to be parsed as an option.
+                                fail(state, ParseErrorCode.MISSING_VALUE, option, null, tokens - 2);
+                                next = value;
+                                tokens--;
+                                option = null;
+                            } else if (!convert(option, state, value, tokens - 1)) {
+                                option = null;
+                            }
+                        }
+                    }
+                    if (option != null) {
+                        // only an option whose value is stored is set.
+                        state.consume(option);
+                        if (l != null) {
+                            l.optionSet(s.getTargetClass(), option.getName());
+                        }
                     }
-                    loadValuedOption(handler, args[i], ohlist);
+                } else if (untilSubcommand) {
+                    command = arg;
+                    break;
+                } else {
+                    // arguments
+                    addArgument(ah, arg, state, tokens - 1);
                 }
-                ohlist.remove(handler);
-            } else {
-                // arguments
-                ah.add(arg);
+                arg = (next != null) ? next : source.next();
+            }
+        } catch (ArgumentParseException ape) {
+            // only the source throws if errors are collected.
+            if (!state.addError(ParseErrorCode.INPUT_ERROR, null, ape.getMessage(), tokens)) {
+                throw ape;
             }
+        } finally {
+            state.setTokenCount(tokens);
+        }
+        for (OptionDescriptor missing = s.findMissingRequired(state.getConsumed()); missing != null;
+                missing = s.findMissingRequired(state.getConsumed(), missing.getIndex() + 1)) {
+            fail(state, ParseErrorCode.MISSING_REQUIRED, missing, null, -1);
+        }
+
+        if (ah.isRequired() && state.getArgumentCount() == 0 && ah.isEmpty(target)) {
+            fail(state, ParseErrorCode.MISSING_ARGUMENTS, null, null, -1);
+        }
+        ah.ensureArgument(target);
+        state.storeRepeated();
+        return command;
+    }
+
+    /**
+     * Adds an error to a state if the state collects errors, or throws it.
+     *
+     * @param state a state of a parse.
+     * @param code a kind of the error.
+     * @param option an option in error, or null.
+     * @param value a command line argument or a value in error, or null.
+     * @param position an index of a command line argument in error, or -1.
+     * @throws ArgumentParseException if the state does not collect errors.
+     */
+    private static void fail(ParseState state, ParseErrorCode code, OptionDescriptor option, String value,
+                             int position) throws ArgumentParseException {
+        String name = (option != null) ? option.toString() : null;
+        if (!state.addError(code, name, value, position)) {
+            throw new ArgumentParseException(new ParseError(code, name, value, position).getMessage());
         }
-        for (FieldOptionHandler<?> oh : ohlist) {
-            Option option = oh.getOption();
-            if (option.required()) {
-                throw new ArgumentParseException("option " + oh.toString() + " is required.");
+    }
+
+    /**
+     * Adds an argument to the field annotated by {@link Arguments}.
+     *
+     * @param ah a handler of arguments.
+     * @param arg an argument.
+     * @param state a state which holds a target.
+     * @param position an index of {@code arg} in command line arguments.
+     * @throws ArgumentParseException if the argument is rejected and the state does not collect errors.
+     */
+    private static void addArgument(ArgumentsHandler ah, String arg, ParseState state, int position)
+            throws ArgumentParseException {
+        try {
+            state.addArgument(ah, arg);
+        } catch (ArgumentParseException ape) {
+            if (!state.addError(ParseErrorCode.BAD_ARGUMENT, null, arg, position)) {
+                throw ape;
             }
         }
+    }
 
-        Arguments arguments = ah.getArguments();
-        if (arguments != null && arguments.required() && ah.isEmpty()) {
-            throw new ArgumentParseException("arguments are required.");
+    /**
+     * Parses an option joined with its value, {@code --name=value}, {@code -a=value} or {@code -avalue}. The value
+     * is passed to a handler as a view of {@code arg}, and it can start with '-'.
+     *
+     * @param arg a command line argument which is not an option name.
+     * @param schema a schema of a target.
+     * @param state a state which holds the target.
+     * @param position an index of {@code arg} in command line arguments.
+     * @return a descriptor of the option, or null if no option is found or the value is rejected, and the state
+     * collects errors.
+     * @throws ArgumentParseException if {@code arg} is not an option joined with its value.
+     */
+    private OptionDescriptor loadJoinedOption(String arg, Schema schema, ParseState state, int position)
+            throws ArgumentParseException {
+        OptionDescriptor option = null;
+        int valueStart = arg.indexOf(VALUE_SEPARATOR) + 1;
+        if (valueStart > 1) {
+            option = search(arg, valueStart - 1, schema, state);
+        }
+        if (option == null && arg.length() > 2 && arg.charAt(1) != '-') {
+            // a short option with attached value.
+            valueStart = 2;
+            option = search(arg, valueStart, schema, state);
+            if (option != null && option.isSwitch()) {
+                option = null;
+            }
+        }
+        if (option == null) {
+            fail(state, ParseErrorCode.UNKNOWN_OPTION, null, arg, position);
+            return null;
         }
-        ah.ensureArgument();
+        return convert(option, state, state.slice(arg, valueStart, arg.length()), position) ? option : null;
+    }
 
-        return target;
+    /**
+     * Checks if a command line argument next to an option is a value of the option. {@link Completer} also uses
+     * this, so completion agrees with a parse.
+     *
+     * @param option an option which has a value.
+     * @param value a command line argument next to the option.
+     * @param schema a schema of a target.
+     * @param state a state which holds options which have already been set.
+     * @return false if {@code value} is not a value but an option.
+     */
+    static boolean isValue(OptionDescriptor option, String value, Schema schema, ParseState state) {
+        return (!value.startsWith(OPTION_PREFIX) || option.canAcceptHyphenValue())
+                && search(value, schema, state) == null;
     }
 
     /**
-     * Parses options which has a value.
-     * @param handler a hanlder to hold {@code value}
-     * @param value a valude to be held by {@code handler}
-     * @param ohlist {@link FieldOptionHandler}
-     * @throws ArgumentParseException if no value found for the {@code handler}.
+     * Converts and stores a value of an option.
+     * <p/>
+     * If the state collects errors, a value which the option rejects by {@link OptionDescriptor#isValid} is added
+     * to the errors without conversion, so no exception is created for the value.
+     *
+     * @param option an option.
+     * @param state a state which holds a target.
+     * @param value a value to be stored.
+     * @param position an index of a command line argument which holds {@code value}.
+     * @return true if the value is stored, false if it is rejected and the state collects errors.
+     * @throws ArgumentParseException if the value can not be converted and the state does not collect errors.
      */
-    private void loadValuedOption(FieldOptionHandler<?> handler, String value,
-                                  List<FieldOptionHandler<?>> ohlist) throws ArgumentParseException {
+    private static boolean convert(OptionDescriptor option, ParseState state, CharSequence value, int position)
+            throws ArgumentParseException {
+        if (state.isCollectingErrors() && !option.isValid(value)) {
+            state.addError(ParseErrorCode.BAD_CONVERSION, option.toString(), value.toString(), position);
+            return false;
+        }
+        try {
+            store(option, state, value);
+            return true;
+        } catch (ArgumentParseException ape) {
+            if (!state.addError(ParseErrorCode.BAD_CONVERSION, option.toString(), value.toString(), position)) {
+                throw ape;
+            }
+        } catch (RuntimeException re) {
+            if (!state.addError(ParseErrorCode.BAD_CONVERSION, option.toString(), value.toString(), position)) {
+                throw new ArgumentParseException("failed to parse option " + option.toString(), re);
+            }
+        }
+        return false;
+    }
 
-        if (value.startsWith("-") && !handler.canAcceptHyphenValue()) {
-            throw new ArgumentParseException("no value is found for option " + handler.toString());
+    /**
+     * Stores a value to the target of a state, notifying the listener of the state if registered.
+     *
+     * @param option an option.
+     * @param state a state which holds a target.
+     * @param value a value to be stored.
+     * @throws ArgumentParseException if the value can not be converted or stored.
+     */
+    private static void store(OptionDescriptor option, ParseState state, CharSequence value)
+            throws ArgumentParseException {
+        ParseListener l = state.getListener();
+        if (l == null) {
+            set(option, state, value);
+            return;
         }
-        if (search(value, ohlist) != null) {
-            // error because no value found.
-            throw new ArgumentParseException("no value is found for option " + handler.toString());
+        Class<?> targetClass = state.getTarget().getClass();
+        // failures are reported even if the conversion phase is not received.
+        boolean timed = state.getListener(ParsePhase.CONVERSION) != null;
+        long start = 0L;
+        if (timed) {
+            l.phaseStarted(ParsePhase.CONVERSION, targetClass);
+            start = System.nanoTime();
         }
+        boolean succeeded = false;
         try {
-            handler.set(value);
+            set(option, state, value);
+            succeeded = true;
+        } catch (ArgumentParseException ape) {
+            l.conversionFailed(targetClass, option.getName(), value.toString(), ape);
+            throw ape;
         } catch (RuntimeException re) {
-            throw new ArgumentParseException("failed to parse option " + handler.toString(), re);
+            l.conversionFailed(targetClass, option.getName(), value.toString(), re);
+            throw re;
+        } finally {
+            if (timed) {
+                l.phaseEnded(ParsePhase.CONVERSION, targetClass, succeeded ? 1 : 0, succeeded,
+                        System.nanoTime() - start);
+            }
+        }
+    }
+
+    /**
+     * Stores a value to the target of a state.
+     *
+     * @param option an option.
+     * @param state a state which holds a target.
+     * @param value a value to be stored.
+     * @throws ArgumentParseException if the value can not be converted or stored.
+     */
+    private static void set(OptionDescriptor option, ParseState state, CharSequence value)
+            throws ArgumentParseException {
+        if (option.isRepeatable()) {
+            state.addRepeated(option, value);
+            return;
         }
+        option.handler().set(state.getTarget(), value);
     }
 
     /**
      * Searches handlers.
      *
-     * @param name a name or alias of a handler to be searched.
-     * @param handlers available handlers.
-     * @return a handler that matches name.
+     * @param name a name or alias of an option to be searched.
+     * @param schema a schema which holds handlers.
+     * @param state a state which holds options which have already been set.
+     * @return an option that matches name and is repeatable or not consumed yet.
      */
-    private FieldOptionHandler<?> search(String name, List<FieldOptionHandler<?>> handlers) {
-        for (FieldOptionHandler<?> handler : handlers) {
-            if ((handler.getAlias().length() > 0 && handler.getAlias().equals(name))
-                    || handler.getName().equals(name)) {
-                return handler;
-            }
+    private static OptionDescriptor search(String name, Schema schema, ParseState state) {
+        ParseListener l = state.getListener(ParsePhase.SEARCH);
+        OptionDescriptor option;
+        if (l == null) {
+            option = schema.search(name);
+        } else {
+            l.phaseStarted(ParsePhase.SEARCH, schema.getTargetClass());
+            long start = System.nanoTime();
+            option = schema.search(name);
+            l.phaseEnded(ParsePhase.SEARCH, schema.getTargetClass(), (option != null) ? 1 : 0, true,
+                    System.nanoTime() - start);
         }
-        return null;
+        return (option != null && (option.isRepeatable() || !state.isConsumed(option))) ? option : null;
+    }
+
+    /**
+     * Searches handlers by a prefix of a command line argument.
+     *
+     * @param arg a command line argument which starts with a name or alias of an option to be searched.
+     * @param length a length of the name or alias.
+     * @param schema a schema which holds handlers.
+     * @param state a state which holds options which have already been set.
+     * @return an option that matches the prefix and is repeatable or not consumed yet.
+     */
+    private static OptionDescriptor search(String arg, int length, Schema schema, ParseState state) {
+        ParseListener l = state.getListener(ParsePhase.SEARCH);
+        OptionDescriptor option;
+        if (l == null) {
+            option = schema.search(arg, length);
+        } else {
+            l.phaseStarted(ParsePhase.SEARCH, schema.getTargetClass());
+            long start = System.nanoTime();
+            option = schema.search(arg, length);
+            l.phaseEnded(ParsePhase.SEARCH, schema.getTargetClass(), (option != null) ? 1 : 0, true,
+                    System.nanoTime() - start);
+        }
+        return (option != null && (option.isRepeatable() || !state.isConsumed(option))) ? option : null;
     }
 
     /**
@@ -266,27 +1145,7 @@ public class ArgumentProcessor {
      * @param out an output.
      */
     public void printOneLineUsage(PrintStream out) {
-        StringBuilder usage = new StringBuilder();
-        usage.append("available options : ");
-        for (FieldOptionHandler<?> oh : optionHandlerList) {
-            Option option = oh.getOption();
-
-            if (!option.required()) {
-                usage.append('[');
-            }
-            usage.append(oh.toString());
-            usage.append(' ');
-            String metaName = (option.metaName().length() == 0) ? oh.getField().getName() : option.metaName();
-            usage.append(metaName);
-            if (!option.required()) {
-                usage.append(']');
-            }
-            usage.append(' ');
-        }
-        if (usage.length() > 0) {
-            usage.deleteCharAt(usage.length() - 1);
-        }
-        out.println(usage.toString());
+        out.println(schema.getUsage().getOneLine(0));
     }
 
     /**
@@ -294,30 +1153,47 @@ public class ArgumentProcessor {
      * @param out output.
      */
     public void printUsage(PrintStream out) {
-        StringBuilder usage = new StringBuilder();
-        String ls = System.getProperty("line.separator");
-        usage.append("available options :").append(ls);
-        for (FieldOptionHandler<?> oh : optionHandlerList) {
-            Option option = oh.getOption();
-
-            usage.append(' ');
-            if (oh.getAlias().endsWith(FieldOptionHandler.SHORT_NAME_SUFFIX)) {
-                usage.append("    ");
-            } else {
-                usage.append(oh.getAlias()).append(", ");
-            }
-            String longName = oh.getName().equals(FieldOptionHandler.LONG_NAME_SUFFIX) ? "" : oh.getName();
-            usage.append(longName).append(" : ").append(option.usage());
-            if (option.required()) {
-                usage.append(" (required)");
-            }
-            usage.append(ls);
-        }
+        out.println(schema.getUsage().getLines(0));
+    }
 
-        int length = usage.length();
-        if (length > 0) {
-            usage.delete(length - ls.length(), length);
-        }
-        out.println(usage.toString());
+    /**
+     * Appends one line usage followed by a line separator.
+     * <p/>
+     * Usage is rendered once per schema and cached, so this method only appends the cached text.
+     *
+     * @param out an output, such as {@code Writer} or {@code StringBuilder}.
+     * @param width a terminal width to wrap usage at, or 0 or less not to wrap.
+     * @throws IOException if an I/O error occurs.
+     */
+    public void appendOneLineUsage(Appendable out, int width) throws IOException {
+        out.append(schema.getUsage().getOneLine(width)).append(Usage.LINE_SEPARATOR);
+    }
+
+    /**
+     * Appends usage followed by a line separator.
+     * <p/>
+     * Usage is rendered once per schema and cached, so this method only appends the cached text.
+     *
+     * @param out an output, such as {@code Writer} or {@code StringBuilder}.
+     * @param width a terminal width to wrap usage at, or 0 or less not to wrap.
+     * @throws IOException if an I/O error occurs.
+     */
+    public void appendUsage(Appendable out, int width) throws IOException {
+        out.append(schema.getUsage().getLines(width)).append(Usage.LINE_SEPARATOR);
+    }
+
+    /**
+     * Writes usage followed by a line separator into a buffer.
+     * <p/>
+     * Usage encoded by the last requested charset is cached, so this method only copies the cached bytes.
+     * Unmappable characters are replaced.
+     *
+     * @param out a buffer to write to.
+     * @param charset a charset to encode usage.
+     * @param width a terminal width to wrap usage at, or 0 or less not to wrap.
+     * @throws java.nio.BufferOverflowException if {@code out} has not enough space; nothing is written.
+     */
+    public void writeUsage(ByteBuffer out, Charset charset, int width) {
+        out.put(schema.getUsage().getBytes(width, charset));
     }
 }
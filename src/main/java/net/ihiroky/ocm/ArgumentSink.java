@@ -0,0 +1,21 @@
+package net.ihiroky.ocm;
+
+/**
+ * Receives arguments as they are parsed.
+ * <p/>
+ * A field annotated by {@link Arguments} can be this type instead of {@code java.util.Collection}, so an
+ * application can process arguments while parsing without holding all of them. The field must be set before
+ * parsing because {@link ArgumentProcessor} can not instantiate it.
+ *
+ * @author Hiroki Itoh
+ */
+public interface ArgumentSink {
+
+    /**
+     * Receives an argument.
+     *
+     * @param argument an argument in command line arguments.
+     * @throws ArgumentParseException if the argument is rejected.
+     */
+    void add(String argument) throws ArgumentParseException;
+}
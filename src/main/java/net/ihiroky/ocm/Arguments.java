@@ -7,7 +7,7 @@ import java.lang.annotation.Target;
 
 /**
  * Indicates that an annotated variable holds arguments.
- * The variable is an instance of {@code java.util.List<String>}.
+ * The variable is an instance of {@code java.util.Collection<String>} or {@link ArgumentSink}.
  *
  * @author Hiroki Itoh
   */
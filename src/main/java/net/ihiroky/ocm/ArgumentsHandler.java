@@ -2,7 +2,7 @@ package net.ihiroky.ocm;
 
 import java.lang.reflect.Field;
 import java.util.Collection;
-import java.util.List;
+import java.util.concurrent.BlockingQueue;
 
 /**
  * Holds field reflection object and it's {@link Arguments} annotation to set up a value to the field.
@@ -11,15 +11,27 @@ import java.util.List;
  */
 public class ArgumentsHandler {
 
-    /** an object which has field annotated by {@link Arguments}. */
-    private Object target;
-
-    /** a field (concrete subtype of {@code java.util.Collection}) annotated by {@link Arguments}. */
+    /**
+     * a field (concrete subtype of {@code java.util.Collection} or {@link ArgumentSink}) annotated by
+     * {@link Arguments}.
+     */
     private Field field;
 
+    /** an accessor of the field, resolved once. */
+    private FieldAccessor accessor;
+
+    /** true if the field is {@link ArgumentSink}. */
+    private boolean sinkField;
+
     /** {@link Arguments} annotation. */
     private Arguments arguments;
 
+    /** require flag. */
+    private boolean required;
+
+    /** a generated parser which holds arguments without reflection, or null. */
+    private GeneratedParser<?> parser;
+
     /**
      *
      */
@@ -27,20 +39,29 @@ public class ArgumentsHandler {
     }
 
     /**
-     * Sets a target.
-     * @param target target to be set.
+     * Sets a field, and resolves its accessor.
+     * @param field feld to be set.
      */
-    protected void setTarget(Object target) {
-        this.target = target;
+    protected void setField(Field field) {
+        this.field = field;
+        this.sinkField = ArgumentSink.class.isAssignableFrom(field.getType());
+        this.accessor = FieldAccessors.of(field);
     }
 
     /**
-     * Sets a field.
-     * @param field feld to be set.
+     * Gets a field annotated by {@link Arguments}.
+     * @return a field, or null if no field is annotated or this handler is defined by {@link GeneratedParser}.
      */
-    protected void setField(Field field) {
-        this.field = field;
-        field.setAccessible(true);
+    Field getField() {
+        return field;
+    }
+
+    /**
+     * Sets a require flag without {@link Arguments}, which is read from a {@link SchemaIndex}.
+     * @param argumentsRequired require flag.
+     */
+    void setRequired(boolean argumentsRequired) {
+        this.required = argumentsRequired;
     }
 
     /**
@@ -49,20 +70,43 @@ public class ArgumentsHandler {
      */
     protected void setArguments(Arguments arguments) {
         this.arguments = arguments;
+        this.required = arguments.required();
+    }
+
+    /**
+     * Sets a generated parser which holds arguments instead of reflection.
+     * @param parser a generated parser.
+     * @param argumentsRequired require flag.
+     */
+    void setParser(GeneratedParser<?> parser, boolean argumentsRequired) {
+        this.parser = parser;
+        this.required = argumentsRequired;
     }
 
     /**
      * Allocates {@code List} object to the field if available.
+     * @param target an object which has field annotated by {@link Arguments}.
+     * @return a collection held by the field, or null if no field is annotated by {@link Arguments} or the field is
+     * {@link ArgumentSink}.
      * @throws IllegalStateException if the reflection is failed.
      */
-    protected void ensureArgument() {
+    protected Collection<String> ensureArgument(Object target) {
+        if (parser != null) {
+            return parser.arguments(target, true);
+        }
+        if (field == null || sinkField) {
+            return null;
+        }
         try {
-
-            if (field != null && field.get(target) == null) {
+            @SuppressWarnings("unchecked")
+            Collection<String> c = (Collection<String>) accessor.get(target);
+            if (c == null) {
                 @SuppressWarnings("unchecked")
-                Collection<String> c = (Collection<String>) field.getType().newInstance();
-                field.set(target, c);
+                Collection<String> nc = (Collection<String>) field.getType().newInstance();
+                accessor.set(target, nc);
+                c = nc;
             }
+            return c;
         } catch (Exception e) {
             throw new IllegalStateException("failed to assign an object. "
                     + field.getName() + " must be a concrete subtype of java.util.Collection<String>.", e);
@@ -71,27 +115,107 @@ public class ArgumentsHandler {
 
     /**
      * Gets {@link Arguments}.
-     * @return arguments.
+     * @return arguments, or null if no field is annotated or this handler is defined by {@link GeneratedParser} or
+     * read from a {@link SchemaIndex}.
      */
     public Arguments getArguments() {
         return arguments;
     }
 
+    /**
+     * Checks if arguments are required.
+     * @return true if arguments are required.
+     */
+    public boolean isRequired() {
+        return required;
+    }
+
+    /**
+     * Binds a sink which receives arguments for a target.
+     * <p/>
+     * If the field is {@link ArgumentSink}, the field value is returned. Otherwise, a sink which adds arguments to
+     * the collection held by the field is returned; arguments are put to a {@code BlockingQueue}, which blocks
+     * while the queue is full, and appended to a {@link CompactStringList}, which is read-only for others.
+     *
+     * @param target an object which has field annotated by {@link Arguments}.
+     * @return a sink, or null if no field is annotated by {@link Arguments}.
+     * @throws IllegalStateException if the reflection is failed or the {@link ArgumentSink} field is null.
+     */
+    protected ArgumentSink bind(Object target) {
+        return bind(target, null);
+    }
+
+    /**
+     * Binds a sink which receives arguments for a target, reusing a sink bound for a previous target if it adds
+     * arguments to the same collection, e.g. a target reset by {@link ArgumentProcessor#reset(Object)}.
+     *
+     * @param target an object which has field annotated by {@link Arguments}.
+     * @param last a sink bound for a previous target, or null.
+     * @return a sink, or null if no field is annotated by {@link Arguments}.
+     * @throws IllegalStateException if the reflection is failed or the {@link ArgumentSink} field is null.
+     */
+    @SuppressWarnings("unchecked")
+    ArgumentSink bind(Object target, ArgumentSink last) {
+        if (sinkField) {
+            ArgumentSink sink;
+            try {
+                sink = (ArgumentSink) accessor.get(target);
+            } catch (IllegalAccessException iae) {
+                throw new IllegalStateException("failed to get argument " + field.getName(), iae);
+            }
+            if (sink == null) {
+                throw new IllegalStateException(field.getName() + " must be set before parsing.");
+            }
+            return sink;
+        }
+        Collection<String> c = ensureArgument(target);
+        if (c == null) {
+            return null;
+        }
+        if (last instanceof BoundSink && ((BoundSink) last).collection == c) {
+            return last;
+        }
+        if (c instanceof CompactStringList) {
+            return new CompactSink((CompactStringList) c);
+        }
+        return (c instanceof BlockingQueue) ? new QueueSink((BlockingQueue<String>) c) : new CollectionSink(c);
+    }
+
     /**
      * Adds an argument.
+     * <p/>
+     * The sink is bound only if {@code sink} is null, so a caller can keep the returned sink and pass it for the
+     * following arguments to avoid reflection on each argument.
      *
+     * @param target an object which has field annotated by {@link Arguments}.
+     * @param sink a sink returned by the previous call, or null.
      * @param value - an argument in command line arguments。
-     * @throws ArgumentParseException if a reflection is failed.
+     * @return the sink bound to the field.
+     * @throws ArgumentParseException if a reflection is failed or the sink rejects the argument.
      */
-    @SuppressWarnings("unchecked")
-    public void add(String value) throws ArgumentParseException {
+    public ArgumentSink add(Object target, ArgumentSink sink, String value) throws ArgumentParseException {
+        return add(target, sink, null, value);
+    }
+
+    /**
+     * Adds an argument, reusing a sink bound for a previous target if {@code sink} is null.
+     *
+     * @param target an object which has field annotated by {@link Arguments}.
+     * @param sink a sink returned by the previous call for {@code target}, or null.
+     * @param last a sink bound for a previous target, or null.
+     * @param value an argument in command line arguments.
+     * @return the sink bound to the field.
+     * @throws ArgumentParseException if a reflection is failed or the sink rejects the argument.
+     * @see #bind(Object, ArgumentSink)
+     */
+    ArgumentSink add(Object target, ArgumentSink sink, ArgumentSink last, String value)
+            throws ArgumentParseException {
         try {
-            ensureArgument();
-            Collection<String> args = (Collection<String>) field.get(target);
-            args.add(value);
-        } catch (ClassCastException cce) {
-            throw new ArgumentParseException(
-                    "a field annotated by @Arguments must be a instance of java.util.List", cce);
+            ArgumentSink s = (sink != null) ? sink : bind(target, last);
+            s.add(value);
+            return s;
+        } catch (ArgumentParseException ape) {
+            throw ape;
         } catch (Exception e) {
             throw new ArgumentParseException("failed to set argument " + value, e);
         }
@@ -100,16 +224,107 @@ public class ArgumentsHandler {
     /**
      * Checks if the field has no value.
      *
-     * @return true if fields has no value.
+     * @param target an object which has field annotated by {@link Arguments}.
+     * @return true if fields has no value, or the field is {@link ArgumentSink}.
      */
-    @SuppressWarnings("unchecked")
-    public boolean isEmpty() {
+    public boolean isEmpty(Object target) {
+        if (sinkField) {
+            return true;
+        }
         try {
-            List<String> args = (List<String>) field.get(target);
+            Collection<?> args = (parser != null)
+                    ? parser.arguments(target, false) : (Collection<?>) accessor.get(target);
             return (args == null || args.isEmpty());
         } catch (Exception e) {
             //
             throw new Error("failed to get argument " + field.getName(), e);
         }
     }
+
+    /**
+     * A sink bound to a collection held by a field annotated by {@link Arguments}.
+     */
+    private abstract static class BoundSink implements ArgumentSink {
+
+        /** a collection which receives arguments. */
+        final Collection<String> collection;
+
+        /**
+         * Constructs a new instance.
+         * @param collection a collection which receives arguments.
+         */
+        BoundSink(Collection<String> collection) {
+            this.collection = collection;
+        }
+    }
+
+    /**
+     * Adds arguments to a collection.
+     */
+    private static final class CollectionSink extends BoundSink {
+
+        /**
+         * Constructs a new instance.
+         * @param collection a collection to add arguments to.
+         */
+        CollectionSink(Collection<String> collection) {
+            super(collection);
+        }
+
+        @Override
+        public void add(String argument) {
+            collection.add(argument);
+        }
+    }
+
+    /**
+     * Puts arguments to a queue, waiting for space to become available.
+     */
+    private static final class QueueSink extends BoundSink {
+
+        /** a queue held by a field annotated by {@link Arguments}. */
+        private final BlockingQueue<String> queue;
+
+        /**
+         * Constructs a new instance.
+         * @param queue a queue to put arguments to.
+         */
+        QueueSink(BlockingQueue<String> queue) {
+            super(queue);
+            this.queue = queue;
+        }
+
+        @Override
+        public void add(String argument) throws ArgumentParseException {
+            try {
+                queue.put(argument);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new ArgumentParseException("interrupted while putting argument " + argument, ie);
+            }
+        }
+    }
+
+    /**
+     * Appends arguments to a compact list.
+     */
+    private static final class CompactSink extends BoundSink {
+
+        /** a list held by a field annotated by {@link Arguments}. */
+        private final CompactStringList list;
+
+        /**
+         * Constructs a new instance.
+         * @param list a list to append arguments to.
+         */
+        CompactSink(CompactStringList list) {
+            super(list);
+            this.list = list;
+        }
+
+        @Override
+        public void add(String argument) {
+            list.append(argument);
+        }
+    }
 }
@@ -0,0 +1,45 @@
+package net.ihiroky.ocm;
+
+/**
+ * Provides tokens in an array.
+ * <p/>
+ * An instance can be reused for another array by {@link #reset(String[])}.
+ *
+ * @author Hiroki Itoh
+ */
+final class ArrayTokenSource implements TokenSource {
+
+    /** tokens. */
+    private String[] tokens;
+
+    /** an index of the next token. */
+    private int index;
+
+    /**
+     * Constructs a new instance.
+     * @param tokens tokens to be provided.
+     */
+    ArrayTokenSource(String[] tokens) {
+        this.tokens = tokens;
+    }
+
+    /**
+     * Provides tokens in another array from the beginning.
+     * @param newTokens tokens to be provided.
+     * @return this instance.
+     */
+    ArrayTokenSource reset(String[] newTokens) {
+        this.tokens = newTokens;
+        this.index = 0;
+        return this;
+    }
+
+    @Override
+    public String next() {
+        return (index < tokens.length) ? tokens[index++] : null;
+    }
+
+    @Override
+    public void close() {
+    }
+}
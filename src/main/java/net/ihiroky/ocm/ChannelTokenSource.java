@@ -0,0 +1,279 @@
+package net.ihiroky.ocm;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+
+/**
+ * Splits bytes read from a channel into tokens.
+ * <p/>
+ * Bytes are decoded in chunks, so the whole content is never held in memory. A {@code FileChannel} of a regular
+ * file is memory-mapped window by window from its position instead of being copied into a buffer. A
+ * {@code FileChannel} whose size is 0, like a pipe of {@code /dev/stdin} or {@code <(command)}, is read as a stream
+ * as other channels. Tokens are separated by NUL ({@link Mode#NUL}) like
+ * {@code find -print0}, or by white spaces ({@link Mode#WHITESPACE}) like javac's {@code @file}, where a quoted
+ * part by {@code "} or {@code '} can contain white spaces.
+ *
+ * @author Hiroki Itoh
+ */
+final class ChannelTokenSource implements TokenSource {
+
+    /**
+     * Delimiter mode.
+     */
+    enum Mode {
+        /** tokens are terminated by NUL. */
+        NUL,
+        /** tokens are separated by white spaces and can be quoted. */
+        WHITESPACE,
+    }
+
+    /** a channel to read. */
+    private final ReadableByteChannel channel;
+
+    /** the channel as a {@code FileChannel} to be memory-mapped, or null if the channel is read as a stream. */
+    private final FileChannel file;
+
+    /** a name of the channel, used in error messages. */
+    private final String name;
+
+    /** true if the channel is closed by {@link #close()}. */
+    private final boolean ownChannel;
+
+    /** delimiter mode. */
+    private final Mode mode;
+
+    /** a decoder. */
+    private final CharsetDecoder decoder;
+
+    /** bytes not decoded yet. */
+    private ByteBuffer bytes;
+
+    /** a file position of {@code bytes} if the channel is a file. */
+    private long mappedPosition;
+
+    /** decoded characters not tokenized yet. */
+    private final CharBuffer chars;
+
+    /** a part of the current token which spans chunks. */
+    private final StringBuilder pending = new StringBuilder();
+
+    /** a quote character in which the current position is, or 0. */
+    private char quote;
+
+    /** true if the current token has started; a quoted empty token is a token. */
+    private boolean inToken;
+
+    /** true if all bytes are decoded. */
+    private boolean endOfInput;
+
+    /** the size of a window mapped at once. */
+    private static final int MAP_SIZE = 8 * 1024 * 1024;
+
+    /** the size of a buffer to read a channel which is not a file. */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /** the size of a buffer to hold decoded characters. */
+    private static final int CHAR_BUFFER_SIZE = 16 * 1024;
+
+    /**
+     * Constructs a new instance.
+     *
+     * @param channel a channel to read.
+     * @param name a name of the channel, used in error messages.
+     * @param ownChannel true if {@code channel} is closed by {@link #close()}.
+     * @param mode delimiter mode.
+     * @param charset a charset of the channel.
+     */
+    ChannelTokenSource(ReadableByteChannel channel, String name, boolean ownChannel, Mode mode, Charset charset) {
+        FileChannel f = null;
+        long position = 0;
+        if (channel instanceof FileChannel) {
+            try {
+                FileChannel fc = (FileChannel) channel;
+                position = fc.position();
+                if (fc.size() > 0) {
+                    f = fc;
+                }
+            } catch (IOException ioe) {
+                // read as a stream, which reports an error if it remains.
+                position = 0;
+            }
+        }
+        this.channel = channel;
+        this.file = f;
+        this.mappedPosition = position;
+        this.name = name;
+        this.ownChannel = ownChannel;
+        this.mode = mode;
+        this.decoder = charset.newDecoder();
+        this.bytes = (file != null) ? ByteBuffer.allocate(0) : (ByteBuffer) ByteBuffer.allocate(BUFFER_SIZE).flip();
+        this.chars = (CharBuffer) CharBuffer.allocate(CHAR_BUFFER_SIZE).flip();
+    }
+
+    @Override
+    public String next() throws ArgumentParseException {
+        try {
+            for (;;) {
+                if (!chars.hasRemaining() && !fill()) {
+                    return finish();
+                }
+                String token = (mode == Mode.NUL) ? scanNul() : scanWhitespace();
+                if (token != null) {
+                    return token;
+                }
+            }
+        } catch (IOException ioe) {
+            throw new ArgumentParseException("failed to read arguments from " + name, ioe);
+        }
+    }
+
+    /**
+     * Returns the last token at the end of input.
+     * @return the last token, or null if no token remains.
+     * @throws ArgumentParseException if a quote is not closed.
+     */
+    private String finish() throws ArgumentParseException {
+        if (quote != 0) {
+            throw new ArgumentParseException("unclosed quote " + quote + " in " + name);
+        }
+        if (!inToken && pending.length() == 0) {
+            return null;
+        }
+        return takePending();
+    }
+
+    /**
+     * Scans characters for a token terminated by NUL.
+     * @return a token, or null if the current chunk has no NUL.
+     */
+    private String scanNul() {
+        char[] a = chars.array();
+        int start = chars.arrayOffset() + chars.position();
+        int end = chars.arrayOffset() + chars.limit();
+        for (int i = start; i < end; i++) {
+            if (a[i] == '\0') {
+                chars.position(chars.position() + i - start + 1);
+                if (pending.length() == 0) {
+                    return new String(a, start, i - start);
+                }
+                pending.append(a, start, i - start);
+                return takePending();
+            }
+        }
+        pending.append(a, start, end - start);
+        chars.position(chars.limit());
+        return null;
+    }
+
+    /**
+     * Scans characters for a token separated by white spaces.
+     * @return a token, or null if the current chunk has no end of a token.
+     */
+    private String scanWhitespace() {
+        while (chars.hasRemaining()) {
+            char c = chars.get();
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                } else {
+                    pending.append(c);
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+                inToken = true;
+            } else if (Character.isWhitespace(c)) {
+                if (inToken) {
+                    return takePending();
+                }
+            } else {
+                pending.append(c);
+                inToken = true;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the current token and clears it.
+     * @return the current token.
+     */
+    private String takePending() {
+        String token = pending.toString();
+        pending.setLength(0);
+        inToken = false;
+        return token;
+    }
+
+    /**
+     * Decodes the next chunk into {@code chars}.
+     * @return false if no character remains.
+     * @throws IOException if an I/O error occurs or bytes are malformed.
+     */
+    private boolean fill() throws IOException {
+        if (endOfInput) {
+            return false;
+        }
+        chars.clear();
+        try {
+            for (;;) {
+                CoderResult result = decoder.decode(bytes, chars, false);
+                if (result.isError()) {
+                    result.throwException();
+                }
+                if (chars.position() > 0) {
+                    return true;
+                }
+                if (!read()) {
+                    result = decoder.decode(bytes, chars, true);
+                    if (result.isError()) {
+                        result.throwException();
+                    }
+                    decoder.flush(chars);
+                    endOfInput = true;
+                    return chars.position() > 0;
+                }
+            }
+        } finally {
+            chars.flip();
+        }
+    }
+
+    /**
+     * Reads the next bytes, keeping bytes which are not decoded yet.
+     * @return false if the end of the channel is reached.
+     * @throws IOException if an I/O error occurs.
+     */
+    private boolean read() throws IOException {
+        if (file != null) {
+            long position = mappedPosition + bytes.position();
+            long size = file.size();
+            if (position + bytes.remaining() >= size) {
+                // consumed as if it was read as a stream.
+                file.position(Math.max(size, file.position()));
+                return false;
+            }
+            bytes = file.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAP_SIZE, size - position));
+            mappedPosition = position;
+            return true;
+        }
+        bytes.compact();
+        try {
+            return channel.read(bytes) >= 0;
+        } finally {
+            bytes.flip();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (ownChannel) {
+            channel.close();
+        }
+    }
+}
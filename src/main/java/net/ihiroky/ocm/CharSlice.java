@@ -0,0 +1,59 @@
+package net.ihiroky.ocm;
+
+/**
+ * A view of a part of a string, which is reused to pass a part of a command line argument to handlers.
+ *
+ * @author Hiroki Itoh
+ */
+final class CharSlice implements CharSequence {
+
+    /** a string which this view refers to. */
+    private String source;
+
+    /** a start index in {@code source}, inclusive. */
+    private int start;
+
+    /** an end index in {@code source}, exclusive. */
+    private int end;
+
+    /**
+     * Makes this view refer to a part of a string.
+     *
+     * @param s a string to refer to.
+     * @param startIndex a start index, inclusive.
+     * @param endIndex an end index, exclusive.
+     * @return this view.
+     */
+    CharSlice set(String s, int startIndex, int endIndex) {
+        this.source = s;
+        this.start = startIndex;
+        this.end = endIndex;
+        return this;
+    }
+
+    @Override
+    public int length() {
+        return end - start;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= end - start) {
+            throw new IndexOutOfBoundsException("index : " + index + ", length : " + (end - start));
+        }
+        return source.charAt(start + index);
+    }
+
+    @Override
+    public CharSequence subSequence(int startIndex, int endIndex) {
+        if (startIndex < 0 || endIndex > end - start || startIndex > endIndex) {
+            throw new IndexOutOfBoundsException("start : " + startIndex + ", end : " + endIndex);
+        }
+        return source.substring(start + startIndex, start + endIndex);
+    }
+
+    @Override
+    public String toString() {
+        return source.substring(start, end);
+    }
+}
@@ -0,0 +1,130 @@
+package net.ihiroky.ocm;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * A read-only {@code List<String>} which stores characters of all elements in a single buffer.
+ * <p/>
+ * A field annotated by {@link Arguments} can be this type to hold a huge number of arguments. Characters of
+ * arguments are appended to one contiguous {@code char} array with a table of offsets, so an element costs only its
+ * characters and an {@code int}, instead of a {@code String} object and a slot of a list. A {@code String} is
+ * created on each access by {@link #get(int)}.
+ * <p/>
+ * Elements are added only by {@link ArgumentProcessor}; methods to modify this list throw
+ * {@code UnsupportedOperationException} except {@link #clear()}, which is supported to reuse a target. This class is
+ * not thread-safe.
+ *
+ * @author Hiroki Itoh
+ */
+public final class CompactStringList extends AbstractList<String> implements RandomAccess {
+
+    /** characters of all elements. */
+    private char[] chars;
+
+    /** start offsets of elements in {@code chars}, followed by the end offset of the last element. */
+    private int[] offsets;
+
+    /** the number of elements. */
+    private int size;
+
+    /** an initial capacity of {@code chars}. */
+    private static final int INITIAL_CHARS = 256;
+
+    /** an initial capacity of {@code offsets}. */
+    private static final int INITIAL_OFFSETS = 32;
+
+    /**
+     * Constructs an empty list.
+     */
+    public CompactStringList() {
+        chars = new char[INITIAL_CHARS];
+        offsets = new int[INITIAL_OFFSETS];
+    }
+
+    /**
+     * Appends an element.
+     *
+     * @param value an element to be appended.
+     */
+    void append(String value) {
+        int length = value.length();
+        int start = offsets[size];
+        int end = start + length;
+        if (end < 0) {
+            throw new OutOfMemoryError("too many characters.");
+        }
+        if (end > chars.length) {
+            chars = Arrays.copyOf(chars, Math.max(chars.length << 1, end));
+        }
+        value.getChars(0, length, chars, start);
+        if (size + 2 > offsets.length) {
+            offsets = Arrays.copyOf(offsets, offsets.length << 1);
+        }
+        offsets[++size] = end;
+        modCount++;
+    }
+
+    /**
+     * Returns an element at a specified position, which is created on each call.
+     *
+     * @param index an index of the element.
+     * @return the element.
+     * @throws IndexOutOfBoundsException if {@code index} is out of range.
+     */
+    @Override
+    public String get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index : " + index + ", size : " + size);
+        }
+        int start = offsets[index];
+        return new String(chars, start, offsets[index + 1] - start);
+    }
+
+    /**
+     * Returns the length of an element without creating a {@code String}.
+     *
+     * @param index an index of the element.
+     * @return the length of the element.
+     * @throws IndexOutOfBoundsException if {@code index} is out of range.
+     */
+    public int length(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index : " + index + ", size : " + size);
+        }
+        return offsets[index + 1] - offsets[index];
+    }
+
+    /**
+     * Returns the number of elements.
+     *
+     * @return the number of elements.
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes all elements. Buffers are kept to append elements again.
+     */
+    @Override
+    public void clear() {
+        size = 0;
+        modCount++;
+    }
+
+    /**
+     * Shrinks buffers to the size of elements, to minimize retained heap after a parse.
+     */
+    public void trimToSize() {
+        int end = offsets[size];
+        if (end < chars.length) {
+            chars = Arrays.copyOf(chars, end);
+        }
+        if (size + 1 < offsets.length) {
+            offsets = Arrays.copyOf(offsets, size + 1);
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package net.ihiroky.ocm;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Completes command line arguments with compiled schemas, and renders a bash completion script from them.
+ * <p/>
+ * Candidates are found by {@link PrefixTrie}s of option names and subcommand names, which are built once per schema
+ * and per processor. Tokens before the word to be completed are walked in the same way as a parse, but no target is
+ * created and no value is converted.
+ *
+ * @author Hiroki Itoh
+ */
+final class Completer {
+
+    /**
+     * Not instantiated.
+     */
+    private Completer() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Finds candidates of the last word.
+     *
+     * @param schema a schema of a target, or global options if {@code subcommands} is not empty.
+     * @param subcommands subcommands indexed by their names.
+     * @param names a trie of subcommand names.
+     * @param listener a listener to be notified of {@link ParsePhase#SCHEMA}, or null.
+     * @param words command line arguments, the last of which is a word to be completed.
+     * @return candidates in lexicographic order, which is empty if the word is a value or an argument.
+     */
+    static List<String> complete(Schema schema, Map<String, Subcommand> subcommands, PrefixTrie<String> names,
+                                 ParseListener listener, String[] words) {
+        int last = words.length - 1;
+        String word = (last >= 0) ? words[last] : "";
+        Schema s = schema;
+        boolean selecting = !subcommands.isEmpty();
+        boolean argumentOnly = false;
+        // holds options which appear, without a target or a listener.
+        ParseState state = new ParseState(s, null);
+        for (int i = 0; i < last; i++) {
+            String w = words[i];
+            if (argumentOnly || !w.startsWith(ArgumentProcessor.OPTION_PREFIX)) {
+                if (selecting) {
+                    Subcommand subcommand = subcommands.get(w);
+                    if (subcommand == null) {
+                        return Collections.emptyList();
+                    }
+                    s = subcommand.schema(listener);
+                    selecting = false;
+                    argumentOnly = false;
+                    state = new ParseState(s, null);
+                }
+                continue;
+            }
+            if (w.equals(ArgumentProcessor.ARGUMENT_ONLY)) {
+                argumentOnly = true;
+                continue;
+            }
+            OptionDescriptor option = s.search(w);
+            if (option == null) {
+                option = searchJoined(w, s);
+                if (option != null) {
+                    state.consume(option);
+                }
+                continue;
+            }
+            if (!option.isSwitch()) {
+                if (i + 1 == last) {
+                    // the word is a value.
+                    return Collections.emptyList();
+                }
+                if (ArgumentProcessor.isValue(option, words[i + 1], s, state)) {
+                    i++;
+                }
+            }
+            state.consume(option);
+        }
+
+        List<String> keys = new ArrayList<String>();
+        if (selecting && (argumentOnly || !word.startsWith(ArgumentProcessor.OPTION_PREFIX))) {
+            names.collect(word, keys, new ArrayList<String>());
+        } else if (!argumentOnly && word.startsWith(ArgumentProcessor.OPTION_PREFIX)
+                && word.indexOf(ArgumentProcessor.VALUE_SEPARATOR) < 0) {
+            List<OptionDescriptor> options = new ArrayList<OptionDescriptor>();
+            s.getOptionTrie().collect(word, keys, options);
+            for (int i = keys.size() - 1; i >= 0; i--) {
+                OptionDescriptor option = options.get(i);
+                if (state.isConsumed(option) && !option.isRepeatable()) {
+                    keys.remove(i);
+                }
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Searches an option joined with its value, {@code --name=value}, {@code -a=value} or {@code -avalue}.
+     *
+     * @param w a command line argument.
+     * @param schema a schema.
+     * @return a descriptor of the option, or null if not found.
+     */
+    private static OptionDescriptor searchJoined(String w, Schema schema) {
+        int separator = w.indexOf(ArgumentProcessor.VALUE_SEPARATOR);
+        OptionDescriptor option = (separator > 1) ? schema.search(w, separator) : null;
+        if (option == null && w.length() > 2 && w.charAt(1) != '-') {
+            option = schema.search(w, 2);
+        }
+        return option;
+    }
+
+    /**
+     * Appends a bash completion script, which completes names of options and subcommands without starting a JVM.
+     * <p/>
+     * The script completes option names after '-', and subcommand names at the first argument. A value of an option
+     * and an argument are completed by the default completion of bash, which is file names.
+     *
+     * @param out an output.
+     * @param command a command name to be completed.
+     * @param schema a schema of a target, or global options if {@code subcommands} is not empty.
+     * @param subcommands subcommands indexed by their names.
+     * @param listener a listener to be notified of {@link ParsePhase#SCHEMA}, or null.
+     * @throws IOException if an I/O error occurs.
+     */
+    static void appendBashScript(Appendable out, String command, Schema schema,
+                                 Map<String, Subcommand> subcommands, ParseListener listener) throws IOException {
+        String function = "_ocm_" + identifier(command);
+        String n = "\n"; // bash does not accept CR.
+        Map<String, Subcommand> sorted = new TreeMap<String, Subcommand>(subcommands);
+
+        out.append("# bash completion for ").append(command).append(", generated by ocm.").append(n);
+        out.append("# source this file in bash, or in zsh after 'autoload -U bashcompinit && bashcompinit'.")
+                .append(n);
+        out.append(function).append("_options() {").append(n);
+        out.append("    case $1 in").append(n);
+        appendOptions(out, "''", schema);
+        for (Map.Entry<String, Subcommand> entry : sorted.entrySet()) {
+            appendOptions(out, quote(entry.getKey()), entry.getValue().schema(listener));
+        }
+        out.append("        *) opts=; valued=' ';;").append(n);
+        out.append("    esac").append(n);
+        out.append('}').append(n);
+
+        StringBuilder commands = new StringBuilder();
+        for (String name : sorted.keySet()) {
+            commands.append((commands.length() == 0) ? "" : " ").append(name);
+        }
+        out.append(function).append("() {").append(n);
+        out.append("    local cur=${COMP_WORDS[COMP_CWORD]} commands=").append(quote(commands.toString()))
+                .append(n);
+        out.append("    local opts valued sub= dd=0 i w").append(n);
+        out.append("    ").append(function).append("_options ''").append(n);
+        out.append("    for ((i = 1; i < COMP_CWORD; i++)); do").append(n);
+        out.append("        w=${COMP_WORDS[i]}").append(n);
+        out.append("        if [[ -n $commands && -z $sub && ( $dd == 1 || $w != -* ) ]]; then").append(n);
+        out.append("            sub=$w dd=0").append(n);
+        out.append("            ").append(function).append("_options \"$sub\"").append(n);
+        out.append("        elif [[ $dd == 1 ]]; then").append(n);
+        out.append("            :").append(n);
+        out.append("        elif [[ $w == -- ]]; then").append(n);
+        out.append("            dd=1").append(n);
+        out.append("        elif [[ $valued == *\" $w \"* ]]; then").append(n);
+        out.append("            ((i++))").append(n);
+        out.append("        fi").append(n);
+        out.append("    done").append(n);
+        out.append("    if ((i > COMP_CWORD)); then").append(n);
+        out.append("        return").append(n);
+        out.append("    fi").append(n);
+        out.append("    if [[ -n $commands && -z $sub && ( $dd == 1 || $cur != -* ) ]]; then").append(n);
+        out.append("        COMPREPLY=($(compgen -W \"$commands\" -- \"$cur\"))").append(n);
+        out.append("    elif [[ $dd == 0 && $cur == -* ]]; then").append(n);
+        out.append("        COMPREPLY=($(compgen -W \"$opts\" -- \"$cur\"))").append(n);
+        out.append("    fi").append(n);
+        out.append('}').append(n);
+        out.append("complete -o default -F ").append(function).append(' ').append(quote(command)).append(n);
+    }
+
+    /**
+     * Appends a case clause which sets option names of a schema to {@code opts}, and names of options which have a
+     * value to {@code valued}.
+     *
+     * @param out an output.
+     * @param pattern a quoted pattern of the case clause.
+     * @param schema a schema.
+     * @throws IOException if an I/O error occurs.
+     */
+    private static void appendOptions(Appendable out, String pattern, Schema schema) throws IOException {
+        StringBuilder opts = new StringBuilder();
+        StringBuilder valued = new StringBuilder(" ");
+        List<String> keys = new ArrayList<String>();
+        List<OptionDescriptor> options = new ArrayList<OptionDescriptor>();
+        schema.getOptionTrie().collect("", keys, options);
+        for (int i = 0; i < keys.size(); i++) {
+            String key = keys.get(i);
+            opts.append((opts.length() == 0) ? "" : " ").append(key);
+            if (!options.get(i).isSwitch()) {
+                valued.append(key).append(' ');
+            }
+        }
+        out.append("        ").append(pattern).append(") opts=").append(quote(opts.toString()))
+                .append("; valued=").append(quote(valued.toString())).append(";;\n");
+    }
+
+    /**
+     * Quotes a string for a shell.
+     *
+     * @param s a string.
+     * @return the string quoted by single quotes.
+     */
+    private static String quote(String s) {
+        return '\'' + s.replace("'", "'\\''") + '\'';
+    }
+
+    /**
+     * Converts a command name to a shell function name.
+     *
+     * @param command a command name.
+     * @return the name whose characters other than letters, digits and '_' are replaced with '_'.
+     */
+    private static String identifier(String command) {
+        StringBuilder b = new StringBuilder(command.length());
+        for (int i = 0; i < command.length(); i++) {
+            char c = command.charAt(i);
+            b.append((c < 0x80 && (Character.isLetterOrDigit(c) || c == '_')) ? c : '_');
+        }
+        return b.toString();
+    }
+}
@@ -0,0 +1,30 @@
+package net.ihiroky.ocm;
+
+/**
+ * Converts a value of an option to a type which is not supported by built-in handlers.
+ * <p/>
+ * A converter is registered once by {@link Converters#register(Class, Converter)} and shared by all options of the
+ * type, all schemas and threads. So a converter has to be stateless and thread-safe. It is resolved when a schema
+ * is compiled, and a value is stored to a field by the same handler as a built-in type.
+ *
+ * @param <T> a type converted to.
+ * @author Hiroki Itoh
+ */
+public interface Converter<T> {
+
+    /**
+     * Converts a value.
+     *
+     * @param value a value of an option.
+     * @return a converted value.
+     * @throws Exception if {@code value} can not be converted.
+     */
+    T convert(String value) throws Exception;
+
+    /**
+     * Checks if this converter can accept a value which starts with '-'.
+     *
+     * @return true if this converter can accept a value which starts with '-'.
+     */
+    boolean canAcceptHyphenValue();
+}
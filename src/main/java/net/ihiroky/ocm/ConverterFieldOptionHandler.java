@@ -0,0 +1,45 @@
+package net.ihiroky.ocm;
+
+/**
+ * Stores a value converted by a {@link Converter} to a field.
+ *
+ * @author Hiroki Itoh
+ */
+final class ConverterFieldOptionHandler extends FieldOptionHandler<Object> {
+
+    /** a converter shared by options of the same type. */
+    private final Converter<?> converter;
+
+    /**
+     * Constructs a new instance.
+     * @param converter a converter of the field type.
+     */
+    ConverterFieldOptionHandler(Converter<?> converter) {
+        this.converter = converter;
+    }
+
+    /**
+     * Converts a value by the converter.
+     * @return a converted value.
+     * @throws IllegalArgumentException if the converter throws a checked exception, which is its cause.
+     */
+    @Override
+    public Object handle(String value) {
+        try {
+            return converter.convert(value);
+        } catch (RuntimeException re) {
+            throw re;
+        } catch (Exception e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * @return a result of {@link Converter#canAcceptHyphenValue()}.
+     */
+    @Override
+    public boolean canAcceptHyphenValue() {
+        return converter.canAcceptHyphenValue();
+    }
+}
@@ -0,0 +1,19 @@
+package net.ihiroky.ocm;
+
+/**
+ * Provides {@link Converter}s which are registered when {@link Converters} is initialized.
+ * <p/>
+ * Providers are found by {@code java.util.ServiceLoader} from
+ * {@code META-INF/services/net.ihiroky.ocm.ConverterProvider}, such as the one in the ocm-jdk8 module which converts
+ * {@code java.nio.file.Path} and {@code java.time.Duration} without reflection. A provider which can not be loaded
+ * in the running JVM is skipped.
+ *
+ * @author Hiroki Itoh
+ */
+public interface ConverterProvider {
+
+    /**
+     * Registers converters by {@link Converters#register(Class, Converter)}.
+     */
+    void registerConverters();
+}
@@ -0,0 +1,280 @@
+package net.ihiroky.ocm;
+
+import java.io.File;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+/**
+ * Holds {@link Converter}s for option types which are not supported by built-in handlers.
+ * <p/>
+ * Converters for {@code java.io.File}, {@code java.net.URI}, {@code java.net.InetSocketAddress},
+ * {@code java.math.BigDecimal} and {@code java.math.BigInteger} are registered by default. Converters provided by
+ * {@link ConverterProvider}s found by {@code java.util.ServiceLoader} are registered next, such as the ones for
+ * {@code java.nio.file.Path} and {@code java.time.Duration} in the ocm-jdk8 module. Other types, such as application
+ * specific ID types, are supported by registering converters.
+ * <p/>
+ * Without the ocm-jdk8 module, {@code java.nio.file.Path} and {@code java.time.Duration} are still registered if
+ * they are available in the running JVM, but these converters call the factory methods through
+ * {@code java.lang.reflect.Method}, which costs a reflective call and a varargs array on each value.
+ * <p/>
+ * Converters are registered globally because schemas are shared by all {@link ArgumentProcessor}s. Registering or
+ * unregistering a converter discards cached schemas, so they should be registered at startup before any parse.
+ * A processor which has already bound a schema by {@link ArgumentProcessor#ArgumentProcessor(Class)} keeps it.
+ * This class is thread-safe.
+ *
+ * @author Hiroki Itoh
+ */
+public final class Converters {
+
+    /** registered converters, which is replaced on each registration. */
+    private static volatile Map<Class<?>, Converter<?>> converters = Collections.emptyMap();
+
+    /** an empty array passed to {@code Paths.get(String, String...)}. */
+    private static final String[] NO_MORE = new String[0];
+
+    static {
+        register(File.class, new Converter<File>() {
+            @Override
+            public File convert(String value) {
+                return new File(value);
+            }
+
+            @Override
+            public boolean canAcceptHyphenValue() {
+                return false;
+            }
+        });
+        register(URI.class, new Converter<URI>() {
+            @Override
+            public URI convert(String value) throws Exception {
+                return new URI(value);
+            }
+
+            @Override
+            public boolean canAcceptHyphenValue() {
+                return false;
+            }
+        });
+        register(InetSocketAddress.class, new Converter<InetSocketAddress>() {
+            @Override
+            public InetSocketAddress convert(String value) {
+                return parseSocketAddress(value);
+            }
+
+            @Override
+            public boolean canAcceptHyphenValue() {
+                return false;
+            }
+        });
+        register(BigDecimal.class, new Converter<BigDecimal>() {
+            @Override
+            public BigDecimal convert(String value) {
+                return new BigDecimal(value);
+            }
+
+            @Override
+            public boolean canAcceptHyphenValue() {
+                return true;
+            }
+        });
+        register(BigInteger.class, new Converter<BigInteger>() {
+            @Override
+            public BigInteger convert(String value) {
+                return new BigInteger(value);
+            }
+
+            @Override
+            public boolean canAcceptHyphenValue() {
+                return true;
+            }
+        });
+        registerProviders();
+        registerFactory("java.nio.file.Path", "java.nio.file.Paths", "get", false, String.class, String[].class);
+        registerFactory("java.time.Duration", "java.time.Duration", "parse", true, CharSequence.class);
+    }
+
+    /**
+     * Not instantiated.
+     */
+    private Converters() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Registers a converter for a type, replacing a converter registered for the type.
+     *
+     * @param type a type of fields annotated by {@link Option}.
+     * @param converter a stateless converter.
+     * @param <T> a type of fields.
+     * @throws NullPointerException if {@code type} or {@code converter} is null.
+     * @throws IllegalArgumentException if {@code type} is supported by a built-in handler.
+     */
+    public static <T> void register(Class<T> type, Converter<? extends T> converter) {
+        if (type == null || converter == null) {
+            throw new NullPointerException("type or converter is null.");
+        }
+        if (Schema.hasBuiltinHandler(type)) {
+            throw new IllegalArgumentException(type + " is supported by a built-in handler.");
+        }
+        synchronized (Converters.class) {
+            Map<Class<?>, Converter<?>> map = new HashMap<Class<?>, Converter<?>>(converters);
+            map.put(type, converter);
+            converters = map;
+        }
+        Schema.clearCache();
+    }
+
+    /**
+     * Unregisters a converter for a type.
+     *
+     * @param type a type of fields annotated by {@link Option}.
+     * @return true if a converter is unregistered.
+     */
+    public static boolean unregister(Class<?> type) {
+        synchronized (Converters.class) {
+            if (!converters.containsKey(type)) {
+                return false;
+            }
+            Map<Class<?>, Converter<?>> map = new HashMap<Class<?>, Converter<?>>(converters);
+            map.remove(type);
+            converters = map;
+        }
+        Schema.clearCache();
+        return true;
+    }
+
+    /**
+     * Finds a converter for a type.
+     *
+     * @param type a type of fields annotated by {@link Option}.
+     * @return a converter, or null if no converter is registered for {@code type}.
+     */
+    static Converter<?> find(Class<?> type) {
+        return converters.get(type);
+    }
+
+    /**
+     * Parses {@code host:port}, or {@code [address]:port} for an IPv6 address, into an unresolved address. The host
+     * name is not resolved while parsing.
+     *
+     * @param value a value to be parsed.
+     * @return an unresolved address.
+     * @throws IllegalArgumentException if {@code value} has no port or the port is out of range.
+     */
+    static InetSocketAddress parseSocketAddress(String value) {
+        int colon = value.lastIndexOf(':');
+        if (colon <= 0) {
+            throw new IllegalArgumentException("no port is found in " + value);
+        }
+        String host = value.substring(0, colon);
+        if (host.length() > 2 && host.charAt(0) == '[' && host.charAt(host.length() - 1) == ']') {
+            host = host.substring(1, host.length() - 1);
+        }
+        return InetSocketAddress.createUnresolved(host, Integer.parseInt(value.substring(colon + 1)));
+    }
+
+    /**
+     * Registers converters of providers, skipping ones which can not be loaded in the running JVM.
+     */
+    private static void registerProviders() {
+        Iterator<ConverterProvider> i =
+                ServiceLoader.load(ConverterProvider.class, Converters.class.getClassLoader()).iterator();
+        for (;;) {
+            try {
+                if (!i.hasNext()) {
+                    break;
+                }
+                i.next().registerConverters();
+            } catch (ServiceConfigurationError sce) {
+                // such as a provider compiled for a newer JVM; try the next one.
+            } catch (LinkageError le) {
+                // same as above.
+            }
+        }
+    }
+
+    /**
+     * Registers a converter which calls a static factory method if the type is available in the running JVM and
+     * no provider registers a converter for it.
+     *
+     * @param typeName a name of the type.
+     * @param factoryClassName a name of a class which has the factory method.
+     * @param methodName a name of the factory method.
+     * @param acceptHyphenValue true if a value can start with '-'.
+     * @param parameterTypes parameter types of the factory method.
+     */
+    private static void registerFactory(String typeName, String factoryClassName, String methodName,
+                                        boolean acceptHyphenValue, Class<?>... parameterTypes) {
+        Class<?> type;
+        Method method;
+        try {
+            type = Class.forName(typeName);
+            method = Class.forName(factoryClassName).getMethod(methodName, parameterTypes);
+        } catch (Exception e) {
+            // not available in this JVM.
+            return;
+        }
+        if (converters.containsKey(type)) {
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        Class<Object> t = (Class<Object>) type;
+        register(t, new FactoryConverter(method, acceptHyphenValue));
+    }
+
+    /**
+     * Converts a value by a static factory method of a type which may not be available at compile time.
+     * Each conversion is a reflective call, so a {@link ConverterProvider} which calls the method directly is
+     * preferred.
+     */
+    private static final class FactoryConverter implements Converter<Object> {
+
+        /** a static factory method which takes a value as the first argument. */
+        private final Method method;
+
+        /** true if the factory method takes varargs after the value. */
+        private final boolean varargs;
+
+        /** true if a value can start with '-'. */
+        private final boolean acceptHyphenValue;
+
+        /**
+         * Constructs a new instance.
+         * @param method a static factory method.
+         * @param acceptHyphenValue true if a value can start with '-'.
+         */
+        FactoryConverter(Method method, boolean acceptHyphenValue) {
+            this.method = method;
+            this.varargs = method.getParameterTypes().length == 2;
+            this.acceptHyphenValue = acceptHyphenValue;
+        }
+
+        @Override
+        public Object convert(String value) throws Exception {
+            try {
+                return varargs ? method.invoke(null, value, NO_MORE) : method.invoke(null, value);
+            } catch (InvocationTargetException ite) {
+                Throwable cause = ite.getCause();
+                if (cause instanceof Exception) {
+                    throw (Exception) cause;
+                }
+                throw ite;
+            }
+        }
+
+        @Override
+        public boolean canAcceptHyphenValue() {
+            return acceptHyphenValue;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package net.ihiroky.ocm;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Holds default values of fields annotated by {@link Option} and {@link Arguments}, which are snapshotted from an
+ * instance created by the no-arg constructor of a target class.
+ * <p/>
+ * A target can be reset to the defaults and reused, instead of allocating a new target for each parse. A collection
+ * annotated by {@link Arguments} is cleared and refilled, not reallocated. An {@link ArgumentSink} field is not
+ * reset because it is set by a caller.
+ * <p/>
+ * A default value of an array or a collection is copied for each reset, so a target which modifies its value never
+ * changes the defaults of other targets. A collection is copied into an instance of the same class created by its
+ * no-arg constructor, or into an {@code ArrayList} if the class has none and the field accepts it. Other values,
+ * which are expected to be immutable like {@code String} and {@code Integer}, are shared by targets.
+ *
+ * @author Hiroki Itoh
+ */
+final class Defaults {
+
+    /** fields annotated by {@link Option}. */
+    private final Field[] optionFields;
+
+    /** default values of {@code optionFields}. */
+    private final Object[] optionValues;
+
+    /** constructors to copy collections in {@code optionValues}, or null to copy into an {@code ArrayList}. */
+    private final Constructor<?>[] copyConstructors;
+
+    /** a collection field annotated by {@link Arguments}, or null. */
+    private final Field argumentsField;
+
+    /** default elements of {@code argumentsField}, or null if the default is null. */
+    private final String[] argumentsValues;
+
+    /**
+     * Constructs a new instance.
+     * @param optionFields fields annotated by {@link Option}.
+     * @param optionValues default values of {@code optionFields}.
+     * @param copyConstructors constructors to copy collections in {@code optionValues}.
+     * @param argumentsField a collection field annotated by {@link Arguments}, or null.
+     * @param argumentsValues default elements of {@code argumentsField}, or null.
+     */
+    private Defaults(Field[] optionFields, Object[] optionValues, Constructor<?>[] copyConstructors,
+                     Field argumentsField, String[] argumentsValues) {
+        this.optionFields = optionFields;
+        this.optionValues = optionValues;
+        this.copyConstructors = copyConstructors;
+        this.argumentsField = argumentsField;
+        this.argumentsValues = argumentsValues;
+    }
+
+    /**
+     * Snapshots default values of a class.
+     *
+     * @param targetClass a class which has a no-arg constructor.
+     * @return defaults of {@code targetClass}.
+     * @throws IllegalArgumentTypeException if {@code targetClass} can not be instantiated, or a default collection
+     * can not be copied.
+     */
+    static Defaults snapshot(Class<?> targetClass) {
+        Object instance;
+        try {
+            Constructor<?> constructor = targetClass.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            instance = constructor.newInstance();
+        } catch (Exception e) {
+            throw new IllegalArgumentTypeException("failed to instantiate " + targetClass.getName()
+                    + " to snapshot defaults. a no-arg constructor is required.", e);
+        }
+
+        List<Field> fields = new ArrayList<Field>();
+        List<Object> values = new ArrayList<Object>();
+        List<Constructor<?>> constructors = new ArrayList<Constructor<?>>();
+        Field argsField = null;
+        String[] argsValues = null;
+        try {
+            for (Class<?> c = targetClass; c != null; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    if (field.isAnnotationPresent(Option.class)) {
+                        field.setAccessible(true);
+                        Object value = field.get(instance);
+                        fields.add(field);
+                        values.add(value);
+                        constructors.add((value instanceof Collection) ? copyConstructorOf(field, value) : null);
+                    } else if (field.isAnnotationPresent(Arguments.class)
+                            && Collection.class.isAssignableFrom(field.getType())) {
+                        field.setAccessible(true);
+                        argsField = field;
+                        Collection<?> args = (Collection<?>) field.get(instance);
+                        argsValues = (args != null) ? args.toArray(new String[args.size()]) : null;
+                    }
+                }
+            }
+        } catch (IllegalAccessException iae) {
+            throw new IllegalArgumentTypeException("failed to snapshot defaults of " + targetClass.getName(), iae);
+        }
+        return new Defaults(fields.toArray(new Field[fields.size()]), values.toArray(),
+                constructors.toArray(new Constructor<?>[constructors.size()]), argsField, argsValues);
+    }
+
+    /**
+     * Gets a constructor to copy a default collection.
+     *
+     * @param field a field which holds {@code value}.
+     * @param value a default collection.
+     * @return an accessible no-arg constructor of the class of {@code value}, or null to copy into an
+     * {@code ArrayList}.
+     * @throws IllegalArgumentTypeException if the class has no no-arg constructor and the field does not accept
+     * an {@code ArrayList}.
+     */
+    private static Constructor<?> copyConstructorOf(Field field, Object value) {
+        Class<?> type = value.getClass();
+        try {
+            Constructor<?> constructor = type.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            return constructor;
+        } catch (Exception e) {
+            // e.g. Arrays.asList() and Collections.singletonList().
+            if (field.getType().isAssignableFrom(ArrayList.class)) {
+                return null;
+            }
+            throw new IllegalArgumentTypeException("default value of field " + field.getName()
+                    + " can not be copied. its class must have a no-arg constructor : " + type.getName(), e);
+        }
+    }
+
+    /**
+     * Copies a default value if it is an array or a collection.
+     *
+     * @param value a default value.
+     * @param constructor a constructor to copy {@code value} if it is a collection, or null.
+     * @return a copy of {@code value}, or {@code value} itself if it is neither an array nor a collection.
+     * @throws Exception if the reflection is failed.
+     */
+    private static Object copy(Object value, Constructor<?> constructor) throws Exception {
+        if (value == null) {
+            return null;
+        }
+        if (value.getClass().isArray()) {
+            int length = Array.getLength(value);
+            Object array = Array.newInstance(value.getClass().getComponentType(), length);
+            System.arraycopy(value, 0, array, 0, length);
+            return array;
+        }
+        if (value instanceof Collection) {
+            @SuppressWarnings("unchecked")
+            Collection<Object> c = (constructor != null)
+                    ? (Collection<Object>) constructor.newInstance() : new ArrayList<Object>();
+            c.addAll((Collection<?>) value);
+            return c;
+        }
+        return value;
+    }
+
+    /**
+     * Resets fields of a target to the defaults.
+     *
+     * @param target a target to be reset.
+     * @throws IllegalStateException if the reflection is failed.
+     */
+    void reset(Object target) {
+        try {
+            for (int i = 0; i < optionFields.length; i++) {
+                optionFields[i].set(target, copy(optionValues[i], copyConstructors[i]));
+            }
+            if (argumentsField != null) {
+                @SuppressWarnings("unchecked")
+                Collection<String> args = (Collection<String>) argumentsField.get(target);
+                if (args == null) {
+                    if (argumentsValues == null) {
+                        return;
+                    }
+                    @SuppressWarnings("unchecked")
+                    Collection<String> nc = (Collection<String>) argumentsField.getType().newInstance();
+                    argumentsField.set(target, nc);
+                    args = nc;
+                } else {
+                    args.clear();
+                }
+                if (argumentsValues != null) {
+                    for (String value : argumentsValues) {
+                        args.add(value);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException("failed to reset " + target.getClass().getName(), e);
+        }
+    }
+}
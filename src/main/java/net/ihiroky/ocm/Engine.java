@@ -0,0 +1,23 @@
+package net.ihiroky.ocm;
+
+/**
+ * Selects how {@link ArgumentProcessor} finds options and stores their values.
+ *
+ * @author Hiroki Itoh
+ */
+public enum Engine {
+
+    /**
+     * Looks up options in a schema and stores values through each {@link FieldOptionHandler}, which uses a
+     * {@link FieldAccessor}. This is the default.
+     */
+    REFLECTIVE,
+
+    /**
+     * Spins a parser class per schema on first use with a {@link ParserGenerator}, such as the one in the ocm-engine
+     * module. The parser converts and stores values to fields directly, and finds options of a small schema by a
+     * switch on hash codes of their names. A class which has a parser generated by the annotation processor uses it, and a class which
+     * no generator supports is parsed as {@link #REFLECTIVE}.
+     */
+    SPECIALIZED,
+}
@@ -0,0 +1,104 @@
+package net.ihiroky.ocm;
+
+/**
+ * Reads and writes a field annotated by {@link Option} or {@link Arguments}.
+ * <p/>
+ * An accessor is resolved once per field by {@link FieldAccessors} when a handler is created, so a parse does not
+ * look up the field or check its accessibility for each value. The default accessor uses
+ * {@code java.lang.reflect.Field}; a {@link FieldAccessorFactory} can provide faster accessors, such as method
+ * handles. A primitive value is stored by the method of the field type without boxing.
+ *
+ * @author Hiroki Itoh
+ */
+public interface FieldAccessor {
+
+    /**
+     * Gets a value of the field.
+     *
+     * @param target an object which has the field.
+     * @return a value of the field, boxed if the field is primitive type.
+     * @throws IllegalAccessException if the field is not accessible.
+     */
+    Object get(Object target) throws IllegalAccessException;
+
+    /**
+     * Sets a value to the field.
+     *
+     * @param target an object which has the field.
+     * @param value a value, which is unboxed if the field is primitive type.
+     * @throws IllegalAccessException if the field is not accessible.
+     */
+    void set(Object target, Object value) throws IllegalAccessException;
+
+    /**
+     * Sets a value to a {@code boolean} field.
+     *
+     * @param target an object which has the field.
+     * @param value a value.
+     * @throws IllegalAccessException if the field is not accessible.
+     */
+    void setBoolean(Object target, boolean value) throws IllegalAccessException;
+
+    /**
+     * Sets a value to a {@code byte} field.
+     *
+     * @param target an object which has the field.
+     * @param value a value.
+     * @throws IllegalAccessException if the field is not accessible.
+     */
+    void setByte(Object target, byte value) throws IllegalAccessException;
+
+    /**
+     * Sets a value to a {@code char} field.
+     *
+     * @param target an object which has the field.
+     * @param value a value.
+     * @throws IllegalAccessException if the field is not accessible.
+     */
+    void setChar(Object target, char value) throws IllegalAccessException;
+
+    /**
+     * Sets a value to a {@code short} field.
+     *
+     * @param target an object which has the field.
+     * @param value a value.
+     * @throws IllegalAccessException if the field is not accessible.
+     */
+    void setShort(Object target, short value) throws IllegalAccessException;
+
+    /**
+     * Sets a value to an {@code int} field.
+     *
+     * @param target an object which has the field.
+     * @param value a value.
+     * @throws IllegalAccessException if the field is not accessible.
+     */
+    void setInt(Object target, int value) throws IllegalAccessException;
+
+    /**
+     * Sets a value to a {@code long} field.
+     *
+     * @param target an object which has the field.
+     * @param value a value.
+     * @throws IllegalAccessException if the field is not accessible.
+     */
+    void setLong(Object target, long value) throws IllegalAccessException;
+
+    /**
+     * Sets a value to a {@code float} field.
+     *
+     * @param target an object which has the field.
+     * @param value a value.
+     * @throws IllegalAccessException if the field is not accessible.
+     */
+    void setFloat(Object target, float value) throws IllegalAccessException;
+
+    /**
+     * Sets a value to a {@code double} field.
+     *
+     * @param target an object which has the field.
+     * @param value a value.
+     * @throws IllegalAccessException if the field is not accessible.
+     */
+    void setDouble(Object target, double value) throws IllegalAccessException;
+}
@@ -0,0 +1,23 @@
+package net.ihiroky.ocm;
+
+import java.lang.reflect.Field;
+
+/**
+ * Creates {@link FieldAccessor}s instead of the default accessor which uses {@code java.lang.reflect.Field}.
+ * <p/>
+ * Factories are found by {@code java.util.ServiceLoader} from
+ * {@code META-INF/services/net.ihiroky.ocm.FieldAccessorFactory}, such as the one in the ocm-handle module which
+ * binds fields with {@code VarHandle}s. A factory which can not be loaded in the running JVM is skipped.
+ *
+ * @author Hiroki Itoh
+ */
+public interface FieldAccessorFactory {
+
+    /**
+     * Creates an accessor of a field.
+     *
+     * @param field a field annotated by {@link Option} or {@link Arguments}.
+     * @return an accessor, or null if this factory does not support the field; the default accessor is used then.
+     */
+    FieldAccessor create(Field field);
+}
@@ -0,0 +1,143 @@
+package net.ihiroky.ocm;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+/**
+ * Resolves {@link FieldAccessor}s of fields with {@link FieldAccessorFactory}s found by
+ * {@code java.util.ServiceLoader}, falling back to an accessor which uses {@code java.lang.reflect.Field}.
+ *
+ * @author Hiroki Itoh
+ */
+final class FieldAccessors {
+
+    /** factories found when this class is initialized. */
+    private static final FieldAccessorFactory[] FACTORIES = loadFactories();
+
+    /**
+     * Not instantiated.
+     */
+    private FieldAccessors() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Loads factories, skipping ones which can not be loaded in the running JVM.
+     *
+     * @return loaded factories.
+     */
+    private static FieldAccessorFactory[] loadFactories() {
+        List<FieldAccessorFactory> list = new ArrayList<FieldAccessorFactory>();
+        Iterator<FieldAccessorFactory> i =
+                ServiceLoader.load(FieldAccessorFactory.class, FieldAccessors.class.getClassLoader()).iterator();
+        for (;;) {
+            try {
+                if (!i.hasNext()) {
+                    break;
+                }
+                list.add(i.next());
+            } catch (ServiceConfigurationError sce) {
+                // such as a factory compiled for a newer JVM; try the next one.
+            } catch (LinkageError le) {
+                // same as above.
+            }
+        }
+        return list.toArray(new FieldAccessorFactory[list.size()]);
+    }
+
+    /**
+     * Gets an accessor of a field.
+     *
+     * @param field a field annotated by {@link Option} or {@link Arguments}.
+     * @return an accessor created by the first factory which supports the field, or an accessor which uses
+     * {@code field}.
+     */
+    static FieldAccessor of(Field field) {
+        for (FieldAccessorFactory factory : FACTORIES) {
+            FieldAccessor accessor;
+            try {
+                accessor = factory.create(field);
+            } catch (RuntimeException re) {
+                continue;
+            } catch (LinkageError le) {
+                continue;
+            }
+            if (accessor != null) {
+                return accessor;
+            }
+        }
+        field.setAccessible(true);
+        return new ReflectiveFieldAccessor(field);
+    }
+
+    /**
+     * Reads and writes a field through {@code java.lang.reflect.Field}.
+     */
+    private static final class ReflectiveFieldAccessor implements FieldAccessor {
+
+        /** an accessible field. */
+        private final Field field;
+
+        /**
+         * Constructs a new instance.
+         * @param field an accessible field.
+         */
+        ReflectiveFieldAccessor(Field field) {
+            this.field = field;
+        }
+
+        @Override
+        public Object get(Object target) throws IllegalAccessException {
+            return field.get(target);
+        }
+
+        @Override
+        public void set(Object target, Object value) throws IllegalAccessException {
+            field.set(target, value);
+        }
+
+        @Override
+        public void setBoolean(Object target, boolean value) throws IllegalAccessException {
+            field.setBoolean(target, value);
+        }
+
+        @Override
+        public void setByte(Object target, byte value) throws IllegalAccessException {
+            field.setByte(target, value);
+        }
+
+        @Override
+        public void setChar(Object target, char value) throws IllegalAccessException {
+            field.setChar(target, value);
+        }
+
+        @Override
+        public void setShort(Object target, short value) throws IllegalAccessException {
+            field.setShort(target, value);
+        }
+
+        @Override
+        public void setInt(Object target, int value) throws IllegalAccessException {
+            field.setInt(target, value);
+        }
+
+        @Override
+        public void setLong(Object target, long value) throws IllegalAccessException {
+            field.setLong(target, value);
+        }
+
+        @Override
+        public void setFloat(Object target, float value) throws IllegalAccessException {
+            field.setFloat(target, value);
+        }
+
+        @Override
+        public void setDouble(Object target, double value) throws IllegalAccessException {
+            field.setDouble(target, value);
+        }
+    }
+}
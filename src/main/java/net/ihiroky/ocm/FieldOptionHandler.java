@@ -14,18 +14,36 @@ public abstract class FieldOptionHandler<T> {
     /** {@link Option} annotation. */
     private Option option;
 
-    /** a object which has a field annotated by {@link Option}. */
-    private Object target;
-
     /** a field annotated by {@link Option}. */
     private Field field;
 
+    /** an accessor of the field, resolved once. */
+    private FieldAccessor accessor;
+
     /** option name (long name). */
     private String name;
 
     /** option name alias (short name). */
     private String alias;
 
+    /** option meta name used in usage. */
+    private String metaName;
+
+    /** usage of this option. */
+    private String usage;
+
+    /** flag that shows this option is required. */
+    private boolean required;
+
+    /** a generated parser which stores values without reflection, or null. */
+    private GeneratedParser<?> parser;
+
+    /** true if the field is primitive type. */
+    private boolean primitive;
+
+    /** a position of this handler in a schema. */
+    private int index;
+
     /** long name option suffix. */
     static final String LONG_NAME_SUFFIX = "--";
 
@@ -39,20 +57,30 @@ public abstract class FieldOptionHandler<T> {
     }
 
     /**
-     * Sets a value of target.
-     * @param target target to be set.
-     */
-    protected void setTarget(Object target) {
-        this.target = target;
-    }
-
-    /**
-     * Sets a value of field.
+     * Sets a value of field, and resolves its accessor.
      * @param field field to be set.
      */
     protected void setField(Field field) {
         this.field = field;
+        setType(field.getType());
         field.setAccessible(true);
+        this.accessor = FieldAccessors.of(field);
+    }
+
+    /**
+     * Sets a type of the option value.
+     * @param type a type of the field.
+     */
+    void setType(Class<?> type) {
+        this.primitive = type.isPrimitive();
+    }
+
+    /**
+     * Sets a generated parser which stores values instead of reflection.
+     * @param parser a generated parser.
+     */
+    void setParser(GeneratedParser<?> parser) {
+        this.parser = parser;
     }
 
     /**
@@ -61,20 +89,69 @@ public abstract class FieldOptionHandler<T> {
      */
     protected void setOption(Option option) {
         this.option = option;
-        this.name = LONG_NAME_SUFFIX.concat(option.name());
-        if (option.alias() != null) {
-            this.alias = SHORT_NAME_SUFFIX.concat(option.alias());
+        define(option.name(), option.alias(), option.metaName(), option.usage(), option.required());
+    }
+
+    /**
+     * Sets properties of option.
+     * @param optionName a option name (long name).
+     * @param optionAlias a option name (short name).
+     * @param optionMetaName a option meta name used in usage.
+     * @param optionUsage usage of this option.
+     * @param optionRequired flag that shows this option is required.
+     */
+    void define(String optionName, String optionAlias, String optionMetaName, String optionUsage,
+                boolean optionRequired) {
+        this.name = LONG_NAME_SUFFIX.concat(optionName);
+        if (optionAlias != null) {
+            this.alias = SHORT_NAME_SUFFIX.concat(optionAlias);
         }
+        this.metaName = optionMetaName;
+        this.usage = optionUsage;
+        this.required = optionRequired;
+    }
+
+    /**
+     * Sets a position of this handler in a schema.
+     * @param index a position to be set.
+     */
+    void setIndex(int index) {
+        this.index = index;
     }
 
     /**
      * Gets a value of option.
-     * @return a value of option.
+     * @return a value of option, or null if this handler is defined by {@link GeneratedParser} or read from a
+     * {@link SchemaIndex}.
      */
     protected Option getOption() {
         return option;
     }
 
+    /**
+     * Gets a meta name used in usage.
+     * @return a meta name, or a field name if no meta name is specified.
+     */
+    protected String getMetaName() {
+        return (metaName.length() == 0 && field != null) ? field.getName() : metaName;
+    }
+
+    /**
+     * Gets usage of this option.
+     * @return usage of this option.
+     */
+    protected String getUsage() {
+        return usage;
+    }
+
+    /**
+     * Checks if this option is required.
+     * @return true if this option is required.
+     */
+    protected boolean isRequired() {
+        return required;
+    }
+
     /**
      * Gets a value of name.
      * @return a value of name.
@@ -91,14 +168,6 @@ public abstract class FieldOptionHandler<T> {
         return alias;
     }
 
-    /**
-     * Gets a value of target.
-     * @return a value of target.
-     */
-    protected Object getTarget() {
-        return target;
-    }
-
     /**
      * Gets a value of field.
      * @return a value of field.
@@ -107,21 +176,54 @@ public abstract class FieldOptionHandler<T> {
         return field;
     }
 
+    /**
+     * Gets an accessor of field, which is resolved once when the field is set.
+     * @return an accessor of field.
+     */
+    protected FieldAccessor getAccessor() {
+        return accessor;
+    }
+
     /**
      * Sets a type-converted value.
+     * <p/>
+     * {@code value} may be a view of a part of a command line argument, such as {@code value} in
+     * {@code --name=value}, which is valid only while this method is called. Use {@code value.toString()} to keep it.
      *
-     * @param value
+     * @param target an object which has a field annotated by {@link Option}.
+     * @param value a value to be converted.
      * @throws ArgumentParseException if reflection is failed.
      */
-    protected void set(String value) throws ArgumentParseException {
+    protected void set(Object target, CharSequence value) throws ArgumentParseException {
         try {
-            T handled = handle(value);
-            getField().set(getTarget(),  handled);
+            if (parser != null) {
+                parser.setValue(target, index, value);
+            } else if (primitive) {
+                setPrimitive(target, value);
+            } else {
+                T handled = handle(value);
+                accessor.set(target, handled);
+            }
         } catch (Exception e) {
             throw new ArgumentParseException("failed to set argument. option : " + toString(), e);
         }
     }
 
+    /**
+     * Converts a value and stores it to a primitive type field.
+     * <p/>
+     * This method is called instead of {@link #handle(CharSequence)} if the field is primitive type. Subclasses
+     * which handle primitive types override this method to store a value without boxing. The default implementation
+     * stores a value returned by {@link #handle(CharSequence)}.
+     *
+     * @param target an object which has a field annotated by {@link Option}.
+     * @param value a value to be converted.
+     * @throws IllegalAccessException if reflection is failed.
+     */
+    protected void setPrimitive(Object target, CharSequence value) throws IllegalAccessException {
+        accessor.set(target, handle(value));
+    }
+
     /**
      * Returns a string expression of this.
      * @return a string expression.
@@ -139,6 +241,33 @@ public abstract class FieldOptionHandler<T> {
      */
     public abstract T handle(String value);
 
+    /**
+     * Converts type of value, which may be a view of a part of a command line argument.
+     * <p/>
+     * The default implementation calls {@link #handle(String)} with {@code value.toString()}. Subclasses override
+     * this method to convert a value without creating a {@code String}.
+     *
+     * @param value value to be converted.
+     * @return a converted value.
+     */
+    public T handle(CharSequence value) {
+        return handle(value.toString());
+    }
+
+    /**
+     * Checks if a value can be converted without an exception, so that a parse which collects errors rejects the
+     * value without creating one.
+     * <p/>
+     * The default implementation returns true, and an invalid value is found by converting it. Subclasses which can
+     * check a value cheaply override this method.
+     *
+     * @param value a value to be checked.
+     * @return true if {@code value} can be converted.
+     */
+    public boolean isValid(CharSequence value) {
+        return true;
+    }
+
     /**
      * Check if this instance can accept a value which starts with '-'.
      *
@@ -0,0 +1,277 @@
+package net.ihiroky.ocm;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * A base class of parsers generated by the ocm annotation processor.
+ * <p/>
+ * The annotation processor generates a subclass named {@code <target class>_OcmParser} in the package of a target
+ * class. Its constructor defines options and arguments with {@link #option(Class, String, String, String, String,
+ * boolean)} and {@link #arguments(boolean)}, presets usage rendered at compile time with
+ * {@link #usage(String, String...)}, and it stores values to the fields of a target directly. If a generated
+ * parser is found, {@link ArgumentProcessor} uses it instead of reflection. A generated parser has to be stateless
+ * except for its definitions.
+ * <p/>
+ * A {@link ParserGenerator} generates a parser of the same shape at runtime for {@link Engine#SPECIALIZED}, which
+ * also overrides {@link #indexOf(String, int, int)} to find options by a switch on hash codes of their names.
+ * <p/>
+ * The annotation processor also lists target classes in {@link #INDEX_RESOURCE}. A generated parser is looked up
+ * only if its target class is listed, so a class without a generated parser costs no failed class loading.
+ *
+ * @param <T> a target type.
+ * @author Hiroki Itoh
+ */
+public abstract class GeneratedParser<T> {
+
+    /** options defined by a subclass. */
+    private final List<OptionDescriptor> optionList = new ArrayList<OptionDescriptor>();
+
+    /** a handler to hold arguments. */
+    private final ArgumentsHandler argumentsHandler = new ArgumentsHandler();
+
+    /** one line usage rendered by the annotation processor, or null. */
+    private String renderedOneLine;
+
+    /** usage rendered by the annotation processor, or null. */
+    private String renderedLines;
+
+    /** a suffix of a generated parser class name. */
+    public static final String CLASS_NAME_SUFFIX = "_OcmParser";
+
+    /** a resource which lists binary names of target classes which have generated parsers, one per line. */
+    public static final String INDEX_RESOURCE = "META-INF/ocm/parsers";
+
+    /** returned by {@link #indexOf(String, int, int)} if a parser does not index names of options. */
+    protected static final int UNINDEXED = -2;
+
+    /** names of target classes listed in {@link #INDEX_RESOURCE}s, read once per class loader. */
+    private static final Map<ClassLoader, Set<String>> INDICES = new WeakHashMap<ClassLoader, Set<String>>();
+
+    /**
+     *
+     */
+    protected GeneratedParser() {
+    }
+
+    /**
+     * Defines an option. Options should be defined in declaration order.
+     *
+     * @param type a type of the field which holds a value of the option.
+     * @param name a option name (long name).
+     * @param alias a option name (short name).
+     * @param metaName a option meta name used in usage, or a field name if the meta name is not specified.
+     * @param usage usage of the option.
+     * @param required flag that shows the option is required.
+     * @throws IllegalArgumentTypeException if {@code type} is not supported.
+     */
+    protected final void option(Class<?> type, String name, String alias, String metaName, String usage,
+                                boolean required) {
+        Schema.checkType(type, name);
+        optionList.add(OptionDescriptor.of(type, this, name, alias, metaName, usage, required));
+    }
+
+    /**
+     * Defines arguments. This method should be called if a target has a field annotated by {@link Arguments}.
+     *
+     * @param required require flag.
+     */
+    protected final void arguments(boolean required) {
+        argumentsHandler.setParser(this, required);
+    }
+
+    /**
+     * Presets usage without wrapping, which is rendered by the annotation processor as the schema renders it.
+     *
+     * @param oneLine one line usage.
+     * @param lines lines of usage, which are joined with the line separator of the running JVM.
+     */
+    protected final void usage(String oneLine, String... lines) {
+        StringBuilder b = new StringBuilder();
+        for (String line : lines) {
+            if (b.length() > 0) {
+                b.append(Usage.LINE_SEPARATOR);
+            }
+            b.append(line);
+        }
+        renderedOneLine = oneLine;
+        renderedLines = b.toString();
+    }
+
+    /**
+     * Converts a value and stores it to a field of a target.
+     *
+     * @param target a target object.
+     * @param index an index of the option in definition order.
+     * @param value a value to be converted, which may be a view of a part of a command line argument and is valid
+     *              only while this method is called.
+     * @throws Exception if the conversion is failed.
+     */
+    protected abstract void set(T target, int index, CharSequence value) throws Exception;
+
+    /**
+     * Gets a collection held by a field annotated by {@link Arguments}.
+     *
+     * @param target a target object.
+     * @param allocate true if a collection should be allocated when the field is null.
+     * @return a collection held by the field, or null.
+     */
+    protected abstract Collection<String> getArguments(T target, boolean allocate);
+
+    /**
+     * Gets an index of an option by its name or alias, which is a prefix of a command line argument.
+     * <p/>
+     * The default implementation returns {@link #UNINDEXED}, so that the schema searches the name in its own table.
+     *
+     * @param arg a command line argument which starts with a name or alias, including '-'.
+     * @param length a length of the name or alias.
+     * @param hash a hash code of the name or alias, which is the same as {@code String#hashCode()}.
+     * @return an index of the option in definition order, -1 if no option is found, or {@link #UNINDEXED}.
+     */
+    protected int indexOf(String arg, int length, int hash) {
+        return UNINDEXED;
+    }
+
+    /**
+     * Checks if a prefix of a command line argument is a name or alias, for {@link #indexOf(String, int, int)}.
+     *
+     * @param key a name or alias, including '-'.
+     * @param arg a command line argument.
+     * @param length a length of the prefix.
+     * @return true if the prefix equals to {@code key}.
+     */
+    protected static boolean matches(String key, String arg, int length) {
+        return key.length() == length && key.regionMatches(0, arg, 0, length);
+    }
+
+    /**
+     * Calls {@link #set(Object, int, CharSequence)} with an unchecked target.
+     *
+     * @param target a target object.
+     * @param index an index of the option in definition order.
+     * @param value a value to be converted.
+     * @throws Exception if the conversion is failed.
+     */
+    @SuppressWarnings("unchecked")
+    void setValue(Object target, int index, CharSequence value) throws Exception {
+        set((T) target, index, value);
+    }
+
+    /**
+     * Calls {@link #getArguments(Object, boolean)} with an unchecked target.
+     *
+     * @param target a target object.
+     * @param allocate true if a collection should be allocated when the field is null.
+     * @return a collection held by the field, or null.
+     */
+    @SuppressWarnings("unchecked")
+    Collection<String> arguments(Object target, boolean allocate) {
+        return getArguments((T) target, allocate);
+    }
+
+    /**
+     * Creates a schema from definitions.
+     *
+     * @param targetClass a class which this parser is generated for.
+     * @return a schema.
+     * @throws IllegalArgumentTypeException if a name or alias is duplicated.
+     */
+    Schema getSchema(Class<?> targetClass) {
+        Schema schema = Schema.create(targetClass, optionList, argumentsHandler, this);
+        if (renderedOneLine != null) {
+            schema.presetUsage(new Usage(schema.getOptionList(), renderedOneLine, renderedLines));
+        }
+        return schema;
+    }
+
+    /**
+     * Finds a generated parser for a specified class.
+     *
+     * @param targetClass a target class.
+     * @return a generated parser, or null if not found.
+     */
+    static GeneratedParser<?> find(Class<?> targetClass) {
+        ClassLoader loader = targetClass.getClassLoader();
+        if (loader == null || !indexOf(loader).contains(targetClass.getName())) {
+            return null;
+        }
+        Class<?> parserClass;
+        try {
+            parserClass = Class.forName(targetClass.getName() + CLASS_NAME_SUFFIX, true, loader);
+        } catch (ClassNotFoundException cnfe) {
+            return null;
+        }
+        if (!GeneratedParser.class.isAssignableFrom(parserClass)) {
+            return null;
+        }
+        try {
+            return (GeneratedParser<?>) parserClass.newInstance();
+        } catch (Exception e) {
+            throw new IllegalArgumentTypeException("failed to instantiate " + parserClass.getName() + '.', e);
+        }
+    }
+
+    /**
+     * Gets names of target classes listed in {@link #INDEX_RESOURCE}s visible from a class loader, reading them on
+     * the first call for the loader.
+     *
+     * @param loader a class loader.
+     * @return names of target classes.
+     */
+    private static Set<String> indexOf(ClassLoader loader) {
+        synchronized (INDICES) {
+            Set<String> names = INDICES.get(loader);
+            if (names == null) {
+                names = readIndex(loader);
+                INDICES.put(loader, names);
+            }
+            return names;
+        }
+    }
+
+    /**
+     * Reads {@link #INDEX_RESOURCE}s visible from a class loader. A resource which can not be read is skipped, so
+     * its classes are parsed by reflection.
+     *
+     * @param loader a class loader.
+     * @return names of target classes.
+     */
+    private static Set<String> readIndex(ClassLoader loader) {
+        Set<String> names = new HashSet<String>();
+        Enumeration<URL> urls;
+        try {
+            urls = loader.getResources(INDEX_RESOURCE);
+        } catch (IOException ioe) {
+            return names;
+        }
+        while (urls.hasMoreElements()) {
+            try {
+                BufferedReader reader = new BufferedReader(
+                        new InputStreamReader(urls.nextElement().openStream(), "UTF-8"));
+                try {
+                    for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                        line = line.trim();
+                        if (line.length() > 0) {
+                            names.add(line);
+                        }
+                    }
+                } finally {
+                    reader.close();
+                }
+            } catch (IOException ioe) {
+                // use reflection for classes in the resource.
+            }
+        }
+        return names;
+    }
+}
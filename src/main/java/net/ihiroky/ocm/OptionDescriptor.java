@@ -0,0 +1,340 @@
+package net.ihiroky.ocm;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+
+/**
+ * Describes an option in a schema, and creates its {@link FieldOptionHandler} on demand.
+ * <p/>
+ * A schema holds descriptors, which only have names and metadata to index options and print usage. A handler,
+ * which needs reflective instantiation and an accessible field, is created when the option appears in command line
+ * arguments for the first time. So the cost of a parse depends on the number of options used, not declared.
+ *
+ * @author Hiroki Itoh
+ */
+final class OptionDescriptor {
+
+    /** a type of the option value. */
+    private final Class<?> type;
+
+    /** a field annotated by {@link Option}, or null if defined by {@link GeneratedParser}. */
+    private final Field field;
+
+    /** {@link Option} annotation, or null if defined by {@link GeneratedParser} or read from {@link SchemaIndex}. */
+    private final Option option;
+
+    /** a generated parser which stores values without reflection, or null. */
+    private final GeneratedParser<?> parser;
+
+    /** option name (long name) with {@link FieldOptionHandler#LONG_NAME_SUFFIX}. */
+    private final String name;
+
+    /** option name alias (short name) with {@link FieldOptionHandler#SHORT_NAME_SUFFIX}. */
+    private final String alias;
+
+    /** option meta name used in usage. */
+    private final String metaName;
+
+    /** usage of this option. */
+    private final String usage;
+
+    /** flag that shows this option is required. */
+    private final boolean required;
+
+    /** true if the option value is boolean type, which option has no value. */
+    private final boolean switchOption;
+
+    /** a kind of {@link RepeatedValues} if the option can be repeated, or {@link RepeatedValues#NONE}. */
+    private final int repeatedKind;
+
+    /** a constructor of lists stored to a repeatable {@code List<String>} option, or null. */
+    private final Constructor<?> listConstructor;
+
+    /** a converter registered in {@link Converters} if the type has no built-in handler, or null. */
+    private final Converter<?> converter;
+
+    /** a position of this option in a schema. */
+    private int index;
+
+    /** a handler created on demand. */
+    private volatile FieldOptionHandler<?> handler;
+
+    /** an accessor of a repeatable option field, resolved on demand. */
+    private volatile FieldAccessor repeatedAccessor;
+
+    /**
+     * Constructs a new instance.
+     * @param type a type of the option value.
+     * @param field a field annotated by {@link Option}, or null.
+     * @param option {@link Option} annotation, or null.
+     * @param parser a generated parser, or null.
+     * @param optionName a option name (long name).
+     * @param optionAlias a option name (short name).
+     * @param optionMetaName a option meta name used in usage.
+     * @param optionUsage usage of the option.
+     * @param optionRequired flag that shows the option is required.
+     */
+    private OptionDescriptor(Class<?> type, Field field, Option option, GeneratedParser<?> parser,
+                             String optionName, String optionAlias, String optionMetaName, String optionUsage,
+                             boolean optionRequired) {
+        this.type = type;
+        this.field = field;
+        this.option = option;
+        this.parser = parser;
+        this.name = FieldOptionHandler.LONG_NAME_SUFFIX.concat(optionName);
+        this.alias = FieldOptionHandler.SHORT_NAME_SUFFIX.concat(optionAlias != null ? optionAlias : "");
+        this.metaName = (optionMetaName.length() == 0 && field != null) ? field.getName() : optionMetaName;
+        this.usage = optionUsage;
+        this.required = optionRequired;
+        this.switchOption = Boolean.TYPE.equals(type) || Boolean.class.equals(type);
+        this.repeatedKind = (field != null) ? RepeatedValues.kindOf(field) : RepeatedValues.NONE;
+        this.listConstructor =
+                (repeatedKind == RepeatedValues.STRING) ? RepeatedValues.listConstructorOf(field) : null;
+        this.converter = Schema.hasBuiltinHandler(type) ? null : Converters.find(type);
+    }
+
+    /**
+     * Creates a descriptor of a field annotated by {@link Option}.
+     *
+     * @param field a field annotated by {@link Option}.
+     * @param option {@link Option} annotation of {@code field}.
+     * @return a descriptor.
+     */
+    static OptionDescriptor of(Field field, Option option) {
+        return new OptionDescriptor(field.getType(), field, option, null,
+                option.name(), option.alias(), option.metaName(), option.usage(), option.required());
+    }
+
+    /**
+     * Creates a descriptor of a field read from a {@link SchemaIndex}, without {@link Option} annotation.
+     *
+     * @param field a field which holds a value of the option.
+     * @param optionName a option name (long name).
+     * @param optionAlias a option name (short name).
+     * @param optionMetaName a option meta name used in usage.
+     * @param optionUsage usage of the option.
+     * @param optionRequired flag that shows the option is required.
+     * @return a descriptor.
+     */
+    static OptionDescriptor of(Field field, String optionName, String optionAlias,
+                               String optionMetaName, String optionUsage, boolean optionRequired) {
+        return new OptionDescriptor(field.getType(), field, null, null,
+                optionName, optionAlias, optionMetaName, optionUsage, optionRequired);
+    }
+
+    /**
+     * Creates a descriptor of an option defined by {@link GeneratedParser}.
+     *
+     * @param type a type of the field which holds a value of the option.
+     * @param parser a generated parser which stores values.
+     * @param optionName a option name (long name).
+     * @param optionAlias a option name (short name).
+     * @param optionMetaName a option meta name used in usage.
+     * @param optionUsage usage of the option.
+     * @param optionRequired flag that shows the option is required.
+     * @return a descriptor.
+     */
+    static OptionDescriptor of(Class<?> type, GeneratedParser<?> parser, String optionName, String optionAlias,
+                               String optionMetaName, String optionUsage, boolean optionRequired) {
+        return new OptionDescriptor(type, null, null, parser,
+                optionName, optionAlias, optionMetaName, optionUsage, optionRequired);
+    }
+
+    /**
+     * Gets a handler, creating it on the first call.
+     * <p/>
+     * Creating twice in a race is harmless; both handlers are equivalent.
+     *
+     * @return a handler of this option.
+     */
+    FieldOptionHandler<?> handler() {
+        FieldOptionHandler<?> h = handler;
+        if (h == null) {
+            String optionName = name.substring(FieldOptionHandler.LONG_NAME_SUFFIX.length());
+            h = (converter != null)
+                    ? new ConverterFieldOptionHandler(converter) : Schema.newHandler(type, optionName);
+            if (option != null) {
+                h.setField(field);
+                h.setOption(option);
+            } else if (field != null) {
+                h.setField(field);
+                h.define(optionName, alias.substring(FieldOptionHandler.SHORT_NAME_SUFFIX.length()),
+                        metaName, usage, required);
+            } else {
+                h.setType(type);
+                h.define(optionName, alias.substring(FieldOptionHandler.SHORT_NAME_SUFFIX.length()),
+                        metaName, usage, required);
+                h.setParser(parser);
+            }
+            h.setIndex(index);
+            handler = h;
+        }
+        return h;
+    }
+
+    /**
+     * Sets a position of this option in a schema.
+     * @param index a position to be set.
+     */
+    void setIndex(int index) {
+        this.index = index;
+    }
+
+    /**
+     * Gets a position of this option in a schema.
+     * @return a position of this option.
+     */
+    int getIndex() {
+        return index;
+    }
+
+    /**
+     * Gets a field annotated by {@link Option}.
+     * @return a field, or null if this option is defined by {@link GeneratedParser}.
+     */
+    Field getField() {
+        return field;
+    }
+
+    /**
+     * Gets a name without {@link FieldOptionHandler#LONG_NAME_SUFFIX}, as specified by {@link Option#name()}.
+     * @return a name.
+     */
+    String getOptionName() {
+        return name.substring(FieldOptionHandler.LONG_NAME_SUFFIX.length());
+    }
+
+    /**
+     * Gets an alias without {@link FieldOptionHandler#SHORT_NAME_SUFFIX}, as specified by {@link Option#alias()}.
+     * @return an alias, or an empty string if no alias is specified.
+     */
+    String getOptionAlias() {
+        return alias.substring(FieldOptionHandler.SHORT_NAME_SUFFIX.length());
+    }
+
+    /**
+     * Gets a type of the option value.
+     * @return a type.
+     */
+    Class<?> getType() {
+        return type;
+    }
+
+    /**
+     * Gets a name with {@link FieldOptionHandler#LONG_NAME_SUFFIX}.
+     * @return a name.
+     */
+    String getName() {
+        return name;
+    }
+
+    /**
+     * Gets an alias with {@link FieldOptionHandler#SHORT_NAME_SUFFIX}.
+     * @return an alias.
+     */
+    String getAlias() {
+        return alias;
+    }
+
+    /**
+     * Checks if this option has an alias.
+     * @return true if an alias is specified.
+     */
+    boolean hasAlias() {
+        return alias.length() > FieldOptionHandler.SHORT_NAME_SUFFIX.length();
+    }
+
+    /**
+     * Gets a meta name used in usage.
+     * @return a meta name, or a field name if no meta name is specified.
+     */
+    String getMetaName() {
+        return metaName;
+    }
+
+    /**
+     * Gets usage of this option.
+     * @return usage.
+     */
+    String getUsage() {
+        return usage;
+    }
+
+    /**
+     * Checks if this option is required.
+     * @return true if this option is required.
+     */
+    boolean isRequired() {
+        return required;
+    }
+
+    /**
+     * Checks if the option has no value.
+     * @return true if the option value is boolean type.
+     */
+    boolean isSwitch() {
+        return switchOption;
+    }
+
+    /**
+     * Checks if the option can be repeated to hold values in an array or a list.
+     * @return true if the option value is {@code int[]}, {@code long[]}, {@code double[]} or {@code List<String>}.
+     */
+    boolean isRepeatable() {
+        return repeatedKind != RepeatedValues.NONE;
+    }
+
+    /**
+     * Gets a kind of {@link RepeatedValues}.
+     * @return a kind, or {@link RepeatedValues#NONE} if the option can not be repeated.
+     */
+    int getRepeatedKind() {
+        return repeatedKind;
+    }
+
+    /**
+     * Stores values of a repeatable option to the field, without a handler.
+     *
+     * @param values values of this option.
+     * @param target an object which has the field.
+     * @throws Exception if the reflection is failed.
+     */
+    void storeRepeated(RepeatedValues values, Object target) throws Exception {
+        FieldAccessor a = repeatedAccessor;
+        if (a == null) {
+            // creating twice in a race is harmless as handler().
+            a = FieldAccessors.of(field);
+            repeatedAccessor = a;
+        }
+        values.store(target, a, listConstructor);
+    }
+
+    /**
+     * Checks if a value can be converted without an exception.
+     *
+     * @param value a value to be checked.
+     * @return true if {@code value} can be converted.
+     */
+    boolean isValid(CharSequence value) {
+        return (repeatedKind != RepeatedValues.NONE)
+                ? RepeatedValues.isValid(repeatedKind, value) : handler().isValid(value);
+    }
+
+    /**
+     * Checks if the option can accept a value which starts with '-'.
+     * @return true if the option can accept a value which starts with '-'.
+     */
+    boolean canAcceptHyphenValue() {
+        return (repeatedKind != RepeatedValues.NONE)
+                ? RepeatedValues.canAcceptHyphenValue(repeatedKind) : handler().canAcceptHyphenValue();
+    }
+
+    /**
+     * Returns a string expression of this, which is the same as {@link FieldOptionHandler#toString()}.
+     * @return a string expression.
+     */
+    @Override
+    public String toString() {
+        return hasAlias() ? (alias + '/' + name) : name;
+    }
+}
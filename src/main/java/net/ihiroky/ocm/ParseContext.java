@@ -0,0 +1,93 @@
+package net.ihiroky.ocm;
+
+/**
+ * Holds a state and sources of a parse to be reused by the following parses in a thread.
+ * <p/>
+ * {@link ArgumentProcessor#parse(Object, String[])} keeps an instance for each thread, so a parse into a target
+ * reset by {@link ArgumentProcessor#reset(Object)} allocates nothing other than values stored to the target. An
+ * instance is bound to a schema, a listener and whether response files are expanded, and is replaced if one of them
+ * changes. It holds no target between parses.
+ *
+ * @author Hiroki Itoh
+ */
+final class ParseContext {
+
+    /** a schema of targets. */
+    private final Schema schema;
+
+    /** a listener of events, or null. */
+    private final ParseListener listener;
+
+    /** a state of a parse. */
+    private final ParseState state;
+
+    /** a source of command line arguments in an array. */
+    private final ArrayTokenSource tokens = new ArrayTokenSource(null);
+
+    /** a source which expands response files in {@code tokens}, or null if response files are not expanded. */
+    private final ResponseFileTokenSource responseFiles;
+
+    /** true while a parse uses this instance. */
+    private boolean inUse;
+
+    /**
+     * Constructs a new instance.
+     * @param schema a schema of targets.
+     * @param listener a listener of events, or null.
+     * @param responseFileEnabled true if response files are expanded.
+     */
+    ParseContext(Schema schema, ParseListener listener, boolean responseFileEnabled) {
+        this.schema = schema;
+        this.listener = listener;
+        this.state = new ParseState(schema, listener);
+        this.responseFiles = responseFileEnabled ? new ResponseFileTokenSource(tokens) : null;
+    }
+
+    /**
+     * Checks if this instance can be used for a parse.
+     * @param s a schema of a target.
+     * @param l a listener of events, or null.
+     * @param responseFileEnabled true if response files are expanded.
+     * @return true if this instance is not in use, and is bound to the same schema, listener and setting.
+     */
+    boolean isAvailable(Schema s, ParseListener l, boolean responseFileEnabled) {
+        return !inUse && schema == s && listener == l && (responseFiles != null) == responseFileEnabled;
+    }
+
+    /**
+     * Checks if a parse uses this instance.
+     * @return true if a parse uses this instance.
+     */
+    boolean isInUse() {
+        return inUse;
+    }
+
+    /**
+     * Starts a parse.
+     * @param target an object to store options and arguments.
+     * @return a state which holds {@code target}.
+     */
+    ParseState acquire(Object target) {
+        inUse = true;
+        return state.reset(target);
+    }
+
+    /**
+     * Gets a source of command line arguments.
+     * @param args command line arguments.
+     * @return a source, which expands response files if enabled.
+     */
+    TokenSource source(String[] args) {
+        tokens.reset(args);
+        return (responseFiles != null) ? responseFiles.reset() : tokens;
+    }
+
+    /**
+     * Ends a parse, and releases the target and the command line arguments.
+     */
+    void release() {
+        state.reset(null);
+        tokens.reset(null);
+        inUse = false;
+    }
+}
@@ -0,0 +1,103 @@
+package net.ihiroky.ocm;
+
+/**
+ * Describes an error found by {@link ArgumentProcessor#tryParse(Object, String[])}.
+ * <p/>
+ * An error holds only its code and where it is found; a message is built on demand.
+ *
+ * @author Hiroki Itoh
+ */
+public final class ParseError {
+
+    /** a kind of this error. */
+    private final ParseErrorCode code;
+
+    /** an option, or null if this error is not of an option. */
+    private final String option;
+
+    /** a command line argument or a value in error, or null. */
+    private final String value;
+
+    /** an index of a command line argument in error, or -1 if this error is found after all arguments are read. */
+    private final int position;
+
+    /**
+     * Constructs a new instance.
+     * @param code a kind of the error.
+     * @param option an option, or null.
+     * @param value a command line argument or a value in error, or null.
+     * @param position an index of a command line argument in error, or -1.
+     */
+    ParseError(ParseErrorCode code, String option, String value, int position) {
+        this.code = code;
+        this.option = option;
+        this.value = value;
+        this.position = position;
+    }
+
+    /**
+     * Gets a kind of this error.
+     * @return the kind.
+     */
+    public ParseErrorCode getCode() {
+        return code;
+    }
+
+    /**
+     * Gets an option in error, such as {@code -a/--name}.
+     * @return the option, or null if this error is not of an option.
+     */
+    public String getOption() {
+        return option;
+    }
+
+    /**
+     * Gets a command line argument or a value in error.
+     * @return the argument or value, or null if this error has no value.
+     */
+    public String getValue() {
+        return value;
+    }
+
+    /**
+     * Gets an index of a command line argument in error, counted from 0 including values of options.
+     * @return the index, or -1 if this error is found after all arguments are read.
+     */
+    public int getPosition() {
+        return position;
+    }
+
+    /**
+     * Builds a message of this error, which is the same as a message of {@link ArgumentParseException} thrown by
+     * {@link ArgumentProcessor#parse(Object, String[])} for the same error if possible.
+     *
+     * @return a message.
+     */
+    public String getMessage() {
+        switch (code) {
+            case UNKNOWN_OPTION:
+                return "unknown option : " + value;
+            case MISSING_VALUE:
+                return "no value is found for option " + option;
+            case BAD_CONVERSION:
+                return "failed to parse option " + option + " : " + value;
+            case MISSING_REQUIRED:
+                return "option " + option + " is required.";
+            case MISSING_ARGUMENTS:
+                return "arguments are required.";
+            case BAD_ARGUMENT:
+                return "failed to set argument " + value;
+            default:
+                return "failed to read arguments" + ((value != null) ? " : " + value : ".");
+        }
+    }
+
+    /**
+     * Returns a string expression of this.
+     * @return a string expression.
+     */
+    @Override
+    public String toString() {
+        return "ParseError[" + code + ", " + position + ", " + getMessage() + ']';
+    }
+}
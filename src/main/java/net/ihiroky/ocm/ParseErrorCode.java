@@ -0,0 +1,30 @@
+package net.ihiroky.ocm;
+
+/**
+ * Kinds of errors found by {@link ArgumentProcessor#tryParse(Object, String[])}.
+ *
+ * @author Hiroki Itoh
+ */
+public enum ParseErrorCode {
+
+    /** a command line argument starts with '-', but no option matches it. */
+    UNKNOWN_OPTION,
+
+    /** an option which needs a value is followed by no value, or by an option. */
+    MISSING_VALUE,
+
+    /** a value of an option can not be converted to the type of its field. */
+    BAD_CONVERSION,
+
+    /** a required option does not appear. */
+    MISSING_REQUIRED,
+
+    /** required arguments do not appear. */
+    MISSING_ARGUMENTS,
+
+    /** an argument is rejected by the field annotated by {@link Arguments}. */
+    BAD_ARGUMENT,
+
+    /** command line arguments can not be read, such as an unclosed quote or an unreadable response file. */
+    INPUT_ERROR
+}
@@ -0,0 +1,69 @@
+package net.ihiroky.ocm;
+
+import java.util.Set;
+
+/**
+ * Receives events of parses by {@link ArgumentProcessor}, to see where parse time goes.
+ * <p/>
+ * A listener is registered by {@link ArgumentProcessor#setParseListener(ParseListener)}. If no listener is
+ * registered, a parse only checks if a listener is null; no event is created and no time is measured. A listener
+ * declares phases it receives by {@link #getPhases()}, and other phases are neither measured nor reported. Methods of
+ * a listener are called by threads which parse, so a listener shared by threads has to be thread-safe. An exception
+ * thrown by a listener is propagated to the caller of the parse.
+ *
+ * @author Hiroki Itoh
+ */
+public interface ParseListener {
+
+    /**
+     * Gets phases which this listener receives by {@link #phaseStarted(ParsePhase, Class)} and
+     * {@link #phaseEnded(ParsePhase, Class, int, boolean, long)}. This is read once when a parse starts, and once
+     * when a schema is compiled. {@link #optionSet(Class, String)} and
+     * {@link #conversionFailed(Class, String, String, Exception)} are called regardless of phases.
+     *
+     * @return phases to be received.
+     */
+    Set<ParsePhase> getPhases();
+
+    /**
+     * Called when a phase starts. Phases are nested; {@link ParsePhase#PARSE} contains other phases except
+     * {@link ParsePhase#SCHEMA}.
+     *
+     * @param phase a phase which starts.
+     * @param targetClass a class of a target.
+     */
+    void phaseStarted(ParsePhase phase, Class<?> targetClass);
+
+    /**
+     * Called when a phase ends, even if the phase fails.
+     * <p/>
+     * {@code count} is the number of options in a compiled schema for {@link ParsePhase#SCHEMA}, the number of
+     * command line arguments read for {@link ParsePhase#PARSE}, and 1 if an option is found or a value is stored,
+     * or 0 otherwise, for other phases.
+     *
+     * @param phase a phase which ends.
+     * @param targetClass a class of a target.
+     * @param count the number of items processed in the phase.
+     * @param succeeded false if the phase ends with an exception.
+     * @param elapsedNanos time elapsed in the phase in nanoseconds, measured by {@code System.nanoTime()}.
+     */
+    void phaseEnded(ParsePhase phase, Class<?> targetClass, int count, boolean succeeded, long elapsedNanos);
+
+    /**
+     * Called when a value of an option is set to a target, once for each occurrence of the option.
+     *
+     * @param targetClass a class of a target.
+     * @param name a name of the option with "--".
+     */
+    void optionSet(Class<?> targetClass, String name);
+
+    /**
+     * Called when a value of an option can not be converted or stored.
+     *
+     * @param targetClass a class of a target.
+     * @param name a name of the option with "--".
+     * @param value a value which is failed to be converted.
+     * @param cause an exception which is thrown by the conversion.
+     */
+    void conversionFailed(Class<?> targetClass, String name, String value, Exception cause);
+}
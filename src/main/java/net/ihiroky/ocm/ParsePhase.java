@@ -0,0 +1,36 @@
+package net.ihiroky.ocm;
+
+/**
+ * Phases of a parse reported to {@link ParseListener}.
+ *
+ * @author Hiroki Itoh
+ */
+public enum ParsePhase {
+
+    /**
+     * Compiles a schema from annotations of a target class, or from a {@link GeneratedParser}. This phase occurs
+     * only if a schema of the class is not cached.
+     */
+    SCHEMA,
+
+    /**
+     * Parses a command line, from reading the first argument to checking required options. Other phases except
+     * {@link #SCHEMA} occur in this phase.
+     */
+    PARSE,
+
+    /**
+     * Searches an option by a name in a command line argument.
+     */
+    SEARCH,
+
+    /**
+     * Converts a value of an option and stores it to a target.
+     */
+    CONVERSION,
+
+    /**
+     * Adds an argument to a field annotated by {@link Arguments}.
+     */
+    ARGUMENT,
+}
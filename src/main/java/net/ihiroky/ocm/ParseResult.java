@@ -0,0 +1,93 @@
+package net.ihiroky.ocm;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Holds a result of parsing command line arguments.
+ * <p/>
+ * A result of {@link ArgumentProcessor#parseAll(Iterable, TargetFactory)} holds an exception which stops the parse.
+ * A result of {@link ArgumentProcessor#tryParse(Object, String[])} holds all errors found in the parse instead, and
+ * no exception.
+ *
+ * @param <T> a target type.
+ * @author Hiroki Itoh
+ */
+public final class ParseResult<T> {
+
+    /** an object which stores options and arguments. */
+    private final T target;
+
+    /** an exception thrown by the parse, or null. */
+    private final ArgumentParseException error;
+
+    /** errors found by the parse which does not throw an exception. */
+    private final List<ParseError> errors;
+
+    /**
+     * Constructs a new instance.
+     * @param target an object which stores options and arguments.
+     * @param error an exception thrown by the parse, or null.
+     */
+    ParseResult(T target, ArgumentParseException error) {
+        this.target = target;
+        this.error = error;
+        this.errors = Collections.emptyList();
+    }
+
+    /**
+     * Constructs a new instance which holds errors instead of an exception.
+     * @param target an object which stores options and arguments.
+     * @param errors errors found by the parse in the order of command line arguments.
+     */
+    ParseResult(T target, List<ParseError> errors) {
+        this.target = target;
+        this.error = null;
+        this.errors = errors.isEmpty()
+                ? Collections.<ParseError>emptyList() : Collections.unmodifiableList(errors);
+    }
+
+    /**
+     * Gets an object which stores options and arguments. The object may be partially set if the parse is failed.
+     * @return the target.
+     */
+    public T getTarget() {
+        return target;
+    }
+
+    /**
+     * Gets an exception thrown by the parse.
+     * @return the exception, or null if the parse is succeeded or does not throw an exception.
+     */
+    public ArgumentParseException getError() {
+        return error;
+    }
+
+    /**
+     * Gets errors found by {@link ArgumentProcessor#tryParse(Object, String[])}.
+     * @return an unmodifiable list of errors, which is empty if the parse is succeeded or stopped by an exception.
+     */
+    public List<ParseError> getErrors() {
+        return errors;
+    }
+
+    /**
+     * Checks if the parse is succeeded.
+     * @return true if the parse is succeeded.
+     */
+    public boolean isSuccess() {
+        return error == null && errors.isEmpty();
+    }
+
+    /**
+     * Returns a string expression of this.
+     * @return a string expression.
+     */
+    @Override
+    public String toString() {
+        if (error != null) {
+            return "ParseResult[" + error.getMessage() + ']';
+        }
+        return errors.isEmpty() ? "ParseResult[" + target + ']' : "ParseResult" + errors;
+    }
+}
@@ -0,0 +1,311 @@
+package net.ihiroky.ocm;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Holds state of a parse.
+ * <p/>
+ * {@link Schema} is shared by threads, so anything which changes during a parse is held by this class. An instance
+ * is confined to a thread.
+ *
+ * @author Hiroki Itoh
+ */
+final class ParseState {
+
+    /** an object to store options and arguments. */
+    private Object target;
+
+    /** descriptors of options in a schema. */
+    private final List<OptionDescriptor> options;
+
+    /** indices of options which have already been set. */
+    private final BitSet consumed;
+
+    /** buffers of repeatable options indexed by their position, allocated on demand. */
+    private RepeatedValues[] repeated;
+
+    /** a sink bound to the field annotated by {@link Arguments}, bound on the first argument. */
+    private ArgumentSink arguments;
+
+    /**
+     * a sink bound in a previous parse, which is reused if the target holds the same collection. It is kept after
+     * {@link #reset(Object)}, so it holds the collection until the next parse with an argument.
+     */
+    private ArgumentSink lastArguments;
+
+    /** the number of arguments added in this parse. */
+    private int argumentCount;
+
+    /** the number of command line arguments read in this parse. */
+    private int tokenCount;
+
+    /** a view reused to pass a part of a command line argument to handlers. */
+    private final CharSlice slice = new CharSlice();
+
+    /** a listener of events, or null. */
+    private final ParseListener listener;
+
+    /** bits of ordinals of phases which the listener receives, read on {@link #reset(Object)}. */
+    private int phases;
+
+    /** errors found in this parse, or null if an error is thrown as an exception. */
+    private List<ParseError> errors;
+
+    /**
+     * Constructs a new instance.
+     * @param schema a schema of targets.
+     * @param listener a listener of events, or null.
+     */
+    ParseState(Schema schema, ParseListener listener) {
+        this.options = schema.getOptionList();
+        this.consumed = new BitSet(options.size());
+        this.listener = listener;
+    }
+
+    /**
+     * Converts phases to bits of their ordinals.
+     * @param set phases.
+     * @return bits of ordinals.
+     */
+    private static int mask(Set<ParsePhase> set) {
+        int mask = 0;
+        for (ParsePhase phase : set) {
+            mask |= 1 << phase.ordinal();
+        }
+        return mask;
+    }
+
+    /**
+     * Clears state to parse a new target, and reads phases which the listener receives.
+     * @param newTarget an object to store options and arguments, or null to release the last target.
+     * @return this instance.
+     */
+    ParseState reset(Object newTarget) {
+        this.target = newTarget;
+        if (repeated != null) {
+            // values are left if the last parse is failed.
+            for (int i = consumed.nextSetBit(0); i >= 0; i = consumed.nextSetBit(i + 1)) {
+                if (repeated[i] != null) {
+                    repeated[i].clear();
+                }
+            }
+        }
+        this.consumed.clear();
+        this.arguments = null;
+        this.argumentCount = 0;
+        this.tokenCount = 0;
+        this.errors = null;
+        this.phases = (listener != null && newTarget != null) ? mask(listener.getPhases()) : 0;
+        return this;
+    }
+
+    /**
+     * Makes this parse collect errors instead of throwing an exception, until the next {@link #reset(Object)}.
+     * @return this instance.
+     */
+    ParseState collectErrors() {
+        this.errors = new ArrayList<ParseError>();
+        return this;
+    }
+
+    /**
+     * Checks if this parse collects errors.
+     * @return true if errors are collected instead of being thrown.
+     */
+    boolean isCollectingErrors() {
+        return errors != null;
+    }
+
+    /**
+     * Adds an error if this parse collects errors.
+     * @param code a kind of the error.
+     * @param option an option, or null.
+     * @param value a command line argument or a value in error, or null.
+     * @param position an index of a command line argument in error, or -1.
+     * @return false if this parse does not collect errors, so the caller has to throw an exception.
+     */
+    boolean addError(ParseErrorCode code, String option, String value, int position) {
+        List<ParseError> e = errors;
+        if (e == null) {
+            return false;
+        }
+        e.add(new ParseError(code, option, value, position));
+        return true;
+    }
+
+    /**
+     * Checks if an error is collected in this parse.
+     * @return true if this parse collects errors and has found one.
+     */
+    boolean hasErrors() {
+        return errors != null && !errors.isEmpty();
+    }
+
+    /**
+     * Gets errors found in this parse.
+     * @return errors, or null if this parse does not collect errors.
+     */
+    List<ParseError> getErrors() {
+        return errors;
+    }
+
+    /**
+     * Gets an object to store options and arguments.
+     * @return the target.
+     */
+    Object getTarget() {
+        return target;
+    }
+
+    /**
+     * Gets a listener of events.
+     * @return a listener, or null if no listener is registered.
+     */
+    ParseListener getListener() {
+        return listener;
+    }
+
+    /**
+     * Gets a listener of events if it receives a phase.
+     * @param phase a phase.
+     * @return a listener, or null if no listener is registered or it does not receive {@code phase}.
+     */
+    ParseListener getListener(ParsePhase phase) {
+        return ((phases & (1 << phase.ordinal())) != 0) ? listener : null;
+    }
+
+    /**
+     * Checks if an option has already been set.
+     * @param descriptor a descriptor of the option.
+     * @return true if the option has already been set.
+     */
+    boolean isConsumed(OptionDescriptor descriptor) {
+        return consumed.get(descriptor.getIndex());
+    }
+
+    /**
+     * Marks an option as set.
+     * @param descriptor a descriptor of the option.
+     */
+    void consume(OptionDescriptor descriptor) {
+        consumed.set(descriptor.getIndex());
+    }
+
+    /**
+     * Gets indices of options which have already been set.
+     * @return indices of options.
+     */
+    BitSet getConsumed() {
+        return consumed;
+    }
+
+    /**
+     * Adds an argument to the field annotated by {@link Arguments}.
+     * @param handler a handler of arguments.
+     * @param value an argument.
+     * @throws ArgumentParseException if a reflection is failed.
+     */
+    void addArgument(ArgumentsHandler handler, String value) throws ArgumentParseException {
+        ParseListener l = getListener(ParsePhase.ARGUMENT);
+        if (l == null) {
+            arguments = handler.add(target, arguments, lastArguments, value);
+        } else {
+            Class<?> targetClass = target.getClass();
+            l.phaseStarted(ParsePhase.ARGUMENT, targetClass);
+            long start = System.nanoTime();
+            boolean succeeded = false;
+            try {
+                arguments = handler.add(target, arguments, lastArguments, value);
+                succeeded = true;
+            } finally {
+                l.phaseEnded(ParsePhase.ARGUMENT, targetClass, succeeded ? 1 : 0, succeeded, System.nanoTime() - start);
+            }
+        }
+        lastArguments = arguments;
+        argumentCount++;
+    }
+
+    /**
+     * Adds a value of a repeatable option to its buffer.
+     * @param descriptor a descriptor of the repeatable option.
+     * @param value a value to be added.
+     * @throws ArgumentParseException if the value can not be converted.
+     */
+    void addRepeated(OptionDescriptor descriptor, CharSequence value) throws ArgumentParseException {
+        RepeatedValues[] r = repeated;
+        if (r == null) {
+            r = new RepeatedValues[options.size()];
+            repeated = r;
+        }
+        int i = descriptor.getIndex();
+        RepeatedValues values = r[i];
+        if (values == null) {
+            values = new RepeatedValues(descriptor.getRepeatedKind());
+            r[i] = values;
+        }
+        try {
+            values.add(value);
+        } catch (RuntimeException re) {
+            throw new ArgumentParseException("failed to set argument. option : " + descriptor.toString(), re);
+        }
+    }
+
+    /**
+     * Stores values of repeatable options set in this parse to the target.
+     * @throws ArgumentParseException if the reflection is failed.
+     */
+    void storeRepeated() throws ArgumentParseException {
+        RepeatedValues[] r = repeated;
+        if (r == null) {
+            return;
+        }
+        for (int i = consumed.nextSetBit(0); i >= 0; i = consumed.nextSetBit(i + 1)) {
+            if (r[i] != null) {
+                OptionDescriptor descriptor = options.get(i);
+                try {
+                    descriptor.storeRepeated(r[i], target);
+                } catch (Exception e) {
+                    throw new ArgumentParseException("failed to set argument. option : " + descriptor.toString(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets a view of a part of a command line argument. The view is reused by the next call.
+     * @param arg a command line argument.
+     * @param start a start index, inclusive.
+     * @param end an end index, exclusive.
+     * @return a view.
+     */
+    CharSequence slice(String arg, int start, int end) {
+        return slice.set(arg, start, end);
+    }
+
+    /**
+     * Sets the number of command line arguments read in this parse.
+     * @param count the number of command line arguments.
+     */
+    void setTokenCount(int count) {
+        this.tokenCount = count;
+    }
+
+    /**
+     * Gets the number of command line arguments read in this parse.
+     * @return the number of command line arguments.
+     */
+    int getTokenCount() {
+        return tokenCount;
+    }
+
+    /**
+     * Gets the number of arguments added in this parse.
+     * @return the number of arguments.
+     */
+    int getArgumentCount() {
+        return argumentCount;
+    }
+}
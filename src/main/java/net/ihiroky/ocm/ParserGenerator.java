@@ -0,0 +1,23 @@
+package net.ihiroky.ocm;
+
+/**
+ * Generates a {@link GeneratedParser} of a target class at runtime, for {@link Engine#SPECIALIZED}.
+ * <p/>
+ * Generators are found by {@code java.util.ServiceLoader} from
+ * {@code META-INF/services/net.ihiroky.ocm.ParserGenerator}, such as the one in the ocm-engine module which defines
+ * a parser class from bytecode. A generator which can not be loaded in the running JVM is skipped.
+ *
+ * @author Hiroki Itoh
+ */
+public interface ParserGenerator {
+
+    /**
+     * Generates a parser of a target class.
+     *
+     * @param targetClass a class which fields are annotated by {@link Option} and {@link Arguments}.
+     * @param <T> a target type.
+     * @return a parser, or null if this generator does not support the class; the next generator or reflection is
+     * used then.
+     */
+    <T> GeneratedParser<T> generate(Class<T> targetClass);
+}
@@ -0,0 +1,78 @@
+package net.ihiroky.ocm;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+/**
+ * Generates {@link GeneratedParser}s with {@link ParserGenerator}s found by {@code java.util.ServiceLoader}.
+ *
+ * @author Hiroki Itoh
+ */
+final class ParserGenerators {
+
+    /**
+     * Not instantiated.
+     */
+    private ParserGenerators() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Holds generators, which are loaded when {@link Engine#SPECIALIZED} is used first.
+     */
+    private static final class Holder {
+
+        /** generators found when this class is initialized. */
+        static final ParserGenerator[] GENERATORS = loadGenerators();
+    }
+
+    /**
+     * Loads generators, skipping ones which can not be loaded in the running JVM.
+     *
+     * @return loaded generators.
+     */
+    private static ParserGenerator[] loadGenerators() {
+        List<ParserGenerator> list = new ArrayList<ParserGenerator>();
+        Iterator<ParserGenerator> i =
+                ServiceLoader.load(ParserGenerator.class, ParserGenerators.class.getClassLoader()).iterator();
+        for (;;) {
+            try {
+                if (!i.hasNext()) {
+                    break;
+                }
+                list.add(i.next());
+            } catch (ServiceConfigurationError sce) {
+                // such as a generator compiled for a newer JVM; try the next one.
+            } catch (LinkageError le) {
+                // same as above.
+            }
+        }
+        return list.toArray(new ParserGenerator[list.size()]);
+    }
+
+    /**
+     * Generates a parser of a target class.
+     *
+     * @param targetClass a target class.
+     * @return a parser generated by the first generator which supports the class, or null if none supports it.
+     */
+    static GeneratedParser<?> generate(Class<?> targetClass) {
+        for (ParserGenerator generator : Holder.GENERATORS) {
+            GeneratedParser<?> parser;
+            try {
+                parser = generator.generate(targetClass);
+            } catch (RuntimeException re) {
+                continue;
+            } catch (LinkageError le) {
+                continue;
+            }
+            if (parser != null) {
+                return parser;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,131 @@
+package net.ihiroky.ocm;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A trie which finds values by a prefix of their keys, used to complete option and subcommand names.
+ * <p/>
+ * Children of a node are held in arrays sorted by their characters, so keys are visited in lexicographic order
+ * without sorting. This class is not thread-safe while keys are put; a trie which is fully built and safely published
+ * can be read by threads.
+ *
+ * @param <V> a type of values.
+ * @author Hiroki Itoh
+ */
+final class PrefixTrie<V> {
+
+    /** a root node, which matches an empty prefix. */
+    private final Node<V> root = new Node<V>();
+
+    /**
+     * Puts a value, replacing a value of the same key.
+     *
+     * @param key a key.
+     * @param value a value.
+     */
+    void put(String key, V value) {
+        Node<V> node = root;
+        for (int i = 0; i < key.length(); i++) {
+            node = node.child(key.charAt(i), true);
+        }
+        node.key = key;
+        node.value = value;
+    }
+
+    /**
+     * Collects keys and values whose keys start with a prefix, in lexicographic order of the keys.
+     *
+     * @param prefix a prefix.
+     * @param keys a list to add keys to.
+     * @param values a list to add values to.
+     */
+    void collect(CharSequence prefix, List<String> keys, List<V> values) {
+        Node<V> node = root;
+        for (int i = 0; i < prefix.length() && node != null; i++) {
+            node = node.child(prefix.charAt(i), false);
+        }
+        if (node != null) {
+            node.collect(keys, values);
+        }
+    }
+
+    /**
+     * A node of a trie.
+     *
+     * @param <V> a type of values.
+     */
+    private static final class Node<V> {
+
+        /** characters to children in ascending order. */
+        private char[] labels = new char[0];
+
+        /** children in the order of {@code labels}. */
+        private Node<V>[] children = newArray(0);
+
+        /** a key which ends at this node, or null. */
+        String key;
+
+        /** a value of {@code key}. */
+        V value;
+
+        /**
+         * Gets a child of a character.
+         *
+         * @param c a character.
+         * @param create true if a child is created if not found.
+         * @return the child, or null if not found and {@code create} is false.
+         */
+        Node<V> child(char c, boolean create) {
+            int i = Arrays.binarySearch(labels, c);
+            if (i >= 0) {
+                return children[i];
+            }
+            if (!create) {
+                return null;
+            }
+            i = -i - 1;
+            int n = labels.length;
+            char[] newLabels = new char[n + 1];
+            Node<V>[] newChildren = newArray(n + 1);
+            System.arraycopy(labels, 0, newLabels, 0, i);
+            System.arraycopy(children, 0, newChildren, 0, i);
+            System.arraycopy(labels, i, newLabels, i + 1, n - i);
+            System.arraycopy(children, i, newChildren, i + 1, n - i);
+            Node<V> child = new Node<V>();
+            newLabels[i] = c;
+            newChildren[i] = child;
+            labels = newLabels;
+            children = newChildren;
+            return child;
+        }
+
+        /**
+         * Collects keys and values of this node and its descendants in lexicographic order.
+         *
+         * @param keys a list to add keys to.
+         * @param values a list to add values to.
+         */
+        void collect(List<String> keys, List<V> values) {
+            if (key != null) {
+                keys.add(key);
+                values.add(value);
+            }
+            for (Node<V> child : children) {
+                child.collect(keys, values);
+            }
+        }
+
+        /**
+         * Creates an array of nodes.
+         *
+         * @param length a length of the array.
+         * @param <V> a type of values.
+         * @return a new array.
+         */
+        @SuppressWarnings("unchecked")
+        private static <V> Node<V>[] newArray(int length) {
+            return (Node<V>[]) new Node<?>[length];
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package net.ihiroky.ocm;
+
+import net.ihiroky.ocm.handler.Numbers;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Accumulates values of a repeatable option, which is bound to an {@code int[]}, {@code long[]}, {@code double[]}
+ * or {@code List<String>} field.
+ * <p/>
+ * A field of {@code List<String>}, {@code Collection<String>} or {@code Iterable<String>} is set to an
+ * {@code ArrayList}. A field of other {@code List<String>} type is set to an instance of the type, so the type must
+ * be a concrete class with a no-arg constructor.
+ * <p/>
+ * Values are held in a growable primitive buffer while parsing, and stored to the field as an array or a list of
+ * the exact size at the end of a parse. So an element is never boxed. A buffer is held by {@link ParseState}, and
+ * its capacity is reused by the following parses.
+ *
+ * @author Hiroki Itoh
+ */
+final class RepeatedValues {
+
+    /** a kind of an option which is not repeatable. */
+    static final int NONE = 0;
+
+    /** a kind of an {@code int[]} option. */
+    static final int INT = 1;
+
+    /** a kind of a {@code long[]} option. */
+    static final int LONG = 2;
+
+    /** a kind of a {@code double[]} option. */
+    static final int DOUBLE = 3;
+
+    /** a kind of a {@code List<String>}, {@code Collection<String>} or {@code Iterable<String>} option. */
+    static final int STRING = 4;
+
+    /** an initial capacity of a buffer. */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /** a kind of the option. */
+    private final int kind;
+
+    /** a buffer of {@link #INT} values. */
+    private int[] ints;
+
+    /** a buffer of {@link #LONG} values. */
+    private long[] longs;
+
+    /** a buffer of {@link #DOUBLE} values. */
+    private double[] doubles;
+
+    /** a buffer of {@link #STRING} values. */
+    private String[] strings;
+
+    /** the number of values in the buffer. */
+    private int size;
+
+    /**
+     * Constructs a new instance.
+     * @param kind a kind of the option.
+     */
+    RepeatedValues(int kind) {
+        this.kind = kind;
+        switch (kind) {
+            case INT:
+                ints = new int[INITIAL_CAPACITY];
+                break;
+            case LONG:
+                longs = new long[INITIAL_CAPACITY];
+                break;
+            case DOUBLE:
+                doubles = new double[INITIAL_CAPACITY];
+                break;
+            case STRING:
+                strings = new String[INITIAL_CAPACITY];
+                break;
+            default:
+                throw new IllegalArgumentException("not repeatable : " + kind);
+        }
+    }
+
+    /**
+     * Returns a kind of a field type.
+     *
+     * @param field a field annotated by {@link Option}.
+     * @return a kind, or {@link #NONE} if the field is not repeatable.
+     * @throws IllegalArgumentTypeException if the field is a {@code List<String>} which can not be instantiated.
+     */
+    static int kindOf(Field field) {
+        Class<?> type = field.getType();
+        if (type == int[].class) {
+            return INT;
+        } else if (type == long[].class) {
+            return LONG;
+        } else if (type == double[].class) {
+            return DOUBLE;
+        } else if (isArrayListAssignable(type) || List.class.isAssignableFrom(type)) {
+            Type generic = field.getGenericType();
+            if (generic instanceof ParameterizedType
+                    && ((ParameterizedType) generic).getActualTypeArguments()[0] != String.class) {
+                return NONE;
+            }
+            if (!isArrayListAssignable(type)
+                    && (type.isInterface() || Modifier.isAbstract(type.getModifiers()))) {
+                throw new IllegalArgumentTypeException("type of field " + field.getName()
+                        + " must be List, Collection, Iterable or a concrete class : " + type.getName());
+            }
+            return STRING;
+        }
+        return NONE;
+    }
+
+    /**
+     * Gets a constructor of lists stored to a field of {@link #STRING} kind.
+     *
+     * @param field a field of {@link #STRING} kind.
+     * @return an accessible no-arg constructor of the field type, or null if an {@code ArrayList} is stored.
+     * @throws IllegalArgumentTypeException if the field type has no no-arg constructor.
+     */
+    static Constructor<?> listConstructorOf(Field field) {
+        Class<?> type = field.getType();
+        if (isArrayListAssignable(type)) {
+            return null;
+        }
+        try {
+            Constructor<?> constructor = type.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            return constructor;
+        } catch (NoSuchMethodException nsme) {
+            throw new IllegalArgumentTypeException("type of field " + field.getName()
+                    + " must have a no-arg constructor : " + type.getName(), nsme);
+        }
+    }
+
+    /**
+     * Returns true if a field of a specified type is set to an {@code ArrayList}.
+     *
+     * @param type a type of a field.
+     * @return true if the type is {@code List}, {@code Collection} or {@code Iterable}.
+     */
+    private static boolean isArrayListAssignable(Class<?> type) {
+        return type == List.class || type == Collection.class || type == Iterable.class;
+    }
+
+    /**
+     * Checks if a value can be added to values of a specified kind without an exception.
+     *
+     * @param kind a kind of the option.
+     * @param value a value to be checked.
+     * @return true if {@code value} can be converted.
+     */
+    static boolean isValid(int kind, CharSequence value) {
+        switch (kind) {
+            case INT:
+                return Numbers.isValid(value, Integer.MIN_VALUE, Integer.MAX_VALUE);
+            case LONG:
+                return Numbers.isValid(value, Long.MIN_VALUE, Long.MAX_VALUE);
+            case DOUBLE:
+                return Numbers.isValidFloatingPoint(value);
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * Checks if an option of a specified kind can accept a value which starts with '-'.
+     *
+     * @param kind a kind of the option.
+     * @return true if the value is a number.
+     */
+    static boolean canAcceptHyphenValue(int kind) {
+        return kind != STRING;
+    }
+
+    /**
+     * Converts a value and adds it to the buffer.
+     * <p/>
+     * {@code value} may be a view of a part of a command line argument, so a number is parsed without creating a
+     * {@code String}.
+     *
+     * @param value a value to be added.
+     * @throws NumberFormatException if the value is not a number.
+     */
+    void add(CharSequence value) {
+        int s = size;
+        switch (kind) {
+            case INT:
+                if (s == ints.length) {
+                    ints = Arrays.copyOf(ints, s << 1);
+                }
+                ints[s] = (int) Numbers.parse(value, Integer.MIN_VALUE, Integer.MAX_VALUE);
+                break;
+            case LONG:
+                if (s == longs.length) {
+                    longs = Arrays.copyOf(longs, s << 1);
+                }
+                longs[s] = Numbers.parse(value, Long.MIN_VALUE, Long.MAX_VALUE);
+                break;
+            case DOUBLE:
+                if (s == doubles.length) {
+                    doubles = Arrays.copyOf(doubles, s << 1);
+                }
+                doubles[s] = Double.parseDouble(value.toString());
+                break;
+            default:
+                if (s == strings.length) {
+                    strings = Arrays.copyOf(strings, s << 1);
+                }
+                strings[s] = value.toString();
+                break;
+        }
+        size = s + 1;
+    }
+
+    /**
+     * Stores values to a field as an array or a list of the exact size, and clears the buffer.
+     * <p/>
+     * A list is an {@code ArrayList} if {@code listConstructor} is null, or an instance created by it otherwise.
+     * The field value is replaced, so its default value is never modified.
+     *
+     * @param target an object which has the field.
+     * @param accessor an accessor of a field annotated by {@link Option}.
+     * @param listConstructor a constructor given by {@link #listConstructorOf(Field)}.
+     * @throws Exception if the reflection is failed.
+     */
+    void store(Object target, FieldAccessor accessor, Constructor<?> listConstructor) throws Exception {
+        int s = size;
+        size = 0;
+        switch (kind) {
+            case INT:
+                accessor.set(target, Arrays.copyOf(ints, s));
+                break;
+            case LONG:
+                accessor.set(target, Arrays.copyOf(longs, s));
+                break;
+            case DOUBLE:
+                accessor.set(target, Arrays.copyOf(doubles, s));
+                break;
+            default:
+                List<String> list;
+                if (listConstructor == null) {
+                    list = new ArrayList<String>(s);
+                } else {
+                    @SuppressWarnings("unchecked")
+                    List<String> nl = (List<String>) listConstructor.newInstance();
+                    list = nl;
+                }
+                for (int i = 0; i < s; i++) {
+                    list.add(strings[i]);
+                }
+                Arrays.fill(strings, 0, s, null);
+                accessor.set(target, list);
+                break;
+        }
+    }
+
+    /**
+     * Clears the buffer without storing values.
+     */
+    void clear() {
+        if (strings != null) {
+            Arrays.fill(strings, 0, size, null);
+        }
+        size = 0;
+    }
+}
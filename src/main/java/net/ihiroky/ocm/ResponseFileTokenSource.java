@@ -0,0 +1,120 @@
+package net.ihiroky.ocm;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+/**
+ * Expands {@code @path} tokens into tokens read from response files.
+ * <p/>
+ * Tokens in a response file are separated by white spaces and can be quoted. A response file is read through
+ * {@link ChannelTokenSource}, so it is not loaded into memory at once. {@code @path} in a response file and
+ * after {@code --} is not expanded. An instance can be reused by {@link #reset()} after it is closed.
+ *
+ * @author Hiroki Itoh
+ */
+final class ResponseFileTokenSource implements TokenSource {
+
+    /** a source which may contain {@code @path} tokens. */
+    private final TokenSource source;
+
+    /** a source of the response file which is being read, or null. */
+    private TokenSource file;
+
+    /** false after {@code --} is found. */
+    private boolean expanding = true;
+
+    /** a prefix of a response file token. */
+    static final char PREFIX = '@';
+
+    /**
+     * Constructs a new instance.
+     * @param source a source which may contain {@code @path} tokens.
+     */
+    ResponseFileTokenSource(TokenSource source) {
+        this.source = source;
+    }
+
+    /**
+     * Starts expansion again for the next tokens of the source.
+     * @return this instance.
+     */
+    ResponseFileTokenSource reset() {
+        this.file = null;
+        this.expanding = true;
+        return this;
+    }
+
+    @Override
+    public String next() throws ArgumentParseException {
+        for (;;) {
+            if (file != null) {
+                String token = file.next();
+                if (token != null) {
+                    return checkArgumentOnly(token);
+                }
+                closeFile();
+            }
+            String token = source.next();
+            if (!expanding || token == null || token.length() <= 1 || token.charAt(0) != PREFIX) {
+                return checkArgumentOnly(token);
+            }
+            file = open(token.substring(1));
+        }
+    }
+
+    /**
+     * Stops expansion if a token is {@code --}.
+     * @param token a token.
+     * @return {@code token}.
+     */
+    private String checkArgumentOnly(String token) {
+        if (ArgumentProcessor.ARGUMENT_ONLY.equals(token)) {
+            expanding = false;
+        }
+        return token;
+    }
+
+    /**
+     * Opens a response file.
+     * @param path a path of the response file.
+     * @return a source of the response file.
+     * @throws ArgumentParseException if the response file can not be opened.
+     */
+    private static TokenSource open(String path) throws ArgumentParseException {
+        FileInputStream in;
+        try {
+            in = new FileInputStream(path);
+        } catch (IOException ioe) {
+            throw new ArgumentParseException("failed to open response file " + path, ioe);
+        }
+        return new ChannelTokenSource(in.getChannel(), path, true,
+                ChannelTokenSource.Mode.WHITESPACE, Charset.defaultCharset());
+    }
+
+    /**
+     * Closes the response file which is being read.
+     * @throws ArgumentParseException if the response file can not be closed.
+     */
+    private void closeFile() throws ArgumentParseException {
+        TokenSource f = file;
+        file = null;
+        try {
+            f.close();
+        } catch (IOException ioe) {
+            throw new ArgumentParseException("failed to close response file.", ioe);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (file != null) {
+                file.close();
+                file = null;
+            }
+        } finally {
+            source.close();
+        }
+    }
+}
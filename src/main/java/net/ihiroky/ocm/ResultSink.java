@@ -0,0 +1,22 @@
+package net.ihiroky.ocm;
+
+/**
+ * Receives results of a bulk parse as they are parsed.
+ * <p/>
+ * {@link ArgumentProcessor#parseAll(Iterable, TargetFactory, ResultSink)} and its parallel variant pass results to
+ * this instead of returning a list, so an application can process a huge number of command line arguments without
+ * holding all results.
+ *
+ * @param <T> a target type.
+ * @author Hiroki Itoh
+ */
+public interface ResultSink<T> {
+
+    /**
+     * Receives a result. Results are received by the thread which calls the bulk parse, in the order of command
+     * line arguments.
+     *
+     * @param result a result of a parse.
+     */
+    void add(ParseResult<T> result);
+}
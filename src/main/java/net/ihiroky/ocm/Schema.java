@@ -0,0 +1,569 @@
+package net.ihiroky.ocm;
+
+import net.ihiroky.ocm.handler.BooleanFieldOptionHandler;
+import net.ihiroky.ocm.handler.ByteFieldOptionHandler;
+import net.ihiroky.ocm.handler.CharFieldOptionHandler;
+import net.ihiroky.ocm.handler.DoubleFieldOptionHandler;
+import net.ihiroky.ocm.handler.FloatFieldOptionHandler;
+import net.ihiroky.ocm.handler.IntFieldOptionHandler;
+import net.ihiroky.ocm.handler.LongFieldOptionHandler;
+import net.ihiroky.ocm.handler.ShortFieldOptionHandler;
+import net.ihiroky.ocm.handler.StringFieldOptionHandler;
+
+import java.lang.ref.SoftReference;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Holds options and arguments metadata compiled from a target class.
+ * <p/>
+ * A schema is built once per class and shared by every {@link ArgumentProcessor}. It never refers to a target
+ * object, so the target is bound on each parse. Schemas are cached with weak class keys and soft values, so
+ * a class loader which loads target classes can be unloaded.
+ *
+ * @author Hiroki Itoh
+ */
+final class Schema {
+
+    /** a class which this schema is compiled from. */
+    private final Class<?> targetClass;
+
+    /** descriptors of options. */
+    private final List<OptionDescriptor> optionList;
+
+    /** handlers to parse arguments. */
+    private final ArgumentsHandler argumentsHandler;
+
+    /** names and aliases in an open addressing table, which can be searched by a prefix of a string. */
+    private final String[] indexKeys;
+
+    /** hash codes of {@code indexKeys}, compared before the keys. */
+    private final int[] indexHashes;
+
+    /** descriptors corresponding to {@code indexKeys}. */
+    private final OptionDescriptor[] indexValues;
+
+    /** a shift to get a slot of {@code indexKeys} from a hash code. */
+    private final int indexShift;
+
+    /** indices of required options. */
+    private final BitSet requiredSet;
+
+    /** a parser which defines options, searched before {@code indexKeys}, or null. */
+    private final GeneratedParser<?> parser;
+
+    /** an engine which this schema is compiled for, set before this schema is cached. */
+    private Engine engine = Engine.REFLECTIVE;
+
+    /** default values of a target, snapshotted on demand. */
+    private volatile Defaults defaults;
+
+    /** usage, rendered on demand. */
+    private volatile Usage usage;
+
+    /** a trie of option names and aliases to complete them, built on demand. */
+    private volatile PrefixTrie<OptionDescriptor> optionTrie;
+
+    /** a map which stores handlers according to their type. */
+    private static final Map<Class<?>, Class<? extends FieldOptionHandler<?>>> HANDLER_MAP;
+
+    /** 2^32 divided by the golden ratio, to scramble hash codes. */
+    private static final int GOLDEN_RATIO = 0x9E3779B9;
+
+    /** compiled schemas. */
+    private static final Map<Class<?>, SoftReference<Schema>> CACHE =
+            new WeakHashMap<Class<?>, SoftReference<Schema>>();
+
+    /** compiled schemas for {@link Engine#SPECIALIZED}. */
+    private static final Map<Class<?>, SoftReference<Schema>> SPECIALIZED_CACHE =
+            new WeakHashMap<Class<?>, SoftReference<Schema>>();
+
+    static {
+        Map<Class<?>, Class<? extends FieldOptionHandler<?>>> map =
+                new HashMap<Class<?>, Class<? extends FieldOptionHandler<?>>>();
+        map.put(Boolean.TYPE, BooleanFieldOptionHandler.class);
+        map.put(Boolean.class, BooleanFieldOptionHandler.class);
+        map.put(Byte.TYPE, ByteFieldOptionHandler.class);
+        map.put(Byte.class, ByteFieldOptionHandler.class);
+        map.put(Character.TYPE, CharFieldOptionHandler.class);
+        map.put(Character.class, CharFieldOptionHandler.class);
+        map.put(Short.TYPE, ShortFieldOptionHandler.class);
+        map.put(Short.class, ShortFieldOptionHandler.class);
+        map.put(Integer.TYPE, IntFieldOptionHandler.class);
+        map.put(Integer.class, IntFieldOptionHandler.class);
+        map.put(Long.TYPE, LongFieldOptionHandler.class);
+        map.put(Long.class, LongFieldOptionHandler.class);
+        map.put(Float.TYPE, FloatFieldOptionHandler.class);
+        map.put(Float.class, FloatFieldOptionHandler.class);
+        map.put(Double.TYPE, DoubleFieldOptionHandler.class);
+        map.put(Double.class, DoubleFieldOptionHandler.class);
+        map.put(String.class, StringFieldOptionHandler.class);
+        HANDLER_MAP = Collections.unmodifiableMap(map);
+    }
+
+    /**
+     * Constructs a new instance.
+     * @param targetClass a class which this schema is compiled from.
+     * @param optionList descriptors of options.
+     * @param argumentsHandler a handler to parse arguments.
+     * @param index descriptors indexed by their name and alias.
+     * @param parser a parser which defines options, or null.
+     */
+    private Schema(Class<?> targetClass, List<OptionDescriptor> optionList,
+                   ArgumentsHandler argumentsHandler, Map<String, OptionDescriptor> index, GeneratedParser<?> parser) {
+        BitSet required = new BitSet(optionList.size());
+        for (OptionDescriptor descriptor : optionList) {
+            if (descriptor.isRequired()) {
+                required.set(descriptor.getIndex());
+            }
+        }
+        this.targetClass = targetClass;
+        this.optionList = Collections.unmodifiableList(optionList);
+        this.argumentsHandler = argumentsHandler;
+        int capacity = Integer.highestOneBit(Math.max(index.size(), 1) * 2) * 2;
+        this.indexKeys = new String[capacity];
+        this.indexHashes = new int[capacity];
+        this.indexValues = new OptionDescriptor[capacity];
+        this.indexShift = Integer.numberOfLeadingZeros(capacity) + 1;
+        for (Map.Entry<String, OptionDescriptor> entry : index.entrySet()) {
+            String key = entry.getKey();
+            int hash = key.hashCode();
+            int i = slot(hash);
+            while (indexKeys[i] != null) {
+                i = (i + 1) & (capacity - 1);
+            }
+            indexKeys[i] = key;
+            indexHashes[i] = hash;
+            indexValues[i] = entry.getValue();
+        }
+        this.requiredSet = required;
+        this.parser = parser;
+    }
+
+    /**
+     * Gets a schema of a specified class, compiling it if not cached.
+     *
+     * @param targetClass a class which fields are annotated by {@link Option} and {@link Arguments}.
+     * @return a schema of {@code targetClass}.
+     * @throws IllegalArgumentTypeException if {@code targetClass} has unsupported type fields.
+     */
+    static Schema of(Class<?> targetClass) {
+        return of(targetClass, null);
+    }
+
+    /**
+     * Gets a schema of a specified class, compiling it if not cached.
+     *
+     * @param targetClass a class which fields are annotated by {@link Option} and {@link Arguments}.
+     * @param listener a listener to be notified of {@link ParsePhase#SCHEMA}, or null.
+     * @return a schema of {@code targetClass}.
+     * @throws IllegalArgumentTypeException if {@code targetClass} has unsupported type fields.
+     */
+    static Schema of(Class<?> targetClass, ParseListener listener) {
+        return of(targetClass, listener, Engine.REFLECTIVE);
+    }
+
+    /**
+     * Gets a schema of a specified class for an engine, compiling it if not cached.
+     *
+     * @param targetClass a class which fields are annotated by {@link Option} and {@link Arguments}.
+     * @param listener a listener to be notified of {@link ParsePhase#SCHEMA}, or null.
+     * @param engine an engine which parses with the schema.
+     * @return a schema of {@code targetClass}.
+     * @throws IllegalArgumentTypeException if {@code targetClass} has unsupported type fields.
+     */
+    static Schema of(Class<?> targetClass, ParseListener listener, Engine engine) {
+        Map<Class<?>, SoftReference<Schema>> cache = (engine == Engine.SPECIALIZED) ? SPECIALIZED_CACHE : CACHE;
+        SoftReference<Schema> ref;
+        synchronized (cache) {
+            ref = cache.get(targetClass);
+        }
+        Schema schema = (ref != null) ? ref.get() : null;
+        if (schema == null) {
+            // compiling twice in a race is harmless; both results are equivalent.
+            if (listener == null || !listener.getPhases().contains(ParsePhase.SCHEMA)) {
+                schema = compile(targetClass, engine);
+            } else {
+                listener.phaseStarted(ParsePhase.SCHEMA, targetClass);
+                long start = System.nanoTime();
+                schema = null;
+                try {
+                    schema = compile(targetClass, engine);
+                } finally {
+                    listener.phaseEnded(ParsePhase.SCHEMA, targetClass,
+                            (schema != null) ? schema.optionList.size() : 0, schema != null,
+                            System.nanoTime() - start);
+                }
+            }
+            schema.engine = engine;
+            synchronized (cache) {
+                cache.put(targetClass, new SoftReference<Schema>(schema));
+            }
+        }
+        return schema;
+    }
+
+    /**
+     * Compiles a schema, from a {@link GeneratedParser} or a {@link SchemaIndex} if it is available for the class.
+     * A parser is generated at runtime for {@link Engine#SPECIALIZED} if the annotation processor has not generated
+     * one.
+     *
+     * @param targetClass a class to be compiled.
+     * @param engine an engine which parses with the schema.
+     * @return a compiled schema.
+     * @throws IllegalArgumentTypeException if target has unsupported type fields.
+     */
+    private static Schema compile(Class<?> targetClass, Engine engine) {
+        GeneratedParser<?> parser = GeneratedParser.find(targetClass);
+        if (parser == null && engine == Engine.SPECIALIZED) {
+            parser = ParserGenerators.generate(targetClass);
+        }
+        if (parser != null) {
+            return parser.getSchema(targetClass);
+        }
+        Schema indexed = SchemaIndex.load(targetClass);
+        return (indexed != null) ? indexed : parseAnnotation(targetClass);
+    }
+
+    /**
+     * Parses annotations.
+     *
+     * @param targetClass a class to be parsed.
+     * @return a compiled schema.
+     * @throws IllegalArgumentTypeException if target has unsupported type fields.
+     */
+    static Schema parseAnnotation(Class<?> targetClass) {
+        List<OptionDescriptor> optionList = new ArrayList<OptionDescriptor>();
+        ArgumentsHandler argsHandler = new ArgumentsHandler();
+        Map<String, OptionDescriptor> index = new HashMap<String, OptionDescriptor>();
+        for (Class<?> c = targetClass; c != null; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                Option option = field.getAnnotation(Option.class);
+                if (option != null) {
+                    if (option.name().length() == 0) { // a property of annotation is not null.
+                        throw new IllegalArgumentTypeException(
+                                "option name for field " + field.getName() + " is required.");
+                    }
+                    OptionDescriptor descriptor = OptionDescriptor.of(field, option);
+                    if (!descriptor.isRepeatable()) {
+                        checkType(field.getType(), option.name());
+                    }
+                    register(descriptor, optionList, index);
+                    continue;
+                }
+                Arguments arguments = field.getAnnotation(Arguments.class);
+                if (arguments != null) {
+                    if (!Collection.class.isAssignableFrom(field.getType())
+                            && !ArgumentSink.class.isAssignableFrom(field.getType())) {
+                        throw new IllegalArgumentTypeException("arguments type must be "
+                                + Collection.class.getName() + " or " + ArgumentSink.class.getName() + '.');
+                    }
+                    argsHandler.setField(field);
+                    argsHandler.setArguments(arguments);
+                }
+            }
+        }
+        return new Schema(targetClass, optionList, argsHandler, index, null);
+    }
+
+    /**
+     * Creates a schema from options defined by {@link GeneratedParser} or read from {@link SchemaIndex}.
+     *
+     * @param targetClass a class which the parser is generated for.
+     * @param descriptors descriptors in declaration order.
+     * @param argsHandler a handler to parse arguments.
+     * @param parser a parser which defines the options, or null.
+     * @return a compiled schema.
+     * @throws IllegalArgumentTypeException if a name or alias is duplicated.
+     */
+    static Schema create(Class<?> targetClass, List<OptionDescriptor> descriptors, ArgumentsHandler argsHandler,
+                         GeneratedParser<?> parser) {
+        List<OptionDescriptor> optionList = new ArrayList<OptionDescriptor>(descriptors.size());
+        Map<String, OptionDescriptor> index = new HashMap<String, OptionDescriptor>();
+        for (OptionDescriptor descriptor : descriptors) {
+            register(descriptor, optionList, index);
+        }
+        return new Schema(targetClass, optionList, argsHandler, index, parser);
+    }
+
+    /**
+     * Checks if a type is supported.
+     *
+     * @param type a type of option value.
+     * @param optionName an option name used in an error message.
+     * @throws IllegalArgumentTypeException if {@code type} is not supported.
+     */
+    static void checkType(Class<?> type, String optionName) {
+        if (!isSupported(type)) {
+            throw new IllegalArgumentTypeException(
+                    "unsupported option type : " + type + ", option : " + optionName);
+        }
+    }
+
+    /**
+     * Checks if a type is supported by a built-in handler or a converter registered in {@link Converters}.
+     *
+     * @param type a type of option value.
+     * @return true if {@code type} is supported.
+     */
+    static boolean isSupported(Class<?> type) {
+        return HANDLER_MAP.containsKey(type) || Converters.find(type) != null;
+    }
+
+    /**
+     * Checks if a type is supported by a built-in handler.
+     *
+     * @param type a type of option value.
+     * @return true if {@code type} is supported by a built-in handler.
+     */
+    static boolean hasBuiltinHandler(Class<?> type) {
+        return HANDLER_MAP.containsKey(type);
+    }
+
+    /**
+     * Discards all cached schemas, which may have been compiled with converters no longer registered.
+     */
+    static void clearCache() {
+        synchronized (CACHE) {
+            CACHE.clear();
+        }
+        synchronized (SPECIALIZED_CACHE) {
+            SPECIALIZED_CACHE.clear();
+        }
+    }
+
+    /**
+     * Instantiates a handler for a specified type.
+     *
+     * @param type a type of option value.
+     * @param optionName an option name used in an error message.
+     * @return a new handler.
+     * @throws IllegalArgumentTypeException if {@code type} is not supported.
+     */
+    static FieldOptionHandler<?> newHandler(Class<?> type, String optionName) {
+        checkType(type, optionName);
+        Class<? extends FieldOptionHandler<?>> factory = HANDLER_MAP.get(type);
+        try {
+            return factory.newInstance();
+        } catch (Exception e) {
+            // it's a bug if an exception is caught.
+            throw new RuntimeException("failed to instantiate OptionHandler.", e);
+        }
+    }
+
+    /**
+     * Adds a descriptor to a list and an index.
+     *
+     * @param descriptor a descriptor to be added.
+     * @param optionList descriptors in declaration order.
+     * @param index descriptors indexed by their name and alias.
+     * @throws IllegalArgumentTypeException if a name or alias of {@code descriptor} is duplicated.
+     */
+    private static void register(OptionDescriptor descriptor, List<OptionDescriptor> optionList,
+                                 Map<String, OptionDescriptor> index) {
+        boolean hasAlias = descriptor.hasAlias();
+        if (index.containsKey(descriptor.getName()) || (hasAlias && index.containsKey(descriptor.getAlias()))) {
+            throw new IllegalArgumentTypeException("name [" + descriptor.getName()
+                    + "] or alias [" + descriptor.getAlias() + "] is duplicated.");
+        }
+        descriptor.setIndex(optionList.size());
+        optionList.add(descriptor);
+        index.put(descriptor.getName(), descriptor);
+        if (hasAlias) {
+            index.put(descriptor.getAlias(), descriptor);
+        }
+    }
+
+    /**
+     * Gets a class which this schema is compiled from.
+     * @return a target class.
+     */
+    Class<?> getTargetClass() {
+        return targetClass;
+    }
+
+    /**
+     * Gets an engine which this schema is compiled for.
+     * @return an engine.
+     */
+    Engine getEngine() {
+        return engine;
+    }
+
+    /**
+     * Gets descriptors of options.
+     * @return descriptors of options in declaration order, which is unmodifiable.
+     */
+    List<OptionDescriptor> getOptionList() {
+        return optionList;
+    }
+
+    /**
+     * Gets a handler to parse arguments.
+     * @return a handler to parse arguments.
+     */
+    ArgumentsHandler getArgumentsHandler() {
+        return argumentsHandler;
+    }
+
+    /**
+     * Gets default values of a target, snapshotting them on the first call.
+     *
+     * @return default values.
+     * @throws IllegalArgumentTypeException if the target class can not be instantiated.
+     */
+    Defaults getDefaults() {
+        Defaults d = defaults;
+        if (d == null) {
+            // snapshotting twice in a race is harmless; both results are equivalent.
+            d = Defaults.snapshot(targetClass);
+            defaults = d;
+        }
+        return d;
+    }
+
+    /**
+     * Gets usage, rendering it on the first call.
+     *
+     * @return usage.
+     */
+    Usage getUsage() {
+        Usage u = usage;
+        if (u == null) {
+            // rendering twice in a race is harmless; both results are equivalent.
+            u = new Usage(optionList);
+            usage = u;
+        }
+        return u;
+    }
+
+    /**
+     * Gets a trie of option names and aliases, building it on the first call.
+     *
+     * @return a trie which maps names and aliases to descriptors.
+     */
+    PrefixTrie<OptionDescriptor> getOptionTrie() {
+        PrefixTrie<OptionDescriptor> t = optionTrie;
+        if (t == null) {
+            // building twice in a race is harmless; both results are equivalent.
+            t = new PrefixTrie<OptionDescriptor>();
+            for (OptionDescriptor descriptor : optionList) {
+                t.put(descriptor.getName(), descriptor);
+                if (descriptor.hasAlias()) {
+                    t.put(descriptor.getAlias(), descriptor);
+                }
+            }
+            optionTrie = t;
+        }
+        return t;
+    }
+
+    /**
+     * Sets usage rendered in advance.
+     *
+     * @param u usage.
+     */
+    void presetUsage(Usage u) {
+        usage = u;
+    }
+
+    /**
+     * Searches an option by its name or alias.
+     *
+     * @param name a name or alias of an option to be searched.
+     * @return a descriptor that matches name, or null if not found.
+     */
+    OptionDescriptor search(String name) {
+        if (name.length() == 0 || name.charAt(0) != '-') {
+            return null; // every name and alias starts with '-'.
+        }
+        return search(name, name.length(), name.hashCode());
+    }
+
+    /**
+     * Searches an option by a prefix of a string, without creating a substring.
+     *
+     * @param arg a string which starts with a name or alias of an option to be searched.
+     * @param length a length of the prefix.
+     * @return a descriptor that matches the prefix, or null if not found.
+     */
+    OptionDescriptor search(String arg, int length) {
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + arg.charAt(i); // same as String#hashCode()
+        }
+        return search(arg, length, hash);
+    }
+
+    /**
+     * Searches an option with the parser if it indexes names, or in the open addressing table.
+     *
+     * @param arg a string which starts with a name or alias of an option to be searched.
+     * @param length a length of the name or alias.
+     * @param hash a hash code of the name or alias.
+     * @return a descriptor that matches the name or alias, or null if not found.
+     */
+    private OptionDescriptor search(String arg, int length, int hash) {
+        GeneratedParser<?> p = parser;
+        if (p != null) {
+            int i = p.indexOf(arg, length, hash);
+            if (i != GeneratedParser.UNINDEXED) {
+                return (i >= 0) ? optionList.get(i) : null;
+            }
+        }
+        String[] keys = indexKeys;
+        int[] hashes = indexHashes;
+        for (int i = slot(hash); keys[i] != null; i = (i + 1) & (keys.length - 1)) {
+            String key = keys[i];
+            if (hashes[i] == hash && key.length() == length && key.regionMatches(0, arg, 0, length)) {
+                return indexValues[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets a slot of the open addressing table for a hash code. Hash codes are scrambled by the golden ratio because
+     * option names like {@code -o1}, {@code -o2} have consecutive hash codes, which make long probe sequences.
+     *
+     * @param hash a hash code of a key.
+     * @return a slot.
+     */
+    private int slot(int hash) {
+        return (hash * GOLDEN_RATIO) >>> indexShift;
+    }
+
+    /**
+     * Finds the first required option which is not set.
+     *
+     * @param consumed indices of options which have already been set.
+     * @return a descriptor of the missing required option, or null if all required options are set.
+     */
+    OptionDescriptor findMissingRequired(BitSet consumed) {
+        return findMissingRequired(consumed, 0);
+    }
+
+    /**
+     * Finds the first required option which is not set, from a specified position.
+     *
+     * @param consumed indices of options which have already been set.
+     * @param fromIndex a position of an option to start searching at.
+     * @return a descriptor of the missing required option, or null if all required options after
+     *         {@code fromIndex} are set.
+     */
+    OptionDescriptor findMissingRequired(BitSet consumed, int fromIndex) {
+        for (int i = requiredSet.nextSetBit(fromIndex); i >= 0; i = requiredSet.nextSetBit(i + 1)) {
+            if (!consumed.get(i)) {
+                return optionList.get(i);
+            }
+        }
+        return null;
+    }
+}
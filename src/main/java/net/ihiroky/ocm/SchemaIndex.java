@@ -0,0 +1,278 @@
+package net.ihiroky.ocm;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Reads and writes a binary index of a schema, which is built by {@link SchemaIndexer} at build time.
+ * <p/>
+ * An index is a resource named {@code <binary class name with '/'>.ocm} next to a target class. It holds names,
+ * aliases, declaring classes, field names and types, required flags of options and arguments, and usage rendered
+ * without wrapping. A schema read from an index needs no annotation scanning and no usage rendering; fields are
+ * looked up by name. An index also holds a CRC-32 of the class files of the class and its superclasses. If the
+ * class files are changed after the index is built, such as an annotation value edited and compiled without
+ * rebuilding indices, the index is ignored and the schema is compiled from annotations.
+ *
+ * @author Hiroki Itoh
+ */
+final class SchemaIndex {
+
+    /** a suffix of an index resource. */
+    static final String SUFFIX = ".ocm";
+
+    /** a magic number and a format version, "OCM" and 2. */
+    private static final int MAGIC = 0x4F434D02;
+
+    /** a fingerprint of a class whose class files can not be read. */
+    private static final long NO_FINGERPRINT = -1L;
+
+    /** a size of a buffer to read class files. */
+    private static final int BUFFER_SIZE = 8192;
+
+    /** the maximum length of a string in bytes, to reject a broken index. */
+    private static final int MAX_STRING_LENGTH = 64 * 1024 * 1024;
+
+    /** a charset of strings. */
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * Not instantiated.
+     */
+    private SchemaIndex() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Gets a name of an index resource of a class.
+     *
+     * @param targetClass a target class.
+     * @return a resource name.
+     */
+    static String resourceName(Class<?> targetClass) {
+        return targetClass.getName().replace('.', '/').concat(SUFFIX);
+    }
+
+    /**
+     * Writes an index of a schema.
+     *
+     * @param schema a schema compiled from annotations.
+     * @param out an output, which is not closed.
+     * @throws IOException if an I/O error occurs.
+     */
+    static void write(Schema schema, OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        writeString(data, schema.getTargetClass().getName());
+        data.writeLong(fingerprint(schema.getTargetClass()));
+        List<OptionDescriptor> options = schema.getOptionList();
+        data.writeInt(options.size());
+        for (OptionDescriptor option : options) {
+            Field field = option.getField();
+            writeString(data, field.getDeclaringClass().getName());
+            writeString(data, field.getName());
+            writeString(data, field.getType().getName());
+            writeString(data, option.getOptionName());
+            writeString(data, option.getOptionAlias());
+            writeString(data, option.getMetaName());
+            writeString(data, option.getUsage());
+            data.writeBoolean(option.isRequired());
+        }
+        ArgumentsHandler arguments = schema.getArgumentsHandler();
+        Field field = arguments.getField();
+        data.writeBoolean(field != null);
+        if (field != null) {
+            writeString(data, field.getDeclaringClass().getName());
+            writeString(data, field.getName());
+            writeString(data, field.getType().getName());
+            data.writeBoolean(arguments.isRequired());
+        }
+        Usage usage = schema.getUsage();
+        writeString(data, Usage.LINE_SEPARATOR);
+        writeString(data, usage.getOneLine(0));
+        writeString(data, usage.getLines(0));
+        data.flush();
+    }
+
+    /**
+     * Loads a schema from an index of a class.
+     *
+     * @param targetClass a target class.
+     * @return a schema, or null if no index is found or the index does not match {@code targetClass}.
+     */
+    static Schema load(Class<?> targetClass) {
+        ClassLoader loader = targetClass.getClassLoader();
+        if (loader == null) {
+            return null;
+        }
+        InputStream in = loader.getResourceAsStream(resourceName(targetClass));
+        if (in == null) {
+            return null;
+        }
+        try {
+            try {
+                return read(targetClass, new BufferedInputStream(in));
+            } finally {
+                in.close();
+            }
+        } catch (IOException ioe) {
+            // compiled from annotations instead.
+            return null;
+        }
+    }
+
+    /**
+     * Reads a schema from an index.
+     *
+     * @param targetClass a target class.
+     * @param in an index, which is not closed.
+     * @return a schema, or null if the index does not match {@code targetClass}.
+     * @throws IOException if an I/O error occurs.
+     */
+    static Schema read(Class<?> targetClass, InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC || !readString(data).equals(targetClass.getName())) {
+            return null;
+        }
+        long fingerprint = data.readLong();
+        if (fingerprint == NO_FINGERPRINT || fingerprint != fingerprint(targetClass)) {
+            return null;
+        }
+        int size = data.readInt();
+        List<OptionDescriptor> options = new ArrayList<OptionDescriptor>(size);
+        for (int i = 0; i < size; i++) {
+            Field field = findField(targetClass, readString(data), readString(data), readString(data));
+            String name = readString(data);
+            String alias = readString(data);
+            String metaName = readString(data);
+            String usage = readString(data);
+            boolean required = data.readBoolean();
+            if (field == null) {
+                return null;
+            }
+            OptionDescriptor descriptor = OptionDescriptor.of(field, name, alias, metaName, usage, required);
+            if (!descriptor.isRepeatable() && !Schema.isSupported(field.getType())) {
+                // a converter is not registered yet; compiled from annotations to report it.
+                return null;
+            }
+            options.add(descriptor);
+        }
+        ArgumentsHandler arguments = new ArgumentsHandler();
+        if (data.readBoolean()) {
+            Field field = findField(targetClass, readString(data), readString(data), readString(data));
+            if (field == null) {
+                return null;
+            }
+            arguments.setField(field);
+            arguments.setRequired(data.readBoolean());
+        }
+        Schema schema;
+        try {
+            schema = Schema.create(targetClass, options, arguments, null);
+        } catch (IllegalArgumentTypeException iate) {
+            return null;
+        }
+        String lineSeparator = readString(data);
+        String oneLine = readString(data);
+        String lines = readString(data);
+        if (lineSeparator.equals(Usage.LINE_SEPARATOR)) {
+            schema.presetUsage(new Usage(schema.getOptionList(), oneLine, lines));
+        }
+        return schema;
+    }
+
+    /**
+     * Computes a CRC-32 of class files of a class and its superclasses, to detect a class changed after an index is
+     * built. Classes of the bootstrap class loader are skipped because they have no annotated fields.
+     *
+     * @param targetClass a target class.
+     * @return the CRC-32, or {@link #NO_FINGERPRINT} if a class file can not be read.
+     */
+    static long fingerprint(Class<?> targetClass) {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        for (Class<?> c = targetClass; c != null; c = c.getSuperclass()) {
+            ClassLoader loader = c.getClassLoader();
+            if (loader == null) {
+                continue;
+            }
+            InputStream in = loader.getResourceAsStream(c.getName().replace('.', '/').concat(".class"));
+            if (in == null) {
+                return NO_FINGERPRINT;
+            }
+            try {
+                try {
+                    for (int n = in.read(buffer); n != -1; n = in.read(buffer)) {
+                        crc.update(buffer, 0, n);
+                    }
+                } finally {
+                    in.close();
+                }
+            } catch (IOException ioe) {
+                return NO_FINGERPRINT;
+            }
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Finds a field declared by a target class or its superclasses.
+     *
+     * @param targetClass a target class.
+     * @param declaringClass a name of a class which declares the field.
+     * @param name a field name.
+     * @param type a name of the field type.
+     * @return a field, or null if not found or its type does not match.
+     */
+    private static Field findField(Class<?> targetClass, String declaringClass, String name, String type) {
+        for (Class<?> c = targetClass; c != null; c = c.getSuperclass()) {
+            if (c.getName().equals(declaringClass)) {
+                try {
+                    Field field = c.getDeclaredField(name);
+                    return field.getType().getName().equals(type) ? field : null;
+                } catch (NoSuchFieldException nsfe) {
+                    return null;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Writes a string of any length in UTF-8.
+     *
+     * @param data an output.
+     * @param s a string.
+     * @throws IOException if an I/O error occurs.
+     */
+    private static void writeString(DataOutputStream data, String s) throws IOException {
+        byte[] bytes = s.getBytes(UTF8);
+        data.writeInt(bytes.length);
+        data.write(bytes);
+    }
+
+    /**
+     * Reads a string written by {@link #writeString(DataOutputStream, String)}.
+     *
+     * @param data an input.
+     * @return a string.
+     * @throws IOException if an I/O error occurs.
+     */
+    private static String readString(DataInputStream data) throws IOException {
+        int length = data.readInt();
+        if (length < 0 || length > MAX_STRING_LENGTH) {
+            throw new IOException("invalid string length : " + length);
+        }
+        byte[] bytes = new byte[length];
+        data.readFully(bytes);
+        return new String(bytes, UTF8);
+    }
+}
@@ -0,0 +1,128 @@
+package net.ihiroky.ocm;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
+/**
+ * Writes schema indices of target classes at build time, so {@link ArgumentProcessor} reads them at startup instead
+ * of scanning annotations.
+ * <p/>
+ * {@link #main(String[])} scans a directory of compiled classes, and writes an index named
+ * {@code <class name>.ocm} next to each concrete class which declares fields annotated by {@link Option} or
+ * {@link Arguments}. The index holds options, arguments and usage rendered without wrapping. A class which has a
+ * parser generated by the annotation processor is skipped because the parser needs no reflection. The classes and
+ * their dependencies must be on the class path. The {@code ocmIndex} task in {@code build.gradle} runs this class
+ * after compilation, so indices are packaged into the jar with the classes.
+ * <p/>
+ * An index must be rebuilt whenever annotations are changed. If fields of a class are changed, an old index is
+ * ignored at runtime.
+ *
+ * @author Hiroki Itoh
+ */
+public final class SchemaIndexer {
+
+    /** a suffix of a class file. */
+    private static final String CLASS_SUFFIX = ".class";
+
+    /**
+     * Not instantiated.
+     */
+    private SchemaIndexer() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Writes schema indices of classes in directories.
+     *
+     * @param args directories of compiled classes, which are also output directories.
+     * @throws IOException if an I/O error occurs.
+     * @throws ClassNotFoundException if a class in the directories can not be loaded.
+     * @throws IllegalArgumentTypeException if a class has an invalid option.
+     */
+    public static void main(String[] args) throws IOException, ClassNotFoundException {
+        ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        int count = 0;
+        for (String arg : args) {
+            File dir = new File(arg);
+            if (dir.isDirectory()) {
+                count += index(dir, dir, loader);
+            }
+        }
+        System.out.println(count + " schema index(es) written.");
+    }
+
+    /**
+     * Writes schema indices of classes in a directory recursively.
+     *
+     * @param root a root directory of classes.
+     * @param dir a directory to scan.
+     * @param loader a class loader to load classes.
+     * @return the number of indices written.
+     * @throws IOException if an I/O error occurs.
+     * @throws ClassNotFoundException if a class can not be loaded.
+     */
+    private static int index(File root, File dir, ClassLoader loader) throws IOException, ClassNotFoundException {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            throw new IOException("failed to list " + dir);
+        }
+        int count = 0;
+        for (File file : files) {
+            if (file.isDirectory()) {
+                count += index(root, file, loader);
+                continue;
+            }
+            String path = file.getPath();
+            if (!path.endsWith(CLASS_SUFFIX)) {
+                continue;
+            }
+            String base = path.substring(0, path.length() - CLASS_SUFFIX.length());
+            String name = base.substring(root.getPath().length() + 1).replace(File.separatorChar, '.');
+            Class<?> c = Class.forName(name, false, loader);
+            if (isTarget(c)) {
+                write(Schema.parseAnnotation(c), new File(base.concat(SchemaIndex.SUFFIX)));
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Checks if a class needs an index.
+     *
+     * @param c a class.
+     * @return true if {@code c} is a concrete class which declares annotated fields and has no generated parser.
+     */
+    private static boolean isTarget(Class<?> c) {
+        if (c.isInterface() || c.isAnnotation() || Modifier.isAbstract(c.getModifiers())) {
+            return false;
+        }
+        for (Field field : c.getDeclaredFields()) {
+            if (field.isAnnotationPresent(Option.class) || field.isAnnotationPresent(Arguments.class)) {
+                return GeneratedParser.find(c) == null;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Writes an index of a schema to a file.
+     *
+     * @param schema a schema.
+     * @param file a file to write.
+     * @throws IOException if an I/O error occurs.
+     */
+    private static void write(Schema schema, File file) throws IOException {
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+        try {
+            SchemaIndex.write(schema, out);
+        } finally {
+            out.close();
+        }
+    }
+}
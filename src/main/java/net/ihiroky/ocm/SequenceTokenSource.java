@@ -0,0 +1,51 @@
+package net.ihiroky.ocm;
+
+import java.io.IOException;
+
+/**
+ * Provides tokens of a source followed by tokens of another source.
+ *
+ * @author Hiroki Itoh
+ */
+final class SequenceTokenSource implements TokenSource {
+
+    /** a source read first. */
+    private final TokenSource first;
+
+    /** a source read after {@code first} is exhausted. */
+    private final TokenSource second;
+
+    /** true if {@code first} is exhausted. */
+    private boolean firstExhausted;
+
+    /**
+     * Constructs a new instance.
+     * @param first a source read first.
+     * @param second a source read after {@code first} is exhausted.
+     */
+    SequenceTokenSource(TokenSource first, TokenSource second) {
+        this.first = first;
+        this.second = second;
+    }
+
+    @Override
+    public String next() throws ArgumentParseException {
+        if (!firstExhausted) {
+            String token = first.next();
+            if (token != null) {
+                return token;
+            }
+            firstExhausted = true;
+        }
+        return second.next();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            first.close();
+        } finally {
+            second.close();
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package net.ihiroky.ocm;
+
+/**
+ * Splits a command line string into tokens in the way of a POSIX shell.
+ * <p/>
+ * Tokens are separated by spaces, tabs and newlines. A part quoted by {@code '} is taken literally. In a part quoted
+ * by {@code "}, a backslash escapes only {@code $}, {@code `}, {@code "}, a backslash and a newline. Outside quotes, a
+ * backslash escapes any character, and a backslash followed by a newline is removed. A word which starts with
+ * {@code #} and the rest of its line are a comment. No expansion, such as of variables, globs and commands, is
+ * performed.
+ * <p/>
+ * Characters are scanned once without regular expressions. A token without quotes and escapes is a substring of the
+ * command line; other tokens are built in a buffer reused by this instance.
+ *
+ * @author Hiroki Itoh
+ */
+final class ShellTokenSource implements TokenSource {
+
+    /** a command line. */
+    private final CharSequence line;
+
+    /** a position of the next character to scan. */
+    private int position;
+
+    /** a buffer to build a token which has quotes or escapes. */
+    private final StringBuilder buffer = new StringBuilder();
+
+    /**
+     * Constructs a new instance.
+     * @param line a command line, which must not be modified while tokens are read.
+     */
+    ShellTokenSource(CharSequence line) {
+        this.line = line;
+    }
+
+    @Override
+    public String next() throws ArgumentParseException {
+        int length = line.length();
+        int i = skipBlanks(position, length);
+        if (i == length) {
+            position = i;
+            return null;
+        }
+
+        // fast path for a token without quotes and escapes.
+        int start = i;
+        for (char c; i < length && !isBlank(c = line.charAt(i)); i++) {
+            if (c == '\'' || c == '"' || c == '\\') {
+                buffer.setLength(0);
+                buffer.append(line, start, i);
+                return scanQuoted(i, length);
+            }
+        }
+        position = i;
+        return line.subSequence(start, i).toString();
+    }
+
+    /**
+     * Skips blanks and comments.
+     *
+     * @param start a position to start skipping at.
+     * @param length the length of the command line.
+     * @return a position of the next token, or {@code length} if no token remains.
+     */
+    private int skipBlanks(int start, int length) {
+        int i = start;
+        while (i < length) {
+            char c = line.charAt(i);
+            if (c == '#') {
+                while (i < length && line.charAt(i) != '\n') {
+                    i++;
+                }
+            } else if (isBlank(c)) {
+                i++;
+            } else if (c == '\\' && i + 1 < length && line.charAt(i + 1) == '\n') {
+                i += 2;
+            } else {
+                break;
+            }
+        }
+        return i;
+    }
+
+    /**
+     * Scans the rest of a token which has quotes or escapes into {@code buffer}.
+     *
+     * @param start a position of the first quote or backslash.
+     * @param length the length of the command line.
+     * @return the token.
+     * @throws ArgumentParseException if a quote is not closed or the command line ends with a backslash.
+     */
+    private String scanQuoted(int start, int length) throws ArgumentParseException {
+        int i = start;
+        while (i < length) {
+            char c = line.charAt(i++);
+            if (c == '\'') {
+                int end = indexOf('\'', i, length);
+                buffer.append(line, i, end);
+                i = end + 1;
+            } else if (c == '"') {
+                i = scanDoubleQuoted(i, length);
+            } else if (c == '\\') {
+                if (i == length) {
+                    throw new ArgumentParseException("no character is found after \\ in command line.");
+                }
+                c = line.charAt(i++);
+                if (c != '\n') {
+                    buffer.append(c);
+                }
+            } else if (isBlank(c)) {
+                i--;
+                break;
+            } else {
+                buffer.append(c);
+            }
+        }
+        position = i;
+        return buffer.toString();
+    }
+
+    /**
+     * Scans a part quoted by {@code "} into {@code buffer}.
+     *
+     * @param start a position next to the opening quote.
+     * @param length the length of the command line.
+     * @return a position next to the closing quote.
+     * @throws ArgumentParseException if the quote is not closed.
+     */
+    private int scanDoubleQuoted(int start, int length) throws ArgumentParseException {
+        int i = start;
+        while (i < length) {
+            char c = line.charAt(i++);
+            if (c == '"') {
+                return i;
+            }
+            if (c == '\\' && i < length) {
+                char e = line.charAt(i);
+                if (e == '$' || e == '`' || e == '"' || e == '\\' || e == '\n') {
+                    i++;
+                    if (e != '\n') {
+                        buffer.append(e);
+                    }
+                    continue;
+                }
+            }
+            buffer.append(c);
+        }
+        throw new ArgumentParseException("unclosed quote \" in command line.");
+    }
+
+    /**
+     * Finds a closing quote.
+     *
+     * @param quote a quote character.
+     * @param start a position next to the opening quote.
+     * @param length the length of the command line.
+     * @return a position of the closing quote.
+     * @throws ArgumentParseException if the quote is not closed.
+     */
+    private int indexOf(char quote, int start, int length) throws ArgumentParseException {
+        for (int i = start; i < length; i++) {
+            if (line.charAt(i) == quote) {
+                return i;
+            }
+        }
+        throw new ArgumentParseException("unclosed quote " + quote + " in command line.");
+    }
+
+    /**
+     * Checks if a character separates tokens.
+     *
+     * @param c a character.
+     * @return true if {@code c} is a space, a tab or a newline.
+     */
+    private static boolean isBlank(char c) {
+        return c == ' ' || c == '\t' || c == '\n';
+    }
+
+    @Override
+    public void close() {
+    }
+}
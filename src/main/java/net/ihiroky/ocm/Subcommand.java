@@ -0,0 +1,68 @@
+package net.ihiroky.ocm;
+
+/**
+ * Holds a factory of a subcommand and a schema compiled when the subcommand is selected first.
+ *
+ * @author Hiroki Itoh
+ */
+final class Subcommand {
+
+    /** a factory to create a target. */
+    private final TargetFactory<?> factory;
+
+    /** a schema of targets, or null if not compiled yet. */
+    private volatile Schema schema;
+
+    /**
+     * Constructs a new instance.
+     * @param factory a factory to create a target.
+     */
+    Subcommand(TargetFactory<?> factory) {
+        this.factory = factory;
+    }
+
+    /**
+     * Creates a new target.
+     *
+     * @return a new target.
+     * @throws NullPointerException if the factory returns null.
+     */
+    Object newTarget() {
+        Object target = factory.newTarget();
+        if (target == null) {
+            throw new NullPointerException("target is null.");
+        }
+        return target;
+    }
+
+    /**
+     * Gets a schema of a target class, compiling it on the first call.
+     *
+     * @param targetClass a class of a target.
+     * @param listener a listener to be notified of {@link ParsePhase#SCHEMA}, or null.
+     * @param engine an engine which parses with the schema.
+     * @return a schema.
+     * @throws IllegalArgumentTypeException if {@code targetClass} has invalid option
+     */
+    Schema schemaOf(Class<?> targetClass, ParseListener listener, Engine engine) {
+        Schema s = schema;
+        if (s == null || s.getTargetClass() != targetClass || s.getEngine() != engine) {
+            s = Schema.of(targetClass, listener, engine);
+            schema = s;
+        }
+        return s;
+    }
+
+    /**
+     * Gets a schema, creating a target to find its class if not compiled yet.
+     *
+     * @param listener a listener to be notified of {@link ParsePhase#SCHEMA}, or null.
+     * @return a schema.
+     * @throws NullPointerException if the factory returns null.
+     * @throws IllegalArgumentTypeException if a class of targets has invalid option
+     */
+    Schema schema(ParseListener listener) {
+        Schema s = schema;
+        return (s != null) ? s : schemaOf(newTarget().getClass(), listener, Engine.REFLECTIVE);
+    }
+}
@@ -0,0 +1,76 @@
+package net.ihiroky.ocm;
+
+/**
+ * Holds a result of {@link ArgumentProcessor#parseSubcommand(Object, String[])}.
+ *
+ * @param <G> a type of an object which stores global options.
+ * @author Hiroki Itoh
+ */
+public final class SubcommandResult<G> {
+
+    /** a name of the selected subcommand. */
+    private final String name;
+
+    /** an object which stores global options. */
+    private final G globals;
+
+    /** an object which stores options and arguments of the subcommand. */
+    private final Object target;
+
+    /**
+     * Constructs a new instance.
+     * @param name a name of the selected subcommand.
+     * @param globals an object which stores global options.
+     * @param target an object which stores options and arguments of the subcommand.
+     */
+    SubcommandResult(String name, G globals, Object target) {
+        this.name = name;
+        this.globals = globals;
+        this.target = target;
+    }
+
+    /**
+     * Gets a name of the selected subcommand.
+     * @return the name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets an object which stores global options.
+     * @return the object passed to {@link ArgumentProcessor#parseSubcommand(Object, String[])}.
+     */
+    public G getGlobals() {
+        return globals;
+    }
+
+    /**
+     * Gets an object which stores options and arguments of the subcommand, created by its factory.
+     * @return the target.
+     */
+    public Object getTarget() {
+        return target;
+    }
+
+    /**
+     * Gets an object which stores options and arguments of the subcommand as a specified type.
+     *
+     * @param type a type of the target.
+     * @param <T> a type of the target.
+     * @return the target.
+     * @throws ClassCastException if the target is not an instance of {@code type}.
+     */
+    public <T> T getTarget(Class<T> type) {
+        return type.cast(target);
+    }
+
+    /**
+     * Returns a string expression of this.
+     * @return a string expression.
+     */
+    @Override
+    public String toString() {
+        return "SubcommandResult[" + name + ", " + globals + ", " + target + ']';
+    }
+}
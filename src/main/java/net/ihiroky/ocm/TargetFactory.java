@@ -0,0 +1,16 @@
+package net.ihiroky.ocm;
+
+/**
+ * Creates targets to store options and arguments, used by bulk parse.
+ *
+ * @param <T> a target type.
+ * @author Hiroki Itoh
+ */
+public interface TargetFactory<T> {
+
+    /**
+     * Creates a new target.
+     * @return a new target.
+     */
+    T newTarget();
+}
@@ -0,0 +1,19 @@
+package net.ihiroky.ocm;
+
+import java.io.Closeable;
+
+/**
+ * Provides command line arguments one by one to {@link ArgumentProcessor}.
+ *
+ * @author Hiroki Itoh
+ */
+interface TokenSource extends Closeable {
+
+    /**
+     * Returns the next token.
+     *
+     * @return the next token, or null if no token remains.
+     * @throws ArgumentParseException if the token can not be read.
+     */
+    String next() throws ArgumentParseException;
+}
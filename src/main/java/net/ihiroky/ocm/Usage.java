@@ -0,0 +1,290 @@
+package net.ihiroky.ocm;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.List;
+
+/**
+ * Holds usage rendered from a schema.
+ * <p/>
+ * Usage without wrapping is rendered once when an instance is created. Usage wrapped at a terminal width is
+ * rendered on demand, and the last one is cached because the same width is usually requested repeatedly. Encoded
+ * usage is cached in the same way.
+ *
+ * @author Hiroki Itoh
+ */
+final class Usage {
+
+    /** items of one line usage, like {@code [-s/--string str]}. */
+    private final String[] items;
+
+    /** heads of option lines, like {@code  -s, --string : }. */
+    private final String[] heads;
+
+    /** descriptions of option lines. */
+    private final String[] descriptions;
+
+    /** one line usage without wrapping. */
+    private final String oneLine;
+
+    /** usage without wrapping. */
+    private final String lines;
+
+    /** usage wrapped at the last requested width. */
+    private volatile Wrapped wrapped;
+
+    /** usage encoded by the last requested charset. */
+    private volatile Encoded encoded;
+
+    /** a line separator. */
+    static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
+    /** a header of one line usage. */
+    private static final String ONE_LINE_HEADER = "available options : ";
+
+    /** a header of usage. */
+    private static final String HEADER = "available options :";
+
+    /** the minimum width of descriptions to indent continuation lines under the description. */
+    private static final int MIN_DESCRIPTION_WIDTH = 20;
+
+    /** an indent of continuation lines if the head of a line is too long. */
+    private static final String INDENT = "        ";
+
+    /**
+     * Constructs a new instance.
+     * @param options descriptors of options in declaration order.
+     */
+    Usage(List<OptionDescriptor> options) {
+        this(options, null, null);
+    }
+
+    /**
+     * Constructs a new instance with usage rendered in advance, such as usage read from a {@link SchemaIndex}.
+     * @param options descriptors of options in declaration order.
+     * @param renderedOneLine one line usage without wrapping, or null to render it.
+     * @param renderedLines usage without wrapping, or null to render it.
+     */
+    Usage(List<OptionDescriptor> options, String renderedOneLine, String renderedLines) {
+        int size = options.size();
+        items = new String[size];
+        heads = new String[size];
+        descriptions = new String[size];
+        for (int i = 0; i < size; i++) {
+            OptionDescriptor oh = options.get(i);
+            String item = oh.toString() + ' ' + oh.getMetaName();
+            if (oh.isRepeatable()) {
+                item = item.concat(" ...");
+            }
+            items[i] = oh.isRequired() ? item : '[' + item + ']';
+
+            String alias = oh.getAlias().endsWith(FieldOptionHandler.SHORT_NAME_SUFFIX)
+                    ? "    " : oh.getAlias() + ", ";
+            String longName = oh.getName().equals(FieldOptionHandler.LONG_NAME_SUFFIX) ? "" : oh.getName();
+            heads[i] = ' ' + alias + longName + " : ";
+            descriptions[i] = oh.isRequired() ? oh.getUsage() + " (required)" : oh.getUsage();
+        }
+        oneLine = (renderedOneLine != null) ? renderedOneLine : renderOneLine(0);
+        lines = (renderedLines != null) ? renderedLines : render(0);
+    }
+
+    /**
+     * Gets one line usage.
+     * @param width a width to wrap at, or 0 or less not to wrap.
+     * @return one line usage, which does not end with a line separator.
+     */
+    String getOneLine(int width) {
+        return (width <= 0) ? oneLine : getWrapped(width).oneLine;
+    }
+
+    /**
+     * Gets usage.
+     * @param width a width to wrap at, or 0 or less not to wrap.
+     * @return usage, which does not end with a line separator.
+     */
+    String getLines(int width) {
+        return (width <= 0) ? lines : getWrapped(width).lines;
+    }
+
+    /**
+     * Gets usage followed by a line separator, which is encoded by a charset.
+     * @param width a width to wrap at, or 0 or less not to wrap.
+     * @param charset a charset to encode usage; unmappable characters are replaced.
+     * @return a read-only buffer which holds encoded usage.
+     */
+    ByteBuffer getBytes(int width, Charset charset) {
+        Encoded e = encoded;
+        if (e == null || e.width != width || !e.charset.equals(charset)) {
+            ByteBuffer bytes = charset.encode(getLines(width).concat(LINE_SEPARATOR));
+            e = new Encoded(width, charset, bytes.asReadOnlyBuffer());
+            encoded = e;
+        }
+        return e.bytes.duplicate();
+    }
+
+    /**
+     * Gets usage wrapped at a width.
+     * @param width a width to wrap at.
+     * @return wrapped usage.
+     */
+    private Wrapped getWrapped(int width) {
+        Wrapped w = wrapped;
+        if (w == null || w.width != width) {
+            w = new Wrapped(width, renderOneLine(width), render(width));
+            wrapped = w;
+        }
+        return w;
+    }
+
+    /**
+     * Renders one line usage.
+     * @param width a width to wrap at, or 0 or less not to wrap.
+     * @return one line usage.
+     */
+    private String renderOneLine(int width) {
+        if (items.length == 0) {
+            return HEADER;
+        }
+        StringBuilder b = new StringBuilder(ONE_LINE_HEADER);
+        String indent = indent(ONE_LINE_HEADER.length(), width);
+        int lineStart = 0;
+        for (int i = 0; i < items.length; i++) {
+            String item = items[i];
+            if (i > 0) {
+                if (width > 0 && b.length() - lineStart + 1 + item.length() > width) {
+                    b.append(LINE_SEPARATOR);
+                    lineStart = b.length();
+                    b.append(indent);
+                } else {
+                    b.append(' ');
+                }
+            }
+            b.append(item);
+        }
+        return b.toString();
+    }
+
+    /**
+     * Renders usage.
+     * @param width a width to wrap at, or 0 or less not to wrap.
+     * @return usage.
+     */
+    private String render(int width) {
+        StringBuilder b = new StringBuilder(HEADER);
+        for (int i = 0; i < heads.length; i++) {
+            b.append(LINE_SEPARATOR).append(heads[i]);
+            if (width <= 0 || heads[i].length() + descriptions[i].length() <= width) {
+                b.append(descriptions[i]);
+            } else {
+                wrap(b, descriptions[i], heads[i].length(), width);
+            }
+        }
+        return b.toString();
+    }
+
+    /**
+     * Appends a description wrapped at spaces.
+     * @param b a buffer to append to, which ends with the head of the line.
+     * @param description a description.
+     * @param column the current column.
+     * @param width a width to wrap at.
+     */
+    private static void wrap(StringBuilder b, String description, int column, int width) {
+        String indent = indent(column, width);
+        int lineLength = column;
+        boolean lineHead = true;
+        int length = description.length();
+        int start = 0;
+        while (start < length) {
+            int end = description.indexOf(' ', start);
+            if (end == -1) {
+                end = length;
+            }
+            int wordLength = end - start;
+            if (!lineHead && lineLength + 1 + wordLength > width) {
+                b.append(LINE_SEPARATOR).append(indent);
+                lineLength = indent.length();
+                lineHead = true;
+            }
+            if (!lineHead) {
+                b.append(' ');
+                lineLength++;
+            }
+            b.append(description, start, end);
+            lineLength += wordLength;
+            lineHead = false;
+            start = end + 1;
+        }
+    }
+
+    /**
+     * Returns an indent of continuation lines.
+     * @param column a column where the first line starts.
+     * @param width a width to wrap at.
+     * @return spaces to indent.
+     */
+    private static String indent(int column, int width) {
+        if (width > 0 && width - column < MIN_DESCRIPTION_WIDTH) {
+            return INDENT;
+        }
+        StringBuilder b = new StringBuilder(column);
+        for (int i = 0; i < column; i++) {
+            b.append(' ');
+        }
+        return b.toString();
+    }
+
+    /**
+     * Usage wrapped at a width.
+     */
+    private static final class Wrapped {
+
+        /** a width to wrap at. */
+        final int width;
+
+        /** wrapped one line usage. */
+        final String oneLine;
+
+        /** wrapped usage. */
+        final String lines;
+
+        /**
+         * Constructs a new instance.
+         * @param width a width to wrap at.
+         * @param oneLine wrapped one line usage.
+         * @param lines wrapped usage.
+         */
+        Wrapped(int width, String oneLine, String lines) {
+            this.width = width;
+            this.oneLine = oneLine;
+            this.lines = lines;
+        }
+    }
+
+    /**
+     * Usage encoded by a charset.
+     */
+    private static final class Encoded {
+
+        /** a width to wrap at. */
+        final int width;
+
+        /** a charset used to encode usage. */
+        final Charset charset;
+
+        /** encoded usage. */
+        final ByteBuffer bytes;
+
+        /**
+         * Constructs a new instance.
+         * @param width a width to wrap at.
+         * @param charset a charset used to encode usage.
+         * @param bytes encoded usage.
+         */
+        Encoded(int width, Charset charset, ByteBuffer bytes) {
+            this.width = width;
+            this.charset = charset;
+            this.bytes = bytes;
+        }
+    }
+}
@@ -18,6 +18,23 @@ public class BooleanFieldOptionHandler extends FieldOptionHandler<Boolean> {
         return Boolean.valueOf(value);
     }
 
+    /**
+     * Converts a value to {@link Boolean} without creating a {@code String}.
+     * @return a {@link Boolean} value.
+     */
+    @Override
+    public Boolean handle(CharSequence value) {
+        return Numbers.parseBoolean(value);
+    }
+
+    /**
+     * Converts a value to {@code boolean} and stores it without boxing.
+     */
+    @Override
+    protected void setPrimitive(Object target, CharSequence value) throws IllegalAccessException {
+        getAccessor().setBoolean(target, Numbers.parseBoolean(value));
+    }
+
     /**
      * {@inheritDoc}
      * @return false.
@@ -18,6 +18,32 @@ public class ByteFieldOptionHandler extends FieldOptionHandler<Byte> {
         return Byte.parseByte(value);
     }
 
+    /**
+     * Converts a value to {@link Byte} without creating a {@code String}.
+     * @return a {@link Byte} value.
+     */
+    @Override
+    public Byte handle(CharSequence value) {
+        return (byte) Numbers.parse(value, Byte.MIN_VALUE, Byte.MAX_VALUE);
+    }
+
+    /**
+     * Converts a value to {@code byte} and stores it without boxing.
+     */
+    @Override
+    protected void setPrimitive(Object target, CharSequence value) throws IllegalAccessException {
+        getAccessor().setByte(target, (byte) Numbers.parse(value, Byte.MIN_VALUE, Byte.MAX_VALUE));
+    }
+
+    /**
+     * Checks if a value is a decimal number in the range of {@code byte} without creating an exception.
+     * @return true if {@code value} can be converted.
+     */
+    @Override
+    public boolean isValid(CharSequence value) {
+        return Numbers.isValid(value, Byte.MIN_VALUE, Byte.MAX_VALUE);
+    }
+
     /**
      * {@inheritDoc}
      * @return true.
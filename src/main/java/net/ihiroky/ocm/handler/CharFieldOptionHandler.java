@@ -18,6 +18,32 @@ public class CharFieldOptionHandler extends FieldOptionHandler<Character> {
         return value.charAt(0);
     }
 
+    /**
+     * Converts a value to {@link Character} without creating a {@code String}.
+     * @return a {@link Character} value.
+     */
+    @Override
+    public Character handle(CharSequence value) {
+        return value.charAt(0);
+    }
+
+    /**
+     * Converts a value to {@code char} and stores it without boxing.
+     */
+    @Override
+    protected void setPrimitive(Object target, CharSequence value) throws IllegalAccessException {
+        getAccessor().setChar(target, value.charAt(0));
+    }
+
+    /**
+     * Checks if a value is not empty.
+     * @return true if {@code value} is not empty.
+     */
+    @Override
+    public boolean isValid(CharSequence value) {
+        return value.length() > 0;
+    }
+
     /**
      * {@inheritDoc}
      * @return false.
@@ -18,6 +18,24 @@ public class FloatFieldOptionHandler extends FieldOptionHandler<Float> {
         return Float.parseFloat(value);
     }
 
+    /**
+     * Converts a value to {@code float} and stores it without boxing. {@code value} is converted to a
+     * {@code String} because the JDK has no floating point parser for a {@code CharSequence}.
+     */
+    @Override
+    protected void setPrimitive(Object target, CharSequence value) throws IllegalAccessException {
+        getAccessor().setFloat(target, Float.parseFloat(value.toString()));
+    }
+
+    /**
+     * Checks if a value is a floating point number without creating an exception.
+     * @return true if {@code value} can be converted.
+     */
+    @Override
+    public boolean isValid(CharSequence value) {
+        return Numbers.isValidFloatingPoint(value);
+    }
+
     /**
      * {@inheritDoc}
      * @return true.
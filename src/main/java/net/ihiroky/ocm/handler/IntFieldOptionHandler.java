@@ -18,6 +18,32 @@ public class IntFieldOptionHandler extends FieldOptionHandler<Integer> {
         return Integer.parseInt(value);
     }
 
+    /**
+     * Converts a value to {@link Integer} without creating a {@code String}.
+     * @return a {@link Integer} value.
+     */
+    @Override
+    public Integer handle(CharSequence value) {
+        return (int) Numbers.parse(value, Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Converts a value to {@code int} and stores it without boxing.
+     */
+    @Override
+    protected void setPrimitive(Object target, CharSequence value) throws IllegalAccessException {
+        getAccessor().setInt(target, (int) Numbers.parse(value, Integer.MIN_VALUE, Integer.MAX_VALUE));
+    }
+
+    /**
+     * Checks if a value is a decimal number in the range of {@code int} without creating an exception.
+     * @return true if {@code value} can be converted.
+     */
+    @Override
+    public boolean isValid(CharSequence value) {
+        return Numbers.isValid(value, Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
     /**
      * {@inheritDoc}
      * @return true.
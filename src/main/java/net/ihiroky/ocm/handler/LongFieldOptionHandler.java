@@ -18,6 +18,32 @@ public class LongFieldOptionHandler extends FieldOptionHandler<Long> {
         return Long.parseLong(value);
     }
 
+    /**
+     * Converts a value to {@link Long} without creating a {@code String}.
+     * @return a {@link Long} value.
+     */
+    @Override
+    public Long handle(CharSequence value) {
+        return Numbers.parse(value, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Converts a value to {@code long} and stores it without boxing.
+     */
+    @Override
+    protected void setPrimitive(Object target, CharSequence value) throws IllegalAccessException {
+        getAccessor().setLong(target, Numbers.parse(value, Long.MIN_VALUE, Long.MAX_VALUE));
+    }
+
+    /**
+     * Checks if a value is a decimal number in the range of {@code long} without creating an exception.
+     * @return true if {@code value} can be converted.
+     */
+    @Override
+    public boolean isValid(CharSequence value) {
+        return Numbers.isValid(value, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
     /**
      * {@inheritDoc}
      * @return true.
@@ -0,0 +1,215 @@
+package net.ihiroky.ocm.handler;
+
+/**
+ * Converts a {@code CharSequence} to a primitive value without creating a {@code String}.
+ * <p/>
+ * This class is used by handlers in this package, and is also available for custom handlers.
+ *
+ * @author Hiroki Itoh
+ */
+public final class Numbers {
+
+    /** a radix of a decimal number. */
+    private static final int RADIX = 10;
+
+    /** a bit to convert an ASCII letter to lower case. */
+    private static final int LOWER_CASE = 0x20;
+
+    /**
+     * Not instantiated.
+     */
+    private Numbers() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Parses a decimal {@code long} value in the same way as {@link Long#parseLong(String)}.
+     *
+     * @param value a value to be parsed.
+     * @param min the minimum value.
+     * @param max the maximum value.
+     * @return a parsed value.
+     * @throws NumberFormatException if {@code value} is not a number between {@code min} and {@code max}.
+     */
+    public static long parse(CharSequence value, long min, long max) {
+        long result = accumulate(value, min, max);
+        if (result > 0) {
+            throw invalid(value);
+        }
+        return (value.charAt(0) == '-') ? result : -result;
+    }
+
+    /**
+     * Checks if a value can be parsed by {@link #parse(CharSequence, long, long)}, without creating an exception.
+     *
+     * @param value a value to be checked.
+     * @param min the minimum value.
+     * @param max the maximum value.
+     * @return true if {@code value} is a decimal number between {@code min} and {@code max}.
+     */
+    public static boolean isValid(CharSequence value, long min, long max) {
+        return accumulate(value, min, max) <= 0;
+    }
+
+    /**
+     * Accumulates digits of a decimal value negatively, to reach {@code Long.MIN_VALUE}.
+     *
+     * @param value a value to be parsed.
+     * @param min the minimum value.
+     * @param max the maximum value.
+     * @return the negated absolute value, or 1 if {@code value} is not a number between {@code min} and {@code max}.
+     */
+    private static long accumulate(CharSequence value, long min, long max) {
+        int length = value.length();
+        if (length == 0) {
+            return 1;
+        }
+        int i = 0;
+        boolean negative = false;
+        char first = value.charAt(0);
+        if (first == '-' || first == '+') {
+            if (length == 1) {
+                return 1;
+            }
+            negative = (first == '-');
+            i++;
+        }
+        long limit = negative ? min : -max;
+        long multiplyLimit = limit / RADIX;
+        long result = 0;
+        for (; i < length; i++) {
+            int digit = Character.digit(value.charAt(i), RADIX);
+            if (digit < 0 || result < multiplyLimit) {
+                return 1;
+            }
+            result *= RADIX;
+            if (result < limit + digit) {
+                return 1;
+            }
+            result -= digit;
+        }
+        return result;
+    }
+
+    /**
+     * Checks if a value can be parsed by {@link Double#parseDouble(String)} and {@link Float#parseFloat(String)},
+     * without creating an exception. Decimal and hexadecimal forms, {@code NaN} and {@code Infinity} are accepted.
+     *
+     * @param value a value to be checked.
+     * @return true if {@code value} is a floating point number.
+     */
+    public static boolean isValidFloatingPoint(CharSequence value) {
+        int i = 0;
+        int end = value.length();
+        // trimmed by String#trim() in parseDouble.
+        while (i < end && value.charAt(i) <= ' ') {
+            i++;
+        }
+        while (end > i && value.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        if (i < end && (value.charAt(i) == '-' || value.charAt(i) == '+')) {
+            i++;
+        }
+        if (regionEquals(value, i, end, "NaN") || regionEquals(value, i, end, "Infinity")) {
+            return true;
+        }
+        boolean hex = (end - i > 1) && value.charAt(i) == '0' && (value.charAt(i + 1) | LOWER_CASE) == 'x';
+        if (hex) {
+            i += 2;
+        }
+        int digits = 0;
+        for (; i < end && isDigit(value.charAt(i), hex); i++) {
+            digits++;
+        }
+        if (i < end && value.charAt(i) == '.') {
+            for (i++; i < end && isDigit(value.charAt(i), hex); i++) {
+                digits++;
+            }
+        }
+        if (digits == 0) {
+            return false;
+        }
+        if (i < end && (value.charAt(i) | LOWER_CASE) == (hex ? 'p' : 'e')) {
+            i++;
+            if (i < end && (value.charAt(i) == '-' || value.charAt(i) == '+')) {
+                i++;
+            }
+            int exponentStart = i;
+            for (; i < end && isDigit(value.charAt(i), false); i++) {
+                // skip digits.
+            }
+            if (i == exponentStart) {
+                return false;
+            }
+        } else if (hex) {
+            // a binary exponent is required.
+            return false;
+        }
+        if (i < end && "fFdD".indexOf(value.charAt(i)) >= 0) {
+            i++;
+        }
+        return i == end;
+    }
+
+    /**
+     * Checks if a character is an ASCII digit.
+     *
+     * @param c a character.
+     * @param hex true if hexadecimal digits are accepted.
+     * @return true if {@code c} is a digit.
+     */
+    private static boolean isDigit(char c, boolean hex) {
+        return (c >= '0' && c <= '9') || (hex && (c | LOWER_CASE) >= 'a' && (c | LOWER_CASE) <= 'f');
+    }
+
+    /**
+     * Checks if a region of a value equals to a string.
+     *
+     * @param value a value.
+     * @param start a start index of the region.
+     * @param end an end index of the region.
+     * @param s a string.
+     * @return true if the region equals to {@code s}.
+     */
+    private static boolean regionEquals(CharSequence value, int start, int end, String s) {
+        if (end - start != s.length()) {
+            return false;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            if (value.charAt(start + i) != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parses a {@code boolean} value in the same way as {@link Boolean#parseBoolean(String)}.
+     *
+     * @param value a value to be parsed.
+     * @return true if {@code value} equals to "true" ignoring case.
+     */
+    public static boolean parseBoolean(CharSequence value) {
+        String t = Boolean.TRUE.toString();
+        int length = t.length();
+        if (value.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (Character.toLowerCase(value.charAt(i)) != t.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Creates an exception for an invalid value.
+     * @param value an invalid value.
+     * @return an exception.
+     */
+    private static NumberFormatException invalid(CharSequence value) {
+        return new NumberFormatException("For input string: \"" + value + '"');
+    }
+}
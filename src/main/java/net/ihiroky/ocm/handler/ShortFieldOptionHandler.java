@@ -18,6 +18,32 @@ public class ShortFieldOptionHandler extends FieldOptionHandler<Short> {
         return Short.parseShort(value);
     }
 
+    /**
+     * Converts a value to {@link Short} without creating a {@code String}.
+     * @return a {@link Short} value.
+     */
+    @Override
+    public Short handle(CharSequence value) {
+        return (short) Numbers.parse(value, Short.MIN_VALUE, Short.MAX_VALUE);
+    }
+
+    /**
+     * Converts a value to {@code short} and stores it without boxing.
+     */
+    @Override
+    protected void setPrimitive(Object target, CharSequence value) throws IllegalAccessException {
+        getAccessor().setShort(target, (short) Numbers.parse(value, Short.MIN_VALUE, Short.MAX_VALUE));
+    }
+
+    /**
+     * Checks if a value is a decimal number in the range of {@code short} without creating an exception.
+     * @return true if {@code value} can be converted.
+     */
+    @Override
+    public boolean isValid(CharSequence value) {
+        return Numbers.isValid(value, Short.MIN_VALUE, Short.MAX_VALUE);
+    }
+
     /**
      * {@inheritDoc}
      * @return true.
@@ -15,6 +15,8 @@
  * <h3>{@link net.ihiroky.ocm.Arguments} annotation</h3>
  * Assigns non-option command line arguments to a field annotated by this annotation. <em>Annotated field must be
  * a concrete subtype of {@code java.util.Collection&lt;String&gt;}</em>.
+ * An annotated field can also be a {@link net.ihiroky.ocm.ArgumentSink}, which receives arguments as they are
+ * parsed. If the field holds a {@code java.util.concurrent.BlockingQueue}, arguments are put to it.
  *
  * <h3>"--" option</h3>
  * If "--" (exclude ") appears in command line arguments, the right-side arguments of "--" is considered as
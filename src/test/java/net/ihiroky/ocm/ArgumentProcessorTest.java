@@ -1,19 +1,51 @@
 package net.ihiroky.ocm;
 
+import net.ihiroky.ocm.handler.Numbers;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.Pipe;
+import java.nio.charset.Charset;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.hamcrest.CoreMatchers.*;
 import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
 
 /**
  * @author Hiroki Itoh
@@ -138,6 +170,19 @@ public class ArgumentProcessorTest {
         }
     }
 
+    @Test
+    public void testConsumedOption() {
+        StubArgs a = new StubArgs();
+        ArgumentProcessor ap = new ArgumentProcessor();
+        try {
+            ap.parse(a, new String[]{"-i", "1", "--integer", "2"});
+            fail();
+        } catch (ArgumentParseException ape) {
+            assertThat(ape.getMessage(), is("unknown option : --integer"));
+        }
+        assertThat(a.integer, is(1));
+    }
+
     @Test
     public void testUnsupportedType() throws Exception {
         StubArgsUnsupportedType a = new StubArgsUnsupportedType();
@@ -346,6 +391,972 @@ public class ArgumentProcessorTest {
         assertThat(args.args, is(new HashSet<String>(Arrays.asList("arg0", "arg1"))));
     }
 
+    @Test
+    public void testReuseSchema() throws Exception {
+        ArgumentProcessor ap = new ArgumentProcessor();
+        StubArgs a0 = ap.parse(new StubArgs(), new String[]{"-i", "1", "arg0"});
+        StubArgs a1 = new ArgumentProcessor().parse(new StubArgs(), new String[]{"-s", "hoge", "arg1"});
+        assertThat(Schema.of(StubArgs.class), is(sameInstance(Schema.of(StubArgs.class))));
+
+        assertThat(a0.integer, is(1));
+        assertThat(a0.str, is(nullValue()));
+        assertThat(a0.args, is(Arrays.asList("arg0")));
+        assertThat(a1.integer, is(0));
+        assertThat(a1.str, is("hoge"));
+        assertThat(a1.args, is(Arrays.asList("arg1")));
+    }
+
+    @Test
+    public void testCreateHandlerOnDemand() throws Exception {
+        Schema.clearCache();
+        CountingFieldAccessorFactory.OPTION_FIELDS.clear();
+        StubArgs a = new ArgumentProcessor().parse(new StubArgs(), new String[]{"-i", "1", "arg0"});
+        assertThat(a.integer, is(1));
+        assertThat(a.args, is(Arrays.asList("arg0")));
+
+        // a handler resolves an accessor of its field when it is created.
+        assertThat(CountingFieldAccessorFactory.OPTION_FIELDS, is(Arrays.asList("integer")));
+    }
+
+    @Test
+    public void testConcurrentParse() throws Exception {
+        final ArgumentProcessor ap = new ArgumentProcessor(StubArgs.class);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<StubArgs>> futures = new ArrayList<Future<StubArgs>>();
+            for (int i = 0; i < 1000; i++) {
+                final int n = i;
+                futures.add(executor.submit(new Callable<StubArgs>() {
+                    @Override
+                    public StubArgs call() throws Exception {
+                        return ap.parse(new StubArgs(), new String[]{"-i", String.valueOf(n), "arg" + n});
+                    }
+                }));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                StubArgs a = futures.get(i).get();
+                assertThat(a.integer, is(i));
+                assertThat(a.args, is(Arrays.asList("arg" + i)));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testParseAll() throws Exception {
+        List<String[]> argsList = new ArrayList<String[]>();
+        for (int i = 0; i < 100; i++) {
+            argsList.add((i % 10 == 0)
+                    ? new String[]{"-i", "fuga" + i} : new String[]{"-i", String.valueOf(i), "arg" + i});
+        }
+        TargetFactory<StubArgs> factory = new TargetFactory<StubArgs>() {
+            @Override
+            public StubArgs newTarget() {
+                return new StubArgs();
+            }
+        };
+        ArgumentProcessor ap = new ArgumentProcessor();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<List<ParseResult<StubArgs>>> resultsList = Arrays.asList(
+                    ap.parseAll(argsList, factory), ap.parseAll(argsList, factory, executor, 7));
+            for (List<ParseResult<StubArgs>> results : resultsList) {
+                assertThat(results.size(), is(100));
+                for (int i = 0; i < results.size(); i++) {
+                    ParseResult<StubArgs> result = results.get(i);
+                    if (i % 10 == 0) {
+                        assertThat(result.isSuccess(), is(false));
+                        assertThat(result.getError().getMessage(), is("failed to set argument. option : -i/--integer"));
+                    } else {
+                        assertThat(result.isSuccess(), is(true));
+                        assertThat(result.getTarget().integer, is(i));
+                        assertThat(result.getTarget().args, is(Arrays.asList("arg" + i)));
+                    }
+                }
+            }
+
+            // argsList is read lazily, and results are passed in order while at most 3 batches are pending.
+            final int[] read = new int[1];
+            Iterable<String[]> lazy = new Iterable<String[]>() {
+                @Override
+                public Iterator<String[]> iterator() {
+                    return new Iterator<String[]>() {
+                        @Override
+                        public boolean hasNext() {
+                            return read[0] < 1000;
+                        }
+
+                        @Override
+                        public String[] next() {
+                            return new String[]{"-i", String.valueOf(read[0]++)};
+                        }
+
+                        @Override
+                        public void remove() {
+                            throw new UnsupportedOperationException();
+                        }
+                    };
+                }
+            };
+            final List<Integer> received = new ArrayList<Integer>();
+            ap.parseAll(lazy, factory, executor, 7, 3, new ResultSink<StubArgs>() {
+                @Override
+                public void add(ParseResult<StubArgs> result) {
+                    assertThat(read[0] - received.size() <= 7 * 3, is(true));
+                    received.add(result.getTarget().integer);
+                }
+            });
+            assertThat(received.size(), is(1000));
+            for (int i = 0; i < received.size(); i++) {
+                assertThat(received.get(i), is(i));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testArgumentSink() throws Exception {
+        SinkArgs a = new SinkArgs();
+        final List<String> received = new ArrayList<String>();
+        a.args = new ArgumentSink() {
+            @Override
+            public void add(String argument) throws ArgumentParseException {
+                if (argument.equals("bad")) {
+                    throw new ArgumentParseException("bad argument.");
+                }
+                received.add(argument);
+            }
+        };
+        ArgumentProcessor ap = new ArgumentProcessor();
+        ap.parse(a, new String[]{"arg0", "-s", "hoge", "arg1"});
+        assertThat(received, is(Arrays.asList("arg0", "arg1")));
+        try {
+            ap.parse(a, new String[]{"bad"});
+            fail();
+        } catch (ArgumentParseException ape) {
+            assertThat(ape.getMessage(), is("bad argument."));
+        }
+        try {
+            ap.parse(new SinkArgs(), new String[]{"arg0"});
+            fail();
+        } catch (ArgumentParseException ape) {
+            assertThat(ape.getCause(), is(instanceOf(IllegalStateException.class)));
+        }
+    }
+
+    @Test
+    public void testBlockingQueueArguments() throws Exception {
+        final QueueArgs a = new QueueArgs();
+        a.args = new ArrayBlockingQueue<String>(2);
+        final List<String> received = new ArrayList<String>();
+        Thread worker = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    for (String arg = a.args.take(); !arg.equals("end"); arg = a.args.take()) {
+                        received.add(arg);
+                    }
+                } catch (InterruptedException ignored) {
+                    // finish.
+                }
+            }
+        };
+        worker.start();
+        String[] args = new String[101];
+        for (int i = 0; i < 100; i++) {
+            args[i] = "arg" + i;
+        }
+        args[100] = "end";
+        new ArgumentProcessor().parse(a, args);
+        worker.join();
+        assertThat(received, is(Arrays.asList(args).subList(0, 100)));
+    }
+
+    @Test
+    public void testResponseFile() throws Exception {
+        File file = File.createTempFile("ocm", ".args");
+        try {
+            StringBuilder b = new StringBuilder("-s \"hoge fuga\"\n-i\t12345 '' ");
+            List<String> expected = new ArrayList<String>();
+            expected.add("");
+            for (int i = 0; i < 10000; i++) {
+                b.append("arg").append(i).append(' ');
+                expected.add("arg" + i);
+            }
+            expected.add("@last");
+            FileOutputStream out = new FileOutputStream(file);
+            out.write(b.toString().getBytes("US-ASCII"));
+            out.close();
+
+            ArgumentProcessor ap = new ArgumentProcessor();
+            StubArgs a = ap.parse(new StubArgs(), new String[]{"-b", "@" + file.getPath(), "--", "@last"});
+            assertThat(a.args, is(Arrays.asList("@" + file.getPath(), "@last")));
+
+            ap.setResponseFileEnabled(true);
+            a = ap.parse(new StubArgs(), new String[]{"-b", "@" + file.getPath(), "--", "@last"});
+            assertThat(a.bool, is(true));
+            assertThat(a.str, is("hoge fuga"));
+            assertThat(a.integer, is(12345));
+            assertThat(a.args, is(expected));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testNulDelimitedChannel() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        List<String> expected = new ArrayList<String>();
+        expected.add("arg");
+        for (int i = 0; i < 10000; i++) {
+            out.write(("path with space " + i + '\0').getBytes("US-ASCII"));
+            expected.add("path with space " + i);
+        }
+        out.write("-s".getBytes("US-ASCII"));
+        expected.add("-s");
+
+        StubArgs a = new ArgumentProcessor().parse(new StubArgs(), new String[]{"-i", "1", "arg", "--"},
+                Channels.newChannel(new ByteArrayInputStream(out.toByteArray())));
+        assertThat(a.integer, is(1));
+        assertThat(a.str, is(nullValue()));
+        assertThat(a.args, is(expected));
+    }
+
+    @Test
+    public void testNulDelimitedPipe() throws Exception {
+        Pipe pipe = Pipe.open();
+        pipe.sink().write(ByteBuffer.wrap("a\0b\0".getBytes("US-ASCII")));
+        pipe.sink().close();
+        StubArgs a = new ArgumentProcessor().parse(new StubArgs(), new String[0], pipe.source());
+        assertThat(a.args, is(Arrays.asList("a", "b")));
+
+        // a FileChannel of a pipe has no size, like /dev/stdin or <(command).
+        File fifo = new File(System.getProperty("java.io.tmpdir"), "ocm" + System.nanoTime() + ".fifo");
+        int status;
+        try {
+            status = new ProcessBuilder("mkfifo", fifo.getPath()).start().waitFor();
+        } catch (IOException ioe) {
+            status = -1;
+        }
+        assumeTrue(status == 0);
+        try {
+            final File path = fifo;
+            Thread writer = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        FileOutputStream out = new FileOutputStream(path);
+                        out.write("p q r".getBytes("US-ASCII"));
+                        out.close();
+                    } catch (IOException ioe) {
+                        throw new RuntimeException(ioe);
+                    }
+                }
+            };
+            writer.start();
+            ArgumentProcessor ap = new ArgumentProcessor();
+            ap.setResponseFileEnabled(true);
+            a = ap.parse(new StubArgs(), new String[]{"@" + fifo.getPath()});
+            writer.join();
+            assertThat(a.args, is(Arrays.asList("p", "q", "r")));
+        } finally {
+            fifo.delete();
+        }
+    }
+
+    @Test
+    public void testNulDelimitedFileFromPosition() throws Exception {
+        File file = File.createTempFile("ocm", ".args");
+        try {
+            FileOutputStream out = new FileOutputStream(file);
+            out.write("skip\0a\0b".getBytes("US-ASCII"));
+            out.close();
+            FileInputStream in = new FileInputStream(file);
+            try {
+                FileChannel channel = in.getChannel();
+                channel.position(5);
+                StubArgs a = new ArgumentProcessor().parse(new StubArgs(), new String[0], channel);
+                assertThat(a.args, is(Arrays.asList("a", "b")));
+                assertThat(channel.position(), is(file.length()));
+            } finally {
+                in.close();
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testJoinedValue() throws Exception {
+        StubArgs a = new ArgumentProcessor().parse(new StubArgs(), new String[]{
+                "--string=a=b", "-i-2147483648", "-I=+2147483647", "--minus=-5", "-z-128", "--Byte=127",
+                "-yc", "--Character==", "-x=-32768", "--Short=32767", "-w1.5", "--Double=-2.5",
+                "-u-9223372036854775808", "--Long=9223372036854775807", "--boolean=TRUE", "-B=false"
+        });
+        assertThat(a.str, is("a=b"));
+        assertThat(a.integer, is(Integer.MIN_VALUE));
+        assertThat(a.intObject, is(Integer.MAX_VALUE));
+        assertThat(a.minusInteger, is(-5));
+        assertThat(a.byteValue, is(Byte.MIN_VALUE));
+        assertThat(a.byteObjectValue, is(Byte.MAX_VALUE));
+        assertThat(a.charValue, is('c'));
+        assertThat(a.charObjectValue, is('='));
+        assertThat(a.shortValue, is(Short.MIN_VALUE));
+        assertThat(a.shortObjectValue, is(Short.MAX_VALUE));
+        assertThat(a.floatValue, is(1.5f));
+        assertThat(a.doubleObjectValue, is(-2.5d));
+        assertThat(a.longValue, is(Long.MIN_VALUE));
+        assertThat(a.longObjectValue, is(Long.MAX_VALUE));
+        assertThat(a.bool, is(true));
+        assertThat(a.boolObject, is(false));
+        assertThat(a.args.isEmpty(), is(true));
+    }
+
+    @Test
+    public void testJoinedValueErrors() throws Exception {
+        String[][] invalids = {
+                {"--integer=2147483648"}, {"-i-2147483649"}, {"-i1x"}, {"-i-"}, {"--integer="}, {"-z128"},
+        };
+        for (String[] args : invalids) {
+            try {
+                new ArgumentProcessor().parse(new StubArgs(), args);
+                fail(args[0]);
+            } catch (ArgumentParseException ape) {
+                assertThat(ape.getCause(), is(instanceOf(NumberFormatException.class)));
+            }
+        }
+        String[][] unknowns = {{"--unknown=1"}, {"-btrue"}, {"--integer1"}, {"-i", "1", "-i2"}};
+        for (String[] args : unknowns) {
+            try {
+                new ArgumentProcessor().parse(new StubArgs(), args);
+                fail(args[args.length - 1]);
+            } catch (ArgumentParseException ape) {
+                assertThat(ape.getMessage(), is("unknown option : " + args[args.length - 1]));
+            }
+        }
+    }
+
+    @Test
+    public void testReset() throws Exception {
+        ArgumentProcessor ap = new ArgumentProcessor(StubArgsDefault.class);
+        StubArgsDefault a = ap.parse(new StubArgsDefault(), new String[]{"-i", "1", "-s", "fuga", "--optb=false", "a"});
+        ArrayList<String> args = a.args;
+        assertThat(args, is(Arrays.asList("hoge", "a")));
+        assertThat(a.bool, is(false));
+
+        assertThat(ap.reset(a), is(sameInstance(a)));
+        assertThat(a.integer, is(Integer.MIN_VALUE));
+        assertThat(a.str, is("default"));
+        assertThat(a.bool, is(true));
+        assertThat(a.args, is(sameInstance(args)));
+        assertThat(a.args, is(Arrays.asList("hoge")));
+
+        a.args = null;
+        ap.parse(ap.reset(a), new String[]{"-i", "2", "b"});
+        assertThat(a.integer, is(2));
+        assertThat(a.args, is(Arrays.asList("hoge", "b")));
+    }
+
+    @Test
+    public void testResetCopiesMutableDefaults() throws Exception {
+        ArgumentProcessor ap = new ArgumentProcessor(MutableDefaultArgs.class);
+        MutableDefaultArgs a = ap.reset(new MutableDefaultArgs());
+        a.ports[0] = 8080;
+        a.names.add("b");
+        a.tags.set(0, "y");
+
+        MutableDefaultArgs b = ap.reset(new MutableDefaultArgs());
+        assertThat(b.ports, is(new int[]{80}));
+        assertThat(b.ports, is(not(sameInstance(a.ports))));
+        assertThat(b.names, is(Arrays.asList("a")));
+        assertThat(b.names, is(instanceOf(LinkedList.class)));
+        assertThat(b.tags, is(Arrays.asList("x")));
+        assertThat(ap.reset(a).ports, is(new int[]{80}));
+    }
+
+    @Test
+    public void testParseWithoutAllocation() throws Exception {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        ArgumentProcessor ap = new ArgumentProcessor(StubArgsDefault.class);
+        StubArgsDefault a = new StubArgsDefault();
+        String[] args = {"-i", "1", "-s", "fuga", "--optb=false", "a"};
+        for (int i = 0; i < 20000; i++) {
+            ap.parse(ap.reset(a), args);
+        }
+        int count = 10000;
+        long id = Thread.currentThread().getId();
+        long start = threads.getThreadAllocatedBytes(id);
+        for (int i = 0; i < count; i++) {
+            ap.parse(ap.reset(a), args);
+        }
+        long allocated = threads.getThreadAllocatedBytes(id) - start;
+
+        assertThat(a.integer, is(1));
+        assertThat(a.args, is(Arrays.asList("hoge", "a")));
+        // less than a byte per parse; only the measurement may allocate.
+        assertThat(allocated < count, is(true));
+    }
+
+    @Test
+    public void testAppendUsage() throws Exception {
+        ArgumentProcessor ap = new ArgumentProcessor(StubArgs.class);
+        ByteArrayOutputStream base = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(base, true);
+        ap.printUsage(out);
+        ap.printOneLineUsage(out);
+        StringBuilder b = new StringBuilder();
+        ap.appendUsage(b, 0);
+        ap.appendOneLineUsage(b, -1);
+        assertThat(b.toString(), is(base.toString()));
+
+        ByteBuffer buffer = ByteBuffer.allocate(b.length());
+        ap.writeUsage(buffer, Charset.forName("UTF-8"), 0);
+        assertThat(new String(buffer.array(), 0, buffer.position(), "UTF-8"), is(b.substring(0, buffer.position())));
+        try {
+            ap.writeUsage(ByteBuffer.allocate(10), Charset.forName("UTF-8"), 0);
+            fail();
+        } catch (BufferOverflowException expected) {
+            // not enough space.
+        }
+    }
+
+    @Test
+    public void testAppendUsageWrapped() throws Exception {
+        Object obj = new Object() {
+            @Option(name = "string", alias = "s", metaName = "str", usage = "a string option which has a long usage.")
+            private String str;
+            @Option(name = "integer", alias = "i", metaName = "int", required = true, usage = "short usage.")
+            private int integer;
+        };
+        ArgumentProcessor ap = new ArgumentProcessor(obj.getClass());
+        String ls = System.getProperty("line.separator");
+        StringBuilder b = new StringBuilder();
+        ap.appendUsage(b, 38);
+        assertThat(b.toString(), is("available options :" + ls
+                + " -s, --string : a string option which" + ls
+                + "                has a long usage." + ls
+                + " -i, --integer : short usage." + ls
+                + "                 (required)" + ls));
+
+        b.setLength(0);
+        ap.appendUsage(b, 30);
+        assertThat(b.toString(), is("available options :" + ls
+                + " -s, --string : a string" + ls
+                + "        option which has a" + ls
+                + "        long usage." + ls
+                + " -i, --integer : short usage." + ls
+                + "        (required)" + ls));
+
+        b.setLength(0);
+        ap.appendOneLineUsage(b, 45);
+        assertThat(b.toString(), is("available options : [-s/--string str]" + ls
+                + "                    -i/--integer int" + ls));
+    }
+
+    @Test
+    public void testRepeatableOption() throws Exception {
+        String[] args = new String[100];
+        for (int i = 0; i < args.length; i += 2) {
+            args[i] = "-p";
+            args[i + 1] = String.valueOf(i - 50);
+        }
+        ArgumentProcessor ap = new ArgumentProcessor();
+        RepeatableArgs a = ap.parse(new RepeatableArgs(), args);
+        assertThat(a.ports.length, is(50));
+        assertThat(a.ports[0], is(-50));
+        assertThat(a.ports[49], is(48));
+        assertThat(a.longs, is(new long[]{1L}));
+        assertThat(a.names, is(Collections.singletonList("default")));
+
+        a = ap.parse(new RepeatableArgs(), new String[]{
+                "--long=1", "-l", "-2", "--double", "0.5", "-d-1.5", "-n", "a", "--name=b", "-p", "1", "arg"
+        });
+        assertThat(a.ports, is(new int[]{1}));
+        assertThat(a.longs, is(new long[]{1L, -2L}));
+        assertThat(a.doubles[0], is(0.5d));
+        assertThat(a.doubles[1], is(-1.5d));
+        assertThat(a.names, is(Arrays.asList("a", "b")));
+        assertThat(a.args, is(Collections.singletonList("arg")));
+
+        a = ap.parse(new RepeatableArgs(), new String[]{"-t", "x", "-t", "y", "-e", "z"});
+        assertThat(a.tags, is((Collection<String>) Arrays.asList("x", "y")));
+        assertThat(a.tags, is(instanceOf(ArrayList.class)));
+        assertThat(a.extras, is(Arrays.asList("z")));
+        assertThat(a.extras, is(instanceOf(LinkedList.class)));
+        try {
+            ap.parse(new AbstractListArgs(), new String[0]);
+            fail();
+        } catch (IllegalArgumentTypeException iate) {
+            assertThat(iate.getMessage(), is("type of field names must be List, Collection, Iterable or a concrete "
+                    + "class : java.util.AbstractList"));
+        }
+
+        try {
+            ap.parse(new RepeatableArgs(), new String[]{"-p", "1", "-p", "x"});
+            fail();
+        } catch (ArgumentParseException ape) {
+            assertThat(ape.getMessage(), is("failed to set argument. option : -p/--port"));
+            assertThat(ape.getCause(), is(instanceOf(NumberFormatException.class)));
+        }
+        try {
+            ap.parse(new RepeatableArgs(), new String[]{"-n", "a", "-n", "-p"});
+            fail();
+        } catch (ArgumentParseException ape) {
+            assertThat(ape.getMessage(), is("no value is found for option -n/--name"));
+        }
+
+        StringBuilder b = new StringBuilder();
+        ap.appendOneLineUsage(b, 0);
+        assertThat(b.toString(), is("available options : [-p/--port ports ...] [-l/--long longs ...] "
+                + "[-d/--double doubles ...] [-n/--name names ...] [-t/--tag tags ...] [-e/--extra extras ...]"
+                + System.getProperty("line.separator")));
+    }
+
+    @Test
+    public void testCompactStringList() throws Exception {
+        ArgumentProcessor ap = new ArgumentProcessor();
+        CompactArgs a = ap.parse(new CompactArgs(), new String[]{"arg0", "-s", "hoge", "", "\u3042\u3044", "--", "-x"});
+        assertThat(a.args, is(Arrays.asList("arg0", "", "\u3042\u3044", "-x")));
+        assertThat(a.args.length(2), is(2));
+        try {
+            a.args.add("fuga");
+            fail();
+        } catch (UnsupportedOperationException expected) {
+            assertThat(a.args.size(), is(4));
+        }
+
+        String[] args = new String[1000];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = "argument" + i;
+        }
+        ap.parse(ap.reset(a), args);
+        a.args.trimToSize();
+        assertThat(a.args, is(Arrays.asList(args)));
+    }
+
+    @Test
+    public void testParseListener() throws Exception {
+        final List<String> events = new ArrayList<String>();
+        final Set<ParsePhase> phases = EnumSet.allOf(ParsePhase.class);
+        ParseListener listener = new ParseListener() {
+            @Override
+            public Set<ParsePhase> getPhases() {
+                return phases;
+            }
+
+            @Override
+            public void phaseStarted(ParsePhase phase, Class<?> targetClass) {
+                events.add("start " + phase);
+            }
+
+            @Override
+            public void phaseEnded(ParsePhase phase, Class<?> targetClass, int count, boolean succeeded,
+                                   long elapsedNanos) {
+                assertThat(elapsedNanos >= 0, is(true));
+                events.add((phase == ParsePhase.PARSE) ? "end PARSE " + count + ' ' + succeeded : "end " + phase);
+            }
+
+            @Override
+            public void optionSet(Class<?> targetClass, String name) {
+                events.add(targetClass.getSimpleName() + ' ' + name);
+            }
+
+            @Override
+            public void conversionFailed(Class<?> targetClass, String name, String value, Exception cause) {
+                events.add("failed " + name + ' ' + value + ' ' + cause.getClass().getSimpleName());
+            }
+        };
+        ArgumentProcessor ap = new ArgumentProcessor(StubArgsRequired.class);
+        ap.setParseListener(listener);
+        assertThat(ap.getParseListener(), is(sameInstance(listener)));
+        ap.parse(new StubArgsRequired(), new String[]{"-i", "1", "arg"});
+        assertThat(events, is(Arrays.asList("start PARSE", "start SEARCH", "end SEARCH", "start SEARCH", "end SEARCH",
+                "start CONVERSION", "end CONVERSION", "StubArgsRequired --opti", "start ARGUMENT", "end ARGUMENT",
+                "end PARSE 3 true")));
+
+        events.clear();
+        try {
+            ap.parse(new StubArgsRequired(), new String[]{"--opti=x"});
+            fail();
+        } catch (ArgumentParseException expected) {
+            assertThat(events.contains("failed --opti x ArgumentParseException"), is(true));
+            assertThat(events.get(events.size() - 1), is("end PARSE 1 false"));
+        }
+
+        // phases which the listener does not receive are not reported, but failures are.
+        phases.retainAll(EnumSet.of(ParsePhase.PARSE));
+        events.clear();
+        ap.parse(new StubArgsRequired(), new String[]{"-i", "1", "arg"});
+        assertThat(events, is(Arrays.asList("start PARSE", "StubArgsRequired --opti", "end PARSE 3 true")));
+        events.clear();
+        try {
+            ap.parse(new StubArgsRequired(), new String[]{"--opti=x"});
+            fail();
+        } catch (ArgumentParseException expected) {
+            assertThat(events, is(Arrays.asList(
+                    "start PARSE", "failed --opti x ArgumentParseException", "end PARSE 1 false")));
+        }
+
+        ap.setParseListener(null);
+        events.clear();
+        ap.parse(new StubArgsRequired(), new String[]{"-i", "1", "arg"});
+        assertThat(events.isEmpty(), is(true));
+    }
+
+    @Test
+    public void testSchemaIndex() throws Exception {
+        Schema expected = Schema.parseAnnotation(StubArgs.class);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SchemaIndex.write(expected, out);
+        byte[] index = out.toByteArray();
+
+        Schema actual = SchemaIndex.read(StubArgs.class, new ByteArrayInputStream(index));
+        assertThat(actual.getOptionList().size(), is(expected.getOptionList().size()));
+        for (int i = 0; i < expected.getOptionList().size(); i++) {
+            OptionDescriptor e = expected.getOptionList().get(i);
+            OptionDescriptor a = actual.getOptionList().get(i);
+            assertThat(a.toString(), is(e.toString()));
+            assertThat(a.getField(), is(e.getField()));
+            assertThat(a.getMetaName(), is(e.getMetaName()));
+            assertThat(a.getUsage(), is(e.getUsage()));
+            assertThat(a.isRequired(), is(e.isRequired()));
+        }
+        assertThat(actual.getArgumentsHandler().getField(), is(expected.getArgumentsHandler().getField()));
+        assertThat(actual.getUsage().getLines(0), is(expected.getUsage().getLines(0)));
+        assertThat(actual.getUsage().getOneLine(40), is(expected.getUsage().getOneLine(40)));
+        assertThat(actual.search("-i").handler().handle("12"), is((Object) 12));
+
+        // an index of another class is ignored.
+        assertThat(SchemaIndex.read(StubArgsDefault.class, new ByteArrayInputStream(index)), is(nullValue()));
+
+        // an index whose fingerprint does not match the class files is ignored.
+        int fingerprintEnd = 4 + 4 + StubArgs.class.getName().length() + 8;
+        index[fingerprintEnd - 1] ^= 1;
+        assertThat(SchemaIndex.read(StubArgs.class, new ByteArrayInputStream(index)), is(nullValue()));
+    }
+
+    @Test
+    public void testConverter() throws Exception {
+        Converters.register(UserId.class, new Converter<UserId>() {
+            @Override
+            public UserId convert(String value) {
+                return new UserId(Long.parseLong(value.substring(value.indexOf('-') + 1)));
+            }
+
+            @Override
+            public boolean canAcceptHyphenValue() {
+                return false;
+            }
+        });
+        try {
+            ArgumentProcessor ap = new ArgumentProcessor();
+            ConverterArgs a = ap.parse(new ConverterArgs(), new String[]{
+                    "--id", "u-12", "-u", "http://localhost/", "--amount", "-1.50", "--address", "[::1]:8080"});
+            assertThat(a.id.value, is(12L));
+            assertThat(a.uri, is(new URI("http://localhost/")));
+            assertThat(a.amount, is(new BigDecimal("-1.50")));
+            assertThat(a.address.getHostName(), is("::1"));
+            assertThat(a.address.getPort(), is(8080));
+            assertThat(a.address.isUnresolved(), is(true));
+
+            try {
+                ap.parse(new ConverterArgs(), new String[]{"-u", "http://local host/"});
+                fail();
+            } catch (ArgumentParseException expected) {
+                assertThat(expected.getCause().getCause(), is(instanceOf(URISyntaxException.class)));
+            }
+            try {
+                Converters.register(Integer.class, new Converter<Integer>() {
+                    @Override
+                    public Integer convert(String value) {
+                        return 0;
+                    }
+
+                    @Override
+                    public boolean canAcceptHyphenValue() {
+                        return true;
+                    }
+                });
+                fail();
+            } catch (IllegalArgumentException expected) {
+                assertThat(Converters.find(Integer.class), is(nullValue()));
+            }
+        } finally {
+            assertThat(Converters.unregister(UserId.class), is(true));
+        }
+        try {
+            new ArgumentProcessor().parse(new ConverterArgs(), new String[0]);
+            fail();
+        } catch (IllegalArgumentTypeException expected) {
+            assertThat(Converters.unregister(UserId.class), is(false));
+        }
+    }
+
+    @Test
+    public void testSubcommand() throws Exception {
+        ArgumentProcessor ap = new ArgumentProcessor();
+        ap.addSubcommand("commit", new TargetFactory<StubArgs>() {
+            @Override
+            public StubArgs newTarget() {
+                return new StubArgs();
+            }
+        });
+        ap.addSubcommand("broken", new TargetFactory<StubArgsUnsupportedType>() {
+            @Override
+            public StubArgsUnsupportedType newTarget() {
+                return new StubArgsUnsupportedType();
+            }
+        });
+        assertThat(ap.getSubcommandNames(), is((Set<String>) new HashSet<String>(Arrays.asList("commit", "broken"))));
+
+        StubArgsDefault globals = new StubArgsDefault();
+        SubcommandResult<StubArgsDefault> result = ap.parseSubcommand(globals, new String[]{
+                "-i", "7", "--", "commit", "-b", "-i", "3", "arg"});
+        assertThat(result.getName(), is("commit"));
+        assertThat(result.getGlobals(), is(sameInstance(globals)));
+        assertThat(globals.integer, is(7));
+        StubArgs commit = result.getTarget(StubArgs.class);
+        assertThat(commit.bool, is(true));
+        assertThat(commit.integer, is(3));
+        assertThat(commit.args, is(Arrays.asList("arg")));
+
+        try {
+            ap.parseSubcommand(new StubArgsDefault(), new String[]{"-i", "1"});
+            fail();
+        } catch (ArgumentParseException expected) {
+            assertThat(expected.getMessage(), is("subcommand is required."));
+        }
+        try {
+            ap.parseSubcommand(new StubArgsDefault(), new String[]{"push"});
+            fail();
+        } catch (ArgumentParseException expected) {
+            assertThat(expected.getMessage(), is("unknown subcommand : push"));
+        }
+        try {
+            ap.parseSubcommand(new StubArgsDefault(), new String[]{"broken"});
+            fail();
+        } catch (IllegalArgumentTypeException expected) {
+            assertThat(expected.getMessage().startsWith("unsupported option type"), is(true));
+        }
+    }
+
+    @Test
+    public void testComplete() throws Exception {
+        ArgumentProcessor ap = new ArgumentProcessor();
+        assertThat(ap.complete(StubArgs.class, new String[]{"--s"}), is(Arrays.asList("--short", "--string")));
+        assertThat(ap.complete(StubArgs.class, new String[]{"-s", "x", "--s"}), is(Arrays.asList("--short")));
+        assertThat(ap.complete(StubArgs.class, new String[]{"--string=x", "-m", "-1", "--m"}),
+                is(Collections.<String>emptyList()));
+        assertThat(ap.complete(StubArgs.class, new String[]{"-i", ""}), is(Collections.<String>emptyList()));
+        // -b is an option as a parse finds, not a value of -m which accepts a value starting with '-'.
+        assertThat(ap.complete(StubArgs.class, new String[]{"-m", "-b", "--b"}), is(Arrays.asList("--byte")));
+        assertThat(ap.complete(StubArgs.class, new String[]{"--", "--s"}), is(Collections.<String>emptyList()));
+
+        ap.addSubcommand("commit", new TargetFactory<StubArgs>() {
+            @Override
+            public StubArgs newTarget() {
+                return new StubArgs();
+            }
+        });
+        ap.addSubcommand("checkout", new TargetFactory<StubArgsUnsupportedType>() {
+            @Override
+            public StubArgsUnsupportedType newTarget() {
+                return new StubArgsUnsupportedType();
+            }
+        });
+        assertThat(ap.complete(StubArgsDefault.class, new String[]{"-i", "1", "c"}),
+                is(Arrays.asList("checkout", "commit")));
+        assertThat(ap.complete(StubArgsDefault.class, new String[]{"--opt"}),
+                is(Arrays.asList("--optb", "--opti", "--opts")));
+        assertThat(ap.complete(StubArgsDefault.class, new String[]{"-b", "commit", "--lo"}),
+                is(Arrays.asList("--long")));
+
+        StringBuilder script = new StringBuilder();
+        ap.addSubcommand("checkout", new TargetFactory<StubArgsRequired>() {
+            @Override
+            public StubArgsRequired newTarget() {
+                return new StubArgsRequired();
+            }
+        });
+        ap.appendBashCompletion(script, "my-tool", StubArgsDefault.class);
+        assertThat(script.toString(), containsString("complete -o default -F _ocm_my_tool 'my-tool'\n"));
+        assertThat(script.toString(), containsString(
+                "        '') opts='--optb --opti --opts -b -i -s'; valued=' --opti --opts -i -s ';;\n"));
+        assertThat(script.toString(), containsString("commands='checkout commit'\n"));
+    }
+
+    @Test
+    public void testParseCommandLine() throws Exception {
+        ArgumentProcessor ap = new ArgumentProcessor();
+        StubArgs a = ap.parse(new StubArgs(), "  -s 'a \"b\" c' -i\t3 --char=\\  plain \"x\\\"y\\z\"z ''\\\n"
+                + " a\\ b # comment -b\n-m \"-1\" \\$HOME'$HOME'");
+        assertThat(a.str, is("a \"b\" c"));
+        assertThat(a.integer, is(3));
+        assertThat(a.charValue, is(' '));
+        assertThat(a.minusInteger, is(-1));
+        assertThat(a.bool, is(false));
+        assertThat(a.args, is(Arrays.asList("plain", "x\"y\\zz", "", "a b", "$HOME$HOME")));
+
+        a = ap.parse(new StubArgs(), CharBuffer.wrap("-b -- -s"));
+        assertThat(a.bool, is(true));
+        assertThat(a.args, is(Arrays.asList("-s")));
+
+        String[] unclosed = {"'a", "a\"b", "a\\"};
+        for (String commandLine : unclosed) {
+            try {
+                ap.parse(new StubArgs(), commandLine);
+                fail(commandLine);
+            } catch (ArgumentParseException expected) {
+                assertThat(expected.getMessage(), containsString("command line"));
+            }
+        }
+    }
+
+    @Test
+    public void testTryParse() throws Exception {
+        ArgumentProcessor ap = new ArgumentProcessor();
+        StubArgsRequired required = new StubArgsRequired();
+        ParseResult<StubArgsRequired> r = ap.tryParse(required, new String[]{"--unknown"});
+        assertThat(r.isSuccess(), is(false));
+        assertThat(r.getError(), is(nullValue()));
+        List<ParseError> errors = r.getErrors();
+        assertThat(errors.size(), is(3));
+        assertThat(errors.get(0).getCode(), is(ParseErrorCode.UNKNOWN_OPTION));
+        assertThat(errors.get(0).getValue(), is("--unknown"));
+        assertThat(errors.get(0).getPosition(), is(0));
+        assertThat(errors.get(0).getMessage(), is("unknown option : --unknown"));
+        assertThat(errors.get(1).getCode(), is(ParseErrorCode.MISSING_REQUIRED));
+        assertThat(errors.get(1).getMessage(), is("option -i/--opti is required."));
+        assertThat(errors.get(2).getCode(), is(ParseErrorCode.MISSING_ARGUMENTS));
+
+        StubArgs a = new StubArgs();
+        ParseResult<StubArgs> result = ap.tryParse(a, new String[]{
+                "-i", "1x", "-s", "-b", "--byte=300", "-y", "", "-w", "1e", "-v", "0x1p3", "-u", "-9", "arg"});
+        assertThat(result.toString(), result.getErrors().size(), is(5));
+        assertThat(result.getErrors().get(0).getCode(), is(ParseErrorCode.BAD_CONVERSION));
+        assertThat(result.getErrors().get(0).getOption(), is("-i/--integer"));
+        assertThat(result.getErrors().get(0).getValue(), is("1x"));
+        assertThat(result.getErrors().get(0).getPosition(), is(1));
+        assertThat(result.getErrors().get(1).getCode(), is(ParseErrorCode.MISSING_VALUE));
+        assertThat(result.getErrors().get(1).getPosition(), is(2));
+        assertThat(result.getErrors().get(2).getValue(), is("300"));
+        assertThat(result.getErrors().get(3).getOption(), is("-y/--char"));
+        assertThat(result.getErrors().get(4).getValue(), is("1e"));
+        assertThat(a.bool, is(true));
+        assertThat(a.doubleValue, is(8d));
+        assertThat(a.longValue, is(-9L));
+        assertThat(a.args, is(Arrays.asList("arg")));
+
+        result = ap.tryParse(new StubArgs(), new String[]{"-m"});
+        assertThat(result.getErrors().get(0).getMessage(), is("no value is found for option -m/--minus"));
+
+        // an option whose value is rejected can be set again.
+        a = new StubArgs();
+        result = ap.tryParse(a, new String[]{"-i", "bad", "-i", "1"});
+        assertThat(result.getErrors().size(), is(1));
+        assertThat(result.getErrors().get(0).getCode(), is(ParseErrorCode.BAD_CONVERSION));
+        assertThat(a.integer, is(1));
+        a = new StubArgs();
+        result = ap.tryParse(a, new String[]{"-i", "-i", "1"});
+        assertThat(result.getErrors().size(), is(1));
+        assertThat(result.getErrors().get(0).getCode(), is(ParseErrorCode.MISSING_VALUE));
+        assertThat(a.integer, is(1));
+
+        RepeatableArgs repeatable = new RepeatableArgs();
+        ParseResult<RepeatableArgs> rr = ap.tryParse(repeatable, "-p 1 -p x -p 3 'unclosed");
+        assertThat(rr.getErrors().size(), is(2));
+        assertThat(rr.getErrors().get(0).getCode(), is(ParseErrorCode.BAD_CONVERSION));
+        assertThat(rr.getErrors().get(1).getCode(), is(ParseErrorCode.INPUT_ERROR));
+        assertThat(rr.getErrors().get(1).getPosition(), is(6));
+
+        String[] numbers = {"1", "-1.5", "+.5", "1.", ".", "1e10", "1E-3", "1e", "1e+", " 2 ", "2f", "2D", "2x", "NaN",
+            "-Infinity", "Inf", "0x1p3", "0X.8P-1", "0x1", "0x1.8", "0xp1", "1_0", "", "-", "1d5", "\u0661"};
+        for (String n : numbers) {
+            boolean valid;
+            try {
+                Double.parseDouble(n);
+                valid = true;
+            } catch (NumberFormatException nfe) {
+                valid = false;
+            }
+            assertThat(n, Numbers.isValidFloatingPoint(n), is(valid));
+        }
+    }
+
+    @Test
+    public void testSpecializedEngine() throws Exception {
+        String[] args = new String[]{
+                "-i", "12345", "-s", "hoge", "-b", "arg1", "-B", "-I", "234567", "arg2", "arg3",
+                "-m", "-123", "--byte=127", "-Z-128", "-yc", "-Y", "C", "-x", "32767", "-X", "-32768",
+                "-w", "1.1", "-W", "-1.1", "-v", "2.2", "-V", "-2.2", "-u", "1234567890", "-U", "-1234567890"
+        };
+        ArgumentProcessor ap = new ArgumentProcessor(StubArgs.class);
+        assertThat(ap.getEngine(), is(Engine.REFLECTIVE));
+        StubArgs expected = ap.parse(new StubArgs(), args);
+        ByteArrayOutputStream usage = new ByteArrayOutputStream();
+        ap.printUsage(new PrintStream(usage, true));
+
+        ap.setEngine(Engine.SPECIALIZED);
+        assertThat(ap.getEngine(), is(Engine.SPECIALIZED));
+        StubArgs actual = ap.parse(new StubArgs(), args);
+        for (Field field : StubArgs.class.getDeclaredFields()) {
+            field.setAccessible(true);
+            assertThat(field.getName(), field.get(actual), is(field.get(expected)));
+        }
+        ByteArrayOutputStream specializedUsage = new ByteArrayOutputStream();
+        ap.printUsage(new PrintStream(specializedUsage, true));
+        assertThat(specializedUsage.toString(), is(usage.toString()));
+
+        try {
+            ap.parse(new StubArgs(), new String[]{"-i", "x"});
+            fail();
+        } catch (ArgumentParseException ape) {
+            assertThat(ape.getMessage(), is("failed to set argument. option : -i/--integer"));
+            assertThat(ape.getCause(), is(instanceOf(NumberFormatException.class)));
+        }
+        try {
+            ap.parse(new StubArgs(), new String[]{"-s", "-i"});
+            fail();
+        } catch (ArgumentParseException ape) {
+            assertThat(ape.getMessage(), is("no value is found for option -s/--string"));
+        }
+        try {
+            ap.parse(new StubArgs(), new String[]{"--integ", "1"});
+            fail();
+        } catch (ArgumentParseException ape) {
+            assertThat(ape.getMessage(), is("unknown option : --integ"));
+        }
+
+        // a class which no generator supports is parsed by reflection.
+        RepeatableArgs r = ap.parse(new RepeatableArgs(), new String[]{"-p", "1", "-p", "2", "-n", "a"});
+        assertThat(r.ports, is(new int[]{1, 2}));
+        assertThat(r.names, is(Arrays.asList("a")));
+    }
+
+    /**
+     * Records option fields whose handlers are created, and leaves accessors to other factories. This is
+     * registered in META-INF/services of the test resources.
+     */
+    public static class CountingFieldAccessorFactory implements FieldAccessorFactory {
+
+        static final List<String> OPTION_FIELDS = new CopyOnWriteArrayList<String>();
+
+        @Override
+        public FieldAccessor create(Field field) {
+            if (field.getDeclaringClass() == StubArgs.class && field.isAnnotationPresent(Option.class)) {
+                OPTION_FIELDS.add(field.getName());
+            }
+            return null;
+        }
+    }
+
     private static class StubArgs {
         @Option(name = "string", alias = "s", metaName = "str", usage = "string option.")
         private String str;
@@ -438,6 +1449,17 @@ public class ArgumentProcessorTest {
         }
     }
 
+    private static class MutableDefaultArgs {
+        @Option(name = "port", alias = "p")
+        private int[] ports = {80};
+
+        @Option(name = "name", alias = "n")
+        private LinkedList<String> names = new LinkedList<String>(Collections.singletonList("a"));
+
+        @Option(name = "tag", alias = "t")
+        private List<String> tags = Arrays.asList("x");
+    }
+
     private static class StubArgsNoName {
         @Option(name = "hoge")
         private String hoge;
@@ -446,8 +1468,79 @@ public class ArgumentProcessorTest {
         private String fuga;
     }
 
+    private static class SinkArgs {
+        @Option(name = "string", alias = "s")
+        private String str;
+
+        @Arguments(required = true)
+        private ArgumentSink args;
+    }
+
+    private static class QueueArgs {
+        @Arguments
+        private BlockingQueue<String> args;
+    }
+
     private static class HashSetArgs {
         @Arguments
         HashSet<String> args;
     }
+
+    private static class RepeatableArgs {
+        @Option(name = "port", alias = "p")
+        private int[] ports;
+
+        @Option(name = "long", alias = "l")
+        private long[] longs = {1L};
+
+        @Option(name = "double", alias = "d")
+        private double[] doubles;
+
+        @Option(name = "name", alias = "n")
+        private List<String> names = Collections.singletonList("default");
+
+        @Option(name = "tag", alias = "t")
+        private Collection<String> tags;
+
+        @Option(name = "extra", alias = "e")
+        private LinkedList<String> extras;
+
+        @Arguments
+        private ArrayList<String> args;
+    }
+
+    private static class AbstractListArgs {
+        @Option(name = "name", alias = "n")
+        private AbstractList<String> names;
+    }
+
+    private static class CompactArgs {
+        @Option(name = "string", alias = "s")
+        private String str;
+
+        @Arguments
+        private CompactStringList args;
+    }
+
+    private static class UserId {
+        private final long value;
+
+        UserId(long value) {
+            this.value = value;
+        }
+    }
+
+    private static class ConverterArgs {
+        @Option(name = "id")
+        private UserId id;
+
+        @Option(name = "uri", alias = "u")
+        private URI uri;
+
+        @Option(name = "amount")
+        private BigDecimal amount;
+
+        @Option(name = "address")
+        private InetSocketAddress address;
+    }
 }